@@ -0,0 +1,60 @@
+-- Re-keys short_urls by the sequence value its shortcode encodes and
+-- hash-partitions the table on that key.
+--
+-- Shortcodes are Base62 of a ZooKeeper sequence value, so the value itself
+-- is a unique bigint primary key. A lookup by shortcode becomes a probe of
+-- that key in a single partition, and the unique index on the short_code
+-- string, the largest index of the table, is dropped.
+
+CREATE OR REPLACE FUNCTION base62_decode(code TEXT) RETURNS BIGINT
+    LANGUAGE plpgsql IMMUTABLE STRICT AS $$
+DECLARE
+    alphabet CONSTANT TEXT :=
+        'abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789';
+    value BIGINT := 0;
+    digit INT;
+BEGIN
+    FOR i IN 1 .. length(code) LOOP
+        digit := strpos(alphabet, substr(code, i, 1)) - 1;
+        IF digit < 0 THEN
+            RAISE EXCEPTION 'Invalid Base62 code: %', code;
+        END IF;
+        value := value * 62 + digit;
+    END LOOP;
+    RETURN value;
+END;
+$$;
+
+CREATE TABLE short_urls_by_sequence (
+    id BIGINT NOT NULL,
+    url TEXT NOT NULL,
+    short_code VARCHAR(11) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    access_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id)
+) PARTITION BY HASH (id);
+
+-- 16 partitions keep each partition and its index small at billions of rows;
+-- raising the count later means re-partitioning, so size it for growth.
+DO $$
+BEGIN
+    FOR remainder IN 0 .. 15 LOOP
+        EXECUTE format(
+            'CREATE TABLE short_urls_p%s PARTITION OF short_urls_by_sequence'
+            || ' FOR VALUES WITH (MODULUS 16, REMAINDER %s)',
+            lpad(remainder::TEXT, 2, '0'), remainder);
+    END LOOP;
+END;
+$$;
+
+INSERT INTO short_urls_by_sequence
+    (id, url, short_code, created_at, updated_at, access_count)
+SELECT base62_decode(short_code), url, short_code,
+       COALESCE(created_at, CURRENT_TIMESTAMP),
+       COALESCE(updated_at, CURRENT_TIMESTAMP),
+       COALESCE(access_count, 0)
+FROM short_urls;
+
+DROP TABLE short_urls;
+ALTER TABLE short_urls_by_sequence RENAME TO short_urls;
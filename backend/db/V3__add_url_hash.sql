@@ -0,0 +1,12 @@
+-- Adds the hash of the normalized URL, used to return the existing shortcode
+-- when a URL is shortened again (shorten.dedupe.enabled).
+--
+-- The index cannot be unique: a unique index on a partitioned table must
+-- include the partition key. Concurrent creations of the same URL are
+-- arbitrated in Redis instead, and the rows found by hash are compared by URL
+-- since different URLs may share a hash. Rows created before this migration
+-- keep a NULL hash and are not deduplicated.
+
+ALTER TABLE short_urls ADD COLUMN url_hash BIGINT;
+
+CREATE INDEX short_urls_url_hash_idx ON short_urls (url_hash);
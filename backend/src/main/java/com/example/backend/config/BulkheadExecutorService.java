@@ -0,0 +1,148 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor service that caps how many of its tasks run at once.
+ * <p>
+ * Every task is handed to the delegate immediately, but waits
+ * for a permit before running its body. With a virtual thread
+ * per task delegate a waiting task only parks its virtual
+ * thread, so thousands of queued requests cost memory, not
+ * carrier threads or database connections.
+ * <p>
+ * The {@code execution.bulkhead.active} and
+ * {@code execution.bulkhead.waiting} gauges, tagged with the
+ * bulkhead name, report the running and queued tasks.
+ */
+public final class BulkheadExecutorService extends AbstractExecutorService {
+    /**
+     * Executor that runs the tasks.
+     */
+    private final ExecutorService delegate;
+    /**
+     * Permits for concurrently running tasks.
+     */
+    private final Semaphore permits;
+    /**
+     * Maximum number of concurrently running tasks.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Constructs a new {@code BulkheadExecutorService}.
+     *
+     * @param executor the executor that runs the tasks
+     * @param concurrency the maximum number of tasks running at once
+     * @param name the bulkhead name used as metric tag
+     * @param meterRegistry registry for the bulkhead gauges
+     */
+    public BulkheadExecutorService(final ExecutorService executor,
+                                   final int concurrency,
+                                   final String name,
+                                   final MeterRegistry meterRegistry) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(
+                    "Bulkhead concurrency must be positive: " + concurrency);
+        }
+        this.delegate = executor;
+        this.maxConcurrency = concurrency;
+        this.permits = new Semaphore(concurrency, true);
+        Gauge.builder("execution.bulkhead.active", this,
+                        BulkheadExecutorService::activeCount)
+                .tag("bulkhead", name)
+                .description("Tasks currently running in the bulkhead")
+                .register(meterRegistry);
+        Gauge.builder("execution.bulkhead.waiting", permits,
+                        Semaphore::getQueueLength)
+                .tag("bulkhead", name)
+                .description("Tasks waiting for a bulkhead permit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the number of tasks currently holding a permit.
+     *
+     * @return the number of running tasks
+     */
+    public int activeCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Submits a task that runs once a permit is free.
+     *
+     * @param command the task to run
+     */
+    @Override
+    public void execute(final Runnable command) {
+        delegate.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Stops accepting tasks; see {@link ExecutorService#shutdown()}.
+     */
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    /**
+     * Stops accepting tasks and interrupts running ones;
+     * see {@link ExecutorService#shutdownNow()}.
+     *
+     * @return the tasks that never started
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    /**
+     * Tells whether the delegate was shut down.
+     *
+     * @return {@code true} once shut down
+     */
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    /**
+     * Tells whether all tasks finished after a shutdown.
+     *
+     * @return {@code true} once terminated
+     */
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    /**
+     * Waits for the delegate to terminate after a shutdown.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return {@code true} if terminated before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
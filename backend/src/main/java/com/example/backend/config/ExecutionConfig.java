@@ -0,0 +1,179 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration class for running blocking work off the event loop.
+ * <p>
+ * The service layer uses JPA, Curator and the blocking Redis
+ * template. Controllers hand such calls to the
+ * {@link Scheduler}s defined here so a slow Postgres query or
+ * Redis timeout never stalls a Netty event loop thread and
+ * the requests multiplexed on it.
+ * <p>
+ * Reads and writes run on separate schedulers, each capped
+ * at its own concurrency. Keeping the write limit below the
+ * Hikari pool size leaves connections for redirects even
+ * when thousands of slow creates are in flight.
+ * <p>
+ * With {@code execution.mode=virtual-threads} each call runs
+ * on its own virtual thread (Java 21 or later) and waits for
+ * a bulkhead permit by parking instead of holding a platform
+ * thread; a {@link VirtualThreadPinningMonitor} reports
+ * virtual threads pinned by {@code synchronized} code. On
+ * older runtimes the bounded elastic mode is used instead.
+ *
+ * @see reactor.core.scheduler.Schedulers#boundedElastic()
+ * @see BulkheadExecutorService
+ */
+@Configuration
+@Slf4j
+public class ExecutionConfig {
+
+    /**
+     * How blocking service calls are executed.
+     */
+    public enum ExecutionMode {
+        /**
+         * Platform threads from a bounded elastic scheduler.
+         */
+        BOUNDED_ELASTIC,
+        /**
+         * One virtual thread per call, behind a bulkhead.
+         */
+        VIRTUAL_THREADS
+    }
+
+    /**
+     * Provides the scheduler used for blocking read calls.
+     *
+     * @param mode the execution mode
+     * @param maxConcurrency the maximum number of concurrent reads
+     * @param meterRegistry registry for the bulkhead gauges
+     * @return the read {@link Scheduler}
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler readScheduler(
+            @Value("${execution.mode:bounded-elastic}")
+            final ExecutionMode mode,
+            @Value("${execution.read.max-concurrency:200}")
+            final int maxConcurrency,
+            final MeterRegistry meterRegistry) {
+        return newScheduler(mode, "read", maxConcurrency, meterRegistry);
+    }
+
+    /**
+     * Provides the scheduler used for blocking write calls.
+     * <p>
+     * Warns when the write limit could take every
+     * connection of the pool.
+     *
+     * @param mode the execution mode
+     * @param maxConcurrency the maximum number of concurrent writes
+     * @param poolSize the size of the database connection pool
+     * @param meterRegistry registry for the bulkhead gauges
+     * @return the write {@link Scheduler}
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler writeScheduler(
+            @Value("${execution.mode:bounded-elastic}")
+            final ExecutionMode mode,
+            @Value("${execution.write.max-concurrency:12}")
+            final int maxConcurrency,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+            final int poolSize,
+            final MeterRegistry meterRegistry) {
+        if (maxConcurrency >= poolSize) {
+            log.warn("execution.write.max-concurrency ({}) is not below the "
+                    + "connection pool size ({}); writes can starve reads",
+                    maxConcurrency, poolSize);
+        }
+        return newScheduler(mode, "write", maxConcurrency, meterRegistry);
+    }
+
+    /**
+     * Reports virtual threads pinned to their carrier.
+     * <p>
+     * Warns when ZooKeeper sequences are leased with the
+     * Curator lock, whose {@code synchronized} sections pin.
+     *
+     * @param threshold the minimum pinning duration to report
+     * @param allocationMode the sequence allocation mode
+     * @param meterRegistry registry for the pinning counter
+     * @return the running monitor
+     */
+    @Bean
+    @ConditionalOnProperty(name = "execution.mode",
+            havingValue = "virtual-threads")
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${execution.virtual-threads.pinning-threshold:20ms}")
+            final Duration threshold,
+            @Value("${zookeeper.sequence.allocation-mode:cas}")
+            final String allocationMode,
+            final MeterRegistry meterRegistry) {
+        if ("lock".equalsIgnoreCase(allocationMode)) {
+            log.warn("zookeeper.sequence.allocation-mode=lock pins virtual "
+                    + "threads while leasing; prefer cas");
+        }
+        return new VirtualThreadPinningMonitor(threshold, meterRegistry);
+    }
+
+    /**
+     * Creates a scheduler capped at the given concurrency.
+     *
+     * @param mode the execution mode
+     * @param name the scheduler name
+     * @param maxConcurrency the maximum number of concurrent calls
+     * @param meterRegistry registry for the bulkhead gauges
+     * @return the scheduler
+     */
+    private static Scheduler newScheduler(final ExecutionMode mode,
+                                          final String name,
+                                          final int maxConcurrency,
+                                          final MeterRegistry meterRegistry) {
+        if (mode == ExecutionMode.VIRTUAL_THREADS) {
+            ExecutorService virtualThreads = newVirtualThreadExecutor();
+            if (virtualThreads != null) {
+                log.info("Running blocking {} calls on virtual threads, "
+                        + "at most {} at once", name, maxConcurrency);
+                return Schedulers.fromExecutorService(
+                        new BulkheadExecutorService(virtualThreads,
+                                maxConcurrency, name, meterRegistry),
+                        "virtual-" + name);
+            }
+            log.warn("Virtual threads need Java 21 or later, running "
+                    + "blocking {} calls on a bounded elastic scheduler", name);
+        }
+        return Schedulers.newBoundedElastic(maxConcurrency,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                "blocking-" + name);
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the runtime
+     * supports it. Looked up reflectively so the application
+     * still runs on Java 17.
+     *
+     * @return the executor, or {@code null} if unsupported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
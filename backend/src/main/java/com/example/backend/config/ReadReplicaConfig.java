@@ -0,0 +1,131 @@
+package com.example.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration class that routes read-only transactions
+ * to Postgres read replicas.
+ * <p>
+ * Active with {@code datasource.replicas.enabled=true}. The
+ * application data source then becomes a
+ * {@link LazyConnectionDataSourceProxy} over the primary pool
+ * from {@code spring.datasource}: it only takes a physical
+ * connection at the first statement, once the transaction has
+ * marked the connection read-only, and takes it from the
+ * {@link ReplicaRoutingDataSource} if so. Writes, and reads
+ * outside a {@code @Transactional(readOnly = true)} method,
+ * stay on the primary.
+ * <p>
+ * Replicas share the credentials and driver of the primary
+ * and get pools of their own, marked read-only.
+ *
+ * @see ReplicaRoutingDataSource
+ * @see com.example.backend.repository.ShortUrlRepository#findByShortCode
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "datasource.replicas.enabled",
+        havingValue = "true")
+public class ReadReplicaConfig {
+
+    /**
+     * Provides the connection pool of the primary, configured
+     * like the default pool by {@code spring.datasource}.
+     *
+     * @param properties the {@code spring.datasource} properties
+     * @return the primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(
+            final DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    /**
+     * Provides the data source that picks a caught-up replica.
+     *
+     * @param properties the {@code spring.datasource} properties
+     * @param primaryDataSource the primary pool, used as fallback
+     * @param urls JDBC URLs of the replicas
+     * @param poolSize maximum number of connections per replica
+     * @param maxLag replay lag above which a replica is skipped
+     * @param checkInterval time between lag checks
+     * @param meterRegistry registry for the routing metrics
+     * @return the replica data source
+     * @throws IllegalStateException if no replica URL is set
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaDataSource(
+            final DataSourceProperties properties,
+            final HikariDataSource primaryDataSource,
+            @Value("${datasource.replicas.urls}") final List<String> urls,
+            @Value("${datasource.replicas.maximum-pool-size:20}")
+            final int poolSize,
+            @Value("${datasource.replicas.max-lag:1s}") final Duration maxLag,
+            @Value("${datasource.replicas.lag-check-interval:5s}")
+            final Duration checkInterval,
+            final MeterRegistry meterRegistry) {
+        List<String> replicaUrls = urls.stream()
+                .map(String::strip)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        if (replicaUrls.isEmpty()) {
+            throw new IllegalStateException("datasource.replicas.enabled is"
+                    + " set but datasource.replicas.urls lists no replica");
+        }
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            String name = "replica-" + i;
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(replicaUrls.get(i))
+                    .build();
+            replica.setPoolName(name);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+        log.info("Routing read-only transactions to {} replica(s) lagging "
+                + "at most {}", replicas.size(), maxLag);
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                maxLag, checkInterval, meterRegistry);
+    }
+
+    /**
+     * Provides the application data source, which sends
+     * read-only transactions to the replicas.
+     *
+     * @param primaryDataSource the primary pool
+     * @param replicaDataSource the replica data source
+     * @return the routing data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            final HikariDataSource primaryDataSource,
+            final ReplicaRoutingDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource =
+                new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.backend.config;
+
+import com.example.backend.service.LocalUrlCache;
+import com.example.backend.service.ShortCodeFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Configuration class for Redis pub/sub integration.
+ * <p>
+ * This class subscribes every instance to the channel
+ * on which shortcode updates and deletions are announced,
+ * and drops the matching entries from the
+ * {@link LocalUrlCache} of this instance. It also adds
+ * shortcodes issued by other instances to the local
+ * {@link ShortCodeFilter}.
+ *
+ * @see org.springframework.data.redis.listener.RedisMessageListenerContainer
+ * @see com.example.backend.service.RedisService#publishInvalidation(String)
+ */
+@Configuration
+@Slf4j
+public class RedisConfig {
+
+    /**
+     * Creates the listener container subscribed to the
+     * near cache invalidation and issued shortcode channels.
+     *
+     * @param connectionFactory the Redis connection factory
+     * @param localUrlCache the near cache to invalidate
+     * @param shortCodeFilter the filter of issued shortcodes
+     * @param channel the invalidation channel name
+     * @param issuedChannel the issued shortcodes channel name
+     * @return the started listener container
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(
+            final RedisConnectionFactory connectionFactory,
+            final LocalUrlCache localUrlCache,
+            final ShortCodeFilter shortCodeFilter,
+            @Value("${cache.local.invalidation-channel:url-cache-invalidation}")
+            final String channel,
+            @Value("${shortcode.filter.channel:shortcode-issued}")
+            final String issuedChannel) {
+        RedisMessageListenerContainer container =
+                new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            String shortCode = new String(message.getBody(),
+                    StandardCharsets.UTF_8);
+            log.debug("Invalidating near cache entry {}", shortCode);
+            localUrlCache.invalidate(shortCode);
+        }, new ChannelTopic(channel));
+        container.addMessageListener((message, pattern) -> {
+            String shortCodes = new String(message.getBody(),
+                    StandardCharsets.UTF_8);
+            shortCodeFilter.addLocally(Arrays.asList(shortCodes.split(",")));
+        }, new ChannelTopic(issuedChannel));
+        return container;
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.backend.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source that spreads read-only work over Postgres
+ * replicas, skipping replicas that lag behind the primary.
+ * <p>
+ * Each replica's replay lag is measured every check interval.
+ * Connections are handed out round robin from the replicas
+ * whose last measured lag is at most {@code maxLag}; a replica
+ * that cannot be reached, or lags more, is skipped until a
+ * later check finds it caught up. When no replica qualifies,
+ * or the chosen one refuses a connection, the connection
+ * comes from the primary instead, so reads never fail
+ * because of a replica.
+ * <p>
+ * Replicas are unused until their first lag check succeeds.
+ * <p>
+ * Metrics:
+ * <ul>
+ *     <li>{@code datasource.replica.lag}, tagged with the replica
+ *     name, the last measured lag in seconds, or -1 while the
+ *     replica is unreachable;</li>
+ *     <li>{@code datasource.replica.fallbacks}, tagged
+ *     {@code reason=lagging|error}, reads sent to the primary.</li>
+ * </ul>
+ *
+ * @see ReadReplicaConfig
+ */
+@Slf4j
+public final class ReplicaRoutingDataSource extends AbstractDataSource
+        implements AutoCloseable {
+    /**
+     * Replay lag of a Postgres standby in seconds; zero when it
+     * has replayed everything it received, or is no standby.
+     */
+    static final String LAG_SQL = "SELECT CASE"
+            + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn()"
+            + " THEN 0 ELSE COALESCE(EXTRACT(EPOCH FROM now()"
+            + " - pg_last_xact_replay_timestamp()), 0) END";
+    /**
+     * Maximum time, in seconds, a lag query may run.
+     */
+    private static final int LAG_QUERY_TIMEOUT_SECONDS = 2;
+    /**
+     * Lag reported while a replica is unreachable.
+     */
+    private static final double UNKNOWN_LAG = -1;
+    /**
+     * Data source used when no replica qualifies.
+     */
+    private final DataSource primary;
+    /**
+     * The replicas, in configuration order.
+     */
+    private final List<Replica> replicas = new ArrayList<>();
+    /**
+     * Replay lag, in seconds, above which a replica is skipped.
+     */
+    private final double maxLagSeconds;
+    /**
+     * Round robin position among the replicas.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+    /**
+     * Counts reads sent to the primary because every replica lagged.
+     */
+    private final Counter laggingFallbacks;
+    /**
+     * Counts reads sent to the primary after a replica failed.
+     */
+    private final Counter errorFallbacks;
+    /**
+     * Single thread running the lag checks.
+     */
+    private final ScheduledExecutorService lagChecker;
+
+    /**
+     * Constructs a new {@code ReplicaRoutingDataSource} and
+     * schedules its first lag check right away.
+     *
+     * @param primaryDataSource data source used when no replica qualifies
+     * @param replicaDataSources the replicas, keyed by name
+     * @param maxLag replay lag above which a replica is skipped
+     * @param checkInterval time between lag checks
+     * @param meterRegistry registry for the routing metrics
+     */
+    public ReplicaRoutingDataSource(final DataSource primaryDataSource,
+                                    final Map<String, DataSource> replicaDataSources,
+                                    final Duration maxLag,
+                                    final Duration checkInterval,
+                                    final MeterRegistry meterRegistry) {
+        this.primary = primaryDataSource;
+        this.maxLagSeconds = maxLag.toNanos()
+                / (double) TimeUnit.SECONDS.toNanos(1);
+        replicaDataSources.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            replicas.add(replica);
+            Gauge.builder("datasource.replica.lag", replica,
+                            current -> current.lagSeconds)
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .description("Replay lag behind the primary")
+                    .register(meterRegistry);
+        });
+        this.laggingFallbacks = meterRegistry.counter(
+                "datasource.replica.fallbacks", "reason", "lagging");
+        this.errorFallbacks = meterRegistry.counter(
+                "datasource.replica.fallbacks", "reason", "error");
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("replica-lag-%d")
+                        .setDaemon(true)
+                        .build());
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0,
+                checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a connection to a replica that is caught up,
+     * or to the primary if there is none.
+     *
+     * @return the connection
+     * @throws SQLException if the primary cannot be reached either
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = pick();
+        if (replica == null) {
+            laggingFallbacks.increment();
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            replica.markUnreachable();
+            errorFallbacks.increment();
+            log.warn("Replica {} refused a connection, reading from the "
+                    + "primary: {}", replica.name, e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Returns a connection for the given user, chosen
+     * like {@link #getConnection()}.
+     *
+     * @param username the database user
+     * @param password the user's password
+     * @return the connection
+     * @throws SQLException if the primary cannot be reached either
+     */
+    @Override
+    public Connection getConnection(final String username,
+                                    final String password)
+            throws SQLException {
+        Replica replica = pick();
+        if (replica == null) {
+            laggingFallbacks.increment();
+            return primary.getConnection(username, password);
+        }
+        try {
+            return replica.dataSource.getConnection(username, password);
+        } catch (SQLException e) {
+            replica.markUnreachable();
+            errorFallbacks.increment();
+            return primary.getConnection(username, password);
+        }
+    }
+
+    /**
+     * Picks the next replica within the lag limit, round robin.
+     *
+     * @return the replica, or {@code null} if none qualifies
+     */
+    private Replica pick() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            double lag = replica.lagSeconds;
+            if (lag >= 0 && lag <= maxLagSeconds) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Measures the replay lag of every replica.
+     */
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+                try (ResultSet result = statement.executeQuery(LAG_SQL)) {
+                    result.next();
+                    replica.updateLag(result.getDouble(1), maxLagSeconds);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (replica.reachable) {
+                    log.warn("Replica {} is unreachable: {}", replica.name,
+                            e.getMessage());
+                }
+                replica.markUnreachable();
+            }
+        }
+    }
+
+    /**
+     * Stops the lag checks.
+     */
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+    }
+
+    /**
+     * A replica and its last measured lag.
+     */
+    private static final class Replica {
+        /**
+         * Name used in logs and metric tags.
+         */
+        private final String name;
+        /**
+         * Pool of connections to the replica.
+         */
+        private final DataSource dataSource;
+        /**
+         * Last measured lag in seconds, or {@link #UNKNOWN_LAG}.
+         */
+        private volatile double lagSeconds = UNKNOWN_LAG;
+        /**
+         * Whether the last check reached the replica, so that
+         * an outage is logged once.
+         */
+        private volatile boolean reachable = true;
+
+        /**
+         * Creates a replica that is not used until checked.
+         *
+         * @param replicaName name used in logs and metric tags
+         * @param replicaDataSource pool of connections to the replica
+         */
+        private Replica(final String replicaName,
+                        final DataSource replicaDataSource) {
+            this.name = replicaName;
+            this.dataSource = replicaDataSource;
+        }
+
+        /**
+         * Records a measured lag, logging when the replica
+         * starts or stops being used.
+         *
+         * @param lag the measured lag in seconds
+         * @param maxLag the lag limit in seconds
+         */
+        private void updateLag(final double lag, final double maxLag) {
+            boolean wasUsable = lagSeconds >= 0 && lagSeconds <= maxLag;
+            boolean usable = lag <= maxLag;
+            if (wasUsable != usable) {
+                log.info("Replica {} lags {}s, {}", name, lag,
+                        usable ? "reading from it" : "skipping it");
+            }
+            lagSeconds = lag;
+            reachable = true;
+        }
+
+        /**
+         * Stops using the replica until its next successful check.
+         */
+        private void markUnreachable() {
+            lagSeconds = UNKNOWN_LAG;
+            reachable = false;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.CuratorCache;
+import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
+import org.apache.curator.framework.recipes.nodes.PersistentNode;
+import org.apache.zookeeper.CreateMode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registration of this instance under
+ * {@code /services/{applicationName}} in ZooKeeper, and the
+ * view of the other instances registered there.
+ * <p>
+ * The instance node is ephemeral and only created once
+ * {@link #register()} is called, so the instance receives no
+ * traffic while it is still warming up. It is kept by a
+ * {@link PersistentNode}, which creates it again after the
+ * ZooKeeper session expires.
+ * <p>
+ * The other instances are watched with a {@link CuratorCache}
+ * from the start; listeners added with
+ * {@link #onPeerDeparted(Runnable)} run, on the cache's thread,
+ * whenever one of them leaves, as its traffic then moves to
+ * the remaining instances.
+ *
+ * @see ZookeeperConfig
+ */
+@Slf4j
+public final class ServiceRegistration implements AutoCloseable {
+    /**
+     * Path of this instance's node.
+     */
+    private final String instancePath;
+    /**
+     * The ephemeral node, not started until registration.
+     */
+    private final PersistentNode instanceNode;
+    /**
+     * Watch of every registered instance.
+     */
+    private final CuratorCache members;
+    /**
+     * Actions run when another instance leaves.
+     */
+    private final List<Runnable> departureListeners =
+            new CopyOnWriteArrayList<>();
+    /**
+     * Whether {@link #register()} was called.
+     */
+    private final AtomicBoolean registered = new AtomicBoolean();
+
+    /**
+     * Constructs a new {@code ServiceRegistration} and starts
+     * watching the registered instances.
+     *
+     * @param client the started ZooKeeper client
+     * @param servicePath the path the instances register under
+     * @param instanceName the name of this instance's node
+     * @param instanceData the data stored in this instance's node
+     */
+    public ServiceRegistration(final CuratorFramework client,
+                               final String servicePath,
+                               final String instanceName,
+                               final String instanceData) {
+        this.instancePath = servicePath + "/" + instanceName;
+        this.instanceNode = new PersistentNode(client, CreateMode.EPHEMERAL,
+                false, instancePath,
+                instanceData.getBytes(StandardCharsets.UTF_8));
+        this.members = CuratorCache.build(client, servicePath);
+        members.listenable().addListener(CuratorCacheListener.builder()
+                .forDeletes(node -> {
+                    if (!node.getPath().equals(instancePath)
+                            && !node.getPath().equals(servicePath)) {
+                        log.info("Instance {} left", node.getPath());
+                        departureListeners.forEach(Runnable::run);
+                    }
+                })
+                .build());
+        members.start();
+    }
+
+    /**
+     * Registers this instance, so it starts receiving traffic.
+     * Later calls do nothing.
+     */
+    public void register() {
+        if (registered.compareAndSet(false, true)) {
+            instanceNode.start();
+            log.info("Registered {} in ZooKeeper", instancePath);
+        }
+    }
+
+    /**
+     * Tells whether this instance has been registered.
+     *
+     * @return {@code true} once {@link #register()} was called
+     */
+    public boolean isRegistered() {
+        return registered.get();
+    }
+
+    /**
+     * Adds an action run whenever another instance leaves.
+     *
+     * @param listener the action
+     */
+    public void onPeerDeparted(final Runnable listener) {
+        departureListeners.add(listener);
+    }
+
+    /**
+     * Stops watching the instances and removes this instance's node.
+     *
+     * @throws Exception if the node cannot be removed
+     */
+    @Override
+    public void close() throws Exception {
+        members.close();
+        if (registered.get()) {
+            instanceNode.close();
+        }
+    }
+}
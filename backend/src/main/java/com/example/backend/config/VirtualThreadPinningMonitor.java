@@ -0,0 +1,109 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reports virtual threads pinned to their carrier thread.
+ * <p>
+ * A virtual thread that blocks inside a {@code synchronized}
+ * block or a native frame cannot unmount and holds its carrier
+ * for the whole wait. Curator's {@code InterProcessMutex} and
+ * some JDBC driver paths do this. The monitor streams the JDK
+ * Flight Recorder {@code jdk.VirtualThreadPinned} event,
+ * logs the top of the stack of every pin longer than the
+ * threshold and counts them in
+ * {@code execution.virtual-thread.pinned}.
+ */
+@Slf4j
+public final class VirtualThreadPinningMonitor implements AutoCloseable {
+    /**
+     * Flight Recorder event emitted when a virtual thread is pinned.
+     */
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    /**
+     * Number of stack frames included in the warning.
+     */
+    private static final int LOGGED_FRAMES = 8;
+    /**
+     * Stream delivering the pinning events.
+     */
+    private final RecordingStream recordingStream;
+    /**
+     * Counts pinning events above the threshold.
+     */
+    private final Counter pinnedCounter;
+
+    /**
+     * Constructs a new monitor and starts streaming events.
+     *
+     * @param threshold the minimum pinning duration to report
+     * @param meterRegistry registry for the pinning counter
+     */
+    public VirtualThreadPinningMonitor(final Duration threshold,
+                                       final MeterRegistry meterRegistry) {
+        this.pinnedCounter = meterRegistry.counter(
+                "execution.virtual-thread.pinned");
+        this.recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT)
+                .withThreshold(threshold)
+                .withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::report);
+        recordingStream.startAsync();
+        log.info("Reporting virtual thread pinning longer than {}", threshold);
+    }
+
+    /**
+     * Logs and counts one pinning event.
+     *
+     * @param event the recorded pinning event
+     */
+    private void report(final RecordedEvent event) {
+        pinnedCounter.increment();
+        if (log.isWarnEnabled()) {
+            log.warn("Virtual thread pinned for {} ms at {}",
+                    event.getDuration().toMillis(),
+                    topFrames(event.getStackTrace()));
+        }
+    }
+
+    /**
+     * Formats the innermost frames of a stack trace.
+     *
+     * @param stackTrace the stack trace, may be {@code null}
+     * @return the frames separated by {@code " <- "}
+     */
+    private static String topFrames(final RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown location";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder location = new StringBuilder();
+        for (int i = 0; i < Math.min(LOGGED_FRAMES, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            if (i > 0) {
+                location.append(" <- ");
+            }
+            location.append(frame.getMethod().getType().getName())
+                    .append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return location.toString();
+    }
+
+    /**
+     * Stops streaming events.
+     */
+    @Override
+    public void close() {
+        recordingStream.close();
+    }
+}
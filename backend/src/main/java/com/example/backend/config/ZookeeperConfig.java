@@ -3,7 +3,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.ExponentialBackoffRetry;
-import org.apache.zookeeper.CreateMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
@@ -15,8 +14,9 @@ import org.springframework.context.annotation.Configuration;
  * <p>
  * This class configures a connection to ZooKeeper using
  * the {@link CuratorFramework} client.
- * It also registers the current application as
- * a service in ZooKeeper, enabling service discovery.
+ * It also prepares the registration of the current
+ * application as a service in ZooKeeper, enabling service
+ * discovery once the instance is warmed up.
  *
  * @see org.springframework.context.annotation.Configuration
  * @see org.springframework.cloud.client.discovery.EnableDiscoveryClient
@@ -65,8 +65,7 @@ public class ZookeeperConfig {
      * This method establishes a connection to ZooKeeper
      * using the provided host and port,
      * applies an exponential backoff retry policy,
-     * and starts the client. It also attempts
-     * to register the current service in ZooKeeper.
+     * and starts the client.
      *
      * @return a fully configured and started {@link CuratorFramework} instance
      */
@@ -79,39 +78,27 @@ public class ZookeeperConfig {
                         MAX_RETRIES))
                 .build();
         curatorFramework.start();
-        try {
-            registerService(curatorFramework);
-        } catch (Exception e) {
-            // Log error
-            log.error("Dont register service in zookeeper");
-        }
-
         return curatorFramework;
     }
 
     /**
-     * Registers the current application as a service in ZooKeeper.
+     * Prepares the registration of the current application
+     * as a service in ZooKeeper.
      * <p>
-     * This method creates a service node under
-     * "/services/{applicationName}" if it does not exist,
-     * and registers the current instance as
-     * an ephemeral node under the service path.
+     * The instance is registered as an ephemeral node
+     * "/services/{applicationName}/instance-{port}" only once
+     * {@link ServiceRegistration#register()} is called, which
+     * the {@link com.example.backend.service.CacheWarmer} does
+     * after warming the caches.
      *
      * @param client the {@link CuratorFramework} client used
      *               to interact with ZooKeeper
-     * @throws Exception if an error occurs while registering the service
+     * @return the registration, not yet registered
      */
-    private void registerService(final CuratorFramework client)
-            throws Exception {
-        String servicePath = "/services/" + applicationName;
-        String instancePath = servicePath + "/instance-" + serverPort;
-
-        if (client.checkExists().forPath(servicePath) == null) {
-            client.create().creatingParentsIfNeeded().forPath(servicePath);
-        }
-        String instanceData = "http://localhost:" + serverPort;
-        client.create().creatingParentsIfNeeded().
-                withMode(CreateMode.EPHEMERAL).
-                forPath(instancePath, instanceData.getBytes());
+    @Bean(destroyMethod = "close")
+    public ServiceRegistration serviceRegistration(
+            final CuratorFramework client) {
+        return new ServiceRegistration(client, "/services/" + applicationName,
+                "instance-" + serverPort, "http://localhost:" + serverPort);
     }
 }
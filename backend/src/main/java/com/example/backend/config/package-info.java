@@ -13,6 +13,8 @@
  * <ul>
  *   <li>{@link com.example.backend.config.ZookeeperConfig}: Configures
  *   integration with Apache ZooKeeper for service discovery.</li>
+ *   <li>{@link com.example.backend.config.ServiceRegistration}: Registers
+ *   the instance once warmed up and watches the other instances.</li>
  *   <li>{@link com.example.backend.config.OpenApiConfig}: Configures OpenAPI
  *   documentation for the application.</li>
  *   <li>{@link com.example.backend.config.ApiGatewayConfig}: Defines API
@@ -23,6 +25,12 @@
  *   global
  *   Cross-Origin Resource Sharing (CORS) policies to allow requests from the
  *   frontend.</li>
+ *   <li>{@link com.example.backend.config.RedisConfig}: Subscribes to the
+ *   Redis channel used to invalidate near caches across instances.</li>
+ *   <li>{@link com.example.backend.config.ExecutionConfig}: Provides the
+ *   scheduler that runs blocking service calls off the event loop.</li>
+ *   <li>{@link com.example.backend.config.ReadReplicaConfig}: Routes
+ *   read-only transactions to Postgres read replicas.</li>
  * </ul>
  *
  * @see org.springframework.cloud.client.discovery.EnableDiscoveryClient
@@ -1,7 +1,11 @@
 package com.example.backend.controller;
 
 
+import com.example.backend.dto.ClickBucket;
+import com.example.backend.dto.HotLink;
+import com.example.backend.dto.UniqueVisitors;
 import com.example.backend.entity.ShortUrl;
+import com.example.backend.service.ClickStatsService;
 import com.example.backend.service.UrlShortnerService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -9,9 +13,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -19,10 +32,15 @@ import java.util.Optional;
  * operations related to shortened URLs.
  * <p>
  * This controller provides endpoints to retrieve
- * the original URL and statistics (e.g., access count)
- * associated with a given shortcode.
+ * the original URL and statistics (e.g., access count, clicks
+ * over time, unique visitors) associated with a given shortcode,
+ * and the links clicked most right now.
  * It interacts with services such as {@link UrlShortnerService}
+ * and {@link ClickStatsService}, whose blocking calls run on
+ * the read scheduler.
  * @see UrlShortnerService
+ * @see ClickStatsService
+ * @see com.example.backend.config.ExecutionConfig
  */
 
 @RestController
@@ -35,6 +53,14 @@ public final class ReadController {
      * Service responsible for managing URL shortening and retrieval logic.
      */
     private final UrlShortnerService urlShortnerService;
+    /**
+     * Service reading the per-minute click analytics.
+     */
+    private final ClickStatsService clickStatsService;
+    /**
+     * Scheduler for service calls that may block.
+     */
+    private final Scheduler readScheduler;
     /**
      * Retrieves the original URL associated with the given shortcode.
      *
@@ -44,9 +70,30 @@ public final class ReadController {
      */
     @Tag(name = "get",description = "Get the url by shortcode")
     @GetMapping("/shorten/{shortcode}")
-    public ResponseEntity<?> getUrl(@PathVariable final String shortcode) {
-        String url = urlShortnerService.getUrlByShortCode(shortcode);
-        return ResponseEntity.ok(url);
+    public Mono<ResponseEntity<String>> getUrl(@PathVariable
+                                               final String shortcode) {
+        return Mono.fromCallable(() ->
+                        urlShortnerService.getUrlByShortCode(shortcode))
+                .subscribeOn(readScheduler)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the original URLs of several shortcodes at once.
+     *
+     * @param shortcodes the shortcodes to resolve
+     * @return a {@link ResponseEntity} containing the URLs keyed by
+     * shortcode; unknown shortcodes are left out
+     * @see UrlShortnerService#getUrlsByShortCodes(java.util.Collection)
+     */
+    @Tag(name = "post", description = "Get the urls of many shortcodes")
+    @PostMapping("/shorten/batch")
+    public Mono<ResponseEntity<Map<String, String>>> getUrls(@RequestBody
+                                             final List<String> shortcodes) {
+        return Mono.fromCallable(() ->
+                        urlShortnerService.getUrlsByShortCodes(shortcodes))
+                .subscribeOn(readScheduler)
+                .map(ResponseEntity::ok);
     }
 
     /**
@@ -60,8 +107,79 @@ public final class ReadController {
     @Tag(name = "get",
             description =  "Gets the number of times the URL was accessed")
     @GetMapping("/shorten/{shortcode}/stats")
-    public ResponseEntity<?> getStats(@PathVariable final String shortcode) {
-        Optional<ShortUrl> count = urlShortnerService.getStatsByShortCode(shortcode);
-        return ResponseEntity.ok(count);
+    public Mono<ResponseEntity<Optional<ShortUrl>>> getStats(@PathVariable
+                                                   final String shortcode) {
+        return Mono.fromCallable(() ->
+                        urlShortnerService.getStatsByShortCode(shortcode))
+                .subscribeOn(readScheduler)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the clicks on the given shortcode as a time series,
+     * broken down by referrer, country and agent class.
+     * <p>
+     * Without a range, the last hour is returned minute by minute.
+     *
+     * @param shortcode the shortcode identifying the shortened URL
+     * @param from the start of the range, inclusive; defaults to
+     *             one hour before {@code to}
+     * @param to the end of the range, exclusive; defaults to now
+     * @param step the length of each step in minutes
+     * @return a {@link ResponseEntity} containing one bucket per step
+     * @see ClickStatsService#getClicks(String, Instant, Instant, int)
+     */
+    @Tag(name = "get",
+            description = "Gets the clicks on the URL over time")
+    @GetMapping("/shorten/{shortcode}/clicks")
+    public Mono<ResponseEntity<List<ClickBucket>>> getClicks(
+            @PathVariable final String shortcode,
+            @RequestParam(required = false) final Instant from,
+            @RequestParam(required = false) final Instant to,
+            @RequestParam(defaultValue = "1") final int step) {
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(1, ChronoUnit.HOURS) : from;
+        return Mono.fromCallable(() ->
+                        clickStatsService.getClicks(shortcode, start, end, step))
+                .subscribeOn(readScheduler)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the estimated number of distinct visitors of the
+     * given shortcode.
+     *
+     * @param shortcode the shortcode identifying the shortened URL
+     * @param days the number of days counted, ending today (UTC)
+     * @return a {@link ResponseEntity} containing the estimate
+     * @see ClickStatsService#getUniqueVisitors(String, int)
+     */
+    @Tag(name = "get",
+            description = "Gets the estimated unique visitors of the URL")
+    @GetMapping("/shorten/{shortcode}/visitors")
+    public Mono<ResponseEntity<UniqueVisitors>> getVisitors(
+            @PathVariable final String shortcode,
+            @RequestParam(defaultValue = "1") final int days) {
+        return Mono.fromCallable(() ->
+                        clickStatsService.getUniqueVisitors(shortcode, days))
+                .subscribeOn(readScheduler)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the links clicked most right now, as seen by
+     * the node answering.
+     *
+     * @param limit the maximum number of links returned
+     * @return a {@link ResponseEntity} containing the links,
+     * most clicked first
+     * @see ClickStatsService#getHotLinks(int)
+     */
+    @Tag(name = "get", description = "Gets the most clicked URLs right now")
+    @GetMapping("/hot")
+    public Mono<ResponseEntity<List<HotLink>>> getHotLinks(
+            @RequestParam(defaultValue = "100") final int limit) {
+        return Mono.fromCallable(() -> clickStatsService.getHotLinks(limit))
+                .map(ResponseEntity::ok);
     }
 }
@@ -1,10 +1,18 @@
 package com.example.backend.controller;
+import com.example.backend.service.ClickEventBuffer;
 import com.example.backend.service.RedirectService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
 import java.net.URI;
 
 
@@ -17,12 +25,27 @@ import java.net.URI;
  * redirects users to their corresponding
  * original URLs using
  * HTTP 302 Found status code.
+ * <p>
+ * Shortcodes held in the local near cache are answered
+ * directly on the event loop; all other lookups, which may
+ * reach Redis or the database, run on the read scheduler
+ * so they never stall the event loop.
+ * <p>
+ * Every successful redirect is handed to the
+ * {@link ClickEventBuffer} for the click analytics; this
+ * never blocks.
  *
  * @see RedirectService
+ * @see ClickEventBuffer
+ * @see com.example.backend.config.ExecutionConfig
  */
 @Controller
 public class RedirectController {
-    
+    /**
+     * Header carrying the client address behind the gateway.
+     */
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
     /**
      * Service responsible for resolving
      * shortcodes to original URLs.
@@ -32,15 +55,40 @@ public class RedirectController {
      * a given shortcode for redirection.
      */
     private final RedirectService redirectService;
+    /**
+     * Scheduler for lookups that may block.
+     */
+    private final Scheduler readScheduler;
+    /**
+     * Buffer receiving one event per redirect.
+     */
+    private final ClickEventBuffer clickEventBuffer;
+    /**
+     * Request header carrying the client's country code,
+     * set by the CDN or load balancer in front.
+     */
+    private final String countryHeader;
 
     /**
      * Constructs a new RedirectController
      * with the required service.
      * @param redirectServiceConstruct the service handling
      *                                 URL resolution
+     * @param scheduler the scheduler for blocking lookups
+     * @param clicks the buffer receiving click events
+     * @param countryHeaderName the header carrying the country code
      */
-    public RedirectController(RedirectService redirectServiceConstruct) {
+    public RedirectController(RedirectService redirectServiceConstruct,
+                              @Qualifier("readScheduler")
+                              Scheduler scheduler,
+                              ClickEventBuffer clicks,
+                              @Value("${analytics.clicks.country-header:"
+                                      + "CF-IPCountry}")
+                              String countryHeaderName) {
         this.redirectService = redirectServiceConstruct;
+        this.readScheduler = scheduler;
+        this.clickEventBuffer = clicks;
+        this.countryHeader = countryHeaderName;
     }
 
     /**
@@ -53,14 +101,52 @@ public class RedirectController {
      *
      * @param shortCode the shortcode identifying
      *                  the original URL
+     * @param request the request, whose headers feed the analytics
      * @return a ResponseEntity with HTTP 302
      * status and Location header
      * @throws RuntimeException if the original URL is not found
      */
     @GetMapping("/{shortCode}")
-    public ResponseEntity<Void> redirectToOriginalUrl(@PathVariable
-                                                          String shortCode) {
-        String originalUrl = redirectService.getOriginalUrl(shortCode);
+    public Mono<ResponseEntity<Void>> redirectToOriginalUrl(@PathVariable
+                                                          String shortCode,
+                                                          ServerHttpRequest
+                                                          request) {
+        String cachedUrl = redirectService.getCachedOriginalUrl(shortCode);
+        if (cachedUrl != null) {
+            recordClick(shortCode, request);
+            return Mono.just(found(cachedUrl));
+        }
+        return Mono.fromCallable(() -> redirectService.getOriginalUrl(shortCode))
+                .subscribeOn(readScheduler)
+                .doOnNext(url -> recordClick(shortCode, request))
+                .map(this::found);
+    }
+
+    /**
+     * Hands a resolved redirect to the click analytics.
+     *
+     * @param shortCode the shortcode followed
+     * @param request the request
+     */
+    private void recordClick(String shortCode, ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        String clientAddress = headers.getFirst(FORWARDED_FOR);
+        if (clientAddress == null && request.getRemoteAddress() != null) {
+            clientAddress = request.getRemoteAddress().getHostString();
+        }
+        clickEventBuffer.record(shortCode, clientAddress,
+                headers.getFirst(HttpHeaders.REFERER),
+                headers.getFirst(HttpHeaders.USER_AGENT),
+                headers.getFirst(countryHeader));
+    }
+
+    /**
+     * Builds the HTTP 302 response for a URL.
+     *
+     * @param originalUrl the redirect target
+     * @return a ResponseEntity with the Location header set
+     */
+    private ResponseEntity<Void> found(String originalUrl) {
         return ResponseEntity.status(HttpStatus.FOUND)
                 .location(URI.create(originalUrl))
                 .build();
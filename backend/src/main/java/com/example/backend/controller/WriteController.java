@@ -1,12 +1,16 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.BatchShortenResult;
 import com.example.backend.dto.ShortenRequest;
 import com.example.backend.entity.ShortUrl;
+import com.example.backend.service.BulkShortenService;
+import com.example.backend.service.DurableShortenService;
 import com.example.backend.service.UrlShortnerService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -15,8 +19,12 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * A REST controller responsible for handling write operations
@@ -24,9 +32,16 @@ import java.util.Map;
  * <p>
  * This controller provides endpoints to create, update,
  * and delete shortened URLs. It
- * interacts with the {@link UrlShortnerService} to perform these operations.
+ * interacts with the {@link UrlShortnerService} to perform these operations
+ * on the write scheduler, off the event loop. Bulk imports go
+ * through the {@link BulkShortenService}, and single creates
+ * through the {@link DurableShortenService} when its journal
+ * is enabled.
  *
  * @see UrlShortnerService
+ * @see BulkShortenService
+ * @see DurableShortenService
+ * @see com.example.backend.config.ExecutionConfig
  */
 @RestController
 @Slf4j
@@ -38,6 +53,18 @@ public final class WriteController {
      * Service responsible for managing URL shortening and related operations.
      */
     private final UrlShortnerService urlShortnerService;
+    /**
+     * Service responsible for shortening many URLs at once.
+     */
+    private final BulkShortenService bulkShortenService;
+    /**
+     * Service shortening single URLs through the journal.
+     */
+    private final DurableShortenService durableShortenService;
+    /**
+     * Scheduler for service calls that may block.
+     */
+    private final Scheduler writeScheduler;
     /**
      * Creates a new shortcode for the provided URL.
      *
@@ -46,14 +73,50 @@ public final class WriteController {
      * @return a {@link ResponseEntity} containing the generated shortcode with
      *         HTTP status 201 (CREATED)
      * @see UrlShortnerService#generateShortCode(String)
+     * @see DurableShortenService#generateShortCode(String)
      */
     @Tag(name = "post",description = "Create shortcode for Url")
     @PostMapping("/shorten")
-    public ResponseEntity<?> createShortCode(@RequestBody
+    public Mono<ResponseEntity<ShortUrl>> createShortCode(@RequestBody
                                                  final ShortenRequest request) {
-        ShortUrl shortUrl = urlShortnerService.generateShortCode(request.url());
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(shortUrl);
+        return Mono.fromCallable(() -> durableShortenService.isEnabled()
+                        ? durableShortenService.generateShortCode(request.url())
+                        : urlShortnerService.generateShortCode(request.url()))
+                .subscribeOn(writeScheduler)
+                .map(shortUrl -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(shortUrl));
+    }
+
+    /**
+     * Creates shortcodes for a stream of URLs.
+     * <p>
+     * The body is either a JSON array or newline-delimited JSON
+     * of {@link ShortenRequest}s. It is consumed as it arrives,
+     * in chunks of {@link BulkShortenService#getChunkSize()}
+     * URLs, and the results of each chunk are streamed back
+     * as soon as it is stored, in request order.
+     *
+     * @param requests the URLs to shorten
+     * @return one {@link BatchShortenResult} per URL
+     * @see BulkShortenService#shortenAll(java.util.List, long)
+     */
+    @Tag(name = "post", description = "Create shortcodes for many Urls")
+    @PostMapping(value = "/shorten/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_NDJSON_VALUE,
+                    MediaType.APPLICATION_JSON_VALUE})
+    public Flux<BatchShortenResult> createShortCodes(@RequestBody
+                                 final Flux<ShortenRequest> requests) {
+        int chunkSize = bulkShortenService.getChunkSize();
+        return requests.map(request -> Objects.toString(request.url(), ""))
+                .buffer(chunkSize)
+                .index()
+                .concatMap(chunk -> Mono.fromCallable(() -> bulkShortenService
+                                .shortenAll(chunk.getT2(),
+                                        chunk.getT1() * chunkSize))
+                        .subscribeOn(writeScheduler))
+                .flatMapIterable(results -> results);
     }
 
     /**
@@ -67,11 +130,13 @@ public final class WriteController {
      */
     @Tag(name = "del",description =  "Delete Url by shortcode")
     @DeleteMapping("/shorten/{shortcode}")
-    public ResponseEntity<?> deleteShorten(@PathVariable
+    public Mono<ResponseEntity<String>> deleteShorten(@PathVariable
                                                final String shortcode) {
-        urlShortnerService.deleteUrlByShortCode(shortcode);
-        return ResponseEntity.status(HttpStatus.NO_CONTENT)
-                .body("Short URL deleted successfully");
+        return Mono.fromRunnable(() ->
+                        urlShortnerService.deleteUrlByShortCode(shortcode))
+                .subscribeOn(writeScheduler)
+                .thenReturn(ResponseEntity.status(HttpStatus.NO_CONTENT)
+                        .body("Short URL deleted successfully"));
     }
 
     /**
@@ -86,12 +151,13 @@ public final class WriteController {
      */
     @Tag(name = "put",description = "Update Url by shortcode")
     @PutMapping("/shorten/{shortcode}")
-    public ResponseEntity<?> updateShorten(@PathVariable final String shortcode,
-                                           @RequestBody final ShortenRequest
-                                                   request
-        ) {
-        urlShortnerService.updateUrlByShortCode(shortcode, request.url());
-        return ResponseEntity.ok(Map.
-                of("message", "URL updated successfully"));
+    public Mono<ResponseEntity<Map<String, String>>> updateShorten(
+            @PathVariable final String shortcode,
+            @RequestBody final ShortenRequest request) {
+        return Mono.fromRunnable(() -> urlShortnerService
+                        .updateUrlByShortCode(shortcode, request.url()))
+                .subscribeOn(writeScheduler)
+                .thenReturn(ResponseEntity.ok(Map.
+                        of("message", "URL updated successfully")));
     }
 }
@@ -10,6 +10,9 @@
  * to perform operations like
  * retrieving URLs, generating shortcodes, updating,
  * deleting shortened URLs and handling redirections.
+ * Handlers return {@code Mono} results and run blocking
+ * service calls on the scheduler from
+ * {@link com.example.backend.config.ExecutionConfig}.
  * <p>
  * Key classes in this package:
  * <ul>
@@ -0,0 +1,49 @@
+package com.example.backend.dto;
+
+/**
+ * A Data Transfer Object (DTO) representing the outcome of one URL
+ * of a bulk shorten request.
+ * <p>
+ * Exactly one of {@code shortCode} and {@code error} is set,
+ * so a single invalid URL does not fail the whole batch.
+ *
+ * @param index the position of the URL in the request
+ * @param url the submitted URL
+ * @param shortCode the generated shortcode, or {@code null} on error
+ * @param error why the URL was rejected, or {@code null} on success
+ */
+public record BatchShortenResult(
+        long index,
+        String url,
+        String shortCode,
+        String error
+) {
+
+    /**
+     * Creates a result for a shortened URL.
+     *
+     * @param index the position of the URL in the request
+     * @param url the submitted URL
+     * @param shortCode the generated shortcode
+     * @return the successful result
+     */
+    public static BatchShortenResult shortened(final long index,
+                                               final String url,
+                                               final String shortCode) {
+        return new BatchShortenResult(index, url, shortCode, null);
+    }
+
+    /**
+     * Creates a result for a rejected URL.
+     *
+     * @param index the position of the URL in the request
+     * @param url the submitted URL
+     * @param error why the URL was rejected
+     * @return the failed result
+     */
+    public static BatchShortenResult rejected(final long index,
+                                              final String url,
+                                              final String error) {
+        return new BatchShortenResult(index, url, null, error);
+    }
+}
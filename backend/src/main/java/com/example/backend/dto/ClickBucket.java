@@ -0,0 +1,27 @@
+package com.example.backend.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A Data Transfer Object (DTO) representing the clicks on a
+ * shortcode during one step of a time series.
+ * <p>
+ * The breakdowns add up to {@code clicks}, except for clicks
+ * recorded while the stored format lacked a field.
+ *
+ * @param start the start of the step
+ * @param clicks the number of redirects in the step
+ * @param referrers clicks by referrer host, or {@code direct}
+ * @param countries clicks by country code, or {@code unknown}
+ * @param agents clicks by agent class, such as {@code browser}
+ *               or {@code bot}
+ */
+public record ClickBucket(
+        Instant start,
+        long clicks,
+        Map<String, Long> referrers,
+        Map<String, Long> countries,
+        Map<String, Long> agents
+) {
+}
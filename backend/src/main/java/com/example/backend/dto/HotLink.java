@@ -0,0 +1,15 @@
+package com.example.backend.dto;
+
+/**
+ * A Data Transfer Object (DTO) representing one of the most
+ * clicked shortcodes.
+ *
+ * @param shortCode the shortcode
+ * @param clicks the estimated recent clicks, where older clicks
+ *               count half as much after every decay interval
+ */
+public record HotLink(
+        String shortCode,
+        long clicks
+) {
+}
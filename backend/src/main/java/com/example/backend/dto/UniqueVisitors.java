@@ -0,0 +1,19 @@
+package com.example.backend.dto;
+
+/**
+ * A Data Transfer Object (DTO) representing the estimated number
+ * of distinct visitors of a shortcode.
+ * <p>
+ * The estimate comes from a HyperLogLog, whose standard error
+ * is 0.81%.
+ *
+ * @param shortCode the shortcode
+ * @param days the number of days counted, ending today (UTC)
+ * @param visitors the estimated distinct visitors in those days
+ */
+public record UniqueVisitors(
+        String shortCode,
+        int days,
+        long visitors
+) {
+}
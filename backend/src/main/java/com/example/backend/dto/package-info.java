@@ -10,6 +10,8 @@
  * <ul>
  *   <li>{@link com.example.backend.dto.ShortenRequest}: Represents a
  *   request to shorten a URL.</li>
+ *   <li>{@link com.example.backend.dto.BatchShortenResult}: Represents the
+ *   outcome of one URL of a bulk shorten request.</li>
  * </ul>
  *
  * @see jakarta.validation.constraints.NotBlank
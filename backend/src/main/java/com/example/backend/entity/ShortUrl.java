@@ -1,12 +1,23 @@
 package com.example.backend.entity;
 
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import com.example.backend.utils.Base62Converter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Column;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
 import java.sql.Timestamp;
 
 /**
@@ -17,25 +28,39 @@ import java.sql.Timestamp;
  * the original URL, the generated short code,
  * timestamps for creation and updates, and
  * the access count for the shortened URL.
+ * <p>
+ * The primary key is not generated by the database: it is
+ * the sequence value the shortcode encodes, so setting the
+ * shortcode sets the id and a lookup by shortcode is a probe
+ * of the bigint primary key. Shortcodes must be canonical
+ * Base62, as produced by {@link Base62Converter#encode(long)};
+ * leading {@code a} digits are ignored by the decoding, so
+ * {@code "ab"} and {@code "b"} map to the same row.
+ * <p>
+ * As the id is assigned, {@link #isNew()} tells Spring Data
+ * whether to insert or merge, which saves the {@code SELECT}
+ * a merge of a new row would cost.
  *
  * @see jakarta.persistence.Entity
  * @see jakarta.persistence.Table
  * @see lombok.Data
  */
 @Entity
-@Table(name = "short_urls")
+@Table(name = "short_urls",
+        indexes = @Index(name = "short_urls_url_hash_idx",
+                columnList = "url_hash"))
 @Data
-public class ShortUrl {
+public class ShortUrl implements Persistable<Long> {
     /**
-     * Unique identifier for the entity, represented as a IDENTITY.
+     * Unique identifier for the entity: the sequence
+     * value encoded by {@link #shortCode}.
      * <p>
      * This field maps to the "id" column in the
      * "short_urls" table and cannot be null.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id", nullable = false)
-    private Integer id;
+    private Long id;
 
     /**
      * The original URL that was shortened.
@@ -50,12 +75,26 @@ public class ShortUrl {
      * The unique shortcode generated for the URL.
      * <p>
      * This field maps to the "short_code" column in
-     * the "short_urls" table, cannot be null,
-     * and must be unique across all records.
+     * the "short_urls" table and cannot be null. It is
+     * unique because the primary key is derived from it.
      */
-    @Column(name = "short_code", nullable = false, unique = true)
+    @Column(name = "short_code", nullable = false,
+            length = Base62Converter.MAX_LENGTH)
     private String shortCode;
 
+    /**
+     * Hash of the normalized URL, set when URLs are
+     * deduplicated.
+     * <p>
+     * This field maps to the indexed "url_hash" column in the
+     * "short_urls" table and is null for rows created without
+     * deduplication.
+     *
+     * @see com.example.backend.service.UrlDeduplicator
+     */
+    @Column(name = "url_hash")
+    private Long urlHash;
+
     /**
      * Timestamp indicating when the record was created.
      * <p>
@@ -83,4 +122,57 @@ public class ShortUrl {
      */
     @Column(name = "access_count", nullable = false)
     private Integer accessCount = 0;
+
+    /**
+     * Whether the row is known to exist in the database.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+
+    /**
+     * Returns the primary key of a shortcode.
+     *
+     * @param shortCode a Base62 shortcode
+     * @return the sequence value the shortcode encodes
+     * @throws IllegalArgumentException if the shortcode is not valid
+     */
+    public static long idOf(final String shortCode) {
+        return Base62Converter.decode(shortCode);
+    }
+
+    /**
+     * Sets the shortcode and the primary key derived from it.
+     *
+     * @param code a canonical Base62 shortcode, or {@code null}
+     *             to clear both
+     * @throws IllegalArgumentException if the shortcode is not valid
+     */
+    public void setShortCode(final String code) {
+        this.id = code == null ? null : idOf(code);
+        this.shortCode = code;
+    }
+
+    /**
+     * Tells whether the entity still has to be inserted.
+     *
+     * @return {@code true} until the entity is persisted or loaded
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    /**
+     * Marks the entity as stored once it is persisted or loaded.
+     */
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.backend.repository;
 
 import com.example.backend.entity.ShortUrl;
+import com.example.backend.utils.Base62Converter;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import org.springframework.data.jpa.repository.Modifying;
@@ -10,8 +11,13 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Repository interface for managing {@link ShortUrl} entities in the database.
@@ -20,27 +26,101 @@ import java.util.UUID;
  * CRUD operations for the {@code ShortUrl}
  * entity. It also includes custom query methods
  * for finding, updating, and deleting records based
- * on specific criteria.
+ * on specific criteria. Bulk operations live in
+ * {@link ShortUrlRepositoryCustom}.
+ * <p>
+ * The primary key is the sequence value a shortcode encodes
+ * (see {@link ShortUrl#idOf(String)}), so every method taking
+ * a shortcode decodes it and works on the primary key; the
+ * {@code short_code} column is not indexed.
+ * <p>
+ * When read-only transactions are routed to read replicas,
+ * lookups by shortcode re-read the rows a replica did not
+ * return from the primary, so a shortcode is found as soon
+ * as its creation commits. Only misses pay the second query.
  *
  * @see org.springframework.data.jpa.repository.JpaRepository
  * @see com.example.backend.entity.ShortUrl
  */
 @Repository
-public interface ShortUrlRepository extends JpaRepository<ShortUrl, UUID> {
+public interface ShortUrlRepository extends JpaRepository<ShortUrl, Long>,
+        ShortUrlRepositoryCustom {
 
     /**
      * Finds a {@link ShortUrl} entity by its shortcode.
      * <p>
-     * This method performs a read-only transaction to retrieve
-     * the entity associated with the
-     * given shortcode.
+     * This method retrieves the entity associated with the
+     * given shortcode by its primary key in a read-only
+     * transaction, rechecking a miss on the primary.
      *
      * @param shortCode the shortcode of the URL to find
      * @return an {@link Optional} containing the {@code ShortUrl}
      * entity if found, or empty otherwise
      */
-    @Transactional(readOnly = true)
-    Optional<ShortUrl> findByShortCode(String shortCode);
+    default Optional<ShortUrl> findByShortCode(String shortCode) {
+        if (!Base62Converter.isValid(shortCode)) {
+            return Optional.empty();
+        }
+        long id = ShortUrl.idOf(shortCode);
+        Optional<ShortUrl> found = findById(id);
+        if (found.isEmpty()) {
+            found = recheckOnPrimary(List.of(id)).stream().findFirst();
+        }
+        return found.filter(shortUrl -> shortCode.equals(shortUrl.getShortCode()));
+    }
+
+    /**
+     * Finds a {@link ShortUrl} entity by its shortcode on the
+     * primary, for loads that must not see a lagging replica.
+     *
+     * @param shortCode the shortcode of the URL to find
+     * @return an {@link Optional} containing the {@code ShortUrl}
+     * entity if found, or empty otherwise
+     */
+    default Optional<ShortUrl> findByShortCodeOnPrimary(String shortCode) {
+        if (!Base62Converter.isValid(shortCode)) {
+            return Optional.empty();
+        }
+        return findOnPrimary(List.of(ShortUrl.idOf(shortCode))).stream()
+                .filter(shortUrl -> shortCode.equals(shortUrl.getShortCode()))
+                .findFirst();
+    }
+
+    /**
+     * Finds the {@link ShortUrl} entities of several shortcodes
+     * with a single query, plus one on the primary for the
+     * misses when reads go to replicas.
+     *
+     * @param shortCodes the shortcodes of the URLs to find
+     * @return the entities found; unknown shortcodes are skipped
+     */
+    default List<ShortUrl> findByShortCodeIn(Collection<String> shortCodes) {
+        Set<Long> ids = shortCodes.stream()
+                .filter(Base62Converter::isValid)
+                .map(ShortUrl::idOf)
+                .collect(Collectors.toCollection(HashSet::new));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<ShortUrl> found = new ArrayList<>(findAllById(ids));
+        found.forEach(shortUrl -> ids.remove(shortUrl.getId()));
+        found.addAll(recheckOnPrimary(ids));
+        return found.stream()
+                .filter(shortUrl -> shortCodes.contains(shortUrl.getShortCode()))
+                .toList();
+    }
+
+    /**
+     * Finds the {@link ShortUrl} entities whose URL has the
+     * given hash, using the index on {@code url_hash}.
+     * <p>
+     * Different URLs may share a hash, so callers compare
+     * the URLs of the rows found.
+     *
+     * @param urlHash the hash of the normalized URL
+     * @return the rows with that hash
+     */
+    List<ShortUrl> findByUrlHash(long urlHash);
 
     /**
      * Deletes a {@link ShortUrl} entity by its shortcode.
@@ -51,7 +131,9 @@ public interface ShortUrlRepository extends JpaRepository<ShortUrl, UUID> {
      * @param shortCode the shortcode of the URL to delete
      */
     @Transactional
-    void deleteByShortCode(String shortCode);
+    default void deleteByShortCode(String shortCode) {
+        deleteById(ShortUrl.idOf(shortCode));
+    }
 
 
     /**
@@ -63,11 +145,20 @@ public interface ShortUrlRepository extends JpaRepository<ShortUrl, UUID> {
      *
      * @param shortCode the shortcode of the URL to update
      */
+    default void incrementAccessCount(String shortCode) {
+        incrementAccessCountById(ShortUrl.idOf(shortCode));
+    }
+
+    /**
+     * Increments the access count of the row with the given id by 1.
+     *
+     * @param id the primary key of the URL to update
+     */
     @Modifying
     @Transactional
     @Query("UPDATE ShortUrl s SET s.accessCount = "
-            + "s.accessCount + 1 WHERE s.shortCode = :shortCode")
-    void incrementAccessCount(@Param("shortCode") String shortCode);
+            + "s.accessCount + 1 WHERE s.id = :id")
+    void incrementAccessCountById(@Param("id") long id);
 
     /**
      * Updates the {@code updateAt} timestamp of a {@link ShortUrl} entity.
@@ -79,12 +170,22 @@ public interface ShortUrlRepository extends JpaRepository<ShortUrl, UUID> {
      * @param timenow   the new timestamp to set
      * @param shortcode the shortcode of the URL to update
      */
+    default void updateUpdateAt(Timestamp timenow, String shortcode) {
+        updateUpdateAtById(timenow, ShortUrl.idOf(shortcode));
+    }
+
+    /**
+     * Updates the {@code updateAt} timestamp of the row with the given id.
+     *
+     * @param timenow the new timestamp to set
+     * @param id      the primary key of the URL to update
+     */
     @Modifying
     @Transactional
     @Query("UPDATE ShortUrl s SET s.updateAt "
-            + "= :timenow WHERE s.shortCode = :shortCode")
-    void updateUpdateAt(@Param("timenow") Timestamp timenow,
-                        @Param("shortCode") String shortcode);
+            + "= :timenow WHERE s.id = :id")
+    void updateUpdateAtById(@Param("timenow") Timestamp timenow,
+                            @Param("id") long id);
 
     /**
      * Updates the URL and resets the access count of a {@link ShortUrl} entity.
@@ -92,14 +193,30 @@ public interface ShortUrlRepository extends JpaRepository<ShortUrl, UUID> {
      * This method sets the {@code url} field
      * of the entity associated with the given shortcode
      * to the specified value and resets the {@code accessCount} to 0.
+     * The {@code urlHash} is replaced in the same statement, so
+     * the row is never found under the hash of its old URL.
      *
      * @param url       the new URL to set
+     * @param urlHash   the hash of the new URL
      * @param shortCode the shortcode of the URL to update
      */
+    default void updateUrl(String url, long urlHash, String shortCode) {
+        updateUrlById(url, urlHash, ShortUrl.idOf(shortCode));
+    }
+
+    /**
+     * Updates the URL and its hash and resets the access count
+     * of the row with the given id.
+     *
+     * @param url     the new URL to set
+     * @param urlHash the hash of the new URL
+     * @param id      the primary key of the URL to update
+     */
     @Modifying
     @Transactional
-    @Query("UPDATE ShortUrl s SET s.url"
-            + "= :url , s.accessCount = 0 WHERE s.shortCode = :shortCode")
-    void updateUrl(@Param("url") String url,
-                   @Param("shortCode") String shortCode);
+    @Query("UPDATE ShortUrl s SET s.url = :url, s.urlHash = :urlHash, "
+            + "s.accessCount = 0 WHERE s.id = :id")
+    void updateUrlById(@Param("url") String url,
+                       @Param("urlHash") long urlHash,
+                       @Param("id") long id);
 }
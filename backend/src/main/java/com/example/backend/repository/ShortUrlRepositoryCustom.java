@@ -0,0 +1,104 @@
+package com.example.backend.repository;
+
+import com.example.backend.entity.ShortUrl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Custom repository fragment for bulk {@code short_urls} operations
+ * that are not expressible as derived or JPQL queries.
+ * <p>
+ * This interface is implemented by {@link ShortUrlRepositoryImpl}
+ * and mixed into {@link ShortUrlRepository} by Spring Data.
+ *
+ * @see ShortUrlRepository
+ */
+public interface ShortUrlRepositoryCustom {
+
+    /**
+     * Adds the given deltas to the access count of each shortcode
+     * in as few statements as possible.
+     *
+     * @param deltas number of new accesses per shortcode
+     */
+    void incrementAccessCounts(Map<String, Long> deltas);
+
+    /**
+     * Inserts new short URLs with JDBC batches instead of
+     * one statement round trip per row, including their URL
+     * hash.
+     * <p>
+     * Generated ids are not read back into the entities.
+     *
+     * @param shortUrls the short URLs to insert
+     */
+    void insertAll(List<ShortUrl> shortUrls);
+
+    /**
+     * Inserts the short URLs whose id is not in the table yet,
+     * with JDBC batches, including their URL hash.
+     * <p>
+     * Rows that already exist are left as they are, so
+     * inserting the same short URLs again changes nothing.
+     *
+     * @param shortUrls the short URLs to insert
+     */
+    void insertAllIfAbsent(List<ShortUrl> shortUrls);
+
+    /**
+     * Streams every shortcode in the table to the given action
+     * without loading the entities or the whole result in memory.
+     *
+     * @param action the action applied to each shortcode
+     */
+    void forEachShortCode(Consumer<String> action);
+
+    /**
+     * Returns the highest primary key in the table, read on
+     * the primary.
+     * <p>
+     * The primary key is the sequence value of the shortcode,
+     * so this is the highest sequence value committed so far.
+     *
+     * @return the highest id, or {@code 0} if the table is empty
+     */
+    long findMaxId();
+
+    /**
+     * Streams the most accessed short URLs, most accessed first,
+     * to the given action without loading the entities or the
+     * whole result in memory.
+     *
+     * @param limit the maximum number of short URLs streamed
+     * @param action the action applied to each shortcode and URL
+     */
+    void forEachMostAccessed(int limit, BiConsumer<String, String> action);
+
+    /**
+     * Reads rows from the primary that a read replica did not
+     * return, so a shortcode created moments ago is found even
+     * if the replica has not replayed it yet.
+     * <p>
+     * When reads are not routed to replicas they already came
+     * from the primary, and this returns an empty list without
+     * a query. The entities returned are not managed.
+     *
+     * @param ids the primary keys the replica did not return
+     * @return the rows found on the primary
+     */
+    List<ShortUrl> recheckOnPrimary(Collection<Long> ids);
+
+    /**
+     * Reads rows from the primary, whether or not reads are
+     * routed to replicas, for callers that must not see a
+     * lagging replica. The entities returned are not managed.
+     *
+     * @param ids the primary keys to read
+     * @return the rows found on the primary
+     */
+    List<ShortUrl> findOnPrimary(Collection<Long> ids);
+}
@@ -0,0 +1,336 @@
+package com.example.backend.repository;
+
+import com.example.backend.entity.ShortUrl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * JDBC implementation of {@link ShortUrlRepositoryCustom}.
+ * <p>
+ * On PostgreSQL, access count deltas are applied with a single
+ * {@code UPDATE ... FROM (VALUES ...)} statement per chunk.
+ * Other databases, such as the H2 database used in tests,
+ * fall back to a JDBC batch of single-row updates.
+ * Rows are addressed by their primary key, the sequence value
+ * of the shortcode, and always updated in key order so
+ * concurrent flushes from several instances lock rows in the
+ * same order.
+ * <p>
+ * Bulk inserts use JDBC batches of the configured
+ * {@code hibernate.jdbc.batch_size}. With
+ * {@code reWriteBatchedInserts=true} the PostgreSQL driver
+ * turns each batch into multi-row {@code INSERT} statements.
+ * Inserts that skip existing rows use {@code ON CONFLICT DO
+ * NOTHING} on PostgreSQL and {@code INSERT ... SELECT ... WHERE
+ * NOT EXISTS} elsewhere.
+ * <p>
+ * {@link #findOnPrimary(Collection)} and
+ * {@link #recheckOnPrimary(Collection)} run outside any
+ * transaction, so their connection is never read-only and
+ * comes from the primary even when read-only transactions
+ * are routed to replicas.
+ *
+ * @see ShortUrlRepositoryCustom
+ */
+public class ShortUrlRepositoryImpl implements ShortUrlRepositoryCustom {
+    /**
+     * Maximum number of rows updated by one statement.
+     */
+    private static final int UPDATE_CHUNK_SIZE = 500;
+    /**
+     * Inserts a short URL with the id derived from its shortcode.
+     */
+    private static final String INSERT_SQL = "INSERT INTO short_urls"
+            + " (id, url, short_code, created_at, updated_at, access_count,"
+            + " url_hash) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Columns of an insert that skips existing rows.
+     */
+    private static final String INSERT_IF_ABSENT_COLUMNS = "INSERT INTO"
+            + " short_urls (id, url, short_code, created_at, updated_at,"
+            + " access_count, url_hash)";
+    /**
+     * Inserts a short URL unless its id exists, on PostgreSQL.
+     */
+    private static final String UPSERT_SQL = INSERT_IF_ABSENT_COLUMNS
+            + " VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    /**
+     * Inserts a short URL unless its id exists, on other
+     * databases; the id is bound again for the check.
+     */
+    private static final String INSERT_IF_NOT_EXISTS_SQL =
+            INSERT_IF_ABSENT_COLUMNS + " SELECT CAST(? AS BIGINT),"
+            + " CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS TIMESTAMP),"
+            + " CAST(? AS TIMESTAMP), CAST(? AS INT), CAST(? AS BIGINT)"
+            + " WHERE NOT EXISTS (SELECT 1 FROM short_urls WHERE id = ?)";
+    /**
+     * Rows fetched per round trip when scanning all shortcodes.
+     */
+    private static final int SCAN_FETCH_SIZE = 10_000;
+    /**
+     * Selects every column of a short URL, followed by the
+     * placeholders of an {@code IN} list.
+     */
+    private static final String SELECT_BY_IDS_SQL = "SELECT id, url,"
+            + " short_code, created_at, updated_at, access_count"
+            + " FROM short_urls WHERE id IN (";
+    /**
+     * Template used for the bulk statements.
+     */
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * Number of rows sent per JDBC batch.
+     */
+    private final int insertBatchSize;
+    /**
+     * Whether the database is PostgreSQL, resolved lazily.
+     */
+    private volatile Boolean postgres;
+    /**
+     * Whether read-only transactions go to read replicas.
+     */
+    private final boolean replicaReads;
+
+    /**
+     * Constructs a new {@code ShortUrlRepositoryImpl}.
+     *
+     * @param dataSource the application data source
+     * @param batchSize number of rows sent per JDBC batch
+     * @param replicasEnabled whether read-only transactions
+     *                        go to read replicas
+     */
+    public ShortUrlRepositoryImpl(final DataSource dataSource,
+                                  @Value("${spring.jpa.properties"
+                                          + ".hibernate.jdbc.batch_size:20}")
+                                  final int batchSize,
+                                  @Value("${datasource.replicas.enabled:false}")
+                                  final boolean replicasEnabled) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.insertBatchSize = batchSize;
+        this.replicaReads = replicasEnabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void incrementAccessCounts(final Map<String, Long> deltas) {
+        TreeMap<Long, Long> byId = new TreeMap<>();
+        deltas.forEach((shortCode, delta) ->
+                byId.merge(ShortUrl.idOf(shortCode), delta, Long::sum));
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(byId.entrySet());
+        for (int from = 0; from < rows.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Map.Entry<Long, Long>> chunk = rows.subList(from,
+                    Math.min(from + UPDATE_CHUNK_SIZE, rows.size()));
+            if (isPostgres()) {
+                updateWithValuesList(chunk);
+            } else {
+                updateWithBatch(chunk);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void insertAll(final List<ShortUrl> shortUrls) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, shortUrls, insertBatchSize,
+                (statement, shortUrl) -> {
+                    int column = 1;
+                    statement.setLong(column++, shortUrl.getId());
+                    statement.setString(column++, shortUrl.getUrl());
+                    statement.setString(column++, shortUrl.getShortCode());
+                    statement.setTimestamp(column++, shortUrl.getCreatedAt());
+                    statement.setTimestamp(column++, shortUrl.getUpdateAt());
+                    statement.setInt(column++, shortUrl.getAccessCount());
+                    statement.setObject(column, shortUrl.getUrlHash(),
+                            Types.BIGINT);
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void insertAllIfAbsent(final List<ShortUrl> shortUrls) {
+        boolean upsert = isPostgres();
+        jdbcTemplate.batchUpdate(upsert ? UPSERT_SQL : INSERT_IF_NOT_EXISTS_SQL,
+                shortUrls, insertBatchSize, (statement, shortUrl) -> {
+                    int column = 1;
+                    statement.setLong(column++, shortUrl.getId());
+                    statement.setString(column++, shortUrl.getUrl());
+                    statement.setString(column++, shortUrl.getShortCode());
+                    statement.setTimestamp(column++, shortUrl.getCreatedAt());
+                    statement.setTimestamp(column++, shortUrl.getUpdateAt());
+                    statement.setInt(column++, shortUrl.getAccessCount());
+                    statement.setObject(column++, shortUrl.getUrlHash(),
+                            Types.BIGINT);
+                    if (!upsert) {
+                        statement.setLong(column, shortUrl.getId());
+                    }
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Runs in a transaction so the PostgreSQL driver honours the
+     * fetch size and reads the rows with a cursor. It is not
+     * read-only, which keeps the scan on the primary: a lagging
+     * replica could miss shortcodes announced just before the
+     * scan started, and the rebuilt filter would lose them.
+     */
+    @Override
+    @Transactional
+    public void forEachShortCode(final Consumer<String> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT short_code FROM short_urls");
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) row -> action.accept(row.getString(1)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * There is no index on {@code access_count}, which the
+     * access count flushes would have to maintain on every
+     * update; the query is one scan with a bounded top-N sort,
+     * run once per instance start. It is read-only and may run
+     * on a replica.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachMostAccessed(final int limit,
+                                    final BiConsumer<String, String> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT short_code, url FROM short_urls"
+                            + " ORDER BY access_count DESC LIMIT ?");
+            statement.setInt(1, limit);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) row -> action.accept(row.getString(1),
+                row.getString(2)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Runs outside any transaction, like
+     * {@link #recheckOnPrimary(Collection)}, so it reads the
+     * primary key index of the primary.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM short_urls", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ShortUrl> recheckOnPrimary(final Collection<Long> ids) {
+        if (!replicaReads) {
+            return List.of();
+        }
+        return findOnPrimary(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ShortUrl> findOnPrimary(final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = SELECT_BY_IDS_SQL
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        return jdbcTemplate.query(sql, (row, rowNum) -> {
+            ShortUrl shortUrl = new ShortUrl();
+            shortUrl.setShortCode(row.getString("short_code"));
+            shortUrl.setUrl(row.getString("url"));
+            shortUrl.setCreatedAt(row.getTimestamp("created_at"));
+            shortUrl.setUpdateAt(row.getTimestamp("updated_at"));
+            shortUrl.setAccessCount(row.getInt("access_count"));
+            return shortUrl;
+        }, ids.toArray());
+    }
+
+    /**
+     * Applies a chunk of deltas with one {@code UPDATE ... FROM (VALUES ...)}.
+     *
+     * @param chunk the id and delta pairs
+     */
+    private void updateWithValuesList(final List<Map.Entry<Long, Long>> chunk) {
+        StringBuilder sql = new StringBuilder(
+                "UPDATE short_urls AS s SET access_count = s.access_count + v.delta"
+                        + " FROM (VALUES ");
+        Object[] args = new Object[chunk.size() * 2];
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+            args[2 * i] = chunk.get(i).getKey();
+            args[2 * i + 1] = chunk.get(i).getValue();
+        }
+        sql.append(") AS v(id, delta) WHERE s.id = v.id");
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Applies a chunk of deltas as a JDBC batch of single-row updates.
+     *
+     * @param chunk the id and delta pairs
+     */
+    private void updateWithBatch(final List<Map.Entry<Long, Long>> chunk) {
+        List<Object[]> args = new ArrayList<>(chunk.size());
+        for (Map.Entry<Long, Long> row : chunk) {
+            args.add(new Object[] {row.getValue(), row.getKey()});
+        }
+        jdbcTemplate.batchUpdate("UPDATE short_urls SET access_count"
+                + " = access_count + ? WHERE id = ?", args);
+    }
+
+    /**
+     * Detects whether the connected database is PostgreSQL.
+     *
+     * @return {@code true} for PostgreSQL
+     */
+    private boolean isPostgres() {
+        Boolean detected = postgres;
+        if (detected == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection
+                            .getMetaData().getDatabaseProductName());
+            detected = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = detected;
+        }
+        return detected;
+    }
+}
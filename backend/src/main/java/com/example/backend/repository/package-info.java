@@ -12,6 +12,8 @@
  * <ul>
  *   <li>{@link com.example.backend.repository.ShortUrlRepository}:
  *   Manages database operations for {@code ShortUrl} entities.</li>
+ *   <li>{@link com.example.backend.repository.ShortUrlRepositoryCustom}:
+ *   Bulk JDBC operations mixed into the repository.</li>
  * </ul>
  *
  * @see org.springframework.data.jpa.repository.JpaRepository
@@ -0,0 +1,246 @@
+package com.example.backend.service;
+
+import com.example.backend.repository.ShortUrlRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for shortcode access counts.
+ * <p>
+ * Resolving a shortcode only increments a {@link LongAdder}
+ * kept per shortcode in a {@link ConcurrentHashMap}, so redirects
+ * never wait on the database and a viral link does not serialize
+ * requests on its row lock. The accumulated deltas are written
+ * with one bulk statement per flush:
+ * <ul>
+ *     <li>on a fixed schedule,</li>
+ *     <li>as soon as the number of pending shortcodes
+ *     reaches the configured limit, and</li>
+ *     <li>when the application shuts down.</li>
+ * </ul>
+ * Deltas of a failed flush are kept and retried with the next one.
+ * The {@code shortcode.access.pending} gauge reports how many
+ * clicks are waiting to be written.
+ *
+ * @see ShortUrlRepository#incrementAccessCounts(Map)
+ */
+@Slf4j
+@Service
+public class AccessCountBuffer {
+    /**
+     * Maximum time, in seconds, to wait for an in-flight
+     * flush when shutting down.
+     */
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    /**
+     * Repository used to write the accumulated counts.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Pending access count deltas per shortcode.
+     */
+    private final ConcurrentHashMap<String, LongAdder> pending =
+            new ConcurrentHashMap<>();
+    /**
+     * Total number of clicks not yet written.
+     */
+    private final LongAdder pendingClicks = new LongAdder();
+    /**
+     * Number of pending shortcodes that triggers an early flush.
+     */
+    private final int maxPendingKeys;
+    /**
+     * Single thread running scheduled and size-triggered flushes.
+     */
+    private final ScheduledExecutorService flusher;
+    /**
+     * Whether a size-triggered flush is already queued.
+     */
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    /**
+     * Serializes flushes from the flusher thread and shutdown.
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /**
+     * Counts flushes that failed and were retried later.
+     */
+    private final Counter flushFailures;
+
+    /**
+     * Constructs a new {@code AccessCountBuffer} and starts
+     * the periodic flush.
+     *
+     * @param repository repository used to write the counts
+     * @param meterRegistry registry for the pending clicks gauge
+     * @param flushInterval time between scheduled flushes
+     * @param pendingKeysLimit number of pending shortcodes
+     *                         that triggers an early flush
+     */
+    public AccessCountBuffer(final ShortUrlRepository repository,
+                             final MeterRegistry meterRegistry,
+                             @Value("${access-count.flush-interval:1s}")
+                             final Duration flushInterval,
+                             @Value("${access-count.max-pending-keys:10000}")
+                             final int pendingKeysLimit) {
+        this.shortUrlRepository = repository;
+        this.maxPendingKeys = pendingKeysLimit;
+        this.flushFailures = meterRegistry.counter(
+                "shortcode.access.flush.failures");
+        Gauge.builder("shortcode.access.pending", pendingClicks,
+                        LongAdder::sum)
+                .description("Clicks counted but not yet written")
+                .register(meterRegistry);
+        Gauge.builder("shortcode.access.pending.keys", pending,
+                        Map::size)
+                .description("Shortcodes with clicks not yet written")
+                .register(meterRegistry);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("access-count-flusher-%d")
+                        .setDaemon(true)
+                        .build());
+        long intervalMs = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMs,
+                intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records one access to a shortcode.
+     * <p>
+     * A flush may drop the counter of an idle shortcode between
+     * the lookup and the increment, after taking its last sum.
+     * The counter is then looked up again after the increment:
+     * if it is no longer in the buffer, what is left in it is
+     * taken and put back in the current one. Taking the sum
+     * resets each cell atomically, so a click is taken either
+     * by the flush or here, never by both.
+     *
+     * @param shortCode the accessed shortcode
+     */
+    public void record(final String shortCode) {
+        LongAdder counter = pending.get(shortCode);
+        if (counter == null) {
+            counter = pending.computeIfAbsent(shortCode,
+                    key -> new LongAdder());
+        }
+        counter.increment();
+        pendingClicks.increment();
+        if (pending.get(shortCode) != counter) {
+            long dropped = counter.sumThenReset();
+            if (dropped > 0) {
+                requeue(shortCode, dropped);
+            }
+        }
+        if (pending.size() >= maxPendingKeys
+                && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Writes all pending deltas to the database.
+     * <p>
+     * Shortcodes without new clicks since the previous
+     * flush are dropped from the buffer so it does not
+     * grow with the number of codes ever accessed.
+     * If the write fails, the deltas are put back and
+     * the exception is rethrown.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushQueued.set(false);
+            Map<String, Long> deltas = drain();
+            if (deltas.isEmpty()) {
+                return;
+            }
+            long total = deltas.values().stream()
+                    .mapToLong(Long::longValue).sum();
+            try {
+                shortUrlRepository.incrementAccessCounts(deltas);
+                pendingClicks.add(-total);
+                log.debug("Flushed {} clicks for {} shortcodes",
+                        total, deltas.size());
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                deltas.forEach(this::requeue);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the current deltas out of the buffer.
+     *
+     * @return the deltas per shortcode, without zero entries
+     */
+    private Map<String, Long> drain() {
+        Map<String, Long> deltas = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            LongAdder counter = entry.getValue();
+            long clicks = counter.sumThenReset();
+            if (clicks == 0 && pending.remove(entry.getKey(), counter)) {
+                clicks = counter.sumThenReset();
+            }
+            if (clicks > 0) {
+                deltas.merge(entry.getKey(), clicks, Long::sum);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Puts back the delta of a shortcode whose write failed.
+     *
+     * @param shortCode the shortcode
+     * @param clicks the clicks to put back
+     */
+    private void requeue(final String shortCode, final Long clicks) {
+        pending.computeIfAbsent(shortCode, key -> new LongAdder()).add(clicks);
+    }
+
+    /**
+     * Flushes from the background thread, logging failures
+     * so the schedule keeps running.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Flushing access counts failed, will retry: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the background flush and writes what is left.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * for an in-flight flush
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+}
@@ -1,8 +1,19 @@
 package com.example.backend.service;
 import com.example.backend.exception.ResourceNotFoundException;
 import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.service.ResolveMetrics.Outcome;
+import com.example.backend.utils.Base62Converter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
 /**
  * Abstract base service that provides common URL
  * resolution functionality.
@@ -14,9 +25,14 @@ import lombok.RequiredArgsConstructor;
  * for URL resolution that can be configured
  * to either save results to
  * cache or not.
+ * <p>
+ * Every resolution is timed through {@link ResolveMetrics},
+ * tagged with the tier that answered it.
  *
  * @see RedisService
  * @see ShortUrlRepository
+ * @see AccessCountBuffer
+ * @see ShortUrlLoader
  */
 @RequiredArgsConstructor
 public abstract class BaseUrlService {
@@ -28,39 +44,151 @@ public abstract class BaseUrlService {
      * Service for managing cache operations.
      */
     private final RedisService redisService;
+    /**
+     * Write-behind buffer for access counts.
+     */
+    private final AccessCountBuffer accessCountBuffer;
+    /**
+     * Loader for shortcodes missing from the cache.
+     */
+    private final ShortUrlLoader shortUrlLoader;
+    /**
+     * Timers of resolutions by outcome.
+     */
+    private final ResolveMetrics resolveMetrics;
 
     /**
      * Resolves a URL from a shortcode using both cache
      * and database.
      * <p>
-     * This method first checks the cache for
-     * the URL. If not found,
-     * it queries the database. The method can
+     * Codes that could not have been generated are
+     * rejected before any store is queried.
+     * This method then checks the cache for
+     * the URL. If not found, and not cached as missing,
+     * it is loaded through the {@link ShortUrlLoader}, which
+     * skips the database for shortcodes never issued. The method can
      * optionally save database
-     * results to cache based on the saveToCache parameter.
+     * results to cache based on the saveToCache parameter;
+     * they are always kept in the local near cache.
+     * Each successful resolution is counted through the
+     * {@link AccessCountBuffer} without waiting on the database.
+     * A Redis entry close to expiry may be refreshed in the
+     * background, so hot shortcodes do not miss when it expires.
      *
      * @param shortCode the shortcode to resolve
      * @param saveToCache whether to save the URL
-     *                    to cache if found in database
+     *                    to Redis if found in database
      * @return the original URL associated with the shortcode
      * @throws RuntimeException if the URL is not found
      */
     protected String resolveUrl(String shortCode, boolean saveToCache) {
-        String cachedValue = redisService.getFromCache(shortCode);
-        if (cachedValue != null && !cachedValue.isEmpty()) {
-            shortUrlRepository.incrementAccessCount(shortCode);
-            return cachedValue;
+        long started = System.nanoTime();
+        Outcome outcome = Outcome.ERROR;
+        try {
+            if (!Base62Converter.isValid(shortCode)) {
+                outcome = Outcome.NOT_FOUND;
+                throw new ResourceNotFoundException("Url not found");
+            }
+            RedisService.CachedValue cached =
+                    redisService.getEntryFromCache(shortCode);
+            String cachedValue = cached.value();
+            if (RedisService.MISSING.equals(cachedValue)) {
+                outcome = Outcome.NOT_FOUND;
+                throw new ResourceNotFoundException("Url not found");
+            }
+            if (cachedValue != null) {
+                accessCountBuffer.record(shortCode);
+                if (redisService.isDueForRefresh(cached)) {
+                    shortUrlLoader.refreshAsync(shortCode);
+                }
+                outcome = cached.local() ? Outcome.LOCAL_HIT : Outcome.REDIS_HIT;
+                return cachedValue;
+            }
+
+            Optional<String> loaded = shortUrlLoader.load(shortCode);
+            if (loaded.isEmpty()) {
+                outcome = Outcome.NOT_FOUND;
+                throw new ResourceNotFoundException("Url not found");
+            }
+            String url = loaded.get();
+            accessCountBuffer.record(shortCode);
+            if (saveToCache) {
+                redisService.saveToCache(shortCode, url);
+            } else {
+                redisService.saveToLocalCache(shortCode, url);
+            }
+            outcome = Outcome.DATABASE_HIT;
+            return url;
+        } finally {
+            resolveMetrics.record(outcome, started);
+        }
+    }
+
+    /**
+     * Resolves the URLs of several shortcodes with one cache
+     * round trip and at most one database query.
+     * <p>
+     * Shortcodes missing from the cache are loaded with a
+     * single {@code IN} query through the {@link ShortUrlLoader}
+     * and written back to Redis in one pipeline. Invalid and unknown shortcodes are left
+     * out of the result, and each resolved shortcode is
+     * counted as one access.
+     *
+     * @param shortCodes the shortcodes to resolve
+     * @return the URLs keyed by shortcode, in request order
+     */
+    protected Map<String, String> resolveUrls(Collection<String> shortCodes) {
+        long started = System.nanoTime();
+        Set<String> validCodes = new LinkedHashSet<>();
+        for (String shortCode : shortCodes) {
+            if (Base62Converter.isValid(shortCode)) {
+                validCodes.add(shortCode);
+            }
+        }
+        Map<String, String> found = new HashMap<>(
+                redisService.getAllFromCache(validCodes));
+        List<String> misses = validCodes.stream()
+                .filter(shortCode -> !found.containsKey(shortCode))
+                .toList();
+        if (!misses.isEmpty()) {
+            Map<String, String> loaded = shortUrlLoader.loadAll(misses);
+            redisService.saveAllToCache(loaded);
+            found.putAll(loaded);
         }
+        Map<String, String> resolved = new LinkedHashMap<>();
+        for (String shortCode : validCodes) {
+            String url = found.get(shortCode);
+            if (url != null && !RedisService.MISSING.equals(url)) {
+                accessCountBuffer.record(shortCode);
+                resolved.put(shortCode, url);
+            }
+        }
+        resolveMetrics.recordBatch(started);
+        return resolved;
+    }
 
-        return shortUrlRepository.findByShortCode(shortCode)
-                .map(shortUrl -> {
-                    shortUrlRepository.incrementAccessCount(shortCode);
-                    if (saveToCache) {
-                        redisService.saveToCache(shortCode, shortUrl.getUrl());
-                    }
-                    return shortUrl.getUrl();
-                })
-                .orElseThrow(() -> new ResourceNotFoundException("Url not found"));
+    /**
+     * Resolves a URL from the local near cache only.
+     * <p>
+     * This performs no I/O, so callers on an event
+     * loop thread can answer hot shortcodes inline and
+     * hand only misses to {@link #resolveUrl(String, boolean)}
+     * on a blocking-friendly thread.
+     *
+     * @param shortCode the shortcode to resolve
+     * @return the URL, or {@code null} if it is not cached locally
+     */
+    protected String resolveLocalUrl(String shortCode) {
+        if (!Base62Converter.isValid(shortCode)) {
+            return null;
+        }
+        long started = System.nanoTime();
+        String cachedValue = redisService.getFromLocalCache(shortCode);
+        if (cachedValue != null) {
+            accessCountBuffer.record(shortCode);
+            resolveMetrics.record(Outcome.LOCAL_HIT, started);
+        }
+        return cachedValue;
     }
 
     /**
@@ -77,4 +205,12 @@ public abstract class BaseUrlService {
     protected RedisService getRedisService() {
         return redisService;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the ShortUrlLoader instance.
+     * @return ShortUrlLoader instance
+     */
+    protected ShortUrlLoader getShortUrlLoader() {
+        return shortUrlLoader;
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.BatchShortenResult;
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import com.example.backend.utils.UrlNormalizer;
+import com.example.backend.utils.ValidatorUrl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Service class for shortening many URLs at once.
+ * <p>
+ * A chunk of URLs is processed in four steps, each of
+ * which costs about one round trip for the whole chunk:
+ * <ol>
+ *     <li>the URLs are validated in parallel,</li>
+ *     <li>one sequence value per valid URL is reserved with a
+ *     single {@link ZooKeeperService#nextSequences(int)} call,</li>
+ *     <li>the rows are written with JDBC batch inserts and the
+ *     shortcodes added to the {@link ShortCodeFilter}, and</li>
+ *     <li>Redis is filled with one pipelined round of
+ *     {@code PSETEX} commands.</li>
+ * </ol>
+ * Invalid URLs are reported in their result instead of
+ * failing the chunk.
+ * <p>
+ * When the {@link UrlDeduplicator} is enabled, each valid URL
+ * is first looked up, and claimed once its sequence value is
+ * reserved, exactly as a single creation does; this costs a
+ * few round trips per URL. URLs shortened before, or repeated
+ * within the chunk, get their existing shortcode back, and new
+ * rows are written with their URL hash.
+ *
+ * @see ShortUrlRepository#insertAll(List)
+ * @see RedisService#saveAllToCache(Map)
+ */
+@Slf4j
+@Service
+public class BulkShortenService {
+    /**
+     * Repository for writing the short URLs.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service for filling the cache.
+     */
+    private final RedisService redisService;
+    /**
+     * Service for reserving unique sequence values.
+     */
+    private final ZooKeeperService zooKeeperService;
+    /**
+     * Filter the new shortcodes are added to.
+     */
+    private final ShortCodeFilter shortCodeFilter;
+    /**
+     * Finder of the shortcodes already issued.
+     */
+    private final UrlDeduplicator urlDeduplicator;
+    /**
+     * Number of URLs processed together.
+     */
+    private final int chunkSize;
+
+    /**
+     * Constructs a new {@code BulkShortenService}.
+     *
+     * @param repository repository for writing the short URLs
+     * @param cacheService service for filling the cache
+     * @param sequenceService service for reserving sequence values
+     * @param filter filter the new shortcodes are added to
+     * @param deduplicator finder of the shortcodes already issued
+     * @param batchChunkSize number of URLs processed together
+     */
+    public BulkShortenService(final ShortUrlRepository repository,
+                              final RedisService cacheService,
+                              final ZooKeeperService sequenceService,
+                              final ShortCodeFilter filter,
+                              final UrlDeduplicator deduplicator,
+                              @Value("${shorten.batch.chunk-size:500}")
+                              final int batchChunkSize) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.zooKeeperService = sequenceService;
+        this.shortCodeFilter = filter;
+        this.urlDeduplicator = deduplicator;
+        this.chunkSize = batchChunkSize;
+    }
+
+    /**
+     * Returns how many URLs should be passed to
+     * {@link #shortenAll(List, long)} at a time.
+     *
+     * @return the chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Shortens a chunk of URLs.
+     *
+     * @param urls the URLs to shorten
+     * @param firstIndex the position of the first URL in the request
+     * @return one result per URL, in the order of {@code urls}
+     */
+    public List<BatchShortenResult> shortenAll(final List<String> urls,
+                                               final long firstIndex) {
+        String[] errors = new String[urls.size()];
+        IntStream.range(0, urls.size()).parallel()
+                .forEach(i -> errors[i] = validate(urls.get(i)));
+        String[] shortCodes = new String[urls.size()];
+        int[] sameAs = new int[urls.size()];
+        Arrays.fill(sameAs, -1);
+        if (urlDeduplicator.isEnabled()) {
+            findExisting(urls, errors, shortCodes, sameAs);
+        }
+        int newCount = (int) IntStream.range(0, errors.length)
+                .filter(i -> errors[i] == null && shortCodes[i] == null
+                        && sameAs[i] < 0)
+                .count();
+        long[] sequences = newCount > 0
+                ? zooKeeperService.nextSequences(newCount) : new long[0];
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<ShortUrl> shortUrls = new ArrayList<>(newCount);
+        Map<String, String> cacheEntries = new HashMap<>();
+        List<BatchShortenResult> results = new ArrayList<>(urls.size());
+        int nextSequence = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get(i);
+            if (errors[i] != null) {
+                results.add(BatchShortenResult.rejected(firstIndex + i,
+                        url, errors[i]));
+                continue;
+            }
+            if (sameAs[i] >= 0) {
+                shortCodes[i] = shortCodes[sameAs[i]];
+            } else if (shortCodes[i] == null) {
+                String shortCode = Base62Converter.encode(
+                        sequences[nextSequence++]);
+                Optional<ShortUrl> concurrent = claim(url, shortCode);
+                if (concurrent.isPresent()) {
+                    shortCodes[i] = concurrent.get().getShortCode();
+                } else {
+                    shortCodes[i] = shortCode;
+                    shortUrls.add(newShortUrl(shortCode, url, now));
+                    cacheEntries.put(shortCode, url);
+                }
+            }
+            results.add(BatchShortenResult.shortened(firstIndex + i,
+                    url, shortCodes[i]));
+        }
+
+        if (!shortUrls.isEmpty()) {
+            insertAll(shortUrls);
+            shortCodeFilter.add(cacheEntries.keySet());
+            fillCache(cacheEntries);
+        }
+        log.info("Shortened {} of {} URLs", shortUrls.size(), urls.size());
+        return results;
+    }
+
+    /**
+     * Fills in the shortcodes already issued for the valid URLs,
+     * and for each URL repeated within the chunk the position of
+     * its first occurrence.
+     *
+     * @param urls the URLs to shorten
+     * @param errors why each URL is rejected, if it is
+     * @param shortCodes receives the existing shortcodes
+     * @param sameAs receives the first position of repeated URLs
+     */
+    private void findExisting(final List<String> urls, final String[] errors,
+                              final String[] shortCodes, final int[] sameAs) {
+        Map<String, Integer> firstByUrl = new HashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            Integer first = firstByUrl.putIfAbsent(
+                    UrlNormalizer.normalize(urls.get(i)), i);
+            if (first != null) {
+                sameAs[i] = first;
+                continue;
+            }
+            int position = i;
+            urlDeduplicator.findExisting(urls.get(i)).ifPresent(row ->
+                    shortCodes[position] = row.getShortCode());
+        }
+    }
+
+    /**
+     * Claims a URL for a new shortcode when deduplication is
+     * enabled.
+     *
+     * @param url the URL
+     * @param shortCode the shortcode reserved for it
+     * @return the row of a concurrent creation of the same URL,
+     * or empty if the caller creates its row
+     */
+    private Optional<ShortUrl> claim(final String url,
+                                     final String shortCode) {
+        if (!urlDeduplicator.isEnabled()) {
+            return Optional.empty();
+        }
+        return urlDeduplicator.claim(url, shortCode);
+    }
+
+    /**
+     * Creates the row of a new shortcode, with the hash of its
+     * URL when deduplication is enabled.
+     *
+     * @param shortCode the shortcode
+     * @param url the URL
+     * @param now the creation time
+     * @return the row
+     */
+    private ShortUrl newShortUrl(final String shortCode, final String url,
+                                 final Timestamp now) {
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode(shortCode);
+        shortUrl.setUrl(url);
+        shortUrl.setCreatedAt(now);
+        shortUrl.setUpdateAt(now);
+        if (urlDeduplicator.isEnabled()) {
+            shortUrl.setUrlHash(UrlDeduplicator.hashOf(url));
+        }
+        return shortUrl;
+    }
+
+    /**
+     * Writes the new rows, releasing their claims if the
+     * insert fails.
+     *
+     * @param shortUrls the new rows
+     */
+    private void insertAll(final List<ShortUrl> shortUrls) {
+        try {
+            shortUrlRepository.insertAll(shortUrls);
+        } catch (RuntimeException e) {
+            if (urlDeduplicator.isEnabled()) {
+                shortUrls.forEach(shortUrl -> urlDeduplicator.release(
+                        shortUrl.getUrl(), shortUrl.getShortCode()));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks a URL the same way as single shortening.
+     *
+     * @param url the URL to check
+     * @return why the URL is rejected, or {@code null} if it is valid
+     */
+    static String validate(final String url) {
+        if (url == null || url.isEmpty()) {
+            return "The URL can't be null or void";
+        }
+        if (!ValidatorUrl.isValidURL(url)) {
+            return "Invalid Url";
+        }
+        return null;
+    }
+
+    /**
+     * Fills the cache with the new mappings.
+     * <p>
+     * The rows are already stored, so a Redis failure is
+     * only logged; the mappings are cached on first read.
+     *
+     * @param cacheEntries the URLs keyed by shortcode
+     */
+    private void fillCache(final Map<String, String> cacheEntries) {
+        try {
+            redisService.saveAllToCache(cacheEntries);
+        } catch (RuntimeException e) {
+            log.warn("Caching {} new shortcodes failed: {}",
+                    cacheEntries.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long shortcode entries live in Redis and when
+ * they are refreshed ahead of expiry.
+ * <p>
+ * Markers of shortcodes known not to exist are kept for the
+ * short {@code cache.negative.ttl}, without jitter.
+ * <p>
+ * Every TTL is spread by a random factor of up to
+ * {@code cache.redis.ttl-jitter}, so entries written together,
+ * such as a bulk import, expire over a window instead of in
+ * the same second.
+ * <p>
+ * Reads of an entry close to expiry trigger an asynchronous
+ * refresh with the XFetch rule: refresh when
+ * {@code -delta * beta * ln(random) >= remaining TTL}. The
+ * probability rises smoothly as expiry approaches, so one
+ * reader usually refreshes the entry before it disappears
+ * and no herd of readers misses at once. {@code delta} stands
+ * for the time between Redis reads of a hot entry, which the
+ * near cache stretches to about its own TTL.
+ * <p>
+ * The TTL adapts to access: new entries get the base TTL,
+ * while entries refreshed early, which proves they are still
+ * read at the end of their life, get the longer hot TTL.
+ *
+ * @see RedisService
+ * @see ShortUrlLoader#refreshAsync(String)
+ */
+@Service
+public class CacheTtlPolicy {
+    /**
+     * TTL of newly cached entries.
+     */
+    private final Duration baseTtl;
+    /**
+     * TTL of entries refreshed because they are still read.
+     */
+    private final Duration hotTtl;
+    /**
+     * Maximum relative deviation applied to every TTL.
+     */
+    private final double jitter;
+    /**
+     * Expected time between reads of a hot entry, in milliseconds.
+     */
+    private final double deltaMillis;
+    /**
+     * XFetch aggressiveness; above 1 refreshes earlier.
+     */
+    private final double beta;
+    /**
+     * TTL of markers of shortcodes that do not exist.
+     */
+    private final Duration negativeTtl;
+
+    /**
+     * Constructs a new {@code CacheTtlPolicy}.
+     *
+     * @param ttl TTL of newly cached entries
+     * @param refreshedTtl TTL of entries refreshed early
+     * @param ttlJitter maximum relative deviation of every TTL
+     * @param refreshDelta expected time between reads of a hot entry
+     * @param refreshBeta XFetch aggressiveness
+     * @param missingTtl TTL of markers of missing shortcodes
+     */
+    public CacheTtlPolicy(@Value("${cache.redis.ttl:1d}")
+                          final Duration ttl,
+                          @Value("${cache.redis.hot-ttl:7d}")
+                          final Duration refreshedTtl,
+                          @Value("${cache.redis.ttl-jitter:0.1}")
+                          final double ttlJitter,
+                          @Value("${cache.redis.early-refresh.delta:5m}")
+                          final Duration refreshDelta,
+                          @Value("${cache.redis.early-refresh.beta:1.0}")
+                          final double refreshBeta,
+                          @Value("${cache.negative.ttl:60s}")
+                          final Duration missingTtl) {
+        if (ttlJitter < 0 || ttlJitter >= 1) {
+            throw new IllegalArgumentException(
+                    "cache.redis.ttl-jitter must be in [0, 1): " + ttlJitter);
+        }
+        this.baseTtl = ttl;
+        this.hotTtl = refreshedTtl;
+        this.jitter = ttlJitter;
+        this.deltaMillis = refreshDelta.toMillis();
+        this.beta = refreshBeta;
+        this.negativeTtl = missingTtl;
+    }
+
+    /**
+     * Returns the TTL for a newly cached entry.
+     *
+     * @return the jittered base TTL
+     */
+    public Duration ttlForNewEntry() {
+        return withJitter(baseTtl);
+    }
+
+    /**
+     * Returns the TTL for an entry refreshed because it is still read.
+     *
+     * @return the jittered hot TTL
+     */
+    public Duration ttlForRefreshedEntry() {
+        return withJitter(hotTtl);
+    }
+
+    /**
+     * Returns the TTL for a marker of a shortcode that does
+     * not exist.
+     *
+     * @return the negative TTL
+     * @see RedisService#MISSING
+     */
+    public Duration ttlForMissing() {
+        return negativeTtl;
+    }
+
+    /**
+     * Tells whether a read entry should be refreshed now.
+     *
+     * @param remainingMillis the remaining TTL in milliseconds;
+     *                        negative if unknown or unlimited
+     * @return {@code true} if the entry should be refreshed
+     */
+    public boolean shouldRefreshEarly(final long remainingMillis) {
+        if (remainingMillis < 0) {
+            return false;
+        }
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return -deltaMillis * beta * Math.log(random) >= remainingMillis;
+    }
+
+    /**
+     * Spreads a TTL by a random factor within the jitter.
+     *
+     * @param ttl the nominal TTL
+     * @return the jittered TTL
+     */
+    private Duration withJitter(final Duration ttl) {
+        if (jitter == 0) {
+            return ttl;
+        }
+        double factor = 1 + jitter
+                * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Duration.ofMillis((long) (ttl.toMillis() * factor));
+    }
+}
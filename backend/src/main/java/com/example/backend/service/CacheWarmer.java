@@ -0,0 +1,324 @@
+package com.example.backend.service;
+
+import com.example.backend.config.ServiceRegistration;
+import com.example.backend.dto.HotLink;
+import com.example.backend.repository.ShortUrlRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Warms the caches of a starting instance before it takes traffic.
+ * <p>
+ * Once the application is ready, the {@code size} most accessed
+ * short URLs are streamed from the database, most accessed
+ * first, in batches. Each batch is read from Redis with one
+ * round trip, which fills the near cache; the URLs Redis lacks
+ * are written to it, without overwriting newer values, and to
+ * the near cache. Up to {@value #PARALLEL_BATCHES} batches load
+ * in parallel on the read scheduler while the next ones stream.
+ * <p>
+ * Until the warm-up is over, or has run for {@code timeout},
+ * this health indicator reports {@code OUT_OF_SERVICE} and the
+ * instance is not registered in ZooKeeper; then it registers
+ * and reports {@code UP}. A failed warm-up is logged and does
+ * not keep the instance out of service.
+ * <p>
+ * When another instance leaves, its traffic moves to the
+ * remaining ones, so the warm-up runs again, starting with
+ * this node's hot links, unless one is already running.
+ *
+ * @see ServiceRegistration
+ * @see HotLinkTracker
+ */
+@Slf4j
+@Service
+public class CacheWarmer implements HealthIndicator {
+    /**
+     * Number of short URLs loaded per batch.
+     */
+    private static final int BATCH_SIZE = 500;
+    /**
+     * Maximum number of batches loading at once.
+     */
+    private static final int PARALLEL_BATCHES = 4;
+    /**
+     * Repository streaming the most accessed short URLs.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service used to read and fill the caches.
+     */
+    private final RedisService redisService;
+    /**
+     * Ranking of the links hot on this node.
+     */
+    private final HotLinkTracker hotLinkTracker;
+    /**
+     * Registration of this instance in ZooKeeper.
+     */
+    private final ServiceRegistration registration;
+    /**
+     * Scheduler running the warm-up and its batches.
+     */
+    private final Scheduler readScheduler;
+    /**
+     * Number of short URLs warmed.
+     */
+    private final int size;
+    /**
+     * Maximum duration of a warm-up.
+     */
+    private final Duration timeout;
+    /**
+     * Whether a warm-up is running.
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+    /**
+     * Whether the first warm-up is over.
+     */
+    private volatile boolean ready;
+    /**
+     * Number of entries loaded by the last warm-up.
+     */
+    private volatile long lastWarmed;
+    /**
+     * Duration of the last warm-up in milliseconds.
+     */
+    private volatile long lastDurationMs;
+
+    /**
+     * Constructs a new {@code CacheWarmer}.
+     *
+     * @param repository repository streaming the most accessed URLs
+     * @param cacheService service used to read and fill the caches
+     * @param hotLinks ranking of the links hot on this node
+     * @param serviceRegistration registration of this instance
+     * @param scheduler scheduler running the warm-up
+     * @param warmupSize number of short URLs warmed; 0 disables
+     *                   the warm-up
+     * @param warmupTimeout maximum duration of a warm-up
+     */
+    public CacheWarmer(final ShortUrlRepository repository,
+                       final RedisService cacheService,
+                       final HotLinkTracker hotLinks,
+                       final ServiceRegistration serviceRegistration,
+                       @Qualifier("readScheduler") final Scheduler scheduler,
+                       @Value("${cache.warmup.size:50000}")
+                       final int warmupSize,
+                       @Value("${cache.warmup.timeout:60s}")
+                       final Duration warmupTimeout) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.hotLinkTracker = hotLinks;
+        this.registration = serviceRegistration;
+        this.readScheduler = scheduler;
+        this.size = warmupSize;
+        this.timeout = warmupTimeout;
+    }
+
+    /**
+     * Starts the first warm-up, after which the instance registers,
+     * and re-warms whenever another instance leaves.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        registration.onPeerDeparted(this::warmUpInBackground);
+        readScheduler.schedule(() -> {
+            try {
+                warmUpQuietly();
+            } finally {
+                ready = true;
+                registration.register();
+            }
+        });
+    }
+
+    /**
+     * Reports whether the instance is warm.
+     *
+     * @return {@code OUT_OF_SERVICE} during the first warm-up,
+     * {@code UP} after it
+     */
+    @Override
+    public Health health() {
+        Health.Builder health = ready ? Health.up() : Health.outOfService();
+        return health.withDetail("warmed", lastWarmed)
+                .withDetail("durationMs", lastDurationMs)
+                .withDetail("registered", registration.isRegistered())
+                .build();
+    }
+
+    /**
+     * Runs a warm-up on the read scheduler unless one is running.
+     */
+    private void warmUpInBackground() {
+        readScheduler.schedule(this::warmUpQuietly);
+    }
+
+    /**
+     * Runs a warm-up unless one is running, logging failures.
+     */
+    private void warmUpQuietly() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            lastWarmed = warmUp();
+            lastDurationMs = TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - started);
+            log.info("Warmed {} cache entries in {} ms", lastWarmed,
+                    lastDurationMs);
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Loads the hot links of this node, then the most accessed
+     * short URLs, into the caches.
+     *
+     * @return the number of entries loaded
+     */
+    public long warmUp() {
+        if (size <= 0) {
+            return 0;
+        }
+        List<String> hot = hotLinkTracker.top(size).stream()
+                .map(HotLink::shortCode)
+                .toList();
+        if (!hot.isEmpty()) {
+            redisService.getAllFromCache(hot);
+        }
+        BatchLoader loader = new BatchLoader(System.nanoTime()
+                + timeout.toNanos());
+        shortUrlRepository.forEachMostAccessed(size, loader);
+        return hot.size() + loader.finish();
+    }
+
+    /**
+     * Loads a batch of short URLs into the caches.
+     *
+     * @param batch the URLs, keyed by shortcode
+     */
+    private void load(final Map<String, String> batch) {
+        Map<String, String> cached = redisService.getAllFromCache(
+                batch.keySet());
+        Map<String, String> missing = new HashMap<>(batch);
+        missing.keySet().removeAll(cached.keySet());
+        redisService.saveAllToCacheIfAbsent(missing);
+        missing.forEach(redisService::saveToLocalCache);
+    }
+
+    /**
+     * Groups the streamed short URLs into batches and loads
+     * them in parallel.
+     */
+    private final class BatchLoader implements BiConsumer<String, String> {
+        /**
+         * Permits for the batches loading at once.
+         */
+        private final Semaphore permits = new Semaphore(PARALLEL_BATCHES);
+        /**
+         * Number of entries loaded.
+         */
+        private final AtomicLong loaded = new AtomicLong();
+        /**
+         * Time, in {@link System#nanoTime()} units, after which
+         * the remaining rows are skipped.
+         */
+        private final long deadline;
+        /**
+         * The batch being filled.
+         */
+        private Map<String, String> batch = new HashMap<>();
+
+        /**
+         * Creates a loader.
+         *
+         * @param deadlineNanos the time after which rows are skipped
+         */
+        private BatchLoader(final long deadlineNanos) {
+            this.deadline = deadlineNanos;
+        }
+
+        /**
+         * Adds a short URL to the current batch, and loads the
+         * batch once it is full.
+         *
+         * @param shortCode the shortcode
+         * @param url the URL
+         */
+        @Override
+        public void accept(final String shortCode, final String url) {
+            if (System.nanoTime() - deadline > 0) {
+                return;
+            }
+            batch.put(shortCode, url);
+            if (batch.size() == BATCH_SIZE) {
+                submit(batch);
+                batch = new HashMap<>();
+            }
+        }
+
+        /**
+         * Loads the last batch and waits for every batch.
+         *
+         * @return the number of entries loaded
+         */
+        private long finish() {
+            if (!batch.isEmpty()) {
+                submit(batch);
+            }
+            permits.acquireUninterruptibly(PARALLEL_BATCHES);
+            permits.release(PARALLEL_BATCHES);
+            return loaded.get();
+        }
+
+        /**
+         * Loads a batch on the read scheduler once a permit is
+         * free, or on this thread if the scheduler is saturated.
+         *
+         * @param full the batch
+         */
+        private void submit(final Map<String, String> full) {
+            permits.acquireUninterruptibly();
+            Runnable task = () -> {
+                try {
+                    load(full);
+                    loaded.addAndGet(full.size());
+                } catch (RuntimeException e) {
+                    log.warn("Warming {} cache entries failed: {}",
+                            full.size(), e.getMessage());
+                } finally {
+                    permits.release();
+                }
+            };
+            try {
+                readScheduler.schedule(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+    }
+}
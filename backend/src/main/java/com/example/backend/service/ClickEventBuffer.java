@@ -0,0 +1,477 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.Base62Converter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous pipeline turning redirects into per-minute
+ * click analytics.
+ * <p>
+ * A redirect offers one compact event, the shortcode's sequence
+ * value, the time, a hash of the client address and user agent,
+ * the user agent class and the {@code Referer} and country
+ * headers it already received, to
+ * a {@link ClickEventRing}. Offering never blocks and allocates
+ * nothing; when the ring is full the event is dropped and
+ * counted, so a traffic spike sheds analytics instead of
+ * slowing redirects.
+ * <p>
+ * A single background thread drains the ring on a fixed
+ * schedule and rolls the events up into one Redis hash per
+ * shortcode and minute, {@code clicks:<code>:<epoch minute>},
+ * with the fields {@code total}, {@code ref:<referrer host>},
+ * {@code cc:<country>} and {@code ua:<agent class>}, where
+ * the code is the canonical encoding of the sequence value,
+ * as issued. Each bucket counts at most
+ * {@value #MAX_REFERRERS_PER_BUCKET} referrer hosts, the first
+ * ones this node sees in that minute; clicks from further hosts
+ * are counted under {@code ref:other}, so a link shared on many
+ * sites cannot grow its buckets without bound. Every node keeps
+ * its own tally, so a bucket fed by several nodes can hold that
+ * many hosts per node. Each
+ * flush is one pipelined round of {@code HINCRBY} commands,
+ * and buckets expire after the retention period. Events of a
+ * failed flush are lost.
+ * <p>
+ * The same flush adds the visitor hashes to one HyperLogLog
+ * per shortcode and day, {@code visitors:<code>:<epoch day>},
+ * which estimates distinct visitors in at most 12 KB however
+ * busy the link, and hands the click counts to the
+ * {@link HotLinkTracker}.
+ * <p>
+ * Metrics: {@code shortcode.clicks.dropped} counts shed
+ * events, {@code shortcode.clicks.buffered} reports events
+ * waiting and {@code shortcode.clicks.flush.failures} counts
+ * failed flushes.
+ * <p>
+ * The visitor hash combines the 32-bit hashes of the client
+ * address and user agent, so it is computed without
+ * allocating.
+ *
+ * @see ClickStatsService
+ * @see RedisService#incrementHashes(Map, Duration)
+ */
+@Slf4j
+@Service
+public class ClickEventBuffer {
+    /**
+     * Prefix of the per-minute bucket keys.
+     */
+    public static final String KEY_PREFIX = "clicks:";
+    /**
+     * Bucket field counting all clicks.
+     */
+    public static final String TOTAL_FIELD = "total";
+    /**
+     * Prefix of the bucket fields counting clicks by referrer host.
+     */
+    public static final String REFERRER_PREFIX = "ref:";
+    /**
+     * Prefix of the bucket fields counting clicks by country.
+     */
+    public static final String COUNTRY_PREFIX = "cc:";
+    /**
+     * Prefix of the bucket fields counting clicks by agent class.
+     */
+    public static final String AGENT_PREFIX = "ua:";
+    /**
+     * Prefix of the per-day unique visitor keys.
+     */
+    public static final String VISITORS_PREFIX = "visitors:";
+    /**
+     * Referrer recorded for clicks without a usable {@code Referer}.
+     */
+    private static final String DIRECT = "direct";
+    /**
+     * Referrer recorded for clicks from hosts beyond the cap of
+     * their bucket.
+     */
+    private static final String OTHER_REFERRER = "other";
+    /**
+     * Maximum number of referrer hosts counted per bucket, not
+     * including {@value #DIRECT} and {@value #OTHER_REFERRER}.
+     */
+    private static final int MAX_REFERRERS_PER_BUCKET = 100;
+    /**
+     * Number of past minutes whose admitted referrers are
+     * remembered; older events only count under
+     * {@value #OTHER_REFERRER} or {@value #DIRECT}.
+     */
+    private static final long REFERRER_TRACKING_MINUTES = 2;
+    /**
+     * Country recorded when the country header is missing or invalid.
+     */
+    private static final String UNKNOWN_COUNTRY = "unknown";
+    /**
+     * Length of an ISO 3166 alpha-2 country code.
+     */
+    private static final int COUNTRY_CODE_LENGTH = 2;
+    /**
+     * Maximum time, in seconds, to wait for the last flush
+     * when shutting down.
+     */
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    /**
+     * Service used to store the rolled-up buckets.
+     */
+    private final RedisService redisService;
+    /**
+     * Whether clicks are recorded at all.
+     */
+    private final boolean enabled;
+    /**
+     * Events waiting to be rolled up.
+     */
+    private final ClickEventRing ring;
+    /**
+     * How long a per-minute bucket is kept.
+     */
+    private final Duration retention;
+    /**
+     * Ranking of the most clicked shortcodes.
+     */
+    private final HotLinkTracker hotLinkTracker;
+    /**
+     * Single thread draining the ring.
+     */
+    private final ScheduledExecutorService flusher;
+    /**
+     * Counts events dropped because the ring was full.
+     */
+    private final Counter dropped;
+    /**
+     * Counts flushes that failed.
+     */
+    private final Counter flushFailures;
+    /**
+     * Referrer hosts counted so far, by minute and bucket key;
+     * only used by the flushing thread.
+     */
+    private final NavigableMap<Long, Map<String, Set<String>>>
+            referrersByMinute = new TreeMap<>();
+
+    /**
+     * Class of the client that followed a link.
+     */
+    public enum Agent {
+        /**
+         * A desktop browser.
+         */
+        BROWSER,
+        /**
+         * A browser on a phone or tablet.
+         */
+        MOBILE,
+        /**
+         * A crawler, link previewer or other bot.
+         */
+        BOT,
+        /**
+         * Anything else, including clients sending no user agent.
+         */
+        OTHER;
+
+        /**
+         * Classes by ordinal, for decoding stored events.
+         */
+        private static final Agent[] VALUES = values();
+
+        /**
+         * Classifies a {@code User-Agent} header without allocating.
+         *
+         * @param userAgent the header, or {@code null}
+         * @return the agent class
+         */
+        public static Agent of(final String userAgent) {
+            if (userAgent == null) {
+                return OTHER;
+            }
+            if (contains(userAgent, "bot") || contains(userAgent, "spider")
+                    || contains(userAgent, "crawl")
+                    || contains(userAgent, "preview")) {
+                return BOT;
+            }
+            if (contains(userAgent, "mobi")) {
+                return MOBILE;
+            }
+            return contains(userAgent, "mozilla") ? BROWSER : OTHER;
+        }
+
+        /**
+         * Tells whether a header contains a lower case token,
+         * ignoring case.
+         *
+         * @param header the header
+         * @param token the lower case token
+         * @return {@code true} if the token occurs
+         */
+        private static boolean contains(final String header,
+                                        final String token) {
+            int last = header.length() - token.length();
+            for (int i = 0; i <= last; i++) {
+                if (header.regionMatches(true, i, token, 0, token.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the value used in bucket fields.
+         *
+         * @return the lower case name
+         */
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Constructs a new {@code ClickEventBuffer} and starts
+     * the periodic flush.
+     *
+     * @param cacheService service used to store the buckets
+     * @param meterRegistry registry for the pipeline metrics
+     * @param clicksEnabled whether clicks are recorded
+     * @param capacity number of events the ring holds
+     * @param flushInterval time between flushes
+     * @param bucketRetention how long a per-minute bucket is kept
+     * @param hotLinks ranking fed with the click counts
+     */
+    public ClickEventBuffer(final RedisService cacheService,
+                            final MeterRegistry meterRegistry,
+                            @Value("${analytics.clicks.enabled:true}")
+                            final boolean clicksEnabled,
+                            @Value("${analytics.clicks.buffer-capacity:65536}")
+                            final int capacity,
+                            @Value("${analytics.clicks.flush-interval:1s}")
+                            final Duration flushInterval,
+                            @Value("${analytics.clicks.retention:7d}")
+                            final Duration bucketRetention,
+                            final HotLinkTracker hotLinks) {
+        this.redisService = cacheService;
+        this.enabled = clicksEnabled;
+        this.ring = new ClickEventRing(capacity);
+        this.retention = bucketRetention;
+        this.hotLinkTracker = hotLinks;
+        this.dropped = meterRegistry.counter("shortcode.clicks.dropped");
+        this.flushFailures = meterRegistry.counter(
+                "shortcode.clicks.flush.failures");
+        Gauge.builder("shortcode.clicks.buffered", ring,
+                        ClickEventRing::size)
+                .description("Click events waiting to be rolled up")
+                .register(meterRegistry);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("click-flusher-%d")
+                        .setDaemon(true)
+                        .build());
+        long intervalMs = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMs,
+                intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a click on a resolved shortcode.
+     * <p>
+     * Never blocks; the event is dropped if the buffer is full.
+     *
+     * @param shortCode the shortcode followed
+     * @param clientAddress the client's address, or {@code null}
+     * @param referrer the {@code Referer} header, or {@code null}
+     * @param userAgent the {@code User-Agent} header, or {@code null}
+     * @param country the country code header, or {@code null}
+     */
+    public void record(final String shortCode, final String clientAddress,
+                       final String referrer, final String userAgent,
+                       final String country) {
+        if (!enabled || !Base62Converter.isValid(shortCode)) {
+            return;
+        }
+        long visitor = (long) Objects.hashCode(clientAddress) << Integer.SIZE
+                | Integer.toUnsignedLong(Objects.hashCode(userAgent));
+        if (!ring.offer(Base62Converter.decode(shortCode),
+                System.currentTimeMillis(), visitor,
+                (byte) Agent.of(userAgent).ordinal(), referrer, country)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Returns the key of a shortcode's bucket for a minute.
+     *
+     * @param shortCode the shortcode
+     * @param epochMinute minutes since the epoch
+     * @return the Redis key
+     */
+    public static String bucketKey(final String shortCode,
+                                   final long epochMinute) {
+        return KEY_PREFIX + shortCode + ":" + epochMinute;
+    }
+
+    /**
+     * Returns the key of a shortcode's unique visitors for a day.
+     *
+     * @param shortCode the shortcode
+     * @param epochDay days since the epoch, in UTC
+     * @return the Redis key
+     */
+    public static String visitorsKey(final String shortCode,
+                                     final long epochDay) {
+        return VISITORS_PREFIX + shortCode + ":" + epochDay;
+    }
+
+    /**
+     * Drains every waiting event and adds it to its bucket,
+     * its visitor count and the hot link ranking.
+     */
+    public synchronized void flush() {
+        Map<String, Map<String, Long>> buckets = new HashMap<>();
+        Map<String, Set<String>> visitors = new HashMap<>();
+        Map<Long, Long> clicks = new HashMap<>();
+        Map<Long, String> shortCodes = new HashMap<>();
+        long minuteMillis = TimeUnit.MINUTES.toMillis(1);
+        long dayMillis = TimeUnit.DAYS.toMillis(1);
+        long oldestMinute = System.currentTimeMillis() / minuteMillis
+                - REFERRER_TRACKING_MINUTES;
+        referrersByMinute.headMap(oldestMinute).clear();
+        ClickEventRing.Consumer rollUp = (codeId, timestamp, visitor, agent,
+                                          referrer, country) -> {
+            String shortCode = shortCodes.computeIfAbsent(codeId,
+                    Base62Converter::encode);
+            clicks.merge(codeId, 1L, Long::sum);
+            visitors.computeIfAbsent(
+                    visitorsKey(shortCode, timestamp / dayMillis),
+                    key -> new HashSet<>()).add(Long.toHexString(visitor));
+            long minute = timestamp / minuteMillis;
+            String key = bucketKey(shortCode, minute);
+            Map<String, Long> bucket = buckets.computeIfAbsent(key,
+                    k -> new HashMap<>());
+            bucket.merge(TOTAL_FIELD, 1L, Long::sum);
+            String host = minute < oldestMinute
+                    ? OTHER_REFERRER
+                    : admitReferrer(key, minute, referrerHost(referrer));
+            bucket.merge(REFERRER_PREFIX + host, 1L, Long::sum);
+            bucket.merge(COUNTRY_PREFIX + countryCode(country), 1L,
+                    Long::sum);
+            bucket.merge(AGENT_PREFIX + Agent.VALUES[agent].tag(), 1L,
+                    Long::sum);
+        };
+        int limit = ring.capacity();
+        int drained;
+        do {
+            drained = ring.drain(rollUp, limit);
+        } while (drained == limit);
+        if (buckets.isEmpty()) {
+            return;
+        }
+        hotLinkTracker.addAll(clicks);
+        redisService.incrementHashes(buckets, retention);
+        redisService.addToHyperLogLogs(visitors, retention);
+    }
+
+    /**
+     * Counts a referrer host in a bucket while the bucket is
+     * under its cap.
+     *
+     * @param bucketKey the key of the bucket
+     * @param minute the minute of the bucket
+     * @param host the referrer host
+     * @return the host, or {@value #OTHER_REFERRER} once the
+     *         bucket counts {@value #MAX_REFERRERS_PER_BUCKET}
+     *         other hosts
+     */
+    private String admitReferrer(final String bucketKey, final long minute,
+                                 final String host) {
+        if (DIRECT.equals(host)) {
+            return host;
+        }
+        Set<String> hosts = referrersByMinute
+                .computeIfAbsent(minute, m -> new HashMap<>())
+                .computeIfAbsent(bucketKey, k -> new HashSet<>());
+        if (hosts.contains(host)
+                || hosts.size() < MAX_REFERRERS_PER_BUCKET && hosts.add(host)) {
+            return host;
+        }
+        return OTHER_REFERRER;
+    }
+
+    /**
+     * Extracts the host of a referrer.
+     *
+     * @param referrer the {@code Referer} header, or {@code null}
+     * @return the lower case host, or {@value #DIRECT}
+     */
+    private static String referrerHost(final String referrer) {
+        if (referrer == null || referrer.isEmpty()) {
+            return DIRECT;
+        }
+        try {
+            String host = URI.create(referrer).getHost();
+            return host == null ? DIRECT : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return DIRECT;
+        }
+    }
+
+    /**
+     * Normalizes a country header.
+     *
+     * @param country the header, or {@code null}
+     * @return the upper case alpha-2 code, or {@value #UNKNOWN_COUNTRY}
+     */
+    private static String countryCode(final String country) {
+        if (country == null || country.length() != COUNTRY_CODE_LENGTH
+                || !Character.isLetter(country.charAt(0))
+                || !Character.isLetter(country.charAt(1))) {
+            return UNKNOWN_COUNTRY;
+        }
+        return country.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Flushes from the background thread, counting failures.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            log.warn("Storing click buckets failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic flush and stores the waiting events.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        if (flusher.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            flushQuietly();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.backend.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free ring of click events with many
+ * producers and a single consumer.
+ * <p>
+ * Events are stored field by field in preallocated parallel
+ * arrays, so offering one allocates nothing. Each slot carries
+ * a sequence number, as in Vyukov's bounded queue: a producer
+ * claims a slot by advancing the tail with a compare-and-set
+ * when the slot's sequence shows it free, writes the fields
+ * and publishes them by bumping the sequence; the consumer
+ * reads a slot only once it is published and frees it by
+ * moving its sequence one lap ahead. When the ring is full,
+ * {@link #offer} fails at once instead of waiting.
+ *
+ * @see ClickEventBuffer
+ */
+final class ClickEventRing {
+    /**
+     * Receives the events drained from the ring.
+     */
+    @FunctionalInterface
+    interface Consumer {
+        /**
+         * Handles one event.
+         *
+         * @param codeId the sequence value of the shortcode
+         * @param timestamp the click time in epoch milliseconds
+         * @param visitor the hash identifying the visitor
+         * @param agent the user agent class
+         * @param referrer the {@code Referer} header, or {@code null}
+         * @param country the country code header, or {@code null}
+         */
+        void accept(long codeId, long timestamp, long visitor, byte agent,
+                    String referrer, String country);
+    }
+
+    /**
+     * Mask turning a position into a slot index.
+     */
+    private final int mask;
+    /**
+     * Per slot, the position it can be claimed at, or that
+     * position plus one once its event is published.
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * Shortcode sequence values, by slot.
+     */
+    private final long[] codeIds;
+    /**
+     * Click times, by slot.
+     */
+    private final long[] timestamps;
+    /**
+     * Visitor hashes, by slot.
+     */
+    private final long[] visitors;
+    /**
+     * User agent classes, by slot.
+     */
+    private final byte[] agents;
+    /**
+     * Referrer headers, by slot.
+     */
+    private final String[] referrers;
+    /**
+     * Country headers, by slot.
+     */
+    private final String[] countries;
+    /**
+     * Next position to claim.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Next position to consume; written by the consumer only.
+     */
+    private volatile long head;
+
+    /**
+     * Creates a ring holding at least {@code capacity} events.
+     *
+     * @param capacity the minimum capacity, rounded up
+     *                 to a power of two
+     */
+    ClickEventRing(final int capacity) {
+        if (capacity < 1 || capacity > 1 << (Integer.SIZE - 2)) {
+            throw new IllegalArgumentException("Invalid capacity: "
+                    + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.codeIds = new long[size];
+        this.timestamps = new long[size];
+        this.visitors = new long[size];
+        this.agents = new byte[size];
+        this.referrers = new String[size];
+        this.countries = new String[size];
+    }
+
+    /**
+     * Adds an event unless the ring is full.
+     *
+     * @param codeId the sequence value of the shortcode
+     * @param timestamp the click time in epoch milliseconds
+     * @param visitor the hash identifying the visitor
+     * @param agent the user agent class
+     * @param referrer the {@code Referer} header, or {@code null}
+     * @param country the country code header, or {@code null}
+     * @return {@code false} if the event was dropped
+     */
+    boolean offer(final long codeId, final long timestamp,
+                  final long visitor, final byte agent,
+                  final String referrer, final String country) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long distance = sequences.get(slot) - position;
+            if (distance == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (distance < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        int slot = (int) position & mask;
+        codeIds[slot] = codeId;
+        timestamps[slot] = timestamp;
+        visitors[slot] = visitor;
+        agents[slot] = agent;
+        referrers[slot] = referrer;
+        countries[slot] = country;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Hands published events to a consumer, oldest first.
+     * Must only be called by one thread at a time.
+     *
+     * @param consumer the receiver of the events
+     * @param max the maximum number of events to drain
+     * @return the number of events drained
+     */
+    int drain(final Consumer consumer, final int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                break;
+            }
+            consumer.accept(codeIds[slot], timestamps[slot], visitors[slot],
+                    agents[slot], referrers[slot], countries[slot]);
+            referrers[slot] = null;
+            countries[slot] = null;
+            sequences.lazySet(slot, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * Returns the approximate number of events waiting.
+     *
+     * @return the number of claimed but undrained slots
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Returns the number of events the ring holds.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.ClickBucket;
+import com.example.backend.dto.HotLink;
+import com.example.backend.dto.UniqueVisitors;
+import com.example.backend.exception.BadRequestException;
+import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.utils.Base62Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service reading the per-minute click buckets written by
+ * the {@link ClickEventBuffer} back as a time series.
+ * <p>
+ * A query covers whole minutes, from the minute containing
+ * {@code from} up to, but excluding, the minute containing
+ * {@code to}, and adds the minutes up into steps of equal
+ * length. All buckets of a query are read in one pipelined
+ * round trip. Clicks still waiting in a node's buffer are
+ * not counted yet.
+ * <p>
+ * Unique visitors are estimated by merging the per-day
+ * HyperLogLogs of the requested days, and the hot links come
+ * from this node's {@link HotLinkTracker}.
+ */
+@Service
+public class ClickStatsService {
+    /**
+     * Maximum number of minutes one query may cover.
+     */
+    public static final int MAX_RANGE_MINUTES = 1440;
+    /**
+     * Service used to read the buckets.
+     */
+    private final RedisService redisService;
+    /**
+     * Ranking of the most clicked shortcodes.
+     */
+    private final HotLinkTracker hotLinkTracker;
+    /**
+     * Number of days of unique visitors kept.
+     */
+    private final long retentionDays;
+
+    /**
+     * Constructs a new {@code ClickStatsService}.
+     *
+     * @param cacheService service used to read the buckets
+     * @param hotLinks ranking of the most clicked shortcodes
+     * @param retention how long click data is kept
+     */
+    public ClickStatsService(final RedisService cacheService,
+                             final HotLinkTracker hotLinks,
+                             @Value("${analytics.clicks.retention:7d}")
+                             final Duration retention) {
+        this.redisService = cacheService;
+        this.hotLinkTracker = hotLinks;
+        this.retentionDays = Math.max(1, retention.toDays());
+    }
+
+    /**
+     * Returns the clicks on a shortcode between two instants.
+     *
+     * @param shortCode the shortcode
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param stepMinutes the length of each step in minutes
+     * @return one bucket per step, oldest first, including
+     * steps without clicks
+     * @throws ResourceNotFoundException if the shortcode is malformed
+     * @throws BadRequestException if the range or step is invalid
+     */
+    public List<ClickBucket> getClicks(final String shortCode,
+                                       final Instant from,
+                                       final Instant to,
+                                       final int stepMinutes) {
+        if (!Base62Converter.isValid(shortCode)) {
+            throw new ResourceNotFoundException("Url not found");
+        }
+        Instant start = from.truncatedTo(ChronoUnit.MINUTES);
+        long minutes = Duration.between(start,
+                to.truncatedTo(ChronoUnit.MINUTES)).toMinutes();
+        if (minutes <= 0 || minutes > MAX_RANGE_MINUTES) {
+            throw new BadRequestException("The range must cover between 1 and "
+                    + MAX_RANGE_MINUTES + " minutes");
+        }
+        if (stepMinutes < 1 || stepMinutes > minutes) {
+            throw new BadRequestException("The step must be between 1 and "
+                    + minutes + " minutes");
+        }
+        long firstMinute = start.getEpochSecond() / ChronoUnit.MINUTES
+                .getDuration().getSeconds();
+        List<String> keys = new ArrayList<>((int) minutes);
+        for (long minute = 0; minute < minutes; minute++) {
+            keys.add(ClickEventBuffer.bucketKey(shortCode, firstMinute + minute));
+        }
+        List<Map<String, String>> hashes = redisService.getHashes(keys);
+        List<ClickBucket> buckets = new ArrayList<>();
+        for (int offset = 0; offset < minutes; offset += stepMinutes) {
+            int end = (int) Math.min(offset + stepMinutes, minutes);
+            buckets.add(sum(start.plus(offset, ChronoUnit.MINUTES),
+                    hashes.subList(offset, end)));
+        }
+        return buckets;
+    }
+
+    /**
+     * Estimates the distinct visitors of a shortcode.
+     * <p>
+     * A visitor is a client address and user agent pair.
+     *
+     * @param shortCode the shortcode
+     * @param days the number of days counted, ending today (UTC)
+     * @return the estimate
+     * @throws ResourceNotFoundException if the shortcode is malformed
+     * @throws BadRequestException if more days are asked for
+     * than are kept
+     */
+    public UniqueVisitors getUniqueVisitors(final String shortCode,
+                                            final int days) {
+        if (!Base62Converter.isValid(shortCode)) {
+            throw new ResourceNotFoundException("Url not found");
+        }
+        if (days < 1 || days > retentionDays) {
+            throw new BadRequestException("The days must be between 1 and "
+                    + retentionDays);
+        }
+        long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        List<String> keys = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            keys.add(ClickEventBuffer.visitorsKey(shortCode, today - day));
+        }
+        return new UniqueVisitors(shortCode, days,
+                redisService.countHyperLogLogs(keys));
+    }
+
+    /**
+     * Returns the shortcodes clicked most recently on this node.
+     *
+     * @param limit the maximum number of shortcodes returned
+     * @return the shortcodes, most clicked first
+     * @throws BadRequestException if the limit is not positive
+     */
+    public List<HotLink> getHotLinks(final int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("The limit must be positive");
+        }
+        return hotLinkTracker.top(limit);
+    }
+
+    /**
+     * Adds the minutes of one step up.
+     *
+     * @param start the start of the step
+     * @param hashes the stored buckets of the step's minutes
+     * @return the step's bucket
+     */
+    private static ClickBucket sum(final Instant start,
+                                   final List<Map<String, String>> hashes) {
+        long clicks = 0;
+        Map<String, Long> referrers = new HashMap<>();
+        Map<String, Long> countries = new HashMap<>();
+        Map<String, Long> agents = new HashMap<>();
+        for (Map<String, String> hash : hashes) {
+            for (Map.Entry<String, String> field : hash.entrySet()) {
+                String name = field.getKey();
+                long count = Long.parseLong(field.getValue());
+                if (name.equals(ClickEventBuffer.TOTAL_FIELD)) {
+                    clicks += count;
+                } else if (name.startsWith(ClickEventBuffer.REFERRER_PREFIX)) {
+                    add(referrers, name, ClickEventBuffer.REFERRER_PREFIX, count);
+                } else if (name.startsWith(ClickEventBuffer.COUNTRY_PREFIX)) {
+                    add(countries, name, ClickEventBuffer.COUNTRY_PREFIX, count);
+                } else if (name.startsWith(ClickEventBuffer.AGENT_PREFIX)) {
+                    add(agents, name, ClickEventBuffer.AGENT_PREFIX, count);
+                }
+            }
+        }
+        return new ClickBucket(start, clicks, referrers, countries, agents);
+    }
+
+    /**
+     * Adds a field's count to a breakdown.
+     *
+     * @param breakdown the breakdown
+     * @param field the field name
+     * @param prefix the prefix stripped from the field name
+     * @param count the count
+     */
+    private static void add(final Map<String, Long> breakdown,
+                            final String field, final String prefix,
+                            final long count) {
+        breakdown.merge(field.substring(prefix.length()), count, Long::sum);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.backend.service;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring mapping keys to nodes.
+ * <p>
+ * Each node is placed at {@code virtualNodes} points of a
+ * 64-bit ring, hashed from its name and the point number, and
+ * a key belongs to the node of the first point at or after
+ * its own hash. Spreading a node over many points evens out
+ * the share of keys each node gets, and adding a node only
+ * moves the keys of the arcs its points take over, about
+ * {@code 1 / nodes} of them, all onto the new node.
+ * <p>
+ * Nodes are identified by name, not position, so the order in
+ * which they are listed does not matter. The ring is
+ * immutable; lookups are a binary search over sorted arrays.
+ *
+ * @see RedisShards
+ */
+final class ConsistentHashRing {
+    /**
+     * Hash of node points and keys.
+     */
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    /**
+     * Positions of the points on the ring, sorted.
+     */
+    private final long[] points;
+    /**
+     * Index of the node owning each point.
+     */
+    private final int[] owners;
+
+    /**
+     * Builds the ring of the given nodes.
+     *
+     * @param nodes the names of the nodes
+     * @param virtualNodes the number of points per node
+     * @throws IllegalArgumentException if there is no node or
+     * {@code virtualNodes} is not positive
+     */
+    ConsistentHashRing(final List<String> nodes, final int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("Invalid ring of "
+                    + nodes.size() + " nodes, " + virtualNodes + " points each");
+        }
+        int size = nodes.size() * virtualNodes;
+        long[][] entries = new long[size][];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                entries[node * virtualNodes + point] = new long[] {
+                        hash(nodes.get(node) + "#" + point), node};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    /**
+     * Returns the node a key belongs to.
+     *
+     * @param key the key
+     * @return the index of the node in the list it was built from
+     */
+    int nodeOf(final String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Hashes a string onto the ring.
+     *
+     * @param value the string
+     * @return its position
+     */
+    private static long hash(final String value) {
+        return HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.backend.service;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Count-Min Sketch of click counts keyed by shortcode
+ * sequence value.
+ * <p>
+ * Each of the {@code depth} rows maps a key to one of
+ * {@code width} counters with its own hash; the estimate of a
+ * key is the smallest of its counters, which never falls below
+ * the true count and exceeds it by at most about
+ * {@code 2 / width} of all counted clicks with probability
+ * {@code 1 - 2^-depth}. Memory is fixed at construction,
+ * however many keys are counted. Not thread-safe.
+ *
+ * @see HotLinkTracker
+ */
+final class CountMinSketch {
+    /**
+     * Mask turning a hash into a column.
+     */
+    private final int mask;
+    /**
+     * Per row, the hash choosing its counter, seeded by the row.
+     */
+    private final HashFunction[] hashes;
+    /**
+     * The counters, row after row.
+     */
+    private final long[] counters;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param width the counters per row, rounded up to a power of two
+     * @param depth the number of rows
+     */
+    CountMinSketch(final int width, final int depth) {
+        if (width < 1 || width > 1 << (Integer.SIZE - 2) || depth < 1) {
+            throw new IllegalArgumentException("Invalid sketch size: "
+                    + width + "x" + depth);
+        }
+        int columns = Integer.highestOneBit(width);
+        if (columns < width) {
+            columns <<= 1;
+        }
+        this.mask = columns - 1;
+        this.hashes = new HashFunction[depth];
+        for (int row = 0; row < depth; row++) {
+            hashes[row] = Hashing.murmur3_32_fixed(row);
+        }
+        this.counters = new long[Math.multiplyExact(columns, depth)];
+    }
+
+    /**
+     * Adds clicks to a key.
+     *
+     * @param key the shortcode sequence value
+     * @param count the clicks to add
+     * @return the key's new estimate
+     */
+    long add(final long key, final long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < hashes.length; row++) {
+            int index = index(row, key);
+            counters[index] += count;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the estimated clicks of a key.
+     *
+     * @param key the shortcode sequence value
+     * @return an estimate no lower than the true count
+     */
+    long estimate(final long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < hashes.length; row++) {
+            estimate = Math.min(estimate, counters[index(row, key)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter, so old clicks weigh less than new ones.
+     */
+    void halve() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+        }
+    }
+
+    /**
+     * Returns the position of a key's counter in a row.
+     *
+     * @param row the row
+     * @param key the key
+     * @return the index into {@link #counters}
+     */
+    private int index(final int row, final long key) {
+        return row * (mask + 1) + (hashes[row].hashLong(key).asInt() & mask);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.exception.BadRequestException;
+import com.example.backend.repository.ShortUrlRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service class for shortening single URLs in the durable
+ * write mode of {@link ShortUrlJournal}.
+ * <p>
+ * It follows {@link UrlShortnerService#generateShortCode(String)},
+ * but outside any transaction: the row is appended to the
+ * journal instead of saved, so a create holds no database
+ * connection and waits for one group commit to local disk.
+ * The URL is then cached in Redis, which serves it until the
+ * row is drained. If the journal refuses the row, or Redis
+ * cannot be written, the row is inserted directly before the
+ * create is acknowledged, so the shortcode resolves either way.
+ * <p>
+ * A shortcode is only added to the {@link ShortCodeFilter} of
+ * every node once its row is committed: here when it was
+ * inserted directly, otherwise by the drainer.
+ *
+ * @see ShortUrlJournal#append(ShortUrl)
+ */
+@Slf4j
+@Service
+public class DurableShortenService {
+    /**
+     * Repository for rows the journal refuses.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service for caching the new mappings.
+     */
+    private final RedisService redisService;
+    /**
+     * Service for generating unique shortcodes.
+     */
+    private final ZooKeeperService zooKeeperService;
+    /**
+     * Finder of the shortcodes already issued for a URL.
+     */
+    private final UrlDeduplicator urlDeduplicator;
+    /**
+     * Journal the new rows are appended to.
+     */
+    private final ShortUrlJournal shortUrlJournal;
+    /**
+     * Filter the new shortcodes are added to.
+     */
+    private final ShortCodeFilter shortCodeFilter;
+
+    /**
+     * Constructs a new {@code DurableShortenService}.
+     *
+     * @param repository repository for rows the journal refuses
+     * @param cacheService service for caching the new mappings
+     * @param sequenceService service for generating shortcodes
+     * @param deduplicator finder of the shortcodes already issued
+     * @param journal journal the new rows are appended to
+     * @param filter filter the new shortcodes are added to
+     */
+    public DurableShortenService(final ShortUrlRepository repository,
+                                 final RedisService cacheService,
+                                 final ZooKeeperService sequenceService,
+                                 final UrlDeduplicator deduplicator,
+                                 final ShortUrlJournal journal,
+                                 final ShortCodeFilter filter) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.zooKeeperService = sequenceService;
+        this.urlDeduplicator = deduplicator;
+        this.shortUrlJournal = journal;
+        this.shortCodeFilter = filter;
+    }
+
+    /**
+     * Tells whether creates should go through this service.
+     *
+     * @return {@code true} if the journal is enabled
+     */
+    public boolean isEnabled() {
+        return shortUrlJournal.isEnabled();
+    }
+
+    /**
+     * Generates a shortcode for a URL, acknowledged once it is
+     * in the journal and in Redis, or in the database.
+     *
+     * @param url the original URL to shorten
+     * @return the ShortUrl object containing the shortcode and
+     * original URL
+     * @throws BadRequestException if the URL is invalid or empty
+     */
+    public ShortUrl generateShortCode(final String url) {
+        String error = BulkShortenService.validate(url);
+        if (error != null) {
+            throw new BadRequestException(error);
+        }
+        Optional<ShortUrl> existing = urlDeduplicator.findExisting(url);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        String shortCode = zooKeeperService.getNextShortCode();
+        Timestamp now = Timestamp.from(Instant.now());
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode(shortCode);
+        shortUrl.setUrl(url);
+        shortUrl.setCreatedAt(now);
+        shortUrl.setUpdateAt(now);
+        if (urlDeduplicator.isEnabled()) {
+            Optional<ShortUrl> concurrent =
+                    urlDeduplicator.claim(url, shortCode);
+            if (concurrent.isPresent()) {
+                return concurrent.get();
+            }
+            shortUrl.setUrlHash(UrlDeduplicator.hashOf(url));
+        }
+        boolean journaled;
+        try {
+            journaled = shortUrlJournal.append(shortUrl);
+            if (!journaled) {
+                shortUrlRepository.save(shortUrl);
+            }
+        } catch (RuntimeException e) {
+            if (urlDeduplicator.isEnabled()) {
+                urlDeduplicator.release(url, shortCode);
+            }
+            throw e;
+        }
+        boolean cached;
+        try {
+            cached = redisService.saveToCache(shortCode, url);
+        } catch (RuntimeException e) {
+            log.warn("Caching new shortcode {} failed: {}", shortCode,
+                    e.getMessage());
+            cached = false;
+        }
+        if (journaled && !cached) {
+            log.warn("Inserting journaled shortcode {} directly, since it"
+                    + " could not be cached", shortCode);
+            shortUrlRepository.insertAllIfAbsent(List.of(shortUrl));
+        }
+        if (!journaled || !cached) {
+            shortCodeFilter.add(List.of(shortCode));
+        }
+        return shortUrl;
+    }
+}
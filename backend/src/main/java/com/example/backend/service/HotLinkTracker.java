@@ -0,0 +1,211 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.HotLink;
+import com.example.backend.utils.Base62Converter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the most clicked shortcodes of this node in constant
+ * memory.
+ * <p>
+ * Clicks are counted in a {@link CountMinSketch}, and a min-heap
+ * keeps the {@code size} shortcodes with the highest estimates:
+ * a shortcode enters the heap once its estimate beats the
+ * smallest one in it. Every decay interval all counts are
+ * halved, so the ranking follows what is hot right now rather
+ * than since startup. The {@link ClickEventBuffer} feeds the
+ * tracker once per flush, off the redirect path.
+ * <p>
+ * After each decay the current top shortcodes are loaded into
+ * the near cache, so a link that turns viral is served without
+ * a Redis round trip on every node that sees it.
+ * <p>
+ * Each node ranks the redirects it served; behind the load
+ * balancer these are an even sample of all traffic.
+ *
+ * @see ClickStatsService#getHotLinks(int)
+ */
+@Slf4j
+@Service
+public class HotLinkTracker {
+    /**
+     * Click counts of every shortcode, approximated.
+     */
+    private final CountMinSketch sketch;
+    /**
+     * Number of shortcodes ranked.
+     */
+    private final int size;
+    /**
+     * The ranked shortcodes, least clicked first.
+     */
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(
+            Comparator.comparingLong(Candidate::clicks));
+    /**
+     * The ranked shortcodes, by sequence value.
+     */
+    private final Map<Long, Candidate> ranked = new HashMap<>();
+    /**
+     * Service whose near cache is warmed with the top shortcodes.
+     */
+    private final RedisService redisService;
+    /**
+     * Whether the top shortcodes are loaded into the near cache.
+     */
+    private final boolean prewarm;
+    /**
+     * Single thread running the decay.
+     */
+    private final ScheduledExecutorService decayer;
+
+    /**
+     * A ranked shortcode and its estimated clicks.
+     *
+     * @param codeId the shortcode sequence value
+     * @param clicks the estimated clicks
+     */
+    private record Candidate(long codeId, long clicks) {
+    }
+
+    /**
+     * Constructs a new {@code HotLinkTracker} and starts the decay.
+     *
+     * @param cacheService service whose near cache is warmed
+     * @param topSize number of shortcodes ranked
+     * @param sketchWidth counters per sketch row
+     * @param sketchDepth number of sketch rows
+     * @param decayInterval time after which counts are halved
+     * @param prewarmNearCache whether the top shortcodes are
+     *                         loaded into the near cache
+     */
+    public HotLinkTracker(final RedisService cacheService,
+                          @Value("${analytics.hot-links.size:100}")
+                          final int topSize,
+                          @Value("${analytics.hot-links.sketch-width:2048}")
+                          final int sketchWidth,
+                          @Value("${analytics.hot-links.sketch-depth:4}")
+                          final int sketchDepth,
+                          @Value("${analytics.hot-links.decay-interval:1m}")
+                          final Duration decayInterval,
+                          @Value("${analytics.hot-links.prewarm:true}")
+                          final boolean prewarmNearCache) {
+        this.redisService = cacheService;
+        this.size = topSize;
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.prewarm = prewarmNearCache;
+        this.decayer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("hot-links-%d")
+                        .setDaemon(true)
+                        .build());
+        long intervalMs = decayInterval.toMillis();
+        decayer.scheduleWithFixedDelay(this::decayAndPrewarm, intervalMs,
+                intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts clicks on many shortcodes.
+     *
+     * @param clicks the clicks, keyed by shortcode sequence value
+     */
+    public synchronized void addAll(final Map<Long, Long> clicks) {
+        clicks.forEach((codeId, count) ->
+                offer(codeId, sketch.add(codeId, count)));
+    }
+
+    /**
+     * Moves a shortcode into, or within, the ranking.
+     *
+     * @param codeId the shortcode sequence value
+     * @param estimate its new estimated clicks
+     */
+    private void offer(final long codeId, final long estimate) {
+        Candidate current = ranked.remove(codeId);
+        if (current != null) {
+            heap.remove(current);
+        } else if (heap.size() >= size) {
+            if (heap.isEmpty() || heap.peek().clicks() >= estimate) {
+                return;
+            }
+            ranked.remove(heap.poll().codeId());
+        }
+        Candidate candidate = new Candidate(codeId, estimate);
+        heap.add(candidate);
+        ranked.put(codeId, candidate);
+    }
+
+    /**
+     * Returns the most clicked shortcodes.
+     *
+     * @param limit the maximum number of shortcodes returned
+     * @return the shortcodes, most clicked first
+     */
+    public synchronized List<HotLink> top(final int limit) {
+        return heap.stream()
+                .sorted(Comparator.comparingLong(Candidate::clicks).reversed())
+                .limit(limit)
+                .map(candidate -> new HotLink(
+                        Base62Converter.encode(candidate.codeId()),
+                        candidate.clicks()))
+                .toList();
+    }
+
+    /**
+     * Halves all counts.
+     */
+    public synchronized void decay() {
+        sketch.halve();
+        List<Candidate> candidates = new ArrayList<>(heap);
+        heap.clear();
+        ranked.clear();
+        for (Candidate candidate : candidates) {
+            if (candidate.clicks() > 1) {
+                offer(candidate.codeId(), sketch.estimate(candidate.codeId()));
+            }
+        }
+    }
+
+    /**
+     * Decays the counts and warms the near cache with the top
+     * shortcodes, logging failures.
+     */
+    private void decayAndPrewarm() {
+        try {
+            decay();
+            if (prewarm) {
+                List<String> shortCodes = top(size).stream()
+                        .map(HotLink::shortCode)
+                        .toList();
+                if (!shortCodes.isEmpty()) {
+                    redisService.getAllFromCache(shortCodes);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Warming the near cache with hot links failed: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the decay.
+     */
+    @PreDestroy
+    public void shutdown() {
+        decayer.shutdownNow();
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * In-process near cache for shortcode to URL mappings.
+ * <p>
+ * This cache sits in front of {@link RedisService} so the
+ * hottest shortcodes are answered from the JVM heap without
+ * a network round trip. It is backed by Caffeine, whose
+ * W-TinyLFU eviction keeps frequently used codes even when a
+ * burst of one-off lookups passes through. Entries are bounded
+ * by count and expire after a fixed time, which also limits how
+ * long a missed cross-node invalidation can serve a stale URL.
+ * <p>
+ * With {@code cache.mapped.enabled}, a {@link MappedUrlStore}
+ * behind the heap cache keeps the mappings in memory-mapped
+ * files, off the heap, so they outlive a restart. It is only
+ * read by {@link #load(String)}, since a lookup in it may
+ * fault a page in from disk; {@link #get(String)} stays safe
+ * to call from an event loop.
+ * <p>
+ * Shortcodes invalidated on this node, or by another node
+ * over pub/sub, are remembered for
+ * {@link #RECENT_CHANGE_WINDOW}, so loads that would fill the
+ * caches again can read them from the primary rather than a
+ * replica that may not have replayed the change yet.
+ * <p>
+ * Hits, misses and evictions are published as the
+ * {@code cache.*} meters tagged {@code cache=url.local}.
+ *
+ * @see RedisService
+ * @see MappedUrlStore
+ * @see com.github.benmanes.caffeine.cache.Caffeine
+ */
+@Slf4j
+@Service
+public class LocalUrlCache implements MeterBinder {
+    /**
+     * Time a shortcode is reported as recently changed after an
+     * invalidation; far above the lag at which a replica is
+     * skipped plus the interval between lag checks.
+     */
+    private static final Duration RECENT_CHANGE_WINDOW = Duration.ofMinutes(1);
+    /**
+     * Maximum number of recently changed shortcodes remembered.
+     */
+    private static final long MAX_RECENT_CHANGES = 100_000;
+    /**
+     * Whether the near cache is used at all.
+     */
+    private final boolean enabled;
+    /**
+     * The underlying Caffeine cache.
+     */
+    private final Cache<String, String> cache;
+    /**
+     * The persistent tier, or {@code null} if it is disabled.
+     */
+    private final MappedUrlStore mappedStore;
+    /**
+     * Shortcodes invalidated within {@link #RECENT_CHANGE_WINDOW}.
+     */
+    private final Cache<String, Boolean> recentChanges = Caffeine.newBuilder()
+            .maximumSize(MAX_RECENT_CHANGES)
+            .expireAfterWrite(RECENT_CHANGE_WINDOW)
+            .build();
+
+    /**
+     * Constructs a new {@code LocalUrlCache}.
+     * <p>
+     * If the persistent tier cannot be opened, the cache
+     * runs without it.
+     *
+     * @param cacheEnabled whether lookups and stores are served locally
+     * @param maximumSize maximum number of entries kept
+     * @param ttl time after which an entry is dropped
+     * @param mappedEnabled whether the persistent tier is used
+     * @param mappedDirectory directory of the persistent tier
+     * @param mappedMaxEntries number of entries the persistent
+     *                         tier holds
+     * @param mappedMaxAge age after which an entry of the
+     *                     persistent tier is ignored
+     */
+    public LocalUrlCache(@Value("${cache.local.enabled:true}")
+                         final boolean cacheEnabled,
+                         @Value("${cache.local.maximum-size:100000}")
+                         final long maximumSize,
+                         @Value("${cache.local.ttl:5m}")
+                         final Duration ttl,
+                         @Value("${cache.mapped.enabled:false}")
+                         final boolean mappedEnabled,
+                         @Value("${cache.mapped.directory:data/url-cache}")
+                         final String mappedDirectory,
+                         @Value("${cache.mapped.max-entries:10000000}")
+                         final long mappedMaxEntries,
+                         @Value("${cache.mapped.max-age:1h}")
+                         final Duration mappedMaxAge) {
+        this.enabled = cacheEnabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.mappedStore = mappedEnabled ? openMappedStore(
+                Path.of(mappedDirectory), mappedMaxEntries, mappedMaxAge)
+                : null;
+        log.info("Local URL cache enabled={} size={} ttl={} mapped={}",
+                cacheEnabled, maximumSize, ttl, mappedStore != null);
+    }
+
+    /**
+     * Opens the persistent tier.
+     *
+     * @param directory directory of the files
+     * @param maxEntries number of entries held
+     * @param maxAge age after which an entry is ignored
+     * @return the store, or {@code null} if it cannot be opened
+     */
+    private static MappedUrlStore openMappedStore(final Path directory,
+                                                  final long maxEntries,
+                                                  final Duration maxAge) {
+        try {
+            return new MappedUrlStore(directory, maxEntries, maxAge);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Mapped URL store {} disabled: {}", directory,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Registers the Caffeine statistics of the cache.
+     *
+     * @param registry the registry to publish to
+     */
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "url.local");
+        if (mappedStore != null) {
+            mappedStore.bindTo(registry);
+        }
+    }
+
+    /**
+     * Returns the URL for a shortcode from the heap cache.
+     * <p>
+     * This never performs I/O.
+     *
+     * @param shortCode the shortcode to look up
+     * @return the URL, or {@code null} if not cached on the heap
+     */
+    public String get(final String shortCode) {
+        return enabled ? cache.getIfPresent(shortCode) : null;
+    }
+
+    /**
+     * Returns the URL for a shortcode from the heap cache or
+     * else from the persistent tier, keeping it on the heap.
+     *
+     * @param shortCode the shortcode to look up
+     * @return the URL, or {@code null} if not cached locally
+     */
+    public String load(final String shortCode) {
+        String url = get(shortCode);
+        if (url != null || mappedStore == null) {
+            return url;
+        }
+        url = mappedStore.get(shortCode);
+        if (url != null && enabled) {
+            cache.put(shortCode, url);
+        }
+        return url;
+    }
+
+    /**
+     * Caches a URL for a shortcode on this node only.
+     *
+     * @param shortCode the shortcode
+     * @param url the URL it resolves to
+     */
+    public void put(final String shortCode, final String url) {
+        if (enabled) {
+            cache.put(shortCode, url);
+        }
+        if (mappedStore != null) {
+            mappedStore.put(shortCode, url);
+        }
+    }
+
+    /**
+     * Drops a shortcode from this node's cache.
+     *
+     * @param shortCode the shortcode to drop
+     */
+    public void invalidate(final String shortCode) {
+        recentChanges.put(shortCode, Boolean.TRUE);
+        cache.invalidate(shortCode);
+        if (mappedStore != null) {
+            mappedStore.remove(shortCode);
+        }
+    }
+
+    /**
+     * Tells whether a shortcode was invalidated recently, which
+     * means its row was updated or deleted.
+     *
+     * @param shortCode the shortcode
+     * @return {@code true} if invalidated within
+     * {@link #RECENT_CHANGE_WINDOW}
+     */
+    public boolean isRecentlyChanged(final String shortCode) {
+        return recentChanges.getIfPresent(shortCode) != null;
+    }
+
+    /**
+     * Closes the persistent tier cleanly, so the next start
+     * maps its index as is.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (mappedStore != null) {
+            mappedStore.close();
+        }
+    }
+}
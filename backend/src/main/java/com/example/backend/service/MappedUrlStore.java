@@ -0,0 +1,1092 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.Base62Converter;
+import com.google.common.math.LongMath;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent, off-heap store of shortcode to URL mappings: the
+ * tier of {@link LocalUrlCache} that survives restarts.
+ * <p>
+ * Entries are keyed by the sequence value a shortcode decodes
+ * to. URLs are appended to a value log, {@code values.log}, as
+ * checksummed records; {@code index.dat} is an open-addressing
+ * hash table with linear probing whose 16-byte slots map a key
+ * to the offset and length of its latest record. Both files
+ * are memory-mapped, so the entries live in the page cache
+ * rather than on the JVM heap, and reading them takes no
+ * system call that an interrupted thread could abort.
+ * <p>
+ * Lookups take no lock: slots are published with release
+ * writes and read with acquire reads, and every record read is
+ * checked against its checksum and key. Writes are serialized;
+ * a URL already stored is not written again, and a removal
+ * appends a tombstone. Records older than {@code maxAge} are
+ * ignored, which bounds how long an invalidation missed while
+ * the instance was down can serve a stale URL.
+ * <p>
+ * The index header records whether the store was closed
+ * cleanly. The flag is cleared, and flushed, as soon as the
+ * store opens, and only set again by {@link #close()} once both
+ * files are flushed. After a clean shutdown the index is
+ * mapped as is, so the store is warm as soon as it opens;
+ * otherwise the index is rebuilt by replaying the log up to
+ * its first torn record. Each opening starts a new epoch,
+ * stamped on the records it writes, so records left behind a
+ * torn one by a crash are never replayed after newer ones.
+ * <p>
+ * Once more than half of the log is garbage, or the index is
+ * full of removed keys, a background thread copies the live
+ * records into new files while writes go on, replays the
+ * records appended meanwhile and swaps the files in with
+ * atomic renames.
+ *
+ * @see LocalUrlCache
+ */
+@Slf4j
+final class MappedUrlStore implements Closeable {
+    /**
+     * Name of the index file.
+     */
+    private static final String INDEX_FILE = "index.dat";
+    /**
+     * Name of the value log.
+     */
+    private static final String LOG_FILE = "values.log";
+    /**
+     * Suffix of the files written by a compaction.
+     */
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    /**
+     * Marks an index file of this store.
+     */
+    private static final long INDEX_MAGIC = 0x55524C4944580001L;
+    /**
+     * Marks a value log of this store.
+     */
+    private static final long LOG_MAGIC = 0x55524C4C4F470001L;
+    /**
+     * Size of the index header; slots start on the next page.
+     */
+    private static final int HEADER_BYTES = 4096;
+    /**
+     * Header offset of {@link #INDEX_MAGIC}.
+     */
+    private static final int MAGIC_OFFSET = 0;
+    /**
+     * Header offset of the clean shutdown flag.
+     */
+    private static final int CLEAN_OFFSET = 8;
+    /**
+     * Header offset of the current epoch.
+     */
+    private static final int EPOCH_OFFSET = 12;
+    /**
+     * Header offset of the number of slots.
+     */
+    private static final int SLOTS_OFFSET = 16;
+    /**
+     * Header offset of the length of the log.
+     */
+    private static final int LOG_END_OFFSET = 24;
+    /**
+     * Header offset of the number of live entries.
+     */
+    private static final int LIVE_ENTRIES_OFFSET = 32;
+    /**
+     * Header offset of the number of slots in use.
+     */
+    private static final int USED_SLOTS_OFFSET = 40;
+    /**
+     * Header offset of the bytes of live records.
+     */
+    private static final int LIVE_BYTES_OFFSET = 48;
+    /**
+     * Header offset of the checksum of the fields before it.
+     */
+    private static final int CHECKSUM_OFFSET = 56;
+    /**
+     * Size of a slot: the key plus one, and the record reference.
+     */
+    private static final int SLOT_BYTES = 16;
+    /**
+     * Largest number of slots, 2^26, so the index fits one mapping.
+     */
+    private static final long MAX_SLOTS = 67_108_864L;
+    /**
+     * Share of the slots that may be used, in percent.
+     */
+    private static final int MAX_LOAD_PERCENT = 75;
+    /**
+     * Denominator of a percentage.
+     */
+    private static final int PERCENT = 100;
+    /**
+     * Multiplier spreading sequential keys over the slots.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /**
+     * Size of the log header, holding {@link #LOG_MAGIC}.
+     */
+    private static final int LOG_HEADER_BYTES = 8;
+    /**
+     * Bits of a log offset mapped at once.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+    /**
+     * Size of a mapped log segment.
+     */
+    private static final int SEGMENT_BYTES = 1 << SEGMENT_SHIFT;
+    /**
+     * Size of a record header: checksum, URL length, epoch,
+     * key and write time.
+     */
+    private static final int RECORD_HEADER_BYTES = 28;
+    /**
+     * Record offset of the URL length.
+     */
+    private static final int LENGTH_FIELD = 4;
+    /**
+     * Record offset of the epoch.
+     */
+    private static final int EPOCH_FIELD = 8;
+    /**
+     * Record offset of the key.
+     */
+    private static final int KEY_FIELD = 12;
+    /**
+     * Record offset of the write time, in epoch milliseconds.
+     */
+    private static final int WRITTEN_AT_FIELD = 20;
+    /**
+     * Bits of a record reference holding the URL length; the
+     * others hold the record offset.
+     */
+    private static final int LENGTH_BITS = 24;
+    /**
+     * Longest URL stored, in bytes.
+     */
+    private static final int MAX_URL_BYTES = 65_536;
+    /**
+     * Log length below which the log is never compacted.
+     */
+    private static final long MIN_COMPACTION_BYTES = 64L * 1024 * 1024;
+    /**
+     * Atomic, native-order view of the index slots.
+     */
+    private static final VarHandle SLOTS = MethodHandles
+            .byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Directory holding the files.
+     */
+    private final Path directory;
+    /**
+     * Number of index slots, as a power of two exponent.
+     */
+    private final int slotBits;
+    /**
+     * Age after which a record is ignored, in milliseconds.
+     */
+    private final long maxAgeMillis;
+    /**
+     * Serializes writes and the swap of a compaction.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Whether a compaction is scheduled or running.
+     */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    /**
+     * Thread running compactions.
+     */
+    private final ExecutorService compactor;
+    /**
+     * Number of lookups answered.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Number of lookups not answered.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The files in use.
+     */
+    private volatile Generation current;
+    /**
+     * Whether {@link #close()} was called.
+     */
+    private boolean closed;
+
+    /**
+     * Opens, or creates, the store in a directory.
+     *
+     * @param storeDirectory directory holding the files
+     * @param maxEntries number of entries the index must hold
+     * @param maxAge age after which an entry is ignored
+     * @throws IOException if the files cannot be opened
+     * @throws IllegalArgumentException if the index for
+     * {@code maxEntries} would not fit one mapping
+     */
+    MappedUrlStore(final Path storeDirectory, final long maxEntries,
+                   final Duration maxAge) throws IOException {
+        long slots = LongMath.ceilingPowerOfTwo(Math.max(2,
+                maxEntries * PERCENT / MAX_LOAD_PERCENT));
+        if (slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("At most "
+                    + MAX_SLOTS * MAX_LOAD_PERCENT / PERCENT
+                    + " entries can be stored, not " + maxEntries);
+        }
+        this.directory = storeDirectory;
+        this.slotBits = Long.numberOfTrailingZeros(slots);
+        this.maxAgeMillis = maxAge.toMillis();
+        Files.createDirectories(storeDirectory);
+        long started = System.nanoTime();
+        Generation opened = open(storeDirectory.resolve(INDEX_FILE),
+                storeDirectory.resolve(LOG_FILE), slotBits);
+        writeHeader(opened, false);
+        this.current = opened;
+        this.compactor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("mapped-url-store-compactor")
+                        .setDaemon(true)
+                        .build());
+        log.info("Opened mapped URL store {} with {} entries in {} ms",
+                storeDirectory, opened.liveEntries, TimeUnit.NANOSECONDS
+                        .toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Publishes the size of the store and its hits and misses.
+     *
+     * @param registry the registry to publish to
+     */
+    void bindTo(final MeterRegistry registry) {
+        Gauge.builder("cache.mapped.entries", this,
+                        store -> store.current.liveEntries)
+                .description("Entries in the mapped URL store")
+                .register(registry);
+        Gauge.builder("cache.mapped.log.size", this,
+                        store -> store.current.logEnd)
+                .description("Length of the value log")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("cache.mapped.gets", hits, LongAdder::sum)
+                .description("Lookups in the mapped URL store")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.mapped.gets", misses, LongAdder::sum)
+                .description("Lookups in the mapped URL store")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    /**
+     * Returns the stored URL for a shortcode.
+     *
+     * @param shortCode the shortcode to look up
+     * @return the URL, or {@code null} if it is not stored or
+     * is older than the maximum age
+     */
+    String get(final String shortCode) {
+        long key = keyOf(shortCode);
+        byte[] url = null;
+        if (key >= 0) {
+            Generation generation = current;
+            url = readUrl(generation, key, find(generation, key),
+                    System.currentTimeMillis());
+        }
+        if (url == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new String(url, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stores the URL of a shortcode, unless the same URL is
+     * already stored. Shortcodes that are not canonical Base62
+     * codes, and URLs longer than the store accepts, are skipped.
+     *
+     * @param shortCode the shortcode
+     * @param url the URL it resolves to
+     */
+    void put(final String shortCode, final String url) {
+        long key = keyOf(shortCode);
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if (key < 0 || bytes.length == 0 || bytes.length > MAX_URL_BYTES) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        writeLock.lock();
+        try {
+            Generation generation = current;
+            if (closed || Arrays.equals(bytes, readUrl(generation, key,
+                    find(generation, key), now))) {
+                return;
+            }
+            long ref = append(generation, encode(key, now,
+                    generation.epoch, bytes));
+            if (!setSlot(generation, key, ref)) {
+                log.debug("Mapped URL store is full, skipped {}", shortCode);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store {}: {}", shortCode, e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes a shortcode, appending a tombstone so the removal
+     * also holds after the index is rebuilt.
+     *
+     * @param shortCode the shortcode to remove
+     */
+    void remove(final String shortCode) {
+        long key = keyOf(shortCode);
+        if (key < 0) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            Generation generation = current;
+            if (closed || find(generation, key) == 0) {
+                return;
+            }
+            append(generation, encode(key, System.currentTimeMillis(),
+                    generation.epoch, new byte[0]));
+            setSlot(generation, key, 0);
+        } catch (IOException e) {
+            log.warn("Failed to remove {}: {}", shortCode, e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a running compaction, flushes both files and
+     * marks the index as cleanly closed.
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Compaction still running, closing anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Generation generation = current;
+            for (MappedByteBuffer segment : generation.segments) {
+                segment.force();
+            }
+            generation.index.force();
+            writeHeader(generation, true);
+            log.info("Closed mapped URL store {} with {} entries", directory,
+                    generation.liveEntries);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the store without its garbage.
+     * <p>
+     * The live records are copied to new files without holding
+     * the write lock; the records appended meanwhile are then
+     * replayed into them under the lock, before they replace
+     * the current files.
+     *
+     * @throws IOException if the new files cannot be written
+     */
+    void compact() throws IOException {
+        Generation old = current;
+        long copiedUpTo = old.logEnd;
+        Path indexPath = directory.resolve(INDEX_FILE);
+        Path logPath = directory.resolve(LOG_FILE);
+        Path newIndex = directory.resolve(INDEX_FILE + COMPACTING_SUFFIX);
+        Path newLog = directory.resolve(LOG_FILE + COMPACTING_SUFFIX);
+        Files.deleteIfExists(newIndex);
+        Files.deleteIfExists(newLog);
+        Generation next = open(newIndex, newLog, slotBits);
+        next.epoch = old.epoch;
+        long now = System.currentTimeMillis();
+        for (long slot = 0; slot < 1L << slotBits; slot++) {
+            int position = HEADER_BYTES + (int) slot * SLOT_BYTES;
+            long stored = (long) SLOTS.getAcquire(old.index, position);
+            long ref = (long) SLOTS.getAcquire(old.index,
+                    position + Long.BYTES);
+            if (stored != 0 && ref != 0 && offsetOf(ref) < copiedUpTo) {
+                copy(old, next, stored - 1, ref, now);
+            }
+        }
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            long replayedAt = System.currentTimeMillis();
+            scan(old, copiedUpTo, old.logEnd, (key, ref, record) -> {
+                copy(old, next, key, ref, replayedAt);
+                return true;
+            });
+            for (MappedByteBuffer segment : next.segments) {
+                segment.force();
+            }
+            writeHeader(next, false);
+            Files.move(newLog, logPath, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.move(newIndex, indexPath, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            next.logPath = logPath;
+            current = next;
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Compacted mapped URL store from {} to {} bytes", old.logEnd,
+                next.logEnd);
+    }
+
+    /**
+     * Schedules a compaction if the log holds mostly garbage, or
+     * the index is full and holds removed keys.
+     */
+    private void compactIfNeeded() {
+        Generation generation = current;
+        boolean logWasted = generation.logEnd > MIN_COMPACTION_BYTES
+                && generation.logEnd / 2 > generation.liveBytes;
+        boolean indexWasted = generation.usedSlots >= generation.maxUsedSlots
+                && generation.liveEntries < generation.usedSlots;
+        if ((logWasted || indexWasted) && compacting.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Mapped URL store compaction failed: {}",
+                            e.getMessage());
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies a record, stamped with the current epoch, to the
+     * new files of a compaction.
+     *
+     * @param from the files compacted
+     * @param to the new files
+     * @param key the key of the record
+     * @param ref the reference of the record
+     * @param now the current time
+     * @throws IOException if the record cannot be written
+     */
+    private void copy(final Generation from, final Generation to,
+                      final long key, final long ref, final long now)
+            throws IOException {
+        if (ref == 0) {
+            if (find(to, key) != 0) {
+                append(to, encode(key, now, to.epoch, new byte[0]));
+                setSlot(to, key, 0);
+            }
+            return;
+        }
+        ByteBuffer record = ByteBuffer.wrap(readRecord(from, ref));
+        if (record.getLong(KEY_FIELD) != key || !isIntact(record)
+                || isExpired(record, now)) {
+            return;
+        }
+        byte[] url = Arrays.copyOfRange(record.array(), RECORD_HEADER_BYTES,
+                record.capacity());
+        setSlot(to, key, append(to, encode(key,
+                record.getLong(WRITTEN_AT_FIELD), to.epoch, url)));
+    }
+
+    /**
+     * Opens an index and its log, rebuilding the index from the
+     * log unless it was closed cleanly.
+     *
+     * @param indexPath the index file
+     * @param logPath the log file
+     * @param bits number of index slots, as a power of two exponent
+     * @return the opened files, with a new epoch
+     * @throws IOException if the files cannot be opened
+     */
+    private static Generation open(final Path indexPath, final Path logPath,
+                                   final int bits) throws IOException {
+        MappedByteBuffer firstSegment = mapSegment(logPath, 0);
+        boolean logIntact = firstSegment.getLong(0) == LOG_MAGIC;
+        if (!logIntact) {
+            firstSegment.putLong(0, LOG_MAGIC);
+        }
+        long indexBytes = HEADER_BYTES + ((long) SLOT_BYTES << bits);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .order(ByteOrder.nativeOrder());
+        boolean clean;
+        MappedByteBuffer index;
+        try (FileChannel channel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() == indexBytes) {
+                channel.read(header, 0);
+            }
+            clean = logIntact && isValid(header, bits)
+                    && header.getInt(CLEAN_OFFSET) == 1;
+            if (!clean) {
+                channel.truncate(0);
+            }
+            index = channel.map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+            index.order(ByteOrder.nativeOrder());
+        }
+        Generation generation = new Generation(index, bits, logPath);
+        generation.segments = new MappedByteBuffer[] {firstSegment};
+        if (clean) {
+            generation.epoch = header.getInt(EPOCH_OFFSET) + 1;
+            generation.logEnd = header.getLong(LOG_END_OFFSET);
+            generation.liveEntries = header.getLong(LIVE_ENTRIES_OFFSET);
+            generation.usedSlots = header.getLong(USED_SLOTS_OFFSET);
+            generation.liveBytes = header.getLong(LIVE_BYTES_OFFSET);
+            ensureMapped(generation, generation.logEnd);
+        } else {
+            ensureMapped(generation, Files.size(logPath));
+            recover(generation);
+        }
+        return generation;
+    }
+
+    /**
+     * Rebuilds an empty index by replaying its whole log, and
+     * cuts the log at its first torn record.
+     *
+     * @param generation the files to recover
+     * @throws IOException if the log cannot be read
+     */
+    private static void recover(final Generation generation)
+            throws IOException {
+        int[] lastEpoch = {0};
+        generation.logEnd = scan(generation, LOG_HEADER_BYTES, Long.MAX_VALUE,
+                (key, ref, record) -> {
+                    int recordEpoch = record.getInt(EPOCH_FIELD);
+                    if (recordEpoch < lastEpoch[0]) {
+                        return false;
+                    }
+                    lastEpoch[0] = recordEpoch;
+                    setSlot(generation, key, ref);
+                    return true;
+                });
+        generation.epoch = lastEpoch[0] + 1;
+        if (generation.logEnd > LOG_HEADER_BYTES) {
+            log.info("Rebuilt mapped URL store index from {} bytes of log",
+                    generation.logEnd);
+        }
+    }
+
+    /**
+     * Reads the intact records of a log in order.
+     *
+     * @param generation the files to read
+     * @param from offset of the first record
+     * @param to offset at which to stop
+     * @param visitor called for each record; replaying stops
+     *                when it returns {@code false}
+     * @return the offset after the last record visited
+     * @throws IOException if a visitor fails
+     */
+    private static long scan(final Generation generation, final long from,
+                             final long to, final RecordVisitor visitor)
+            throws IOException {
+        long position = from;
+        byte[] header = new byte[RECORD_HEADER_BYTES];
+        while (position + RECORD_HEADER_BYTES <= Math.min(to,
+                mappedBytes(generation))) {
+            read(generation, position, header);
+            int length = ByteBuffer.wrap(header).getInt(LENGTH_FIELD);
+            long end = position + RECORD_HEADER_BYTES + length;
+            if (length < 0 || length > MAX_URL_BYTES
+                    || end > mappedBytes(generation)) {
+                break;
+            }
+            long ref = position << LENGTH_BITS | length;
+            ByteBuffer record = ByteBuffer.wrap(readRecord(generation, ref));
+            if (!isIntact(record) || !visitor.visit(
+                    record.getLong(KEY_FIELD), length == 0 ? 0 : ref, record)) {
+                break;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    /**
+     * Appends a record to a log.
+     *
+     * @param generation the files to write
+     * @param record the encoded record
+     * @return the reference of the record
+     * @throws IOException if the log cannot be extended
+     */
+    private static long append(final Generation generation,
+                               final byte[] record) throws IOException {
+        long offset = generation.logEnd;
+        ensureMapped(generation, offset + record.length);
+        int done = 0;
+        while (done < record.length) {
+            long position = offset + done;
+            int at = (int) (position & (SEGMENT_BYTES - 1));
+            int length = Math.min(record.length - done, SEGMENT_BYTES - at);
+            generation.segments[(int) (position >>> SEGMENT_SHIFT)]
+                    .put(at, record, done, length);
+            done += length;
+        }
+        generation.logEnd = offset + record.length;
+        return offset << LENGTH_BITS | record.length - RECORD_HEADER_BYTES;
+    }
+
+    /**
+     * Returns the URL of a record if it is intact, belongs to
+     * the key and is not expired.
+     *
+     * @param generation the files to read
+     * @param key the key looked up
+     * @param ref the reference found in the index, or 0
+     * @param now the current time
+     * @return the URL bytes, or {@code null}
+     */
+    private byte[] readUrl(final Generation generation, final long key,
+                           final long ref, final long now) {
+        if (ref == 0) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.wrap(readRecord(generation, ref));
+        if (record.getLong(KEY_FIELD) != key || !isIntact(record)
+                || isExpired(record, now)) {
+            return null;
+        }
+        return Arrays.copyOfRange(record.array(), RECORD_HEADER_BYTES,
+                record.capacity());
+    }
+
+    /**
+     * Tells whether a record is older than the maximum age.
+     *
+     * @param record the record
+     * @param now the current time
+     * @return {@code true} if the record should be ignored
+     */
+    private boolean isExpired(final ByteBuffer record, final long now) {
+        return now - record.getLong(WRITTEN_AT_FIELD) > maxAgeMillis;
+    }
+
+    /**
+     * Reads the record a reference points to.
+     *
+     * @param generation the files to read
+     * @param ref the reference
+     * @return the record bytes
+     */
+    private static byte[] readRecord(final Generation generation,
+                                     final long ref) {
+        byte[] record = new byte[RECORD_HEADER_BYTES
+                + (int) (ref & (1 << LENGTH_BITS) - 1)];
+        read(generation, offsetOf(ref), record);
+        return record;
+    }
+
+    /**
+     * Copies bytes of a log, across segments if needed.
+     *
+     * @param generation the files to read
+     * @param offset the log offset to read from
+     * @param target the array to fill
+     */
+    private static void read(final Generation generation, final long offset,
+                             final byte[] target) {
+        MappedByteBuffer[] segments = generation.segments;
+        int done = 0;
+        while (done < target.length) {
+            long position = offset + done;
+            int at = (int) (position & (SEGMENT_BYTES - 1));
+            int length = Math.min(target.length - done, SEGMENT_BYTES - at);
+            segments[(int) (position >>> SEGMENT_SHIFT)]
+                    .get(at, target, done, length);
+            done += length;
+        }
+    }
+
+    /**
+     * Maps log segments until the log can hold {@code end} bytes.
+     *
+     * @param generation the files to extend
+     * @param end the length needed
+     * @throws IOException if the log cannot be extended
+     */
+    private static void ensureMapped(final Generation generation,
+                                     final long end) throws IOException {
+        MappedByteBuffer[] segments = generation.segments;
+        while (mappedBytes(generation) < end) {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segments.length - 1] = mapSegment(generation.logPath,
+                    segments.length - 1);
+            generation.segments = segments;
+        }
+    }
+
+    /**
+     * Maps one segment of a log, extending the file if needed.
+     *
+     * @param logPath the log file
+     * @param segment the index of the segment
+     * @return the mapped segment
+     * @throws IOException if the segment cannot be mapped
+     */
+    private static MappedByteBuffer mapSegment(final Path logPath,
+                                               final int segment)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(logPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE,
+                    (long) segment << SEGMENT_SHIFT, SEGMENT_BYTES);
+        }
+    }
+
+    /**
+     * Returns the bytes of log mapped.
+     *
+     * @param generation the files
+     * @return the mapped length
+     */
+    private static long mappedBytes(final Generation generation) {
+        return (long) generation.segments.length << SEGMENT_SHIFT;
+    }
+
+    /**
+     * Finds the record reference of a key.
+     *
+     * @param generation the files to search
+     * @param key the key
+     * @return the reference, or 0 if the key is absent or removed
+     */
+    private static long find(final Generation generation, final long key) {
+        int position = probe(generation, key);
+        if (position < 0
+                || (long) SLOTS.getAcquire(generation.index, position) == 0) {
+            return 0;
+        }
+        return (long) SLOTS.getAcquire(generation.index, position + Long.BYTES);
+    }
+
+    /**
+     * Points the slot of a key at a record, or marks the key
+     * removed, and keeps the counts of the index up to date.
+     *
+     * @param generation the files to update
+     * @param key the key
+     * @param ref the record reference, or 0 to remove the key
+     * @return {@code false} if the key is new and the index is full
+     */
+    private static boolean setSlot(final Generation generation,
+                                   final long key, final long ref) {
+        int position = probe(generation, key);
+        if (position < 0) {
+            return false;
+        }
+        long previous = 0;
+        if ((long) SLOTS.getAcquire(generation.index, position) == 0) {
+            if (ref == 0) {
+                return true;
+            }
+            if (generation.usedSlots >= generation.maxUsedSlots) {
+                return false;
+            }
+            SLOTS.setRelease(generation.index, position + Long.BYTES, ref);
+            SLOTS.setRelease(generation.index, position, key + 1);
+            generation.usedSlots++;
+        } else {
+            previous = (long) SLOTS.getAcquire(generation.index,
+                    position + Long.BYTES);
+            SLOTS.setRelease(generation.index, position + Long.BYTES, ref);
+        }
+        if (previous != 0) {
+            generation.liveEntries--;
+            generation.liveBytes -= recordBytes(previous);
+        }
+        if (ref != 0) {
+            generation.liveEntries++;
+            generation.liveBytes += recordBytes(ref);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of the slot holding a key, or of the
+     * empty slot ending its probe sequence.
+     *
+     * @param generation the files to search
+     * @param key the key
+     * @return the byte position of the slot, or -1 if every
+     * slot holds another key
+     */
+    private static int probe(final Generation generation, final long key) {
+        long stored = key + 1;
+        int mask = (1 << generation.slotBits) - 1;
+        int slot = (int) (stored * GOLDEN_GAMMA
+                >>> Long.SIZE - generation.slotBits);
+        for (int i = 0; i <= mask; i++) {
+            int position = HEADER_BYTES + ((slot + i) & mask) * SLOT_BYTES;
+            long found = (long) SLOTS.getAcquire(generation.index, position);
+            if (found == stored || found == 0) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the header of an index and flushes it.
+     *
+     * @param generation the files whose header is written
+     * @param clean whether the store is closed cleanly
+     */
+    private static void writeHeader(final Generation generation,
+                                    final boolean clean) {
+        MappedByteBuffer index = generation.index;
+        index.putLong(MAGIC_OFFSET, INDEX_MAGIC)
+                .putInt(CLEAN_OFFSET, clean ? 1 : 0)
+                .putInt(EPOCH_OFFSET, generation.epoch)
+                .putLong(SLOTS_OFFSET, 1L << generation.slotBits)
+                .putLong(LOG_END_OFFSET, generation.logEnd)
+                .putLong(LIVE_ENTRIES_OFFSET, generation.liveEntries)
+                .putLong(USED_SLOTS_OFFSET, generation.usedSlots)
+                .putLong(LIVE_BYTES_OFFSET, generation.liveBytes)
+                .putLong(CHECKSUM_OFFSET, headerChecksum(index));
+        index.force(0, HEADER_BYTES);
+    }
+
+    /**
+     * Tells whether an index header is intact and matches the
+     * expected number of slots.
+     *
+     * @param header the header read
+     * @param bits number of index slots, as a power of two exponent
+     * @return {@code true} if the header can be trusted
+     */
+    private static boolean isValid(final ByteBuffer header, final int bits) {
+        return header.getLong(MAGIC_OFFSET) == INDEX_MAGIC
+                && header.getLong(SLOTS_OFFSET) == 1L << bits
+                && header.getLong(CHECKSUM_OFFSET) == headerChecksum(header);
+    }
+
+    /**
+     * Computes the checksum of the header fields.
+     *
+     * @param header the header
+     * @return the checksum
+     */
+    private static long headerChecksum(final ByteBuffer header) {
+        CRC32C crc = new CRC32C();
+        crc.update(header.slice(0, CHECKSUM_OFFSET));
+        return crc.getValue();
+    }
+
+    /**
+     * Encodes a record.
+     *
+     * @param key the key
+     * @param writtenAt the write time, in epoch milliseconds
+     * @param recordEpoch the epoch of the writer
+     * @param url the URL bytes, empty for a tombstone
+     * @return the record bytes
+     */
+    private static byte[] encode(final long key, final long writtenAt,
+                                 final int recordEpoch, final byte[] url) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + url.length)
+                .putInt(0)
+                .putInt(url.length)
+                .putInt(recordEpoch)
+                .putLong(key)
+                .putLong(writtenAt)
+                .put(url);
+        record.putInt(0, recordChecksum(record.array()));
+        return record.array();
+    }
+
+    /**
+     * Tells whether a record matches its checksum.
+     *
+     * @param record the record
+     * @return {@code true} if the record is intact
+     */
+    private static boolean isIntact(final ByteBuffer record) {
+        return record.getInt(0) == recordChecksum(record.array());
+    }
+
+    /**
+     * Computes the checksum of a record, which covers every
+     * byte after the checksum itself.
+     *
+     * @param record the record bytes
+     * @return the checksum
+     */
+    private static int recordChecksum(final byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record, Integer.BYTES, record.length - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the log offset of a record reference.
+     *
+     * @param ref the reference
+     * @return the offset
+     */
+    private static long offsetOf(final long ref) {
+        return ref >>> LENGTH_BITS;
+    }
+
+    /**
+     * Returns the size of the record a reference points to.
+     *
+     * @param ref the reference
+     * @return the record size in bytes
+     */
+    private static long recordBytes(final long ref) {
+        return RECORD_HEADER_BYTES + (ref & (1 << LENGTH_BITS) - 1);
+    }
+
+    /**
+     * Returns the key of a shortcode.
+     * <p>
+     * Only canonical codes are keyed, since a code with leading
+     * zero digits decodes to the same value as the code
+     * without them.
+     *
+     * @param shortCode the shortcode
+     * @return the decoded value, or -1 if the shortcode is not
+     * a canonical Base62 code
+     */
+    private static long keyOf(final String shortCode) {
+        if (!Base62Converter.isCanonical(shortCode)) {
+            return -1;
+        }
+        return Base62Converter.decode(shortCode);
+    }
+
+    /**
+     * Callback of {@link #scan}.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /**
+         * Visits an intact record.
+         *
+         * @param key the key of the record
+         * @param ref the reference of the record, or 0 for a
+         *            tombstone
+         * @param record the record bytes
+         * @return {@code false} to stop the scan here
+         * @throws IOException if the record cannot be processed
+         */
+        boolean visit(long key, long ref, ByteBuffer record)
+                throws IOException;
+    }
+
+    /**
+     * An index file, its log and their counts.
+     */
+    private static final class Generation {
+        /**
+         * The mapped index file.
+         */
+        private final MappedByteBuffer index;
+        /**
+         * Number of slots, as a power of two exponent.
+         */
+        private final int slotBits;
+        /**
+         * Number of slots that may be used.
+         */
+        private final long maxUsedSlots;
+        /**
+         * The log file.
+         */
+        private Path logPath;
+        /**
+         * The mapped segments of the log.
+         */
+        private volatile MappedByteBuffer[] segments;
+        /**
+         * Epoch of the last opening of these files.
+         */
+        private int epoch;
+        /**
+         * Offset after the last record.
+         */
+        private volatile long logEnd;
+        /**
+         * Number of keys with a record.
+         */
+        private volatile long liveEntries;
+        /**
+         * Number of slots holding a key, removed or not.
+         */
+        private volatile long usedSlots;
+        /**
+         * Bytes of the records the index points to.
+         */
+        private volatile long liveBytes;
+
+        /**
+         * Creates the files of a generation.
+         *
+         * @param mappedIndex the mapped index file
+         * @param bits number of slots, as a power of two exponent
+         * @param log the log file
+         */
+        private Generation(final MappedByteBuffer mappedIndex, final int bits,
+                           final Path log) {
+            this.index = mappedIndex;
+            this.slotBits = bits;
+            this.maxUsedSlots = (1L << bits) * MAX_LOAD_PERCENT / PERCENT;
+            this.logPath = log;
+        }
+    }
+}
@@ -26,10 +26,17 @@ public class RedirectService extends BaseUrlService {
      * with the required dependencies.
      * @param shortUrlRepository repository for accessing short URL data
      * @param redisService service for cache operations
+     * @param accessCountBuffer buffer for access counts
+     * @param shortUrlLoader loader for cache misses
+     * @param resolveMetrics timers of resolutions
      */
     public RedirectService(ShortUrlRepository shortUrlRepository,
-                           RedisService redisService) {
-        super(shortUrlRepository, redisService);
+                           RedisService redisService,
+                           AccessCountBuffer accessCountBuffer,
+                           ShortUrlLoader shortUrlLoader,
+                           ResolveMetrics resolveMetrics) {
+        super(shortUrlRepository, redisService, accessCountBuffer,
+                shortUrlLoader, resolveMetrics);
     }
 
     /**
@@ -48,4 +55,15 @@ public class RedirectService extends BaseUrlService {
     public String getOriginalUrl(String shortCode) {
         return resolveUrl(shortCode, false);
     }
+
+    /**
+     * Retrieves the original URL if it is held in the
+     * local near cache, without any I/O.
+     *
+     * @param shortCode the shortcode to resolve
+     * @return the original URL, or {@code null} on a local miss
+     */
+    public String getCachedOriginalUrl(String shortCode) {
+        return resolveLocalUrl(shortCode);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.example.backend.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves shortcode entries from string keys into the buckets of
+ * the {@link UrlCacheLayout}.
+ * <p>
+ * When {@code cache.redis.migrate.enabled} is on and the layout
+ * is bucketed, every instance scans the string keys of Redis
+ * once the application is ready, on a background thread, and
+ * moves those of canonical shortcodes a batch at a time with
+ * {@link RedisService#moveToBuckets(java.util.List)}. Each key
+ * is only moved if it still holds the URL read, so the scan
+ * can run on several instances and next to live writes. With
+ * several shards, keys whose bucket lives on another shard
+ * than the key are moved across, without ever overwriting
+ * what the bucket's shard holds for the shortcode.
+ * <p>
+ * The switch to buckets is done in three steps: deploy
+ * {@code cache.redis.layout=buckets} with
+ * {@code cache.redis.dual-read=true}, so entries written by
+ * the strings layout are still read; enable the migration
+ * until {@code cache.redis.migrated} stops growing; then turn
+ * dual reads off. Entries not moved expire on their own, so
+ * the migration only saves the misses they would cause.
+ *
+ * @see RedisService#scanStringKeys(int, java.util.function.Consumer)
+ */
+@Slf4j
+@Service
+public class RedisLayoutMigrator {
+    /**
+     * Number of keys scanned and moved per round trip.
+     */
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * Service holding the entries.
+     */
+    private final RedisService redisService;
+    /**
+     * Layout the entries are moved to.
+     */
+    private final UrlCacheLayout layout;
+    /**
+     * Whether entries are moved at startup.
+     */
+    private final boolean enabled;
+    /**
+     * Entries moved into buckets.
+     */
+    private final Counter migrated;
+    /**
+     * Thread running the migration.
+     */
+    private final ExecutorService migrator;
+
+    /**
+     * Constructs a new {@code RedisLayoutMigrator}.
+     *
+     * @param cacheService service holding the entries
+     * @param cacheLayout layout the entries are moved to
+     * @param meterRegistry registry of the migration counter
+     * @param migrate whether entries are moved at startup
+     */
+    public RedisLayoutMigrator(final RedisService cacheService,
+                               final UrlCacheLayout cacheLayout,
+                               final MeterRegistry meterRegistry,
+                               @Value("${cache.redis.migrate.enabled:false}")
+                               final boolean migrate) {
+        this.redisService = cacheService;
+        this.layout = cacheLayout;
+        this.enabled = migrate;
+        this.migrated = Counter.builder("cache.redis.migrated")
+                .description("Entries moved from string keys into buckets")
+                .register(meterRegistry);
+        this.migrator = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("redis-layout-migrator-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Starts the migration in the background, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled && layout.isBucketed()) {
+            migrator.execute(this::migrateQuietly);
+        }
+    }
+
+    /**
+     * Moves every string key of a canonical shortcode into
+     * its bucket.
+     *
+     * @return the number of keys moved
+     * @throws CancellationException if the thread is interrupted
+     */
+    public long migrate() {
+        AtomicLong moved = new AtomicLong();
+        redisService.scanStringKeys(BATCH_SIZE, keys -> {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Migration interrupted");
+            }
+            int count = redisService.moveToBuckets(keys);
+            migrated.increment(count);
+            moved.addAndGet(count);
+        });
+        return moved.get();
+    }
+
+    /**
+     * Runs the migration, logging instead of throwing failures.
+     */
+    private void migrateQuietly() {
+        long start = System.nanoTime();
+        try {
+            long moved = migrate();
+            log.info("Moved {} Redis entries into buckets in {} ms", moved,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (DataAccessException | CancellationException e) {
+            log.warn("Moving Redis entries into buckets stopped: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the migration.
+     */
+    @PreDestroy
+    public void shutdown() {
+        migrator.shutdownNow();
+    }
+}
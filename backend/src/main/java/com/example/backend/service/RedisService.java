@@ -1,9 +1,36 @@
 package com.example.backend.service;
+import com.example.backend.service.RedisShards.Shard;
+import com.example.backend.utils.Base62Converter;
+import com.google.common.collect.Iterables;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Service class for interacting with Redis as a caching layer.
@@ -12,54 +39,1309 @@ import java.util.concurrent.TimeUnit;
  * and delete data in Redis. It uses the
  * {@link StringRedisTemplate} to interact with Redis and
  * supports time-to-live (TTL) for cache entries.
+ * <p>
+ * Reads are served from the {@link LocalUrlCache} first and
+ * only go to Redis on a local miss. Deletions are broadcast
+ * on a Redis pub/sub channel so every node drops its local
+ * copy; see {@link com.example.backend.config.RedisConfig}.
+ * <p>
+ * Shortcodes known not to exist are cached for a short time
+ * as the {@link #MISSING} marker, so repeated lookups of a
+ * deleted or mistyped shortcode do not reach the database.
+ * <p>
+ * Entries are string keys or fields of bucketed hashes,
+ * as decided by the {@link UrlCacheLayout}; markers are
+ * always string keys.
+ * <p>
+ * Entries are spread over the {@link RedisShards}, placed by
+ * shortcode or, when bucketed, by bucket; batches are split
+ * into one pipeline per shard, sent one after the other.
+ * Since a bucket may land on another shard than the string
+ * key the strings layout wrote for the same shortcode, dual
+ * reads that find nothing on the bucket's shard read the
+ * string key from the shard of the shortcode, and
+ * {@link #moveToBuckets} moves such keys across shards.
+ * A shard that is down is skipped: reads miss and writes are
+ * dropped, so lookups fall back to the database; the entries
+ * of dropped writes are evicted from the node before it is
+ * used again, see {@link #evictStale}. Everything
+ * else, such as leases, analytics and pub/sub, goes to the
+ * primary Redis server.
+ * <p>
+ * Every Redis call is timed by {@code cache.redis.operation},
+ * tagged with {@code op=get|get_batch|set|set_batch|lease|publish};
+ * click analytics hashes and HyperLogLogs count as
+ * {@code get_batch} and {@code set_batch}.
  *
  * @see org.springframework.data.redis.core.StringRedisTemplate
+ * @see LocalUrlCache
  */
 @Service
 public final class RedisService {
     /**
-     * Template for operations with redis.
+     * Cached value marking a shortcode that does not exist.
+     */
+    public static final String MISSING = "";
+    /**
+     * Number of keys deleted per round trip when evicting stale
+     * entries from a node.
+     */
+    private static final int EVICTION_BATCH_SIZE = 1000;
+    /**
+     * Deletes a key only if it still holds a value: a lease
+     * still holding the token of its holder, so a holder whose
+     * lease expired cannot delete the lease another node took
+     * since, or a string key still holding the URL moved into
+     * a bucket on another shard.
+     */
+    private static final String DELETE_IF_HOLDS_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """;
+    /**
+     * Deletes a hash field only if it still holds the value
+     * read, so a field set again since is kept.
+     */
+    private static final String DELETE_HASH_FIELD_SCRIPT = """
+            if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then
+              return redis.call('HDEL', KEYS[1], ARGV[1])
+            end
+            return 0
+            """;
+    /**
+     * Script moving a string key into its bucket field if it
+     * still holds the URL read, keeping the longer of the two
+     * TTLs for the bucket. Keys without a TTL are left alone.
+     */
+    private static final String MOVE_TO_BUCKET_SCRIPT = """
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end
+            local ttl = redis.call('PTTL', KEYS[1])
+            if ttl < 0 then return 0 end
+            redis.call('HSET', KEYS[2], ARGV[2], ARGV[3])
+            if redis.call('PTTL', KEYS[2]) < ttl then
+              redis.call('PEXPIRE', KEYS[2], ttl)
+            end
+            redis.call('DEL', KEYS[1])
+            return 1
+            """;
+    /**
+     * Script setting a bucket field read from a string key on
+     * another shard, unless the field or a string key of the
+     * shortcode exists on this one, keeping the longer of the
+     * two TTLs for the bucket.
+     */
+    private static final String MOVE_INTO_BUCKET_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            if redis.call('HSETNX', KEYS[2], ARGV[1], ARGV[2]) == 0 then
+              return 0
+            end
+            if redis.call('PTTL', KEYS[2]) < tonumber(ARGV[3]) then
+              redis.call('PEXPIRE', KEYS[2], ARGV[3])
+            end
+            return 1
+            """;
+    /**
+     * Template of the primary Redis server, for everything
+     * not keyed by shortcode.
      */
     private final StringRedisTemplate rsTemplate;
+    /**
+     * Redis nodes holding the shortcode entries.
+     */
+    private final RedisShards shards;
+    /**
+     * In-process near cache consulted before Redis.
+     */
+    private final LocalUrlCache localUrlCache;
+    /**
+     * Pub/sub channel used to invalidate near caches on all nodes.
+     */
+    private final String invalidationChannel;
+    /**
+     * Pub/sub channel announcing newly issued shortcodes.
+     */
+    private final String issuedChannel;
+    /**
+     * Layout of the entries in Redis.
+     */
+    private final UrlCacheLayout layout;
+    /**
+     * Policy for TTLs and early refreshes of cached URLs.
+     */
+    private final CacheTtlPolicy ttlPolicy;
+    /**
+     * Timer of single-key reads.
+     */
+    private final Timer getTimer;
+    /**
+     * Timer of multi-key reads.
+     */
+    private final Timer batchGetTimer;
+    /**
+     * Timer of single-key writes.
+     */
+    private final Timer setTimer;
+    /**
+     * Timer of pipelined multi-key writes.
+     */
+    private final Timer batchSetTimer;
+    /**
+     * Timer of lease acquisitions and releases.
+     */
+    private final Timer leaseTimer;
+    /**
+     * Timer of pub/sub announcements.
+     */
+    private final Timer publishTimer;
 
     /**
      * Constructs a new {@code RedisService} instance.
      *
-     * @param redisTemplate the {@link StringRedisTemplate} for
-     *                      interacting with Redis
+     * @param cacheShards the Redis nodes holding the entries
+     * @param nearCache the in-process cache in front of Redis
+     * @param channel the pub/sub channel for near cache invalidations
+     * @param issuedCodesChannel the pub/sub channel for new shortcodes
+     * @param cacheLayout layout of the entries in Redis
+     * @param cacheTtlPolicy policy for TTLs and early refreshes
+     * @param meterRegistry registry for the operation timers
+     */
+    public RedisService(final RedisShards cacheShards,
+                        final LocalUrlCache nearCache,
+                        @Value("${cache.local.invalidation-channel:"
+                                + "url-cache-invalidation}")
+                        final String channel,
+                        @Value("${shortcode.filter.channel:"
+                                + "shortcode-issued}")
+                        final String issuedCodesChannel,
+                        final UrlCacheLayout cacheLayout,
+                        final CacheTtlPolicy cacheTtlPolicy,
+                        final MeterRegistry meterRegistry) {
+        this.rsTemplate = cacheShards.primary();
+        this.shards = cacheShards;
+        this.localUrlCache = nearCache;
+        this.invalidationChannel = channel;
+        this.issuedChannel = issuedCodesChannel;
+        this.layout = cacheLayout;
+        this.ttlPolicy = cacheTtlPolicy;
+        this.getTimer = operationTimer(meterRegistry, "get");
+        this.batchGetTimer = operationTimer(meterRegistry, "get_batch");
+        this.setTimer = operationTimer(meterRegistry, "set");
+        this.batchSetTimer = operationTimer(meterRegistry, "set_batch");
+        this.leaseTimer = operationTimer(meterRegistry, "lease");
+        this.publishTimer = operationTimer(meterRegistry, "publish");
+        cacheShards.setStaleEntryEvictor(this::evictStale);
+    }
+
+    /**
+     * Registers the timer of one kind of Redis operation.
+     *
+     * @param meterRegistry the registry
+     * @param operation the value of the {@code op} tag
+     * @return the timer
+     */
+    private static Timer operationTimer(final MeterRegistry meterRegistry,
+                                        final String operation) {
+        return Timer.builder("cache.redis.operation")
+                .description("Redis calls made by the cache")
+                .tag("op", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the key placing the entry of a shortcode on a
+     * shard.
+     * <p>
+     * A bucketed shortcode is placed by its bucket, so the
+     * bucket and the string key of the shortcode, which may
+     * hold its marker, share a shard.
+     *
+     * @param shortCode the shortcode
+     * @return the key hashed onto the ring
+     */
+    private String routingKey(final String shortCode) {
+        return layout.isBucketed(shortCode)
+                ? layout.bucketKey(shortCode) : shortCode;
+    }
+
+    /**
+     * Returns the shard holding the entry of a shortcode.
+     *
+     * @param shortCode the shortcode
+     * @return the shard
      */
-    public RedisService(final StringRedisTemplate redisTemplate) {
-        this.rsTemplate = redisTemplate;
+    private Shard shardOf(final String shortCode) {
+        return shards.shardOf(routingKey(shortCode));
     }
 
     /**
-     * Saves a key-value pair in Redis with a TTL of 1 day.
+     * Returns the shard the strings layout wrote the string key
+     * of a bucketed shortcode to, while dual reads still
+     * consult it and if it is not the shard of the bucket.
+     *
+     * @param shortCode the shortcode
+     * @return the shard, or {@code null} if the string key is
+     * read along with the bucket or not read at all
+     */
+    private Shard legacyShardOf(final String shortCode) {
+        if (!layout.isDualRead() || shards.all().size() == 1
+                || !layout.isBucketed(shortCode)) {
+            return null;
+        }
+        Shard legacy = shards.shardOf(shortCode);
+        return legacy == shardOf(shortCode) ? null : legacy;
+    }
+
+    /**
+     * Splits entries by the shard holding them.
+     *
+     * @param entries the values, keyed by shortcode
+     * @return the entries of each shard
+     */
+    private Map<Shard, Map<String, String>> byShard(
+            final Map<String, String> entries) {
+        if (shards.all().size() == 1) {
+            return Map.of(shards.all().get(0), entries);
+        }
+        Map<Shard, Map<String, String>> parts = new LinkedHashMap<>();
+        entries.forEach((shortCode, url) -> parts.computeIfAbsent(
+                shardOf(shortCode), shard -> new HashMap<>())
+                .put(shortCode, url));
+        return parts;
+    }
+
+    /**
+     * Runs a timed operation on a shard, unless the shard is
+     * down.
+     * <p>
+     * A connection error or timeout marks the shard down and
+     * counts as the fallback result; other errors are thrown.
+     *
+     * @param shard the shard
+     * @param timer the timer of the operation
+     * @param operation the operation, given the shard's template
+     * @param fallback the result if the shard is down or failed
+     * @param <T> the type of the result
+     * @return the result of the operation, or {@code fallback}
+     */
+    private <T> T onShard(final Shard shard, final Timer timer,
+                          final Function<StringRedisTemplate, T> operation,
+                          final T fallback) {
+        if (!shard.isUp()) {
+            return fallback;
+        }
+        try {
+            return timer.record(() -> operation.apply(shard.template()));
+        } catch (DataAccessException e) {
+            if (!shards.reportFailure(shard, e)) {
+                throw e;
+            }
+            return fallback;
+        }
+    }
+
+    /**
+     * Runs a timed write on a shard, unless the shard is down.
+     * <p>
+     * Like {@link #onShard}, but a write dropped because the
+     * shard is down, or failed with a connection error or
+     * timeout, leaves the shortcodes it wrote with the shard, so
+     * their entries are evicted before it is marked up again.
+     *
+     * @param shard the shard
+     * @param timer the timer of the operation
+     * @param shortCodes the shortcodes written
+     * @param operation the operation, given the shard's template
+     * @return {@code true} if the write was sent; {@code false}
+     * if it was dropped
+     */
+    private boolean writeOnShard(final Shard shard, final Timer timer,
+                                 final Collection<String> shortCodes,
+                                 final Function<StringRedisTemplate, ?> operation) {
+        if (shard.dropWhileDown(shortCodes)) {
+            return false;
+        }
+        try {
+            timer.record(() -> operation.apply(shard.template()));
+            return true;
+        } catch (DataAccessException e) {
+            if (!shards.reportFailure(shard, e, shortCodes)) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the entries a node may hold stale after writes to
+     * it were dropped, before it is marked up again.
+     * <p>
+     * The string keys and bucket fields of the shortcodes are
+     * deleted in pipelined batches. When too many writes were
+     * dropped to remember them, every string key that is a
+     * shortcode and every bucket is deleted instead, with
+     * {@code SCAN}, which leaves everything else stored on the
+     * primary alone.
+     *
+     * @param template template of the node
+     * @param shortCodes the shortcodes whose writes were dropped
+     * @param everything whether every entry must be deleted
+     */
+    private void evictStale(final StringRedisTemplate template,
+                            final Set<String> shortCodes,
+                            final boolean everything) {
+        if (everything) {
+            deleteScanned(template, ScanOptions.scanOptions()
+                    .type(DataType.STRING).count(EVICTION_BATCH_SIZE)
+                    .build(), Base62Converter::isValid);
+            deleteScanned(template, ScanOptions.scanOptions()
+                    .match(layout.bucketPrefix() + "*")
+                    .count(EVICTION_BATCH_SIZE).build(), key -> true);
+            return;
+        }
+        for (List<String> batch
+                : Iterables.partition(shortCodes, EVICTION_BATCH_SIZE)) {
+            template.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection commands =
+                        (StringRedisConnection) connection;
+                commands.del(batch.toArray(String[]::new));
+                for (String shortCode : batch) {
+                    if (layout.isBucketed(shortCode)) {
+                        commands.hDel(layout.bucketKey(shortCode),
+                                layout.field(shortCode));
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Deletes the keys of a node found by a scan.
+     *
+     * @param template template of the node
+     * @param options the scan options
+     * @param filter selects the keys to delete
+     */
+    private static void deleteScanned(final StringRedisTemplate template,
+                                      final ScanOptions options,
+                                      final Predicate<String> filter) {
+        try (Cursor<String> cursor = template.scan(options)) {
+            List<String> batch = new ArrayList<>(EVICTION_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (filter.test(key)) {
+                    batch.add(key);
+                }
+                if (batch.size() == EVICTION_BATCH_SIZE) {
+                    template.delete(batch);
+                    batch = new ArrayList<>(EVICTION_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                template.delete(batch);
+            }
+        }
+    }
+
+    /**
+     * Saves a key-value pair in Redis with the jittered base TTL
+     * and in the local near cache.
+     *
+     * @param shortCode the key to save
+     * @param url       the value to associate with the key
+     * @return {@code true} if Redis was written; {@code false}
+     * if its shard is down
+     * @see CacheTtlPolicy#ttlForNewEntry()
+     */
+    public boolean saveToCache(final String shortCode, final String url) {
+        return save(shortCode, url, ttlPolicy.ttlForNewEntry());
+    }
+
+    /**
+     * Saves a key-value pair refreshed ahead of its expiry, with
+     * the longer TTL of entries that are still being read.
      *
      * @param shortCode the key to save
      * @param url       the value to associate with the key
+     * @see CacheTtlPolicy#ttlForRefreshedEntry()
+     */
+    public void refreshInCache(final String shortCode, final String url) {
+        save(shortCode, url, ttlPolicy.ttlForRefreshedEntry());
+    }
+
+    /**
+     * Saves a key-value pair in Redis and in the local near cache.
+     * <p>
+     * A bucketed entry is written with its bucket TTL and
+     * deletes the string key of the shortcode in the same
+     * pipeline, so an older value or {@link #MISSING} marker
+     * left there no longer takes precedence. During the
+     * dual-read period, the string key the strings layout left
+     * on the shard of the shortcode is deleted too, so it cannot
+     * be read once the bucket expires.
+     *
+     * @param shortCode the key to save
+     * @param url the value to associate with the key
+     * @param ttl the TTL of the entry
+     * @return {@code true} if Redis was written
+     */
+    private boolean save(final String shortCode, final String url,
+                         final Duration ttl) {
+        boolean written = writeOnShard(shardOf(shortCode), setTimer,
+                List.of(shortCode),
+                template -> {
+                    if (!layout.isBucketed(shortCode)) {
+                        template.opsForValue().set(shortCode, url, ttl);
+                        return null;
+                    }
+                    return template.executePipelined(
+                            (RedisCallback<Object>) connection -> {
+                                StringRedisConnection commands =
+                                        (StringRedisConnection) connection;
+                                String bucket = layout.bucketKey(shortCode);
+                                commands.hSet(bucket, layout.field(shortCode),
+                                        layout.encode(url));
+                                commands.pExpire(bucket, ttl.toMillis());
+                                commands.del(shortCode);
+                                return null;
+                            });
+                });
+        Shard legacy = legacyShardOf(shortCode);
+        if (legacy != null) {
+            writeOnShard(legacy, setTimer, List.of(shortCode),
+                    template -> template.delete(shortCode));
+        }
+        localUrlCache.put(shortCode, url);
+        return written;
+    }
+
+    /**
+     * Saves many key-value pairs in Redis with the jittered base
+     * TTL, using one pipelined round trip of {@code PSETEX} commands.
+     * <p>
+     * Every entry gets its own jitter, so entries saved
+     * together do not expire together. Bucketed entries are
+     * written with one {@code HSET} and {@code PEXPIRE} per
+     * bucket instead, and their string keys deleted. The pairs are not
+     * put in the local near cache, so a bulk import does
+     * not evict the entries that are hot.
+     *
+     * @param entries the values to save, keyed by shortcode
+     */
+    public void saveAllToCache(final Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        byShard(entries).forEach((shard, part) -> writeOnShard(shard,
+                batchSetTimer, part.keySet(), template -> template.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    Map<String, Map<String, String>> buckets =
+                            new LinkedHashMap<>();
+                    part.forEach((shortCode, url) -> {
+                        if (layout.isBucketed(shortCode)) {
+                            buckets.computeIfAbsent(layout.bucketKey(shortCode),
+                                    bucket -> new HashMap<>())
+                                    .put(layout.field(shortCode),
+                                            layout.encode(url));
+                        } else {
+                            commands.pSetEx(shortCode,
+                                    ttlPolicy.ttlForNewEntry().toMillis(), url);
+                        }
+                    });
+                    buckets.forEach((bucket, fields) -> {
+                        commands.hMSet(bucket, fields);
+                        commands.pExpire(bucket,
+                                ttlPolicy.ttlForNewEntry().toMillis());
+                    });
+                    if (!buckets.isEmpty()) {
+                        commands.del(part.keySet().stream()
+                                .filter(layout::isBucketed)
+                                .toArray(String[]::new));
+                    }
+                    return null;
+                })));
+    }
+
+    /**
+     * Saves many key-value pairs in Redis with the jittered base
+     * TTL unless the keys already exist, using one pipelined
+     * round trip of {@code SET NX PX} commands.
+     * <p>
+     * Used to fill Redis from the database without overwriting
+     * values written since they were read. Bucketed entries
+     * are written with {@code HSETNX}, and every bucket written
+     * gets the jittered base TTL.
+     *
+     * @param entries the values to save, keyed by shortcode
+     */
+    public void saveAllToCacheIfAbsent(final Map<String, String> entries) {
+        saveAllIfAbsent(entries, false);
+    }
+
+    /**
+     * Saves many key-value pairs in Redis like
+     * {@link #saveAllToCacheIfAbsent}, but also over the
+     * {@link #MISSING} markers of their keys.
+     * <p>
+     * Used once rows are committed that lookups may have found
+     * missing before, without overwriting URLs written since.
+     *
+     * @param entries the values to save, keyed by shortcode
+     */
+    public void saveAllToCacheOverMisses(final Map<String, String> entries) {
+        saveAllIfAbsent(entries, true);
+    }
+
+    /**
+     * Saves many key-value pairs in Redis unless the keys
+     * already exist.
+     *
+     * @param entries the values to save, keyed by shortcode
+     * @param overMisses whether {@link #MISSING} markers of the
+     *                   keys are deleted first, in the same pipeline
+     */
+    private void saveAllIfAbsent(final Map<String, String> entries,
+                                 final boolean overMisses) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        byShard(entries).forEach((shard, part) -> writeOnShard(shard,
+                batchSetTimer, part.keySet(), template -> template.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    if (overMisses) {
+                        part.keySet().forEach(shortCode -> commands.eval(
+                                DELETE_IF_HOLDS_SCRIPT, ReturnType.INTEGER, 1,
+                                shortCode, MISSING));
+                    }
+                    Set<String> buckets = new HashSet<>();
+                    part.forEach((shortCode, url) -> {
+                        if (layout.isBucketed(shortCode)) {
+                            String bucket = layout.bucketKey(shortCode);
+                            commands.hSetNX(bucket, layout.field(shortCode),
+                                    layout.encode(url));
+                            buckets.add(bucket);
+                        } else {
+                            commands.set(shortCode, url,
+                                    Expiration.from(ttlPolicy.ttlForNewEntry()),
+                                    RedisStringCommands.SetOption.ifAbsent());
+                        }
+                    });
+                    buckets.forEach(bucket -> commands.pExpire(bucket,
+                            ttlPolicy.ttlForNewEntry().toMillis()));
+                    return null;
+                })));
+    }
+
+    /**
+     * Saves a key-value pair in the local near cache only.
+     *
+     * @param shortCode the key to save
+     * @param url       the value to associate with the key
+     */
+    public void saveToLocalCache(final String shortCode, final String url) {
+        localUrlCache.put(shortCode, url);
+    }
+
+    /**
+     * Caches that a shortcode does not exist, for a short time.
+     *
+     * @param shortCode the shortcode that was not found
+     */
+    public void saveMissToCache(final String shortCode) {
+        writeOnShard(shardOf(shortCode), setTimer, List.of(shortCode),
+                template -> {
+                    template.opsForValue().set(shortCode, MISSING,
+                            ttlPolicy.ttlForMissing());
+                    return null;
+                });
+    }
+
+    /**
+     * Takes a short-lived lease with {@code SET NX}, storing a
+     * random token that identifies this holder.
+     *
+     * @param leaseKey the lease key
+     * @param ttl time after which the lease expires on its own
+     * @return the token of the lease if this caller now holds
+     * it, or {@code null}
+     */
+    public String tryAcquireLease(final String leaseKey, final Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        boolean acquired = Boolean.TRUE.equals(leaseTimer.record(() ->
+                rsTemplate.opsForValue().setIfAbsent(leaseKey, token, ttl)));
+        return acquired ? token : null;
+    }
+
+    /**
+     * Releases a lease taken with {@link #tryAcquireLease}, unless
+     * it expired and another holder took it since.
+     *
+     * @param leaseKey the lease key
+     * @param token the token returned when the lease was taken
      */
-    public void saveToCache(final String shortCode, final String url) {
-        rsTemplate.opsForValue().set(shortCode, url, 1, TimeUnit.DAYS);
+    public void releaseLease(final String leaseKey, final String token) {
+        leaseTimer.record(() -> rsTemplate.execute((RedisCallback<Long>)
+                connection -> ((StringRedisConnection) connection).eval(
+                        DELETE_IF_HOLDS_SCRIPT, ReturnType.INTEGER, 1,
+                        leaseKey, token)));
     }
 
     /**
-     * Retrieves the value associated with the given key from Redis.
+     * Retrieves the value associated with the given key,
+     * from the local near cache or else from Redis.
+     * <p>
+     * Values found in Redis are kept in the near cache.
      *
      * @param shortCode the key to retrieve
-     * @return the value associated with the key,
+     * @return the value associated with the key, {@link #MISSING}
+     * if the shortcode is known not to exist,
      * or {@code null} if the key does not exist
      */
     public String getFromCache(final String shortCode) {
-        return rsTemplate.opsForValue().get(shortCode);
+        return getEntryFromCache(shortCode).value();
+    }
+
+    /**
+     * Retrieves the value of a key together with its remaining
+     * TTL, from the local near cache or else from Redis.
+     * <p>
+     * The Redis {@code GET} and {@code PTTL} are sent in one
+     * pipeline, so reading the TTL costs no extra round trip.
+     * A bucketed entry is read with {@code HGET} and the
+     * {@code PTTL} of its bucket in the same pipeline as the
+     * string key, which still holds {@link #MISSING} markers
+     * and, during the dual-read period, URLs not yet moved to
+     * buckets, read from the shard of the shortcode if neither
+     * is found on the shard of the bucket; the TTL of those is
+     * not read, so they are not refreshed early. Values found in Redis are kept in the
+     * near cache.
+     *
+     * @param shortCode the key to retrieve
+     * @return the entry; its value is {@code null} if the key
+     * does not exist
+     */
+    public CachedValue getEntryFromCache(final String shortCode) {
+        String local = localUrlCache.load(shortCode);
+        if (local != null) {
+            return new CachedValue(local, CachedValue.UNKNOWN_TTL, true);
+        }
+        boolean bucketed = layout.isBucketed(shortCode);
+        List<Object> replies = onShard(shardOf(shortCode), getTimer,
+                template -> template.executePipelined(
+                        (RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    commands.get(shortCode);
+                    if (bucketed) {
+                        String bucket = layout.bucketKey(shortCode);
+                        commands.hGet(bucket, layout.field(shortCode));
+                        commands.pTtl(bucket);
+                    } else {
+                        commands.pTtl(shortCode);
+                    }
+                    return null;
+                }), null);
+        if (replies == null) {
+            return new CachedValue(null, CachedValue.UNKNOWN_TTL, false);
+        }
+        String value = (String) replies.get(0);
+        Long ttlMillis;
+        if (!bucketed) {
+            ttlMillis = (Long) replies.get(1);
+        } else if (isReadable(value)) {
+            ttlMillis = null;
+        } else {
+            value = layout.decode((String) replies.get(1));
+            ttlMillis = (Long) replies.get(2);
+        }
+        Shard legacy = value == null ? legacyShardOf(shortCode) : null;
+        if (legacy != null) {
+            value = onShard(legacy, getTimer,
+                    template -> template.opsForValue().get(shortCode), null);
+            ttlMillis = null;
+        }
+        if (value != null && !value.isEmpty()) {
+            localUrlCache.put(shortCode, value);
+        }
+        return new CachedValue(value,
+                ttlMillis == null ? CachedValue.UNKNOWN_TTL : ttlMillis, false);
+    }
+
+    /**
+     * Tells whether the string key of a bucketed shortcode
+     * takes precedence over its bucket.
+     *
+     * @param value the value of the string key
+     * @return {@code true} for {@link #MISSING} markers, and
+     * for URLs during the dual-read period
+     */
+    private boolean isReadable(final String value) {
+        return value != null && (value.isEmpty() || layout.isDualRead());
+    }
+
+    /**
+     * Tells whether an entry read from Redis should be
+     * refreshed ahead of its expiry.
+     *
+     * @param entry the entry read
+     * @return {@code true} if the entry should be refreshed
+     * @see CacheTtlPolicy#shouldRefreshEarly(long)
+     */
+    public boolean isDueForRefresh(final CachedValue entry) {
+        return entry.value() != null && !entry.value().isEmpty()
+                && ttlPolicy.shouldRefreshEarly(entry.ttlMillis());
+    }
+
+    /**
+     * Retrieves the values of several keys, from the local
+     * near cache or else with a single Redis {@code MGET}.
+     * <p>
+     * Bucketed entries are read with one {@code HMGET} per
+     * bucket, pipelined with the {@code MGET}. During the
+     * dual-read period, keys found nowhere on the shard of their
+     * bucket are read again from the shard of the shortcode.
+     * Values found in Redis are kept in the near cache.
+     *
+     * @param shortCodes the keys to retrieve
+     * @return the values found, keyed by shortcode, including
+     * {@link #MISSING} markers; keys that do not exist are absent
+     */
+    public Map<String, String> getAllFromCache(
+            final Collection<String> shortCodes) {
+        Map<String, String> found = new HashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String shortCode : shortCodes) {
+            String local = localUrlCache.load(shortCode);
+            if (local != null) {
+                found.put(shortCode, local);
+            } else {
+                remoteKeys.add(shortCode);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+        shards.groupByShard(remoteKeys, this::routingKey).forEach(
+                (shard, keys) -> collect(keys, onShard(shard, batchGetTimer,
+                        template -> multiGet(template, keys), null), found));
+        List<String> legacyKeys = remoteKeys.stream()
+                .filter(key -> !found.containsKey(key)
+                        && legacyShardOf(key) != null)
+                .toList();
+        if (!legacyKeys.isEmpty()) {
+            shards.groupByShard(legacyKeys, Function.identity()).forEach(
+                    (shard, keys) -> collect(keys, onShard(shard,
+                            batchGetTimer, template -> template.opsForValue()
+                                    .multiGet(keys), null), found));
+        }
+        return found;
+    }
+
+    /**
+     * Adds the values read for keys to the values found and
+     * the near cache.
+     *
+     * @param keys the keys read
+     * @param values the values in the order of the keys, or
+     * {@code null} if the read failed
+     * @param found the values found, keyed by shortcode
+     */
+    private void collect(final List<String> keys, final List<String> values,
+                         final Map<String, String> found) {
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            if (!value.isEmpty()) {
+                localUrlCache.put(keys.get(i), value);
+            }
+            found.put(keys.get(i), value);
+        }
+    }
+
+    /**
+     * Reads the values of several keys from one Redis node in
+     * one round trip, from string keys or from their buckets.
+     *
+     * @param template the template of the node
+     * @param shortCodes the keys to read
+     * @return the values in the order of the keys, {@code null}
+     * where absent; or {@code null} if Redis returned nothing
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> multiGet(final StringRedisTemplate template,
+                                  final List<String> shortCodes) {
+        if (!layout.isBucketed()) {
+            return template.opsForValue().multiGet(shortCodes);
+        }
+        Map<String, List<String>> buckets = new LinkedHashMap<>();
+        for (String shortCode : shortCodes) {
+            if (layout.isBucketed(shortCode)) {
+                buckets.computeIfAbsent(layout.bucketKey(shortCode),
+                        bucket -> new ArrayList<>()).add(shortCode);
+            }
+        }
+        List<Object> replies = template.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    commands.mGet(shortCodes.toArray(String[]::new));
+                    buckets.values().forEach(codes -> commands.hMGet(
+                            layout.bucketKey(codes.get(0)), codes.stream()
+                                    .map(layout::field)
+                                    .toArray(String[]::new)));
+                    return null;
+                });
+        if (replies == null || replies.size() <= buckets.size()) {
+            return null;
+        }
+        Map<String, String> bucketed = new HashMap<>();
+        int reply = 1;
+        for (List<String> codes : buckets.values()) {
+            List<String> fields = (List<String>) replies.get(reply++);
+            for (int i = 0; i < codes.size(); i++) {
+                String value = fields == null ? null : fields.get(i);
+                if (value != null) {
+                    bucketed.put(codes.get(i), layout.decode(value));
+                }
+            }
+        }
+        List<String> values = new ArrayList<>(
+                (List<String>) replies.get(0));
+        for (int i = 0; i < shortCodes.size(); i++) {
+            if (!isReadable(values.get(i))) {
+                values.set(i, bucketed.get(shortCodes.get(i)));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Retrieves the value associated with the given key
+     * from the local near cache only.
+     * <p>
+     * This never performs I/O, so it is safe to call
+     * from an event loop thread.
+     *
+     * @param shortCode the key to retrieve
+     * @return the value, or {@code null} if not cached locally
+     */
+    public String getFromLocalCache(final String shortCode) {
+        return localUrlCache.get(shortCode);
+    }
+
+    /**
+     * Tells whether a shortcode was invalidated recently, on
+     * this node or by another one.
+     *
+     * @param shortCode the shortcode
+     * @return {@code true} if its row changed moments ago
+     * @see LocalUrlCache#isRecentlyChanged(String)
+     */
+    public boolean isRecentlyChanged(final String shortCode) {
+        return localUrlCache.isRecentlyChanged(shortCode);
     }
 
     /**
-     * Deletes the key-value pair associated with the given key from Redis.
+     * Deletes the key-value pair associated with the given key from Redis
+     * and from the near cache of every node.
+     * <p>
+     * The Redis entry is replaced by a {@link #MISSING} marker,
+     * since shortcodes are never issued twice, and its bucket
+     * field is deleted.
      *
      * @param shortCode the key to delete
      */
     public void deleteFromCache(final String shortCode) {
-        rsTemplate.delete(shortCode);
+        saveMissToCache(shortCode);
+        if (layout.isBucketed(shortCode)) {
+            writeOnShard(shardOf(shortCode), setTimer, List.of(shortCode),
+                    template -> template.opsForHash().delete(
+                            layout.bucketKey(shortCode),
+                            layout.field(shortCode)));
+        }
+        localUrlCache.invalidate(shortCode);
+        publishInvalidation(shortCode);
+    }
+
+    /**
+     * Adds counts to fields of Redis hashes in one pipelined
+     * round trip, and sets every hash to expire.
+     * <p>
+     * The hashes bypass the local near cache.
+     *
+     * @param increments the amounts to add, by field, keyed by hash
+     * @param ttl how long each hash is kept after this write
+     */
+    public void incrementHashes(final Map<String, Map<String, Long>> increments,
+                                final Duration ttl) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        batchSetTimer.record(() -> rsTemplate.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    increments.forEach((key, fields) -> {
+                        fields.forEach((field, delta) ->
+                                commands.hIncrBy(key, field, delta));
+                        commands.pExpire(key, ttl.toMillis());
+                    });
+                    return null;
+                }));
     }
-}
 
+    /**
+     * Reads whole Redis hashes in one pipelined round trip.
+     *
+     * @param keys the hashes to read
+     * @return the fields of each hash, in the order of the keys;
+     * empty for hashes that do not exist
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, String>> getHashes(final List<String> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<Object> replies = batchGetTimer.record(() ->
+                rsTemplate.executePipelined(
+                        (RedisCallback<Object>) connection -> {
+                            StringRedisConnection commands =
+                                    (StringRedisConnection) connection;
+                            keys.forEach(commands::hGetAll);
+                            return null;
+                        }));
+        List<Map<String, String>> hashes = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Object reply = replies == null || i >= replies.size()
+                    ? null : replies.get(i);
+            hashes.add(reply == null ? Map.of() : (Map<String, String>) reply);
+        }
+        return hashes;
+    }
+
+    /**
+     * Adds elements to Redis HyperLogLogs in one pipelined
+     * round trip, and sets every HyperLogLog to expire.
+     *
+     * @param elements the elements to add, keyed by HyperLogLog
+     * @param ttl how long each HyperLogLog is kept after this write
+     */
+    public void addToHyperLogLogs(final Map<String, Set<String>> elements,
+                                  final Duration ttl) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        batchSetTimer.record(() -> rsTemplate.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    elements.forEach((key, values) -> {
+                        commands.pfAdd(key, values.toArray(String[]::new));
+                        commands.pExpire(key, ttl.toMillis());
+                    });
+                    return null;
+                }));
+    }
+
+    /**
+     * Estimates the number of distinct elements in the union
+     * of Redis HyperLogLogs.
+     *
+     * @param keys the HyperLogLogs
+     * @return the estimated cardinality of their union
+     */
+    public long countHyperLogLogs(final Collection<String> keys) {
+        Long count = batchGetTimer.record(() -> rsTemplate
+                .opsForHyperLogLog().size(keys.toArray(String[]::new)));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Reads one field of a Redis hash.
+     *
+     * @param key the hash
+     * @param field the field
+     * @return the value, or {@code null} if the field does not exist
+     */
+    public String getHashField(final String key, final String field) {
+        return getTimer.record(() -> rsTemplate.<String, String>opsForHash()
+                .get(key, field));
+    }
+
+    /**
+     * Sets a field of a Redis hash unless it exists, with
+     * {@code HSETNX}, and reads the field back in the same
+     * pipelined round trip.
+     *
+     * @param key the hash
+     * @param field the field
+     * @param value the value to set
+     * @return the value the field holds: {@code value} if it was
+     * set, otherwise the value set first
+     */
+    public String saveHashFieldIfAbsent(final String key, final String field,
+                                        final String value) {
+        List<Object> replies = setTimer.record(() -> rsTemplate
+                .executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    commands.hSetNX(key, field, value);
+                    commands.hGet(key, field);
+                    return null;
+                }));
+        Object held = replies == null || replies.size() < 2
+                ? null : replies.get(1);
+        return held == null ? value : (String) held;
+    }
+
+    /**
+     * Deletes one field of a Redis hash if it still holds a value.
+     *
+     * @param key the hash
+     * @param field the field
+     * @param value the value the field must hold
+     */
+    public void deleteHashField(final String key, final String field,
+                                final String value) {
+        setTimer.record(() -> rsTemplate.execute((RedisCallback<Long>)
+                connection -> ((StringRedisConnection) connection).eval(
+                        DELETE_HASH_FIELD_SCRIPT, ReturnType.INTEGER, 1,
+                        key, field, value)));
+    }
+
+    /**
+     * Iterates over the string keys of every shard that is up
+     * with {@code SCAN}, a batch at a time.
+     * <p>
+     * Keys may be seen more than once, and keys written during
+     * the scan may be missed. Batches never mix shards.
+     *
+     * @param batchSize the {@code COUNT} hint and maximum
+     *                  number of keys per batch
+     * @param action called with each batch of keys
+     */
+    public void scanStringKeys(final int batchSize,
+                               final Consumer<List<String>> action) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .type(DataType.STRING).count(batchSize).build();
+        for (Shard shard : shards.all()) {
+            if (!shard.isUp()) {
+                continue;
+            }
+            try (Cursor<String> cursor = shard.template().scan(options)) {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == batchSize) {
+                        action.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    action.accept(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the string keys of shortcodes into their buckets.
+     * <p>
+     * The URLs are read with one {@code MGET}, then every key
+     * is moved by a script that checks it still holds the URL
+     * read, in one pipelined round trip, so a URL written in
+     * between is never overwritten. {@link #MISSING} markers,
+     * keys without a TTL and shortcodes that are not bucketed
+     * are left alone.
+     * <p>
+     * The strings layout placed keys by shortcode, so a key
+     * whose bucket lives on another shard is read from the
+     * shard of the shortcode, set in the bucket unless the
+     * bucket's shard already holds a field or marker for the
+     * shortcode, and then deleted if it still holds the URL
+     * read; see {@link #moveAcrossShards}.
+     *
+     * @param shortCodes the shortcodes
+     * @return the number of keys moved
+     */
+    public int moveToBuckets(final List<String> shortCodes) {
+        List<String> codes = shortCodes.stream()
+                .filter(layout::isBucketed).toList();
+        if (codes.isEmpty()) {
+            return 0;
+        }
+        int moved = 0;
+        for (Map.Entry<Shard, List<String>> part
+                : shards.groupByShard(codes, this::routingKey).entrySet()) {
+            Shard target = part.getKey();
+            Map<Shard, List<String>> sources = shards.groupByShard(
+                    part.getValue(), Function.identity());
+            for (Map.Entry<Shard, List<String>> source : sources.entrySet()) {
+                moved += source.getKey() == target
+                        ? moveToBuckets(target, source.getValue())
+                        : moveAcrossShards(source.getKey(), target,
+                                source.getValue());
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Moves string keys of one shard into buckets on another.
+     * <p>
+     * The URLs and TTLs are read in one pipelined round trip,
+     * the bucket fields set by {@link #MOVE_INTO_BUCKET_SCRIPT}
+     * in another, and the string keys deleted with
+     * {@link #DELETE_IF_HOLDS_SCRIPT} in a third, also when the
+     * bucket's shard already held the shortcode, which then
+     * shadows the key. None of this is atomic across shards,
+     * but a write in between only ever leaves the newer value:
+     * writes of bucketed shortcodes go to the bucket's shard,
+     * which the move never overwrites.
+     *
+     * @param source the shard holding the string keys
+     * @param target the shard holding the buckets
+     * @param codes the shortcodes, all eligible for a bucket
+     * @return the number of keys moved
+     */
+    private int moveAcrossShards(final Shard source, final Shard target,
+                                 final List<String> codes) {
+        List<Object> read = onShard(source, batchGetTimer, template ->
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    for (String shortCode : codes) {
+                        commands.get(shortCode);
+                        commands.pTtl(shortCode);
+                    }
+                    return null;
+                }), null);
+        if (read == null) {
+            return 0;
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        Map<String, Long> ttls = new HashMap<>();
+        for (int i = 0; i < codes.size(); i++) {
+            String url = (String) read.get(2 * i);
+            Long ttl = (Long) read.get(2 * i + 1);
+            if (url != null && !url.isEmpty() && ttl != null && ttl > 0) {
+                urls.put(codes.get(i), url);
+                ttls.put(codes.get(i), ttl);
+            }
+        }
+        if (urls.isEmpty()) {
+            return 0;
+        }
+        List<Object> replies = onShard(target, batchSetTimer, template ->
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    urls.forEach((shortCode, url) -> commands.eval(
+                            MOVE_INTO_BUCKET_SCRIPT, ReturnType.INTEGER, 2,
+                            shortCode, layout.bucketKey(shortCode),
+                            layout.field(shortCode), layout.encode(url),
+                            Long.toString(ttls.get(shortCode))));
+                    return null;
+                }), null);
+        if (replies == null) {
+            return 0;
+        }
+        onShard(source, batchSetTimer, template ->
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    urls.forEach((shortCode, url) -> commands.eval(
+                            DELETE_IF_HOLDS_SCRIPT, ReturnType.INTEGER, 1,
+                            shortCode, url));
+                    return null;
+                }), null);
+        return (int) replies.stream()
+                .filter(reply -> Long.valueOf(1).equals(reply)).count();
+    }
+
+    /**
+     * Moves string keys of one shard into their buckets.
+     *
+     * @param shard the shard holding the keys
+     * @param codes the shortcodes, all eligible for a bucket
+     * @return the number of keys moved
+     */
+    private int moveToBuckets(final Shard shard, final List<String> codes) {
+        List<String> urls = onShard(shard, batchGetTimer, template ->
+                template.opsForValue().multiGet(codes), null);
+        if (urls == null) {
+            return 0;
+        }
+        List<Object> replies = onShard(shard, batchSetTimer, template ->
+                template.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection commands =
+                            (StringRedisConnection) connection;
+                    for (int i = 0; i < codes.size(); i++) {
+                        String shortCode = codes.get(i);
+                        String url = urls.get(i);
+                        if (url != null && !url.isEmpty()) {
+                            commands.eval(MOVE_TO_BUCKET_SCRIPT,
+                                    ReturnType.INTEGER, 2, shortCode,
+                                    layout.bucketKey(shortCode), url,
+                                    layout.field(shortCode),
+                                    layout.encode(url));
+                        }
+                    }
+                    return null;
+                }), null);
+        return replies == null ? 0 : (int) replies.stream()
+                .filter(reply -> Long.valueOf(1).equals(reply)).count();
+    }
+
+    /**
+     * Tells every node to drop its near cache entry for a key.
+     * <p>
+     * Must be called after Redis holds the new state,
+     * so nodes reloading the key see it.
+     *
+     * @param shortCode the key to invalidate
+     */
+    public void publishInvalidation(final String shortCode) {
+        publishTimer.record(() ->
+                rsTemplate.convertAndSend(invalidationChannel, shortCode));
+    }
+
+    /**
+     * Announces newly issued shortcodes to every node.
+     *
+     * @param shortCodes the issued shortcodes
+     * @see ShortCodeFilter#addLocally(Collection)
+     */
+    public void publishIssuedCodes(final Collection<String> shortCodes) {
+        if (!shortCodes.isEmpty()) {
+            publishTimer.record(() -> rsTemplate.convertAndSend(issuedChannel,
+                    String.join(",", shortCodes)));
+        }
+    }
+
+    /**
+     * A cached value with its remaining time to live.
+     *
+     * @param value the cached value, or {@code null} if absent
+     * @param ttlMillis the remaining TTL in milliseconds, or
+     *                  a negative number if unknown or unlimited
+     * @param local whether the value came from the near cache
+     */
+    public record CachedValue(String value, long ttlMillis, boolean local) {
+        /**
+         * Remaining TTL of entries served by the near cache.
+         */
+        public static final long UNKNOWN_TTL = -1;
+    }
+}
@@ -0,0 +1,599 @@
+package com.example.backend.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisConnectionException;
+import io.lettuce.core.RedisURI;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Redis nodes the shortcode cache is spread over.
+ * <p>
+ * {@code cache.redis.nodes} lists the nodes as Redis URIs,
+ * such as {@code redis://cache-1:6379,redis://:secret@cache-2:6379}.
+ * Shortcode entries are placed on them by a
+ * {@link ConsistentHashRing} with {@code cache.redis.virtual-nodes}
+ * points per node, keyed by {@code host:port}, so adding a node
+ * moves only the share of entries it takes over and those
+ * entries are simply loaded again from the database. Every
+ * node is a plain Redis server; no Redis Cluster is needed.
+ * Without nodes, the cache lives on the Redis server of
+ * {@code spring.data.redis}, the primary, which also keeps
+ * everything not keyed by shortcode: pub/sub, leases, click
+ * analytics and the deduplication hash.
+ * <p>
+ * Every {@code cache.redis.health-check-interval}, each node is
+ * sent a {@code PING}. A node that fails it, or fails a
+ * command with a connection error or timeout, is marked down
+ * until a {@code PING} succeeds again. Operations on a node
+ * that is down are skipped without waiting for a timeout:
+ * reads miss and writes are dropped, so lookups fall back to
+ * the database. A dropped write may have replaced or deleted
+ * an entry the node still holds, so the shard remembers the
+ * shortcodes of its dropped writes, at most
+ * {@value #MAX_STALE_KEYS} of them, and once a {@code PING}
+ * succeeds again their entries are evicted from the node
+ * before it is marked up; past that many, every shortcode
+ * entry of the node is evicted. {@code cache.redis.shard.up},
+ * tagged with the node, reports 1 while a node is up.
+ * <p>
+ * Down and up are tracked by each instance on its own, and
+ * the ring is only as consistent as {@code cache.redis.nodes}:
+ * instances configured with different nodes, as during a
+ * rolling change of the list, place some shortcodes on
+ * different shards, and a node that leaves the ring and joins
+ * it again still holds the entries it had, which writes made
+ * in between did not reach. Deleting the cache entries of
+ * the nodes that take part in a change of the list, once
+ * every instance runs with it, avoids serving those.
+ *
+ * @see RedisService
+ */
+@Slf4j
+@Service
+public class RedisShards {
+    /**
+     * Name of the only shard when no nodes are configured.
+     */
+    public static final String PRIMARY = "primary";
+    /**
+     * Maximum number of shortcodes whose dropped writes a shard
+     * remembers.
+     */
+    static final int MAX_STALE_KEYS = 100_000;
+    /**
+     * Template of the primary Redis server.
+     */
+    private final StringRedisTemplate primaryTemplate;
+    /**
+     * Shards, in the order the ring indexes them.
+     */
+    private final List<Shard> shards;
+    /**
+     * Ring placing keys on shards; {@code null} with one shard.
+     */
+    private final ConsistentHashRing ring;
+    /**
+     * Connection factories created for the nodes, closed on
+     * shutdown.
+     */
+    private final List<LettuceConnectionFactory> ownedFactories;
+    /**
+     * Thread running the health checks; {@code null} if disabled.
+     */
+    private final ScheduledExecutorService healthChecker;
+    /**
+     * Evicts the entries of dropped writes from a recovered node.
+     */
+    private volatile StaleEntryEvictor staleEntryEvictor =
+            (template, shortCodes, everything) -> { };
+
+    /**
+     * Evicts the cache entries a node may hold stale after
+     * writes to it were dropped.
+     */
+    @FunctionalInterface
+    public interface StaleEntryEvictor {
+        /**
+         * Deletes the entries of shortcodes from a node.
+         *
+         * @param template template of the node
+         * @param shortCodes the shortcodes whose writes were dropped
+         * @param everything whether every shortcode entry must be
+         *                   deleted, since too many writes were dropped
+         *                   to remember them
+         */
+        void evict(StringRedisTemplate template, Set<String> shortCodes,
+                   boolean everything);
+    }
+
+    /**
+     * Constructs the shards of the configured nodes.
+     *
+     * @param redisTemplate template of the primary Redis server
+     * @param nodes Redis URIs of the nodes; empty to cache on
+     *              the primary
+     * @param virtualNodes points of each node on the ring
+     * @param healthCheckInterval time between health checks;
+     *                            zero disables them
+     * @param commandTimeout timeout of commands sent to the nodes
+     * @param meterRegistry registry of the health gauges
+     */
+    @Autowired
+    public RedisShards(final StringRedisTemplate redisTemplate,
+                       @Value("${cache.redis.nodes:}")
+                       final List<String> nodes,
+                       @Value("${cache.redis.virtual-nodes:160}")
+                       final int virtualNodes,
+                       @Value("${cache.redis.health-check-interval:1s}")
+                       final Duration healthCheckInterval,
+                       @Value("${spring.data.redis.timeout:2s}")
+                       final Duration commandTimeout,
+                       final MeterRegistry meterRegistry) {
+        this(redisTemplate, connect(nodes, commandTimeout), virtualNodes,
+                healthCheckInterval, meterRegistry);
+        nodeTemplates(shards).forEach(template -> ownedFactories.add(
+                (LettuceConnectionFactory) template.getConnectionFactory()));
+    }
+
+    /**
+     * Constructs shards over existing templates.
+     *
+     * @param redisTemplate template of the primary Redis server
+     * @param nodes templates of the nodes, keyed by name; empty
+     *              to cache on the primary
+     * @param virtualNodes points of each node on the ring
+     * @param healthCheckInterval time between health checks;
+     *                            zero disables them
+     * @param meterRegistry registry of the health gauges
+     */
+    public RedisShards(final StringRedisTemplate redisTemplate,
+                       final Map<String, StringRedisTemplate> nodes,
+                       final int virtualNodes,
+                       final Duration healthCheckInterval,
+                       final MeterRegistry meterRegistry) {
+        this.primaryTemplate = redisTemplate;
+        List<Shard> all = new ArrayList<>();
+        if (nodes.isEmpty()) {
+            all.add(new Shard(PRIMARY, redisTemplate));
+        } else {
+            nodes.forEach((name, template) ->
+                    all.add(new Shard(name, template)));
+        }
+        this.shards = List.copyOf(all);
+        this.ring = shards.size() == 1 ? null : new ConsistentHashRing(
+                shards.stream().map(Shard::name).toList(), virtualNodes);
+        this.ownedFactories = new ArrayList<>();
+        for (Shard shard : shards) {
+            Gauge.builder("cache.redis.shard.up", shard,
+                            node -> node.isUp() ? 1 : 0)
+                    .description("Whether a Redis node of the cache is up")
+                    .tag("shard", shard.name())
+                    .register(meterRegistry);
+        }
+        if (healthCheckInterval.isZero()) {
+            this.healthChecker = null;
+        } else {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("redis-shard-health-%d")
+                            .setDaemon(true)
+                            .build());
+            healthChecker.scheduleWithFixedDelay(this::checkHealth,
+                    healthCheckInterval.toMillis(),
+                    healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        log.info("Redis cache spread over {} shard(s): {}", shards.size(),
+                shards.stream().map(Shard::name).toList());
+    }
+
+    /**
+     * Connects to the nodes.
+     *
+     * @param nodes Redis URIs of the nodes
+     * @param commandTimeout timeout of commands
+     * @return templates of the nodes, keyed by {@code host:port}
+     * @throws IllegalArgumentException if a URI is invalid or
+     * listed twice
+     */
+    private static Map<String, StringRedisTemplate> connect(
+            final List<String> nodes, final Duration commandTimeout) {
+        Map<String, StringRedisTemplate> templates = new LinkedHashMap<>();
+        for (String node : nodes) {
+            if (node.isBlank()) {
+                continue;
+            }
+            RedisURI uri = RedisURI.create(node.trim());
+            String name = uri.getHost() + ":" + uri.getPort();
+            if (templates.containsKey(name)) {
+                throw new IllegalArgumentException(
+                        "Redis node listed twice: " + name);
+            }
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                    LettuceConnectionFactory.createRedisConfiguration(uri),
+                    LettuceClientConfiguration.builder()
+                            .commandTimeout(commandTimeout).build());
+            factory.afterPropertiesSet();
+            templates.put(name, new StringRedisTemplate(factory));
+        }
+        return templates;
+    }
+
+    /**
+     * Returns the templates of the shards that are not the
+     * primary.
+     *
+     * @param all the shards
+     * @return their templates
+     */
+    private static List<StringRedisTemplate> nodeTemplates(
+            final List<Shard> all) {
+        return all.stream().filter(shard -> !PRIMARY.equals(shard.name()))
+                .map(Shard::template).toList();
+    }
+
+    /**
+     * Sets how entries of dropped writes are evicted from a
+     * node before it is marked up again.
+     *
+     * @param evictor the evictor
+     */
+    public void setStaleEntryEvictor(final StaleEntryEvictor evictor) {
+        this.staleEntryEvictor = evictor;
+    }
+
+    /**
+     * Returns the template of the primary Redis server.
+     *
+     * @return the template for everything not keyed by shortcode
+     */
+    public StringRedisTemplate primary() {
+        return primaryTemplate;
+    }
+
+    /**
+     * Returns every shard.
+     *
+     * @return the shards
+     */
+    public List<Shard> all() {
+        return shards;
+    }
+
+    /**
+     * Returns the shard a key belongs to.
+     *
+     * @param key the key
+     * @return its shard, up or not
+     */
+    public Shard shardOf(final String key) {
+        return ring == null ? shards.get(0) : shards.get(ring.nodeOf(key));
+    }
+
+    /**
+     * Groups keys by the shard they belong to.
+     *
+     * @param keys the keys
+     * @param routingKey maps a key to the key placed on the ring
+     * @param <K> the type of the keys
+     * @return the keys of each shard, in their original order
+     */
+    public <K> Map<Shard, List<K>> groupByShard(
+            final Collection<K> keys,
+            final Function<K, String> routingKey) {
+        if (ring == null) {
+            return Map.of(shards.get(0), List.copyOf(keys));
+        }
+        Map<Shard, List<K>> groups = new LinkedHashMap<>();
+        for (K key : keys) {
+            groups.computeIfAbsent(shardOf(routingKey.apply(key)),
+                    shard -> new ArrayList<>()).add(key);
+        }
+        return groups;
+    }
+
+    /**
+     * Marks a shard down after a command failed to reach it,
+     * until the next successful health check.
+     *
+     * @param shard the shard
+     * @param failure the error of the command
+     * @return {@code true} if the error is a connection error or
+     * timeout; {@code false} if the node answered with an error,
+     * leaving the shard up
+     */
+    public boolean reportFailure(final Shard shard,
+                                 final DataAccessException failure) {
+        return reportFailure(shard, failure, List.of());
+    }
+
+    /**
+     * Marks a shard down after a write failed to reach it, and
+     * remembers the shortcodes written, since the write may or
+     * may not have been applied.
+     *
+     * @param shard the shard
+     * @param failure the error of the write
+     * @param shortCodes the shortcodes written
+     * @return {@code true} if the error is a connection error or
+     * timeout; {@code false} if the node answered with an error,
+     * leaving the shard up
+     */
+    public boolean reportFailure(final Shard shard,
+                                 final DataAccessException failure,
+                                 final Collection<String> shortCodes) {
+        if (!isUnreachable(failure)) {
+            return false;
+        }
+        if (shard.markDown(shortCodes)) {
+            log.warn("Redis shard {} is down, falling back to the database:"
+                    + " {}", shard.name(), failure.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether an error means a node could not be reached.
+     *
+     * @param failure the error
+     * @return whether it is a connection error or timeout
+     */
+    private static boolean isUnreachable(final DataAccessException failure) {
+        Throwable cause = failure.getMostSpecificCause();
+        return failure instanceof DataAccessResourceFailureException
+                || failure instanceof QueryTimeoutException
+                || cause instanceof RedisConnectionException
+                || cause instanceof RedisCommandTimeoutException;
+    }
+
+    /**
+     * Pings every shard and marks it up or down.
+     * <p>
+     * A shard that was down is only marked up once the entries
+     * of the writes it dropped are evicted; if that fails, it
+     * stays down until the next check.
+     */
+    void checkHealth() {
+        for (Shard shard : shards) {
+            boolean up;
+            try {
+                up = "PONG".equals(shard.template().execute(
+                        (RedisCallback<String>) RedisConnection::ping));
+            } catch (RuntimeException e) {
+                up = false;
+            }
+            if (!up) {
+                if (shard.markDown(List.of())) {
+                    log.warn("Redis shard {} failed its health check,"
+                            + " falling back to the database", shard.name());
+                }
+            } else if (!shard.isUp() && recover(shard)) {
+                log.info("Redis shard {} is up again", shard.name());
+            }
+        }
+    }
+
+    /**
+     * Evicts the entries of the writes a shard dropped until
+     * none is left, then marks it up.
+     *
+     * @param shard the shard, down
+     * @return {@code true} if the shard is now up
+     */
+    private boolean recover(final Shard shard) {
+        while (true) {
+            Shard.StaleEntries stale = shard.takeStaleOrMarkUp();
+            if (stale == null) {
+                return true;
+            }
+            try {
+                staleEntryEvictor.evict(shard.template(), stale.shortCodes(),
+                        stale.everything());
+            } catch (RuntimeException e) {
+                shard.markDown(stale.everything() ? null : stale.shortCodes());
+                log.warn("Evicting stale entries from Redis shard {} failed,"
+                        + " keeping it down: {}", shard.name(), e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Stops the health checks once the context starts closing,
+     * before the connection factories stop, so nodes are not
+     * reported down on shutdown.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stopHealthChecks() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops the health checks and closes the connections to the
+     * nodes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopHealthChecks();
+        ownedFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    /**
+     * A Redis node holding part of the cache.
+     */
+    public static final class Shard {
+        /**
+         * Name of the node, its {@code host:port}.
+         */
+        private final String name;
+        /**
+         * Template of the node.
+         */
+        private final StringRedisTemplate template;
+        /**
+         * Whether the node passed its last check.
+         */
+        private volatile boolean up = true;
+        /**
+         * Shortcodes whose writes were dropped while the node
+         * was down; guarded by the shard.
+         */
+        private final Set<String> staleKeys = new HashSet<>();
+        /**
+         * Whether more writes were dropped than
+         * {@link #staleKeys} may hold; guarded by the shard.
+         */
+        private boolean staleOverflow;
+
+        /**
+         * Entries to evict from a node before it is marked up.
+         *
+         * @param shortCodes the shortcodes whose writes were dropped
+         * @param everything whether every entry must be evicted
+         */
+        record StaleEntries(Set<String> shortCodes, boolean everything) {
+        }
+
+        /**
+         * Constructs a shard that is up.
+         *
+         * @param nodeName name of the node
+         * @param nodeTemplate template of the node
+         */
+        Shard(final String nodeName, final StringRedisTemplate nodeTemplate) {
+            this.name = nodeName;
+            this.template = nodeTemplate;
+        }
+
+        /**
+         * Returns the name of the node.
+         *
+         * @return its {@code host:port}, or {@value RedisShards#PRIMARY}
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the template of the node.
+         *
+         * @return the template
+         */
+        public StringRedisTemplate template() {
+            return template;
+        }
+
+        /**
+         * Tells whether the node is up.
+         *
+         * @return {@code false} after a failure, until a health
+         * check succeeds
+         */
+        public boolean isUp() {
+            return up;
+        }
+
+        /**
+         * Remembers a write dropped because the node is down.
+         *
+         * @param shortCodes the shortcodes written
+         * @return {@code true} if the node is down and the write
+         * must be dropped; {@code false} if it is up
+         */
+        synchronized boolean dropWhileDown(
+                final Collection<String> shortCodes) {
+            if (up) {
+                return false;
+            }
+            remember(shortCodes);
+            return true;
+        }
+
+        /**
+         * Marks the node down, remembering the shortcodes of a
+         * write that failed.
+         *
+         * @param shortCodes the shortcodes written; {@code null}
+         *                   if every entry must be evicted
+         * @return {@code true} if the node was up
+         */
+        synchronized boolean markDown(final Collection<String> shortCodes) {
+            boolean changed = up;
+            up = false;
+            remember(shortCodes);
+            return changed;
+        }
+
+        /**
+         * Adds shortcodes to those whose writes were dropped.
+         *
+         * @param shortCodes the shortcodes; {@code null} if every
+         *                   entry must be evicted
+         */
+        private void remember(final Collection<String> shortCodes) {
+            if (shortCodes == null) {
+                staleKeys.clear();
+                staleOverflow = true;
+            } else if (!staleOverflow && !shortCodes.isEmpty()) {
+                staleKeys.addAll(shortCodes);
+                if (staleKeys.size() > MAX_STALE_KEYS) {
+                    remember(null);
+                }
+            }
+        }
+
+        /**
+         * Takes the entries to evict, or marks the node up if
+         * there are none.
+         *
+         * @return the entries, or {@code null} if the node is now up
+         */
+        synchronized StaleEntries takeStaleOrMarkUp() {
+            if (staleKeys.isEmpty() && !staleOverflow) {
+                up = true;
+                return null;
+            }
+            StaleEntries stale = new StaleEntries(Set.copyOf(staleKeys),
+                    staleOverflow);
+            staleKeys.clear();
+            staleOverflow = false;
+            return stale;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.backend.service;
+
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory Bloom filter of every issued shortcode.
+ * <p>
+ * A shortcode the filter has never seen certainly does not
+ * exist, so lookups for it are answered without querying the
+ * database. Scanners and typos therefore cost one hash
+ * computation instead of a Postgres round trip.
+ * <p>
+ * The filter is built from the {@code short_urls} table in the
+ * background at startup and rebuilt periodically, which also
+ * drops deleted shortcodes. New shortcodes are added on the
+ * node that issued them and announced over Redis pub/sub so
+ * every other node adds them too. Until the first build has
+ * finished, every shortcode is reported as possibly present.
+ * <p>
+ * Announcements are at most once, so a shortcode committed
+ * after a build may never reach this node before the next
+ * one. The build therefore also keeps the highest sequence
+ * value found in each range leased from ZooKeeper: a
+ * shortcode above the highest value of its range, or in a
+ * range without rows, is reported as possibly present as long
+ * as its value is not above the highest id committed, read
+ * from the primary at most once per second. Only shortcodes
+ * committed below a value already found in their range, by a
+ * transaction that was still open during the scan, still rely
+ * on the announcement.
+ * <p>
+ * Metrics:
+ * <ul>
+ *     <li>{@code shortcode.filter.checks}, tagged
+ *     {@code result=absent|maybe};</li>
+ *     <li>{@code shortcode.filter.false.positives}, lookups the
+ *     filter let through that found no row; divided by the
+ *     {@code maybe} checks this is the observed false-positive
+ *     rate;</li>
+ *     <li>{@code shortcode.filter.expected.fpp}, the false-positive
+ *     probability the filter expects at its current fill.</li>
+ * </ul>
+ *
+ * @see ShortUrlLoader
+ * @see com.google.common.hash.BloomFilter
+ */
+@Slf4j
+@Service
+public class ShortCodeFilter {
+    /**
+     * Minimum time between two reads of the highest id
+     * committed, in milliseconds.
+     */
+    private static final long HIGH_WATER_REFRESH_MILLIS = 1_000;
+    /**
+     * Repository used to rebuild the filter.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service used to announce new shortcodes to other nodes.
+     */
+    private final RedisService redisService;
+    /**
+     * Number of shortcodes the filter is sized for.
+     */
+    private final long expectedInsertions;
+    /**
+     * Target false-positive probability at the expected size.
+     */
+    private final double falsePositiveProbability;
+    /**
+     * Single thread running the periodic rebuild.
+     */
+    private final ScheduledExecutorService rebuilder;
+    /**
+     * The current filter, or {@code null} before the first build.
+     */
+    private volatile BloomFilter<CharSequence> filter;
+    /**
+     * Filter being built, which also receives new shortcodes
+     * added while the table is scanned.
+     */
+    private volatile BloomFilter<CharSequence> building;
+    /**
+     * Highest sequence value found in each leased range by the
+     * last build, keyed by range.
+     */
+    private volatile Map<Long, Long> rangeTails = Map.of();
+    /**
+     * Highest sequence value known to be committed.
+     */
+    private final AtomicLong committedHighWater = new AtomicLong();
+    /**
+     * Time of the last read of the highest id committed, in
+     * milliseconds since the epoch.
+     */
+    private final AtomicLong highWaterReadAt = new AtomicLong();
+    /**
+     * Counts shortcodes reported as absent.
+     */
+    private final Counter absentChecks;
+    /**
+     * Counts shortcodes reported as possibly present.
+     */
+    private final Counter maybeChecks;
+    /**
+     * Counts possibly present shortcodes that were not found.
+     */
+    private final Counter falsePositives;
+
+    /**
+     * Constructs a new {@code ShortCodeFilter} and schedules
+     * its first build right away.
+     *
+     * @param repository repository used to rebuild the filter
+     * @param cacheService service used to announce new shortcodes
+     * @param meterRegistry registry for the filter metrics
+     * @param insertions number of shortcodes the filter is sized for
+     * @param fpp target false-positive probability
+     * @param rebuildInterval time between rebuilds
+     */
+    public ShortCodeFilter(final ShortUrlRepository repository,
+                           final RedisService cacheService,
+                           final MeterRegistry meterRegistry,
+                           @Value("${shortcode.filter.expected-insertions:"
+                                   + "10000000}")
+                           final long insertions,
+                           @Value("${shortcode.filter.fpp:0.01}")
+                           final double fpp,
+                           @Value("${shortcode.filter.rebuild-interval:1h}")
+                           final Duration rebuildInterval) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.expectedInsertions = insertions;
+        this.falsePositiveProbability = fpp;
+        this.absentChecks = meterRegistry.counter(
+                "shortcode.filter.checks", "result", "absent");
+        this.maybeChecks = meterRegistry.counter(
+                "shortcode.filter.checks", "result", "maybe");
+        this.falsePositives = meterRegistry.counter(
+                "shortcode.filter.false.positives");
+        Gauge.builder("shortcode.filter.expected.fpp", this,
+                        ShortCodeFilter::expectedFpp)
+                .description("Expected false-positive probability")
+                .register(meterRegistry);
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("shortcode-filter-%d")
+                        .setDaemon(true)
+                        .build());
+        rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, 0,
+                rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tells whether a shortcode may have been issued.
+     *
+     * @param shortCode the shortcode to check
+     * @return {@code false} only if the shortcode certainly
+     * does not exist
+     */
+    public boolean mightContain(final String shortCode) {
+        Map<Long, Long> tails = rangeTails;
+        BloomFilter<CharSequence> current = filter;
+        if (current == null || current.mightContain(shortCode)
+                || isRecent(shortCode, tails)) {
+            maybeChecks.increment();
+            return true;
+        }
+        absentChecks.increment();
+        return false;
+    }
+
+    /**
+     * Tells whether a shortcode the filter has not seen may have
+     * been committed after the last build.
+     *
+     * @param shortCode the shortcode to check
+     * @param tails the highest value of each range found by the
+     * last build
+     * @return {@code true} if the shortcode is above the highest
+     * value of its range and not above the highest id committed
+     */
+    private boolean isRecent(final String shortCode,
+                             final Map<Long, Long> tails) {
+        if (!Base62Converter.isCanonical(shortCode)) {
+            return false;
+        }
+        long sequence = Base62Converter.decode(shortCode);
+        Long tail = tails.get(ZooKeeperService.rangeOf(sequence));
+        if (tail != null && sequence <= tail) {
+            return false;
+        }
+        return sequence <= committedHighWater(sequence);
+    }
+
+    /**
+     * Returns the highest sequence value known to be committed,
+     * reading it again from the primary if a value above it is
+     * looked up and the last read is more than
+     * {@value #HIGH_WATER_REFRESH_MILLIS} ms old.
+     *
+     * @param sequence the sequence value looked up
+     * @return the highest sequence value committed
+     */
+    private long committedHighWater(final long sequence) {
+        long highWater = committedHighWater.get();
+        long readAt = highWaterReadAt.get();
+        long now = System.currentTimeMillis();
+        if (sequence > highWater
+                && now - readAt >= HIGH_WATER_REFRESH_MILLIS
+                && highWaterReadAt.compareAndSet(readAt, now)) {
+            try {
+                highWater = committedHighWater.accumulateAndGet(
+                        shortUrlRepository.findMaxId(), Math::max);
+            } catch (RuntimeException e) {
+                log.warn("Reading the highest committed id failed: {}",
+                        e.getMessage());
+            }
+        }
+        return highWater;
+    }
+
+    /**
+     * Records that a possibly present shortcode was not found.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Adds newly issued shortcodes on this node and
+     * announces them to the other nodes.
+     * <p>
+     * Call this once the shortcodes are committed, so other
+     * nodes looking them up find the rows. If the announcement
+     * is lost, other nodes still look the shortcodes up in the
+     * database until their next rebuild picks them up.
+     *
+     * @param shortCodes the issued shortcodes
+     */
+    public void add(final Collection<String> shortCodes) {
+        addLocally(shortCodes);
+        try {
+            redisService.publishIssuedCodes(shortCodes);
+        } catch (RuntimeException e) {
+            log.warn("Announcing {} new shortcodes failed: {}",
+                    shortCodes.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Adds shortcodes issued by another node.
+     * <p>
+     * The filter being built is read before the current one:
+     * if no build was running at that point, a build that
+     * starts later scans the already committed rows.
+     *
+     * @param shortCodes the issued shortcodes
+     */
+    public void addLocally(final Collection<String> shortCodes) {
+        BloomFilter<CharSequence> next = building;
+        BloomFilter<CharSequence> current = filter;
+        for (String shortCode : shortCodes) {
+            if (current != null) {
+                current.put(shortCode);
+            }
+            if (next != null) {
+                next.put(shortCode);
+            }
+        }
+    }
+
+    /**
+     * Builds a new filter from the table and swaps it in.
+     * <p>
+     * Shortcodes added while the table is scanned go into
+     * both the old and the new filter, so none are lost. The
+     * highest value of each range is swapped in after the
+     * filter, and read before it, so a check never pairs the
+     * new ranges with the old filter.
+     */
+    public void rebuild() {
+        long started = System.nanoTime();
+        BloomFilter<CharSequence> next = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedInsertions, falsePositiveProbability);
+        building = next;
+        AtomicLong count = new AtomicLong();
+        Map<Long, Long> tails = new HashMap<>();
+        try {
+            shortUrlRepository.forEachShortCode(shortCode -> {
+                next.put(shortCode);
+                count.incrementAndGet();
+                if (Base62Converter.isValid(shortCode)) {
+                    long sequence = Base62Converter.decode(shortCode);
+                    tails.merge(ZooKeeperService.rangeOf(sequence),
+                            sequence, Math::max);
+                }
+            });
+            filter = next;
+            rangeTails = tails;
+            tails.values().forEach(tail ->
+                    committedHighWater.accumulateAndGet(tail, Math::max));
+        } finally {
+            building = null;
+        }
+        log.info("Built shortcode filter with {} codes in {} ms", count.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        if (count.get() > expectedInsertions) {
+            log.warn("Shortcode filter holds {} codes but is sized for {}; "
+                    + "raise shortcode.filter.expected-insertions",
+                    count.get(), expectedInsertions);
+        }
+    }
+
+    /**
+     * Returns the false-positive probability expected
+     * at the current fill of the filter.
+     *
+     * @return the expected probability, or {@code 1} before
+     * the first build
+     */
+    public double expectedFpp() {
+        BloomFilter<CharSequence> current = filter;
+        return current == null ? 1 : current.expectedFpp();
+    }
+
+    /**
+     * Rebuilds from the background thread, logging failures
+     * so the current filter keeps being used.
+     */
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Building the shortcode filter failed: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic rebuild.
+     */
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+}
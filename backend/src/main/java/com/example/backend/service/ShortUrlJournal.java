@@ -0,0 +1,502 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable write mode of single creates: new short URLs are
+ * acknowledged once they are in a local {@link WriteAheadLog},
+ * and inserted into {@code short_urls} in the background.
+ * <p>
+ * With {@code shorten.wal.enabled}, {@link #append(ShortUrl)}
+ * hands a short URL to a committer thread and waits for it to
+ * be on disk. The committer writes every short URL waiting at
+ * that moment with one write and one {@code fdatasync}, so
+ * while a sync is in progress the next creates queue up and
+ * share the following one: the more concurrent creates, the
+ * larger the groups, and a create never waits for Postgres.
+ * <p>
+ * Every {@code shorten.wal.drain-interval}, a drainer thread
+ * inserts the logged short URLs into the database in batches,
+ * skipping rows that already exist. Once a batch is committed,
+ * its URLs are cached over any {@link RedisService#MISSING}
+ * marker a lookup left in the meantime, its shortcodes are
+ * added to the {@link ShortCodeFilter} of every node, and the
+ * log is checkpointed, which deletes the segments fully
+ * drained. A failed batch is
+ * retried on the next run. When the instance starts, the
+ * records after the checkpoint are replayed: they are written
+ * to Redis and drained again, which is idempotent.
+ * <p>
+ * Until drained, a short URL is only served from the caches;
+ * its stats, updates and deletes see no row yet, and with
+ * {@code shorten.dedupe.enabled} shortening its URL again may
+ * issue another shortcode. When {@value #MAX_PENDING} short
+ * URLs wait to be drained, or the log failed to write, appends
+ * are refused and creates insert their row directly.
+ * <p>
+ * Metrics:
+ * <ul>
+ *     <li>{@code shorten.wal.sync}, the time of each group
+ *     commit, and {@code shorten.wal.sync.batch}, the short URLs
+ *     it made durable;</li>
+ *     <li>{@code shorten.wal.pending}, short URLs waiting to be
+ *     drained, and {@code shorten.wal.drain.lag}, how long the
+ *     oldest of them has waited;</li>
+ *     <li>{@code shorten.wal.drained} and
+ *     {@code shorten.wal.drain.failures}.</li>
+ * </ul>
+ *
+ * @see DurableShortenService#generateShortCode(String)
+ * @see ShortUrlRepository#insertAllIfAbsent(List)
+ */
+@Slf4j
+@Service
+public class ShortUrlJournal {
+    /**
+     * Size after which a new segment is started.
+     */
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    /**
+     * Maximum number of short URLs made durable by one sync.
+     */
+    private static final int MAX_GROUP_SIZE = 1_000;
+    /**
+     * Maximum number of short URLs inserted per drained batch.
+     */
+    private static final int DRAIN_BATCH_SIZE = 500;
+    /**
+     * Number of short URLs waiting to be drained beyond which
+     * appends are refused.
+     */
+    private static final int MAX_PENDING = 100_000;
+    /**
+     * Time the committer waits for an append before checking
+     * whether it should stop, in milliseconds.
+     */
+    private static final long POLL_MILLIS = 100;
+    /**
+     * Maximum time, in seconds, to wait for the threads when
+     * shutting down.
+     */
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    /**
+     * Repository the short URLs are drained into.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service caching the replayed and drained short URLs.
+     */
+    private final RedisService redisService;
+    /**
+     * Filter the drained shortcodes are added to.
+     */
+    private final ShortCodeFilter shortCodeFilter;
+    /**
+     * Whether creates are logged at all.
+     */
+    private final boolean enabled;
+    /**
+     * The log; {@code null} when disabled.
+     */
+    private final WriteAheadLog wal;
+    /**
+     * Short URLs waiting for the committer.
+     */
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    /**
+     * Logged short URLs waiting to be drained, in log order.
+     */
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    /**
+     * Size of {@link #pending}.
+     */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    /**
+     * Single thread writing and syncing the log.
+     */
+    private final ExecutorService committer;
+    /**
+     * Single thread draining the log into the database.
+     */
+    private final ScheduledExecutorService drainer;
+    /**
+     * Times group commits.
+     */
+    private final Timer syncTimer;
+    /**
+     * Records the size of group commits.
+     */
+    private final DistributionSummary syncBatch;
+    /**
+     * Counts short URLs drained.
+     */
+    private final Counter drained;
+    /**
+     * Counts drained batches that failed.
+     */
+    private final Counter drainFailures;
+    /**
+     * Set once appends must no longer be written.
+     */
+    private volatile boolean closed;
+    /**
+     * Serializes drains, which the drainer thread, shutdown and
+     * tests may start at once.
+     */
+    private final Object drainLock = new Object();
+
+    /**
+     * A short URL waiting for the committer.
+     *
+     * @param shortUrl the short URL
+     * @param synced completed once it is on disk
+     */
+    private record Append(ShortUrl shortUrl, CompletableFuture<Void> synced) {
+    }
+
+    /**
+     * A logged short URL waiting to be drained.
+     *
+     * @param shortUrl the short URL
+     * @param position the log position after its record
+     * @param loggedAt when it was logged, in epoch milliseconds
+     */
+    private record Pending(ShortUrl shortUrl, long position, long loggedAt) {
+    }
+
+    /**
+     * Constructs a new {@code ShortUrlJournal}, replaying the
+     * log when enabled.
+     *
+     * @param repository repository the short URLs are drained into
+     * @param cacheService service caching the replayed and drained
+     *                     short URLs
+     * @param filter filter the drained shortcodes are added to
+     * @param meterRegistry registry for the log metrics
+     * @param walEnabled whether creates are logged
+     * @param directory directory of the log segments
+     * @param drainInterval time between drains
+     * @throws UncheckedIOException if the log cannot be replayed
+     */
+    public ShortUrlJournal(final ShortUrlRepository repository,
+                           final RedisService cacheService,
+                           final ShortCodeFilter filter,
+                           final MeterRegistry meterRegistry,
+                           @Value("${shorten.wal.enabled:false}")
+                           final boolean walEnabled,
+                           @Value("${shorten.wal.directory:data/wal}")
+                           final String directory,
+                           @Value("${shorten.wal.drain-interval:100ms}")
+                           final Duration drainInterval) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.shortCodeFilter = filter;
+        this.enabled = walEnabled;
+        this.syncTimer = Timer.builder("shorten.wal.sync")
+                .description("Time to make a group of creates durable")
+                .register(meterRegistry);
+        this.syncBatch = DistributionSummary.builder("shorten.wal.sync.batch")
+                .description("Creates made durable by one sync")
+                .register(meterRegistry);
+        this.drained = meterRegistry.counter("shorten.wal.drained");
+        this.drainFailures = meterRegistry.counter(
+                "shorten.wal.drain.failures");
+        Gauge.builder("shorten.wal.pending", pendingCount, AtomicInteger::get)
+                .description("Logged creates waiting to be drained")
+                .register(meterRegistry);
+        TimeGauge.builder("shorten.wal.drain.lag", this, TimeUnit.MILLISECONDS,
+                        ShortUrlJournal::drainLagMillis)
+                .description("Age of the oldest create waiting to be drained")
+                .register(meterRegistry);
+        if (!enabled) {
+            this.wal = null;
+            this.committer = null;
+            this.drainer = null;
+            return;
+        }
+        this.wal = open(Path.of(directory));
+        this.committer = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("wal-committer-%d")
+                        .setDaemon(true)
+                        .build());
+        committer.execute(this::commitLoop);
+        this.drainer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("wal-drainer-%d")
+                        .setDaemon(true)
+                        .build());
+        drainer.scheduleWithFixedDelay(this::drainQuietly, 0,
+                drainInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the log, queuing the replayed short URLs for
+     * draining and caching them.
+     *
+     * @param directory directory of the log
+     * @return the log
+     * @throws UncheckedIOException if the log cannot be opened;
+     * starting without it would lose acknowledged creates
+     */
+    private WriteAheadLog open(final Path directory) {
+        long now = System.currentTimeMillis();
+        Map<String, String> replayed = new HashMap<>();
+        WriteAheadLog opened;
+        try {
+            opened = new WriteAheadLog(directory, SEGMENT_BYTES, record -> {
+                pending.add(new Pending(record.shortUrl(), record.position(),
+                        now));
+                replayed.put(record.shortUrl().getShortCode(),
+                        record.shortUrl().getUrl());
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Cannot open the write-ahead log in " + directory, e);
+        }
+        pendingCount.set(pending.size());
+        log.info("Opened write-ahead log in {} with {} creates to drain",
+                directory, replayed.size());
+        if (!replayed.isEmpty()) {
+            try {
+                redisService.saveAllToCache(replayed);
+            } catch (RuntimeException e) {
+                log.warn("Caching {} replayed shortcodes failed: {}",
+                        replayed.size(), e.getMessage());
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Tells whether creates are logged.
+     *
+     * @return {@code true} if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Logs a new short URL and waits until it is on disk.
+     *
+     * @param shortUrl the short URL, with its shortcode, URL,
+     *                 creation time and URL hash set
+     * @return {@code true} once it is durable; {@code false} if
+     * the journal is disabled, full, closed or failed, in which
+     * case the caller must insert the row itself
+     */
+    public boolean append(final ShortUrl shortUrl) {
+        if (!enabled || closed || pendingCount.get() >= MAX_PENDING) {
+            return false;
+        }
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        Append append = new Append(shortUrl, synced);
+        appends.add(append);
+        if (closed && appends.remove(append)) {
+            return false;
+        }
+        try {
+            synced.join();
+            return true;
+        } catch (CompletionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Commits the waiting appends in groups until closed.
+     */
+    private void commitLoop() {
+        List<Append> group = new ArrayList<>();
+        while (!closed) {
+            try {
+                Append first = appends.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            appends.drainTo(group, MAX_GROUP_SIZE - 1);
+            commit(group);
+            group.clear();
+        }
+        List<Append> left = new ArrayList<>();
+        appends.drainTo(left);
+        refuse(left);
+    }
+
+    /**
+     * Writes a group of appends with one sync, then queues them
+     * for draining and releases their callers.
+     *
+     * @param group the appends
+     */
+    private void commit(final List<Append> group) {
+        long[] positions;
+        long started = System.nanoTime();
+        try {
+            positions = wal.append(group.stream()
+                    .map(Append::shortUrl).toList());
+        } catch (IOException | RuntimeException e) {
+            log.error("Writing {} creates to the write-ahead log failed;"
+                    + " inserting directly from now on", group.size(), e);
+            closed = true;
+            refuse(group);
+            return;
+        }
+        syncTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        syncBatch.record(group.size());
+        long now = System.currentTimeMillis();
+        pendingCount.addAndGet(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            pending.add(new Pending(group.get(i).shortUrl(), positions[i],
+                    now));
+        }
+        group.forEach(append -> append.synced().complete(null));
+    }
+
+    /**
+     * Fails appends that will not be written.
+     *
+     * @param refused the appends
+     */
+    private static void refuse(final Iterable<Append> refused) {
+        for (Append append : refused) {
+            append.synced().completeExceptionally(
+                    new IllegalStateException("Write-ahead log closed"));
+        }
+    }
+
+    /**
+     * Inserts the pending short URLs into the database, a
+     * batch at a time, until none are left or a batch fails.
+     */
+    void drain() {
+        synchronized (drainLock) {
+            drainBatches();
+        }
+    }
+
+    /**
+     * Drains batch after batch; see {@link #drain()}.
+     */
+    private void drainBatches() {
+        while (true) {
+            List<Pending> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
+            Iterator<Pending> iterator = pending.iterator();
+            while (iterator.hasNext() && batch.size() < DRAIN_BATCH_SIZE) {
+                batch.add(iterator.next());
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            shortUrlRepository.insertAllIfAbsent(batch.stream()
+                    .map(Pending::shortUrl).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                pending.poll();
+            }
+            pendingCount.addAndGet(-batch.size());
+            drained.increment(batch.size());
+            Map<String, String> urls = new HashMap<>();
+            batch.forEach(entry -> urls.put(entry.shortUrl().getShortCode(),
+                    entry.shortUrl().getUrl()));
+            try {
+                redisService.saveAllToCacheOverMisses(urls);
+            } catch (RuntimeException e) {
+                log.warn("Caching {} drained shortcodes failed: {}",
+                        urls.size(), e.getMessage());
+            }
+            shortCodeFilter.add(List.copyOf(urls.keySet()));
+            try {
+                wal.checkpoint(batch.get(batch.size() - 1).position());
+            } catch (IOException e) {
+                log.warn("Checkpointing the write-ahead log failed: {}",
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drains, logging failures so the schedule keeps running.
+     */
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            drainFailures.increment();
+            log.warn("Draining the write-ahead log failed, {} creates"
+                    + " pending: {}", pendingCount.get(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns how long the oldest pending short URL has waited.
+     *
+     * @return the lag in milliseconds, {@code 0} if none waits
+     */
+    private double drainLagMillis() {
+        Pending oldest = pending.peek();
+        return oldest == null ? 0
+                : Math.max(0, System.currentTimeMillis() - oldest.loggedAt());
+    }
+
+    /**
+     * Stops the committer, drains what it can and closes the
+     * log; short URLs left pending are replayed on the next
+     * start.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IOException if the log cannot be closed
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        closed = true;
+        committer.shutdown();
+        committer.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        drainer.shutdown();
+        if (drainer.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            drainQuietly();
+        }
+        wal.close();
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Loads URLs from the database for shortcodes missing from the cache.
+ * <p>
+ * Shortcodes that the {@link ShortCodeFilter} has never seen are
+ * answered as not found without a query. A shortcode that passes
+ * the filter but has no row is cached as
+ * {@link RedisService#MISSING} for a short time and counted as a
+ * false positive of the filter.
+ * <p>
+ * Concurrent loads of the same shortcode are coalesced: the
+ * first caller queries the database and the others wait on
+ * its future, so the expiry of a popular entry causes one
+ * query per node instead of one per request. With
+ * {@code cache.coalescing.lease.enabled}, nodes also take a
+ * short Redis {@code SET NX} lease per shortcode; nodes that
+ * lose the race poll Redis for the value the winner stores
+ * instead of querying the database themselves.
+ * <p>
+ * The {@code shortcode.load.coalesced} counter, tagged
+ * {@code scope=local|remote}, counts the calls that were
+ * answered by another caller's load, and
+ * {@code shortcode.load.database} counts the queries made.
+ * <p>
+ * Entries that {@link CacheTtlPolicy} picks for early refresh
+ * are reloaded by {@link #refreshAsync(String)} on a single
+ * background thread, at most once at a time per shortcode;
+ * {@code shortcode.cache.early.refreshes} counts them.
+ * <p>
+ * Early refreshes, and loads of shortcodes invalidated moments
+ * ago, read the primary: a lagging replica could return the
+ * URL from before an update, which would then be cached with a
+ * long TTL and outlive the lag by far.
+ *
+ * @see ShortCodeFilter
+ * @see BaseUrlService
+ */
+@Slf4j
+@Service
+public class ShortUrlLoader {
+    /**
+     * Prefix of the Redis keys used as load leases.
+     */
+    private static final String LEASE_PREFIX = "lease:";
+    /**
+     * Time, in milliseconds, between polls for a value
+     * loaded by another node.
+     */
+    private static final long LEASE_POLL_MS = 20;
+    /**
+     * Maximum number of early refreshes waiting to run;
+     * further requests are dropped.
+     */
+    private static final int REFRESH_QUEUE_CAPACITY = 1024;
+    /**
+     * Repository for reading short URLs.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service for cache, negative cache and lease entries.
+     */
+    private final RedisService redisService;
+    /**
+     * Filter of issued shortcodes.
+     */
+    private final ShortCodeFilter shortCodeFilter;
+    /**
+     * Loads in progress on this node, by shortcode.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<String>>>
+            inFlight = new ConcurrentHashMap<>();
+    /**
+     * Whether loads are also coalesced across nodes.
+     */
+    private final boolean leaseEnabled;
+    /**
+     * Lifetime of a load lease, and how long losers wait.
+     */
+    private final Duration leaseTtl;
+    /**
+     * Counts calls answered by a load on this node.
+     */
+    private final Counter localCoalesced;
+    /**
+     * Counts calls answered by a load on another node.
+     */
+    private final Counter remoteCoalesced;
+    /**
+     * Counts database queries for single shortcodes.
+     */
+    private final Counter databaseLoads;
+    /**
+     * Shortcodes queued or being refreshed early.
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    /**
+     * Single thread running early refreshes.
+     */
+    private final ThreadPoolExecutor refresher;
+    /**
+     * Counts early refreshes run.
+     */
+    private final Counter earlyRefreshes;
+
+    /**
+     * Constructs a new {@code ShortUrlLoader}.
+     *
+     * @param repository repository for reading short URLs
+     * @param cacheService service for cache and lease entries
+     * @param filter filter of issued shortcodes
+     * @param meterRegistry registry for the coalescing counters
+     * @param distributedLease whether to coalesce across nodes
+     * @param leaseDuration lifetime of a load lease
+     */
+    public ShortUrlLoader(final ShortUrlRepository repository,
+                          final RedisService cacheService,
+                          final ShortCodeFilter filter,
+                          final MeterRegistry meterRegistry,
+                          @Value("${cache.coalescing.lease.enabled:false}")
+                          final boolean distributedLease,
+                          @Value("${cache.coalescing.lease.ttl:2s}")
+                          final Duration leaseDuration) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.shortCodeFilter = filter;
+        this.leaseEnabled = distributedLease;
+        this.leaseTtl = leaseDuration;
+        this.localCoalesced = meterRegistry.counter(
+                "shortcode.load.coalesced", "scope", "local");
+        this.remoteCoalesced = meterRegistry.counter(
+                "shortcode.load.coalesced", "scope", "remote");
+        this.databaseLoads = meterRegistry.counter("shortcode.load.database");
+        this.earlyRefreshes = meterRegistry.counter(
+                "shortcode.cache.early.refreshes");
+        this.refresher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("cache-refresh-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Loads the URL of a shortcode.
+     *
+     * @param shortCode the shortcode to load
+     * @return the URL, or empty if the shortcode does not exist
+     */
+    public Optional<String> load(final String shortCode) {
+        if (!shortCodeFilter.mightContain(shortCode)) {
+            return Optional.empty();
+        }
+        CompletableFuture<Optional<String>> call = new CompletableFuture<>();
+        CompletableFuture<Optional<String>> leader =
+                inFlight.putIfAbsent(shortCode, call);
+        if (leader != null) {
+            localCoalesced.increment();
+            return await(leader);
+        }
+        try {
+            Optional<String> url = leaseEnabled
+                    ? loadUnderLease(shortCode)
+                    : loadFromDatabase(shortCode);
+            call.complete(url);
+            return url;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(shortCode, call);
+        }
+    }
+
+    /**
+     * Loads a shortcode while holding its Redis lease, or waits
+     * for the node holding the lease to cache the value.
+     * <p>
+     * If the value does not show up before the lease
+     * expires, or Redis fails, the database is queried anyway.
+     *
+     * @param shortCode the shortcode to load
+     * @return the URL, or empty if the shortcode does not exist
+     */
+    private Optional<String> loadUnderLease(final String shortCode) {
+        String leaseKey = LEASE_PREFIX + shortCode;
+        String token;
+        try {
+            token = redisService.tryAcquireLease(leaseKey, leaseTtl);
+        } catch (RuntimeException e) {
+            log.warn("Taking load lease failed: {}", e.getMessage());
+            return loadFromDatabase(shortCode);
+        }
+        if (token != null) {
+            try {
+                Optional<String> url = loadFromDatabase(shortCode);
+                url.ifPresent(value -> redisService.saveToCache(shortCode,
+                        value));
+                return url;
+            } finally {
+                redisService.releaseLease(leaseKey, token);
+            }
+        }
+        long deadline = System.nanoTime() + leaseTtl.toNanos();
+        while (System.nanoTime() < deadline) {
+            sleep(LEASE_POLL_MS);
+            String cached = redisService.getFromCache(shortCode);
+            if (cached != null) {
+                remoteCoalesced.increment();
+                return RedisService.MISSING.equals(cached)
+                        ? Optional.empty() : Optional.of(cached);
+            }
+        }
+        return loadFromDatabase(shortCode);
+    }
+
+    /**
+     * Queries the database for a shortcode, caching
+     * a miss as {@link RedisService#MISSING}.
+     *
+     * @param shortCode the shortcode to load
+     * @return the URL, or empty if the shortcode does not exist
+     */
+    private Optional<String> loadFromDatabase(final String shortCode) {
+        databaseLoads.increment();
+        Optional<ShortUrl> row = redisService.isRecentlyChanged(shortCode)
+                ? shortUrlRepository.findByShortCodeOnPrimary(shortCode)
+                : shortUrlRepository.findByShortCode(shortCode);
+        Optional<String> url = row.map(ShortUrl::getUrl);
+        if (url.isEmpty()) {
+            shortCodeFilter.recordFalsePositive();
+            redisService.saveMissToCache(shortCode);
+        }
+        return url;
+    }
+
+    /**
+     * Waits for the load started by another caller.
+     *
+     * @param leader the load in progress
+     * @return its result
+     */
+    private static Optional<String> await(
+            final CompletableFuture<Optional<String>> leader) {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for load", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Loading shortcode failed", e.getCause());
+        }
+    }
+
+    /**
+     * Sleeps between lease polls.
+     *
+     * @param millis the time to sleep
+     */
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for load", e);
+        }
+    }
+
+    /**
+     * Reloads a cached shortcode in the background before its
+     * Redis entry expires.
+     * <p>
+     * Returns at once. The request is dropped if the shortcode
+     * is already being refreshed or too many are queued; the
+     * entry then simply expires and is loaded on the next miss.
+     *
+     * @param shortCode the shortcode to refresh
+     */
+    public void refreshAsync(final String shortCode) {
+        if (!refreshing.add(shortCode)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    refresh(shortCode);
+                } finally {
+                    refreshing.remove(shortCode);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(shortCode);
+            log.debug("Dropped early refresh of {}", shortCode);
+        }
+    }
+
+    /**
+     * Reloads a shortcode from the primary and caches it with
+     * the TTL of entries still being read, or as missing if the
+     * row is gone.
+     *
+     * @param shortCode the shortcode to refresh
+     */
+    private void refresh(final String shortCode) {
+        try {
+            earlyRefreshes.increment();
+            Optional<String> url = shortUrlRepository
+                    .findByShortCodeOnPrimary(shortCode).map(ShortUrl::getUrl);
+            if (url.isPresent()) {
+                redisService.refreshInCache(shortCode, url.get());
+            } else {
+                redisService.saveMissToCache(shortCode);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Early refresh of {} failed: {}", shortCode,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the early refresh thread.
+     */
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Loads the URLs of several shortcodes with at most one query.
+     *
+     * @param shortCodes the shortcodes to load
+     * @return the URLs found, keyed by shortcode
+     */
+    public Map<String, String> loadAll(final Collection<String> shortCodes) {
+        List<String> candidates = shortCodes.stream()
+                .filter(shortCodeFilter::mightContain)
+                .toList();
+        Map<String, String> loaded = new HashMap<>();
+        if (candidates.isEmpty()) {
+            return loaded;
+        }
+        Map<Boolean, List<String>> changed = candidates.stream()
+                .collect(Collectors.partitioningBy(
+                        redisService::isRecentlyChanged));
+        List<ShortUrl> rows = new ArrayList<>(
+                shortUrlRepository.findByShortCodeIn(changed.get(false)));
+        for (String shortCode : changed.get(true)) {
+            shortUrlRepository.findByShortCodeOnPrimary(shortCode)
+                    .ifPresent(rows::add);
+        }
+        for (ShortUrl shortUrl : rows) {
+            loaded.put(shortUrl.getShortCode(), shortUrl.getUrl());
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the filter of issued shortcodes, for callers
+     * that issue new ones.
+     *
+     * @return the shortcode filter
+     */
+    public ShortCodeFilter getShortCodeFilter() {
+        return shortCodeFilter;
+    }
+}
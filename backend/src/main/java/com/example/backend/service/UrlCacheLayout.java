@@ -0,0 +1,187 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.Base62Converter;
+import com.example.backend.utils.UrlCompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides how shortcode entries are laid out in Redis.
+ * <p>
+ * With {@code cache.redis.layout=strings}, every shortcode is a
+ * string key holding its URL, with its own TTL. At hundreds of
+ * millions of shortcodes the per-key overhead of Redis, a
+ * dictionary entry, a key object and an expiry entry, costs
+ * more than the URLs themselves.
+ * <p>
+ * With {@code cache.redis.layout=buckets}, shortcode
+ * {@code n}, its decoded value, is field {@code n % size} of
+ * the hash {@code prefix + (n / size)}, holding its URL
+ * compressed by {@link UrlCompressor}. Shortcodes are issued
+ * in sequence, so a bucket fills with {@code size} neighbouring
+ * shortcodes. Small hashes use the compact listpack encoding
+ * (ziplist before Redis 7), which stores the field and value
+ * back to back with a few bytes of overhead, as long as the
+ * bucket stays within {@code hash-max-listpack-entries} and
+ * every value within {@code hash-max-listpack-value}; the
+ * second must be raised above the default of 64 bytes to fit
+ * most URLs.
+ * <p>
+ * A bucket has one TTL, set by the latest write to it, so
+ * entries live as long as their neighbours are written or
+ * refreshed. Markers of missing shortcodes stay string keys
+ * with their own short TTL, and so do shortcodes that are not
+ * canonical Base62.
+ * <p>
+ * While {@code cache.redis.dual-read} is on, string keys left
+ * by the strings layout or written by nodes not yet switched
+ * are still read, and take precedence over the bucket, since
+ * bucketed writes delete them. {@link RedisLayoutMigrator}
+ * moves them into buckets.
+ *
+ * @see RedisService
+ */
+@Service
+public class UrlCacheLayout {
+    /**
+     * Value of {@code cache.redis.layout} for string keys.
+     */
+    public static final String STRINGS = "strings";
+    /**
+     * Value of {@code cache.redis.layout} for bucketed hashes.
+     */
+    public static final String BUCKETS = "buckets";
+    /**
+     * Whether entries are stored in bucketed hashes.
+     */
+    private final boolean bucketed;
+    /**
+     * Number of shortcodes per bucket.
+     */
+    private final long bucketSize;
+    /**
+     * Prefix of the bucket keys.
+     */
+    private final String bucketPrefix;
+    /**
+     * Whether string keys are read next to buckets.
+     */
+    private final boolean dualRead;
+
+    /**
+     * Constructs a new {@code UrlCacheLayout}.
+     *
+     * @param layout {@value #STRINGS} or {@value #BUCKETS}
+     * @param size number of shortcodes per bucket
+     * @param prefix prefix of the bucket keys
+     * @param readStrings whether string keys are read next to
+     *                    buckets
+     * @throws IllegalArgumentException if the layout is unknown
+     * or the size is not positive
+     */
+    public UrlCacheLayout(@Value("${cache.redis.layout:strings}")
+                          final String layout,
+                          @Value("${cache.redis.bucket-size:100}")
+                          final int size,
+                          @Value("${cache.redis.bucket-prefix:u:}")
+                          final String prefix,
+                          @Value("${cache.redis.dual-read:true}")
+                          final boolean readStrings) {
+        if (!STRINGS.equals(layout) && !BUCKETS.equals(layout)) {
+            throw new IllegalArgumentException(
+                    "Unknown cache.redis.layout: " + layout);
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "cache.redis.bucket-size must be positive: " + size);
+        }
+        this.bucketed = BUCKETS.equals(layout);
+        this.bucketSize = size;
+        this.bucketPrefix = prefix;
+        this.dualRead = readStrings;
+    }
+
+    /**
+     * Tells whether entries are stored in bucketed hashes.
+     *
+     * @return {@code true} for the buckets layout
+     */
+    public boolean isBucketed() {
+        return bucketed;
+    }
+
+    /**
+     * Tells whether the entry of a shortcode is stored in a
+     * bucket.
+     *
+     * @param shortCode the shortcode
+     * @return {@code true} for canonical shortcodes in the
+     * buckets layout
+     */
+    public boolean isBucketed(final String shortCode) {
+        return bucketed && Base62Converter.isCanonical(shortCode);
+    }
+
+    /**
+     * Tells whether string keys holding URLs are read next to
+     * buckets.
+     *
+     * @return {@code true} during the dual-read period
+     */
+    public boolean isDualRead() {
+        return dualRead;
+    }
+
+    /**
+     * Returns the prefix of the bucket keys.
+     *
+     * @return the prefix
+     */
+    public String bucketPrefix() {
+        return bucketPrefix;
+    }
+
+    /**
+     * Returns the key of the bucket holding a shortcode.
+     *
+     * @param shortCode a canonical shortcode
+     * @return the bucket key
+     */
+    public String bucketKey(final String shortCode) {
+        return bucketPrefix + Base62Converter.encode(
+                Base62Converter.decode(shortCode) / bucketSize);
+    }
+
+    /**
+     * Returns the field of a shortcode in its bucket.
+     * <p>
+     * Fields are small decimal numbers, which listpacks store
+     * as integers.
+     *
+     * @param shortCode a canonical shortcode
+     * @return the field
+     */
+    public String field(final String shortCode) {
+        return Long.toString(Base62Converter.decode(shortCode) % bucketSize);
+    }
+
+    /**
+     * Encodes a URL as a bucket value.
+     *
+     * @param url the URL
+     * @return the compressed URL
+     */
+    public String encode(final String url) {
+        return UrlCompressor.compress(url);
+    }
+
+    /**
+     * Decodes a bucket value.
+     *
+     * @param value the value, may be {@code null}
+     * @return the URL, or {@code null} if the value is
+     */
+    public String decode(final String value) {
+        return value == null ? null : UrlCompressor.decompress(value);
+    }
+}
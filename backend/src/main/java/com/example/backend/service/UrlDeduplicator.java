@@ -0,0 +1,376 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.UrlNormalizer;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Finds the shortcode already issued for a URL, so shortening
+ * the same URL again does not allocate a new sequence value
+ * and row.
+ * <p>
+ * URLs are compared once normalized by {@link UrlNormalizer}
+ * and hashed with 128-bit Murmur3. The Redis hash
+ * {@code key} maps the hex digest to the shortcode; the first
+ * 64 bits are also stored in the indexed {@code url_hash}
+ * column, which answers when Redis has lost the field and
+ * repairs it. A shortcode found either way is only returned
+ * if its row still holds an equivalent URL, so hash
+ * collisions, updated and deleted rows are never returned.
+ * A claim whose row is missing is only dropped once the
+ * primary holds a different URL under its shortcode: a row
+ * missing from the primary may belong to a creation still in
+ * flight.
+ * <p>
+ * Concurrent creations of the same URL are arbitrated by
+ * {@code HSETNX}: each claims the field with its new
+ * shortcode, and all but the first wait, for at most
+ * {@code shorten.dedupe.claim-wait}, until the first one's
+ * row is committed and are given that row. A claim whose row
+ * does not show up in time was left by a creation that
+ * failed; it is replaced and the claim retried. If Redis
+ * fails, URLs are only deduplicated through the database.
+ * <p>
+ * Outcomes are counted by {@code shortcode.dedupe}, tagged
+ * {@code result=redis_hit|database_hit|concurrent|miss}.
+ *
+ * @see UrlShortnerService#generateShortCode(String)
+ */
+@Slf4j
+@Service
+public class UrlDeduplicator {
+    /**
+     * Time, in milliseconds, between two reads of a row being
+     * waited for.
+     */
+    private static final long CLAIM_POLL_MILLIS = 20;
+    /**
+     * Number of times a creation tries to claim a URL before
+     * going on without deduplication.
+     */
+    private static final int MAX_CLAIM_ATTEMPTS = 2;
+    /**
+     * Repository holding the rows and their URL hashes.
+     */
+    private final ShortUrlRepository shortUrlRepository;
+    /**
+     * Service holding the Redis hash.
+     */
+    private final RedisService redisService;
+    /**
+     * Whether URLs are deduplicated.
+     */
+    private final boolean enabled;
+    /**
+     * Redis hash mapping URL digests to shortcodes.
+     */
+    private final String key;
+    /**
+     * How long a concurrent creation waits for the row of the
+     * claim holding its URL.
+     */
+    private final Duration claimWait;
+    /**
+     * URLs found through Redis.
+     */
+    private final Counter redisHits;
+    /**
+     * URLs found through the database.
+     */
+    private final Counter databaseHits;
+    /**
+     * URLs created concurrently by another request.
+     */
+    private final Counter concurrentHits;
+    /**
+     * URLs not shortened before.
+     */
+    private final Counter misses;
+
+    /**
+     * Constructs a new {@code UrlDeduplicator}.
+     *
+     * @param repository repository holding the rows
+     * @param cacheService service holding the Redis hash
+     * @param meterRegistry registry of the outcome counters
+     * @param dedupeEnabled whether URLs are deduplicated
+     * @param hashKey Redis hash mapping URL digests to shortcodes
+     * @param claimWaitTime how long to wait for the row of a
+     * concurrent creation
+     */
+    public UrlDeduplicator(final ShortUrlRepository repository,
+                           final RedisService cacheService,
+                           final MeterRegistry meterRegistry,
+                           @Value("${shorten.dedupe.enabled:false}")
+                           final boolean dedupeEnabled,
+                           @Value("${shorten.dedupe.key:url-dedupe}")
+                           final String hashKey,
+                           @Value("${shorten.dedupe.claim-wait:2s}")
+                           final Duration claimWaitTime) {
+        this.shortUrlRepository = repository;
+        this.redisService = cacheService;
+        this.enabled = dedupeEnabled;
+        this.key = hashKey;
+        this.claimWait = claimWaitTime;
+        this.redisHits = outcomeCounter(meterRegistry, "redis_hit");
+        this.databaseHits = outcomeCounter(meterRegistry, "database_hit");
+        this.concurrentHits = outcomeCounter(meterRegistry, "concurrent");
+        this.misses = outcomeCounter(meterRegistry, "miss");
+    }
+
+    /**
+     * Creates the counter of one outcome.
+     *
+     * @param meterRegistry the registry
+     * @param result the outcome
+     * @return the counter
+     */
+    private static Counter outcomeCounter(final MeterRegistry meterRegistry,
+                                          final String result) {
+        return Counter.builder("shortcode.dedupe")
+                .description("URLs shortened with deduplication, by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tells whether URLs are deduplicated.
+     *
+     * @return {@code true} if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Computes the hash of a URL stored in the
+     * {@code url_hash} column.
+     *
+     * @param url the URL
+     * @return the first 64 bits of its normalized digest
+     */
+    public static long hashOf(final String url) {
+        return digestOf(UrlNormalizer.normalize(url)).asLong();
+    }
+
+    /**
+     * Finds the row already created for a URL.
+     *
+     * @param url the URL to shorten
+     * @return the row, or empty if the URL was not shortened
+     * before or deduplication is disabled
+     */
+    public Optional<ShortUrl> findExisting(final String url) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String normalized = UrlNormalizer.normalize(url);
+        HashCode digest = digestOf(normalized);
+        String field = digest.toString();
+        String shortCode = readClaim(field);
+        if (shortCode != null) {
+            Optional<ShortUrl> claimed = shortUrlRepository
+                    .findByShortCode(shortCode)
+                    .filter(row -> isSameUrl(row, normalized));
+            if (claimed.isEmpty()) {
+                Optional<ShortUrl> primary = shortUrlRepository
+                        .findByShortCodeOnPrimary(shortCode);
+                if (primary.isPresent()
+                        && !isSameUrl(primary.get(), normalized)) {
+                    deleteClaim(field, shortCode);
+                }
+                claimed = primary.filter(row -> isSameUrl(row, normalized));
+            }
+            if (claimed.isPresent()) {
+                redisHits.increment();
+                return claimed;
+            }
+        }
+        Optional<ShortUrl> stored = shortUrlRepository
+                .findByUrlHash(digest.asLong()).stream()
+                .filter(row -> isSameUrl(row, normalized))
+                .findFirst();
+        if (stored.isPresent()) {
+            databaseHits.increment();
+            saveClaim(field, stored.get().getShortCode());
+            return stored;
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Claims a URL for a new shortcode, or waits for the
+     * concurrent creation holding the claim to commit its row.
+     *
+     * @param url the URL being shortened
+     * @param shortCode the shortcode allocated for it
+     * @return the committed row of a concurrent creation of the
+     * same URL, or empty if {@code shortCode} now holds the
+     * claim, Redis failed or the claim could not be taken, and
+     * the caller creates its row
+     */
+    public Optional<ShortUrl> claim(final String url,
+                                    final String shortCode) {
+        String normalized = UrlNormalizer.normalize(url);
+        String field = digestOf(normalized).toString();
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            String held = saveClaim(field, shortCode);
+            if (held.equals(shortCode)) {
+                return Optional.empty();
+            }
+            Optional<ShortUrl> row = awaitRow(held, normalized);
+            if (row.isPresent()) {
+                concurrentHits.increment();
+                return row;
+            }
+            log.warn("Replacing claim of {} whose row never showed up",
+                    held);
+            deleteClaim(field, held);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Waits for the row of a claim to be committed.
+     *
+     * @param shortCode the shortcode holding the claim
+     * @param normalized the claimed URL, normalized
+     * @return the row, or empty if it holds another URL or was
+     * not committed within the claim wait
+     */
+    private Optional<ShortUrl> awaitRow(final String shortCode,
+                                        final String normalized) {
+        long deadline = System.nanoTime() + claimWait.toNanos();
+        while (true) {
+            Optional<ShortUrl> row = shortUrlRepository
+                    .findByShortCodeOnPrimary(shortCode);
+            if (row.isPresent()) {
+                return row.filter(found -> isSameUrl(found, normalized));
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return Optional.empty();
+            }
+            try {
+                Thread.sleep(CLAIM_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Claims a URL for a shortcode whose row already holds it,
+     * unless another shortcode holds the claim.
+     * <p>
+     * Unlike {@link #claim(String, String)}, this never waits:
+     * a claim held by another shortcode is left for
+     * {@link #findExisting(String)} to check.
+     *
+     * @param url the URL
+     * @param shortCode the shortcode whose row holds it
+     */
+    public void remember(final String url, final String shortCode) {
+        saveClaim(digestOf(UrlNormalizer.normalize(url)).toString(),
+                shortCode);
+    }
+
+    /**
+     * Releases the claim of a URL whose creation was rolled
+     * back, or whose row was deleted or given another URL,
+     * unless another shortcode holds it.
+     *
+     * @param url the URL
+     * @param shortCode the shortcode that claimed it
+     */
+    public void release(final String url, final String shortCode) {
+        deleteClaim(digestOf(UrlNormalizer.normalize(url)).toString(),
+                shortCode);
+    }
+
+    /**
+     * Reads the shortcode claiming a digest.
+     *
+     * @param field the hex digest
+     * @return the shortcode, or {@code null} if there is none
+     * or Redis failed
+     */
+    private String readClaim(final String field) {
+        try {
+            return redisService.getHashField(key, field);
+        } catch (DataAccessException e) {
+            log.warn("Failed to read deduplication claim: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Claims a digest for a shortcode unless another one holds it.
+     *
+     * @param field the hex digest
+     * @param shortCode the shortcode
+     * @return the shortcode holding the digest, or
+     * {@code shortCode} if Redis failed
+     */
+    private String saveClaim(final String field, final String shortCode) {
+        try {
+            return redisService.saveHashFieldIfAbsent(key, field, shortCode);
+        } catch (DataAccessException e) {
+            log.warn("Failed to claim {} for deduplication: {}", shortCode,
+                    e.getMessage());
+            return shortCode;
+        }
+    }
+
+    /**
+     * Deletes the claim of a digest unless another shortcode
+     * holds it.
+     *
+     * @param field the hex digest
+     * @param shortCode the shortcode expected to hold it
+     */
+    private void deleteClaim(final String field, final String shortCode) {
+        try {
+            redisService.deleteHashField(key, field, shortCode);
+        } catch (DataAccessException e) {
+            log.warn("Failed to delete deduplication claim: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Tells whether a row holds a URL equivalent to another.
+     *
+     * @param row the row
+     * @param normalized the other URL, normalized
+     * @return {@code true} if both normalize the same
+     */
+    private static boolean isSameUrl(final ShortUrl row,
+                                     final String normalized) {
+        return normalized.equals(UrlNormalizer.normalize(row.getUrl()));
+    }
+
+    /**
+     * Computes the 128-bit digest of a normalized URL.
+     *
+     * @param normalized the normalized URL
+     * @return the digest
+     */
+    private static HashCode digestOf(final String normalized) {
+        return Hashing.murmur3_128().hashString(normalized,
+                StandardCharsets.UTF_8);
+    }
+}
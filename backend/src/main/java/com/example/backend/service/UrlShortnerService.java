@@ -8,10 +8,15 @@ import com.example.backend.utils.ValidatorUrl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -35,11 +40,19 @@ import java.util.Optional;
 @Slf4j
 @Service
 public class UrlShortnerService extends BaseUrlService {
+    /**
+     * Maximum number of shortcodes resolved in one call.
+     */
+    public static final int MAX_BATCH_RESOLVE = 1000;
 
     /**
      * ZooKeeper service for generating unique shortcodes.
      */
     private final ZooKeeperService zooKeeperService;
+    /**
+     * Finder of the shortcodes already issued for a URL.
+     */
+    private final UrlDeduplicator urlDeduplicator;
 
     /**
      * Constructs a new UrlShortnerService with
@@ -47,13 +60,23 @@ public class UrlShortnerService extends BaseUrlService {
      *
      * @param shortUrlRepository repository for URL data access
      * @param redisService service for cache operations
+     * @param accessCountBuffer buffer for access counts
+     * @param shortUrlLoader loader for cache misses
+     * @param resolveMetrics timers of resolutions
      * @param zooKeeperServiceContruct for generating unique shortcodes
+     * @param deduplicator finder of the shortcodes already issued
      */
     public UrlShortnerService(ShortUrlRepository shortUrlRepository,
                               RedisService redisService,
-                              ZooKeeperService zooKeeperServiceContruct) {
-        super(shortUrlRepository, redisService);
+                              AccessCountBuffer accessCountBuffer,
+                              ShortUrlLoader shortUrlLoader,
+                              ResolveMetrics resolveMetrics,
+                              ZooKeeperService zooKeeperServiceContruct,
+                              UrlDeduplicator deduplicator) {
+        super(shortUrlRepository, redisService, accessCountBuffer,
+                shortUrlLoader, resolveMetrics);
         this.zooKeeperService = zooKeeperServiceContruct;
+        this.urlDeduplicator = deduplicator;
     }
 
     /**
@@ -66,6 +89,27 @@ public class UrlShortnerService extends BaseUrlService {
     public String getUrlByShortCode(String shortCode) {
         return resolveUrl(shortCode, true);
     }
+    /**
+     * Retrieves the original URLs of several shortcodes.
+     * <p>
+     * Costs one Redis round trip and at most one database
+     * query however many shortcodes are requested.
+     *
+     * @param shortCodes the shortcodes to resolve
+     * @return the URLs keyed by shortcode, in request order;
+     * unknown shortcodes are absent
+     * @throws BadRequestException if more than
+     * {@link #MAX_BATCH_RESOLVE} shortcodes are requested
+     */
+    public Map<String, String> getUrlsByShortCodes(
+            final Collection<String> shortCodes) {
+        if (shortCodes.size() > MAX_BATCH_RESOLVE) {
+            throw new BadRequestException("At most " + MAX_BATCH_RESOLVE
+                    + " shortcodes can be resolved at once");
+        }
+        return resolveUrls(shortCodes);
+    }
+
     /**
      * Retrieves the access count associated with the given shortcode.
      * <p>
@@ -90,6 +134,15 @@ public class UrlShortnerService extends BaseUrlService {
      * This method validates the URL, generates a
      * unique shortcode using {@link ZooKeeperService},
      * and saves the mapping in both the database and Redis cache.
+     * Once committed, the shortcode is added to the
+     * {@link ShortCodeFilter} of every node.
+     * <p>
+     * When the {@link UrlDeduplicator} is enabled, a URL
+     * shortened before gets its existing shortcode back
+     * without a new sequence value; a new one is claimed for
+     * its URL, and a concurrent creation of the same URL waits
+     * for the row of the first and returns it. A rolled back
+     * creation releases its claim.
      *
      * @param url the original URL to shorten
      * @return the ShortUrl object containing the shortcode and original URL
@@ -105,6 +158,11 @@ public class UrlShortnerService extends BaseUrlService {
             log.error("Error generating short code by invalid url");
             throw new BadRequestException("Invalid Url");
         }
+        Optional<ShortUrl> existing = urlDeduplicator.findExisting(url);
+        if (existing.isPresent()) {
+            log.info("Reusing short code {}", existing.get().getShortCode());
+            return existing.get();
+        }
         String shortCode = zooKeeperService.getNextShortCode();
         log.info("Get nextSequence");
         ShortUrl shortUrl = new ShortUrl();
@@ -112,9 +170,20 @@ public class UrlShortnerService extends BaseUrlService {
         shortUrl.setUrl(url);
         shortUrl.setCreatedAt(Timestamp.from(Instant.now()));
         shortUrl.setUpdateAt(Timestamp.from(Instant.now()));
+        if (urlDeduplicator.isEnabled()) {
+            Optional<ShortUrl> concurrent =
+                    urlDeduplicator.claim(url, shortCode);
+            if (concurrent.isPresent()) {
+                return concurrent.get();
+            }
+            shortUrl.setUrlHash(UrlDeduplicator.hashOf(url));
+            afterRollback(() -> urlDeduplicator.release(url, shortCode));
+        }
 
         getShortUrlRepository().save(shortUrl);
         getRedisService().saveToCache(shortCode, url);
+        afterCommit(() -> getShortUrlLoader().getShortCodeFilter()
+                .add(List.of(shortCode)));
 
         return shortUrl;
     }
@@ -122,7 +191,13 @@ public class UrlShortnerService extends BaseUrlService {
     /**
      * Deletes the URL associated with the given shortcode.
      * <p>
-     * This method removes the URL from both the database and Redis cache.
+     * This method removes the URL from both the database and Redis cache,
+     * where the shortcode is then marked as missing.
+     * The cache entries, including the near caches of all nodes,
+     * are dropped once the transaction commits so no node can
+     * reload the deleted row in between, together with the
+     * {@link UrlDeduplicator} claim of its URL, so shortening
+     * the URL again does not wait for the deleted row.
      *
      * @param shortCode the shortcode identifying the URL
      * @throws ResourceNotFoundException if the shortcode does not exist
@@ -133,8 +208,14 @@ public class UrlShortnerService extends BaseUrlService {
         Optional<ShortUrl> url = getShortUrlRepository().
                 findByShortCode(shortCode);
         if (url != null && url.isPresent()) {
+            String longUrl = url.get().getUrl();
             getShortUrlRepository().deleteByShortCode(shortCode);
-            getRedisService().deleteFromCache(shortCode);
+            afterCommit(() -> {
+                getRedisService().deleteFromCache(shortCode);
+                if (urlDeduplicator.isEnabled()) {
+                    urlDeduplicator.release(longUrl, shortCode);
+                }
+            });
         } else {
             log.error("Error deleting url by short code : {}", shortCode);
             throw new ResourceNotFoundException("Shortcode doesn't exist: "
@@ -145,6 +226,11 @@ public class UrlShortnerService extends BaseUrlService {
      * Updates the URL associated with the given shortcode.
      * <p>
      * This method updates the URL in both the database and Redis cache.
+     * After the transaction commits, the near caches of all nodes
+     * are told to drop their copy of the old URL. The row's
+     * {@code urlHash} follows the new URL and, when the
+     * {@link UrlDeduplicator} is enabled, the claim of the old
+     * URL is released and the new URL claimed for the shortcode.
      *
      * @param shortCode  the shortcode identifying the URL
      * @param newLongUrl the new long URL to associate with the shortcode
@@ -162,11 +248,60 @@ public class UrlShortnerService extends BaseUrlService {
             throw new ResourceNotFoundException("Shortcode doesn't exist: "
                     + shortCode);
         }
-        getShortUrlRepository().updateUrl(newLongUrl, shortCode);
+        String oldLongUrl = optionalUrl.get().getUrl();
+        getShortUrlRepository().updateUrl(newLongUrl,
+                UrlDeduplicator.hashOf(newLongUrl), shortCode);
         getShortUrlRepository().updateUpdateAt(
                 Timestamp.from(Instant.now()),
                 shortCode
         );
-        getRedisService().saveToCache(shortCode, newLongUrl);
+        afterCommit(() -> {
+            getRedisService().saveToCache(shortCode, newLongUrl);
+            getRedisService().publishInvalidation(shortCode);
+            if (urlDeduplicator.isEnabled()) {
+                urlDeduplicator.release(oldLongUrl, shortCode);
+                urlDeduplicator.remember(newLongUrl, shortCode);
+            }
+        });
+    }
+
+    /**
+     * Runs an action if the current transaction rolls back.
+     *
+     * @param action the action to run
+     */
+    private static void afterRollback(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(final int status) {
+                        if (status == STATUS_ROLLED_BACK) {
+                            action.run();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Runs an action once the current transaction commits,
+     * or immediately when no transaction is active.
+     *
+     * @param action the action to run
+     */
+    private static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                });
     }
 }
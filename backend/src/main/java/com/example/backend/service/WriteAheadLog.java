@@ -0,0 +1,406 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmented write-ahead log of created short URLs, the
+ * durable part of {@link ShortUrlJournal}.
+ * <p>
+ * Every byte of the log has a position, counted from its
+ * first record ever written. Records are appended to segment
+ * files named after the position of their first byte,
+ * zero-padded so they sort by name, and a new segment is
+ * started once the current one holds {@code segmentBytes}.
+ * A record is the length of its payload, a CRC32C of the
+ * payload and the payload: creation time, URL hash if any,
+ * shortcode and URL. {@link #append(List)} writes a whole
+ * batch with one write and one {@code fdatasync}.
+ * <p>
+ * {@link #checkpoint(long)} records the position up to which
+ * the records are in the database, in a file replaced with an
+ * atomic rename, and deletes the segments before it. Opening
+ * the log replays the records after the checkpoint up to the
+ * first torn one, left by a crash in the middle of a write,
+ * and truncates the log there. The checkpoint is not forced
+ * to disk, so a crash may replay records already drained, and
+ * draining must be idempotent.
+ * <p>
+ * Appends must come from one thread at a time; checkpoints may
+ * run concurrently with them.
+ *
+ * @see ShortUrlJournal
+ */
+@Slf4j
+final class WriteAheadLog implements Closeable {
+    /**
+     * Extension of segment files.
+     */
+    private static final String SEGMENT_SUFFIX = ".wal";
+    /**
+     * Name of the checkpoint file.
+     */
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    /**
+     * Name of the checkpoint file being replaced.
+     */
+    private static final String CHECKPOINT_TEMP_FILE = "checkpoint.tmp";
+    /**
+     * Bytes of the length and checksum preceding a payload.
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+    /**
+     * Bytes of a payload with an empty shortcode and URL.
+     */
+    private static final int MIN_PAYLOAD_BYTES = 25;
+    /**
+     * Largest payload accepted when replaying, beyond which a
+     * length is taken as garbage.
+     */
+    private static final int MAX_PAYLOAD_BYTES = 1_048_576;
+    /**
+     * Directory holding the segments and the checkpoint.
+     */
+    private final Path directory;
+    /**
+     * Size after which a new segment is started.
+     */
+    private final long segmentBytes;
+    /**
+     * Start positions of the segments on disk.
+     */
+    private final ConcurrentSkipListSet<Long> segmentStarts =
+            new ConcurrentSkipListSet<>();
+    /**
+     * Start position of the segment appended to.
+     */
+    private volatile long currentStart;
+    /**
+     * Segment appended to.
+     */
+    private FileChannel current;
+    /**
+     * Position after the last record written.
+     */
+    private long end;
+
+    /**
+     * A record read back from the log.
+     *
+     * @param shortUrl the short URL it holds
+     * @param position the position after the record
+     */
+    record Record(ShortUrl shortUrl, long position) {
+    }
+
+    /**
+     * Opens the log in a directory, replaying the records
+     * after its checkpoint.
+     *
+     * @param logDirectory directory of the log, created if missing
+     * @param maxSegmentBytes size after which a new segment is started
+     * @param replayed receives the records after the checkpoint,
+     *                 in the order they were written
+     * @throws IOException if the log cannot be read or opened
+     */
+    WriteAheadLog(final Path logDirectory, final long maxSegmentBytes,
+                  final Consumer<Record> replayed) throws IOException {
+        this.directory = logDirectory;
+        this.segmentBytes = maxSegmentBytes;
+        Files.createDirectories(directory);
+        long checkpoint = readCheckpoint();
+        List<Long> starts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0,
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(starts::add);
+        }
+        long replayedEnd = checkpoint;
+        for (int i = 0; i < starts.size(); i++) {
+            long start = starts.get(i);
+            boolean last = i == starts.size() - 1;
+            if (!last && starts.get(i + 1) <= checkpoint) {
+                Files.delete(segmentPath(start));
+                continue;
+            }
+            segmentStarts.add(start);
+            long from = Math.max(0, checkpoint - start);
+            replayedEnd = start + replay(start, from, last, replayed);
+        }
+        this.end = replayedEnd;
+        openSegment();
+    }
+
+    /**
+     * Reads the checkpoint.
+     *
+     * @return the position up to which records are drained,
+     * or {@code 0} if there is no valid checkpoint
+     * @throws IOException if the file cannot be read
+     */
+    private long readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length != Long.BYTES) {
+            log.warn("Ignoring invalid write-ahead log checkpoint {}", path);
+            return 0;
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    /**
+     * Replays the records of a segment from an offset.
+     *
+     * @param start the start position of the segment
+     * @param from the offset of the first record to replay
+     * @param last whether it is the last segment, whose torn
+     *             tail is truncated
+     * @param replayed receives the records
+     * @return the offset after the last valid record
+     * @throws IOException if the segment cannot be read
+     */
+    private long replay(final long start, final long from, final boolean last,
+                        final Consumer<Record> replayed) throws IOException {
+        Path path = segmentPath(start);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (from >= size) {
+                return size;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - from));
+            int read = 0;
+            while (buffer.hasRemaining() && read >= 0) {
+                read = channel.read(buffer, from + buffer.position());
+            }
+            buffer.flip();
+            ShortUrl shortUrl = read(buffer);
+            while (shortUrl != null) {
+                replayed.accept(new Record(shortUrl,
+                        start + from + buffer.position()));
+                shortUrl = read(buffer);
+            }
+            long valid = from + buffer.position();
+            if (valid < size) {
+                if (last) {
+                    log.warn("Truncating torn write-ahead log record in {}"
+                            + " at byte {}", path, valid);
+                    channel.truncate(valid);
+                    channel.force(true);
+                } else {
+                    log.error("Skipping corrupt write-ahead log records in {}"
+                            + " after byte {}", path, valid);
+                }
+            }
+            return valid;
+        }
+    }
+
+    /**
+     * Reads the next record of a buffer.
+     *
+     * @param buffer the buffer, positioned at a record
+     * @return the short URL of the record, positioning the
+     * buffer after it; {@code null} if the record is torn or
+     * corrupt, leaving the position unchanged
+     */
+    private static ShortUrl read(final ByteBuffer buffer) {
+        int offset = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < MIN_PAYLOAD_BYTES || length > MAX_PAYLOAD_BYTES
+                || length > buffer.remaining()) {
+            buffer.position(offset);
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(buffer.position(), length));
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(offset);
+            return null;
+        }
+        Timestamp createdAt = new Timestamp(buffer.getLong());
+        boolean hashed = buffer.get() != 0;
+        long urlHash = buffer.getLong();
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode(readString(buffer));
+        shortUrl.setUrl(readString(buffer));
+        shortUrl.setUrlHash(hashed ? urlHash : null);
+        shortUrl.setCreatedAt(createdAt);
+        shortUrl.setUpdateAt(createdAt);
+        return shortUrl;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param buffer the buffer
+     * @return the string
+     */
+    private static String readString(final ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends short URLs and forces them to disk.
+     *
+     * @param shortUrls the short URLs, in order
+     * @return the position after each record
+     * @throws IOException if the records cannot be written;
+     * the log must not be appended to afterwards
+     */
+    long[] append(final List<ShortUrl> shortUrls) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(shortUrls.size());
+        int bytes = 0;
+        for (ShortUrl shortUrl : shortUrls) {
+            byte[] payload = encode(shortUrl);
+            payloads.add(payload);
+            bytes += RECORD_HEADER_BYTES + payload.length;
+        }
+        if (end > currentStart && end - currentStart + bytes > segmentBytes) {
+            current.close();
+            openSegment();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        long[] positions = new long[payloads.size()];
+        for (int i = 0; i < payloads.size(); i++) {
+            CRC32C crc = new CRC32C();
+            crc.update(payloads.get(i));
+            buffer.putInt(payloads.get(i).length)
+                    .putInt((int) crc.getValue())
+                    .put(payloads.get(i));
+            positions[i] = end + buffer.position();
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            current.write(buffer);
+        }
+        current.force(false);
+        end += bytes;
+        return positions;
+    }
+
+    /**
+     * Encodes the payload of a record.
+     *
+     * @param shortUrl the short URL
+     * @return the payload
+     */
+    private static byte[] encode(final ShortUrl shortUrl) {
+        byte[] shortCode = shortUrl.getShortCode()
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] url = shortUrl.getUrl().getBytes(StandardCharsets.UTF_8);
+        Long urlHash = shortUrl.getUrlHash();
+        return ByteBuffer.allocate(MIN_PAYLOAD_BYTES + shortCode.length
+                        + url.length)
+                .putLong(shortUrl.getCreatedAt().getTime())
+                .put((byte) (urlHash == null ? 0 : 1))
+                .putLong(urlHash == null ? 0 : urlHash)
+                .putInt(shortCode.length).put(shortCode)
+                .putInt(url.length).put(url)
+                .array();
+    }
+
+    /**
+     * Records that every record up to a position is drained,
+     * and deletes the segments holding only such records.
+     *
+     * @param position the position after the last drained record
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void checkpoint(final long position) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_TEMP_FILE);
+        Files.write(temp, ByteBuffer.allocate(Long.BYTES)
+                .putLong(position).array());
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        for (Long start : segmentStarts.headSet(currentStart)) {
+            Long next = segmentStarts.higher(start);
+            if (next == null || next > position) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(start));
+            segmentStarts.remove(start);
+        }
+    }
+
+    /**
+     * Returns the number of segments on disk.
+     *
+     * @return the segments, including the one appended to
+     */
+    int segmentCount() {
+        return segmentStarts.size();
+    }
+
+    /**
+     * Starts a segment at the end of the log.
+     *
+     * @throws IOException if the segment cannot be created
+     */
+    private void openSegment() throws IOException {
+        Path path = segmentPath(end);
+        current = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        current.position(current.size());
+        segmentStarts.add(end);
+        currentStart = end;
+        try (FileChannel parent = FileChannel.open(directory,
+                StandardOpenOption.READ)) {
+            parent.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot force directory {}: {}", directory,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the file of a segment.
+     *
+     * @param start the start position of the segment
+     * @return its path
+     */
+    private Path segmentPath(final long start) {
+        return directory.resolve(String.format("%020d", start)
+                + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Closes the segment appended to.
+     *
+     * @throws IOException if it cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        current.close();
+    }
+}
@@ -1,12 +1,29 @@
 package com.example.backend.service;
 import com.example.backend.utils.Base62Converter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service class for managing distributed
@@ -14,12 +31,48 @@ import java.util.concurrent.TimeUnit;
  * <p>
  * This class uses ZooKeeper to generate unique
  * shortcodes in a distributed environment.
- * It ensures thread safety by using an
- * inter-process mutex lock and maintains a range of
- * sequence values in a ZooKeeper node.
+ * Instead of touching ZooKeeper for every shortcode,
+ * each instance leases a whole range of
+ * {@link #RANGE_LENGTH} sequence values with a
+ * single versioned update of the ZooKeeper node,
+ * and then hands out values locally from an
+ * {@link AtomicLong}. The next range is leased in
+ * the background once the current one is
+ * {@link #PREFETCH_THRESHOLD_PERCENT}% used, so
+ * callers rarely wait on ZooKeeper.
+ * <p>
+ * Leases are made in one of two {@link AllocationMode}s:
+ * {@link AllocationMode#CAS} reads the node and
+ * writes it back with {@code setData().withVersion(...)},
+ * retrying with bounded, jittered backoff when another
+ * instance won the race; {@link AllocationMode#LOCK}
+ * does the same update while holding an
+ * {@link InterProcessMutex}. Both modes can run side by
+ * side because the write is always versioned.
+ * <p>
+ * Values of a range that are not handed out
+ * before the instance stops are never reused,
+ * which leaves gaps in the sequence but keeps
+ * every shortcode unique.
+ * <p>
+ * Only the ZooKeeper side is timed, so handing out a value
+ * from the local range stays free of metrics:
+ * <ul>
+ *     <li>{@code zookeeper.request}, tagged {@code op=read|write}
+ *     and {@code mode=cas|lock}, times each read and versioned
+ *     write of the node, in both modes, and {@code op=release}
+ *     the release of the {@link InterProcessMutex};</li>
+ *     <li>{@code zookeeper.sequence.lock.wait}, tagged
+ *     {@code lock=local|distributed}, times waits for the
+ *     refill lock and the {@link InterProcessMutex};</li>
+ *     <li>{@code zookeeper.sequence.lease.duration}, tagged
+ *     {@code trigger=prefetch|blocking}, times whole range
+ *     refills; blocking ones delayed a caller.</li>
+ * </ul>
  *
  * @see org.apache.curator.framework.CuratorFramework
  * @see org.apache.curator.framework.recipes.locks.InterProcessMutex
+ * @see org.apache.zookeeper.KeeperException.BadVersionException
  */
 @Slf4j
 @Service
@@ -28,7 +81,7 @@ public final class ZooKeeperService {
      * The ZooKeeper path used for managing the URL shortener sequence.
      * <p>
      * This path is used as the base node in ZooKeeper
-     * for storing the range start value
+     * for storing the highest sequence value leased so far
      * and managing distributed locks.
      */
     private static final String ZK_SHORTENER_PATH = "/shorten";
@@ -46,6 +99,37 @@ public final class ZooKeeperService {
      * a new range of this length is allocated.
      */
     private static final Long RANGE_LENGTH = 100000L;
+    /**
+     * Percentage of the current range that has to be
+     * used before the next range is leased in the background.
+     */
+    private static final int PREFETCH_THRESHOLD_PERCENT = 80;
+    /**
+     * Divisor used to turn {@link #PREFETCH_THRESHOLD_PERCENT}
+     * into a fraction of the range.
+     */
+    private static final int PERCENT = 100;
+    /**
+     * Maximum time, in seconds, to wait for the distributed lock.
+     */
+    private static final long LOCK_TIMEOUT_SECONDS = 2;
+    /**
+     * Maximum time, in seconds, to wait for a range that
+     * is being prefetched before leasing one synchronously.
+     */
+    private static final long PREFETCH_WAIT_SECONDS = 5;
+    /**
+     * Maximum number of compare-and-set attempts per lease.
+     */
+    private static final int MAX_CAS_ATTEMPTS = 10;
+    /**
+     * Base backoff, in milliseconds, after a lost compare-and-set.
+     */
+    private static final long CAS_BACKOFF_BASE_MS = 5;
+    /**
+     * Upper bound, in milliseconds, of the compare-and-set backoff.
+     */
+    private static final long CAS_BACKOFF_MAX_MS = 200;
     /**
      * The CuratorFramework client used to interact with ZooKeeper.
      * <p>
@@ -57,26 +141,137 @@ public final class ZooKeeperService {
      */
     private final CuratorFramework client;
     /**
-     * A distributed lock used to ensure thread safety
-     * during shortcode generation.
+     * How ranges are leased from ZooKeeper.
+     */
+    private final AllocationMode allocationMode;
+    /**
+     * A distributed lock used to serialize range leases
+     * between instances in {@link AllocationMode#LOCK} mode.
      * <p>
-     * This lock prevents race conditions
-     * when multiple instances attempt to generate
-     * the next shortcode simultaneously.
+     * The lock is only taken once per leased range,
+     * not once per shortcode.
      *
      * @see org.apache.curator.framework.recipes.locks.InterProcessMutex
      */
     private final InterProcessMutex lock;
+    /**
+     * Single background thread used to prefetch the next range.
+     */
+    private final ExecutorService prefetchExecutor;
+    /**
+     * Local lock guarding range switches and prefetch scheduling.
+     * <p>
+     * A {@link ReentrantLock} is used instead of
+     * {@code synchronized} so waiting threads do not pin
+     * carrier threads when running on virtual threads.
+     */
+    private final ReentrantLock refillLock = new ReentrantLock();
+    /**
+     * The range values are currently handed out from.
+     */
+    private volatile SequenceRange currentRange = SequenceRange.EMPTY;
+    /**
+     * The range being leased in the background, if any.
+     * Guarded by {@link #refillLock}.
+     */
+    private CompletableFuture<SequenceRange> nextRange;
+    /**
+     * Counts versioned writes rejected because another
+     * instance updated the node first.
+     */
+    private final Counter leaseConflicts;
+    /**
+     * Counts compare-and-set attempts retried after a conflict.
+     */
+    private final Counter leaseRetries;
+    /**
+     * Counts leases that failed after exhausting all attempts.
+     */
+    private final Counter leaseFailures;
+    /**
+     * Distribution of attempts needed per successful lease.
+     */
+    private final DistributionSummary leaseAttempts;
+    /**
+     * Timer of reads of the sequence node.
+     */
+    private final Timer readTimer;
+    /**
+     * Timer of versioned writes of the sequence node.
+     */
+    private final Timer writeTimer;
+    /**
+     * Timer of {@link InterProcessMutex} releases.
+     */
+    private final Timer releaseTimer;
+    /**
+     * Timer of waits for the local refill lock.
+     */
+    private final Timer localLockWait;
+    /**
+     * Timer of waits for the distributed lock.
+     */
+    private final Timer distributedLockWait;
+    /**
+     * Timer of range leases made in the background.
+     */
+    private final Timer prefetchLeases;
+    /**
+     * Timer of range leases a caller had to wait for.
+     */
+    private final Timer blockingLeases;
 
     /**
      * Constructs a new {@code ZooKeeperService} instance.
      *
      * @param clientCurator the {@link CuratorFramework} client
      *               for interacting with ZooKeeper
+     * @param meterRegistry registry for lease contention metrics
+     * @param mode how sequence ranges are leased
      */
-    public ZooKeeperService(final CuratorFramework clientCurator) {
+    public ZooKeeperService(final CuratorFramework clientCurator,
+                            final MeterRegistry meterRegistry,
+                            @Value("${zookeeper.sequence.allocation-mode:cas}")
+                            final AllocationMode mode) {
         this.client = clientCurator;
+        this.allocationMode = mode;
         this.lock = new InterProcessMutex(client, ZK_SHORTENER_PATH + "/lock");
+        String modeTag = mode.name().toLowerCase();
+        this.leaseConflicts = meterRegistry.counter(
+                "zookeeper.sequence.lease.conflicts", "mode", modeTag);
+        this.leaseRetries = meterRegistry.counter(
+                "zookeeper.sequence.lease.retries", "mode", modeTag);
+        this.leaseFailures = meterRegistry.counter(
+                "zookeeper.sequence.lease.failures", "mode", modeTag);
+        this.leaseAttempts = DistributionSummary
+                .builder("zookeeper.sequence.lease.attempts")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+        this.readTimer = Timer.builder("zookeeper.request")
+                .tags("op", "read", "mode", modeTag).register(meterRegistry);
+        this.writeTimer = Timer.builder("zookeeper.request")
+                .tags("op", "write", "mode", modeTag).register(meterRegistry);
+        this.releaseTimer = Timer.builder("zookeeper.request")
+                .tags("op", "release", "mode", modeTag)
+                .register(meterRegistry);
+        this.localLockWait = Timer.builder("zookeeper.sequence.lock.wait")
+                .tag("lock", "local").register(meterRegistry);
+        this.distributedLockWait = Timer
+                .builder("zookeeper.sequence.lock.wait")
+                .tag("lock", "distributed").register(meterRegistry);
+        this.prefetchLeases = Timer
+                .builder("zookeeper.sequence.lease.duration")
+                .tags("mode", modeTag, "trigger", "prefetch")
+                .register(meterRegistry);
+        this.blockingLeases = Timer
+                .builder("zookeeper.sequence.lease.duration")
+                .tags("mode", modeTag, "trigger", "blocking")
+                .register(meterRegistry);
+        this.prefetchExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("zk-range-prefetch-%d")
+                        .setDaemon(true)
+                        .build());
         initializeZNode();
     }
     /**
@@ -105,52 +300,278 @@ public final class ZooKeeperService {
     /**
      * Generates the next shortcode in the sequence.
      * <p>
-     * This method acquires a distributed lock,
-     * retrieves the current sequence value from
-     * ZooKeeper, increments it, and encodes
-     * the new value into a Base62 shortcode.
+     * This method takes the next value of the locally
+     * leased range and encodes it into a Base62 shortcode.
      *
      * @return the generated shortcode
      */
     public String getNextShortCode() {
+        return Base62Converter.encode(nextSequence());
+    }
+
+    /**
+     * Returns the next unique sequence value.
+     * <p>
+     * Values come from the locally leased range;
+     * ZooKeeper is only contacted when the range
+     * runs out and no prefetched range is available.
+     *
+     * @return the next sequence value
+     */
+    public long nextSequence() {
+        while (true) {
+            SequenceRange range = currentRange;
+            long sequence = range.cursor.getAndIncrement();
+            if (sequence <= range.last) {
+                if (sequence == range.prefetchAt) {
+                    prefetchNextRange();
+                }
+                return sequence;
+            }
+            advanceRange(range);
+        }
+    }
+
+    /**
+     * Reserves several unique sequence values in one call.
+     * <p>
+     * Values are claimed from the leased range in
+     * contiguous blocks with a single atomic add per
+     * block, so a bulk import does not pay one
+     * ZooKeeper round trip, or one atomic increment,
+     * per shortcode.
+     *
+     * @param count the number of values to reserve
+     * @return the reserved values in ascending order
+     * within each leased range
+     */
+    public long[] nextSequences(final int count) {
+        long[] sequences = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            SequenceRange range = currentRange;
+            long start = range.cursor.getAndAdd(count - filled);
+            if (start > range.last) {
+                advanceRange(range);
+                continue;
+            }
+            long end = Math.min(range.last, start + count - filled - 1);
+            if (range.prefetchAt >= start && range.prefetchAt <= end) {
+                prefetchNextRange();
+            }
+            for (long sequence = start; sequence <= end; sequence++) {
+                sequences[filled++] = sequence;
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Starts leasing the next range in the background
+     * unless a lease is already in flight.
+     */
+    private void prefetchNextRange() {
+        refillLock.lock();
+        try {
+            if (nextRange == null) {
+                nextRange = CompletableFuture.supplyAsync(
+                        () -> prefetchLeases.record(this::leaseRange),
+                        prefetchExecutor);
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces an exhausted range with the prefetched one,
+     * or leases a new range synchronously when the
+     * prefetch is missing or failed.
+     *
+     * @param exhausted the range the caller found exhausted
+     */
+    private void advanceRange(final SequenceRange exhausted) {
+        long waitStarted = System.nanoTime();
+        refillLock.lock();
+        localLockWait.record(System.nanoTime() - waitStarted,
+                TimeUnit.NANOSECONDS);
+        try {
+            if (currentRange != exhausted) {
+                return;
+            }
+            CompletableFuture<SequenceRange> pending = nextRange;
+            nextRange = null;
+            SequenceRange fresh = null;
+            if (pending != null) {
+                fresh = awaitPrefetch(pending);
+            }
+            currentRange = fresh != null
+                    ? fresh : blockingLeases.record(this::leaseRange);
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a prefetched range.
+     *
+     * @param pending the in-flight lease
+     * @return the leased range, or {@code null} if the
+     * prefetch failed or took too long
+     */
+    private SequenceRange awaitPrefetch(
+            final CompletableFuture<SequenceRange> pending) {
+        try {
+            return pending.get(PREFETCH_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for range", e);
+        } catch (ExecutionException | TimeoutException e) {
+            pending.cancel(false);
+            log.warn("Prefetching sequence range failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Leases the next range from ZooKeeper
+     * using the configured {@link AllocationMode}.
+     *
+     * @return the newly leased range
+     */
+    private SequenceRange leaseRange() {
         try {
-            if (!lock.acquire(2, TimeUnit.SECONDS)) {
+            if (allocationMode == AllocationMode.CAS) {
+                return compareAndSetRange();
+            }
+            long waitStarted = System.nanoTime();
+            boolean acquired = lock.acquire(LOCK_TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS);
+            distributedLockWait.record(System.nanoTime() - waitStarted,
+                    TimeUnit.NANOSECONDS);
+            if (!acquired) {
                 throw new RuntimeException("Timeout when acquiring the lock");
             }
-            log.info("Block acquired to generate sequence");
-
-            byte[] data = client.getData().forPath(ZK_SHORTENER_PATH);
-            Long rangeStartValue = Long.parseLong(new String(data));
-            long nextRangeStartValue = rangeStartValue + RANGE_LENGTH;
-            String currentValue = new String(Long.toString(nextRangeStartValue)
-                    .getBytes(),
-                    StandardCharsets.UTF_8);
-            Long sequence = parseSequence(currentValue);
-
-            sequence++;
-            client.setData().forPath(ZK_SHORTENER_PATH,
-                    String.valueOf(sequence).getBytes(StandardCharsets.UTF_8)
-            );
-            String shortCode = Base62Converter.encode(sequence);
-            log.info("New generated sequence: {} → Code: {}",
-                    sequence, shortCode);
-
-            return shortCode;
+            try {
+                return compareAndSetRange();
+            } finally {
+                long releaseStarted = System.nanoTime();
+                lock.release();
+                releaseTimer.record(System.nanoTime() - releaseStarted,
+                        TimeUnit.NANOSECONDS);
+            }
+        } catch (RuntimeException e) {
+            leaseFailures.increment();
+            throw e;
         } catch (Exception e) {
-            log.error("Error in getNextShortCode: {}", e.getMessage());
+            leaseFailures.increment();
+            log.error("Error leasing sequence range: {}", e.getMessage());
             throw new RuntimeException("Error generating shortcode", e);
-        } finally {
+        }
+    }
+
+    /**
+     * Moves the node forward by {@link #RANGE_LENGTH}
+     * with an optimistic read and versioned write.
+     * <p>
+     * The node stores the highest sequence value
+     * leased so far. A value that is not a multiple of
+     * {@link #RANGE_LENGTH}, as left by releases that moved
+     * the node by one per shortcode, is first rounded up to
+     * the next multiple, so every range lines up with
+     * {@link #rangeOf(long)}. When the write is rejected
+     * because the version changed, the read is
+     * repeated after a jittered exponential backoff,
+     * up to {@link #MAX_CAS_ATTEMPTS} times.
+     *
+     * @return the newly leased range
+     * @throws Exception if ZooKeeper cannot be reached
+     * or the attempts run out
+     */
+    private SequenceRange compareAndSetRange() throws Exception {
+        for (int attempt = 1;; attempt++) {
+            Stat stat = new Stat();
+            long readStarted = System.nanoTime();
+            byte[] data = client.getData().storingStatIn(stat)
+                    .forPath(ZK_SHORTENER_PATH);
+            readTimer.record(System.nanoTime() - readStarted,
+                    TimeUnit.NANOSECONDS);
+            long highWater = alignToRange(parseSequence(
+                    new String(data, StandardCharsets.UTF_8)));
+            long last = highWater + RANGE_LENGTH;
+            long writeStarted = System.nanoTime();
             try {
-                if (lock.isAcquiredInThisProcess()) {
-                    lock.release();
-                    log.info("Lock released");
+                client.setData().withVersion(stat.getVersion())
+                        .forPath(ZK_SHORTENER_PATH, Long.toString(last)
+                                .getBytes(StandardCharsets.UTF_8));
+                writeTimer.record(System.nanoTime() - writeStarted,
+                        TimeUnit.NANOSECONDS);
+                leaseAttempts.record(attempt);
+                log.info("Leased sequence range [{}, {}] after {} attempt(s)",
+                        highWater + 1, last, attempt);
+                return new SequenceRange(highWater + 1, last);
+            } catch (KeeperException.BadVersionException e) {
+                writeTimer.record(System.nanoTime() - writeStarted,
+                        TimeUnit.NANOSECONDS);
+                leaseConflicts.increment();
+                if (attempt >= MAX_CAS_ATTEMPTS) {
+                    throw new RuntimeException("Sequence range contention: "
+                            + "gave up after " + attempt + " attempts", e);
                 }
-            } catch (Exception e) {
-                log.error("Error releasing the lock: {}", e.getMessage());
+                leaseRetries.increment();
+                backoff(attempt);
             }
         }
     }
 
+    /**
+     * Sleeps for a random time below an exponentially
+     * growing, capped bound.
+     *
+     * @param attempt the attempt that just failed, starting at 1
+     */
+    private static void backoff(final int attempt) {
+        long bound = Math.min(CAS_BACKOFF_MAX_MS,
+                CAS_BACKOFF_BASE_MS << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted leasing sequence range", e);
+        }
+    }
+
+    /**
+     * Rounds a value read from the node up to the next
+     * multiple of {@link #RANGE_LENGTH}.
+     * <p>
+     * The values skipped are never handed out.
+     *
+     * @param highWater the highest sequence value leased so far
+     * @return the end of the range {@code highWater} falls in
+     */
+    static long alignToRange(final long highWater) {
+        long remainder = Math.floorMod(highWater, RANGE_LENGTH);
+        return remainder == 0
+                ? highWater : highWater - remainder + RANGE_LENGTH;
+    }
+
+    /**
+     * Returns the index of the range a sequence value was
+     * leased in.
+     * <p>
+     * Leases round the node up to a multiple of
+     * {@link #RANGE_LENGTH} before moving it by a whole range,
+     * so every range starts right after such a multiple, even
+     * when the node was last moved by one per shortcode.
+     *
+     * @param sequence the sequence value
+     * @return the index of its range
+     */
+    static long rangeOf(final long sequence) {
+        return (sequence - 1) / RANGE_LENGTH;
+    }
+
     /**
      * Parses a sequence value from the ZooKeeper node.
      * <p>
@@ -168,4 +589,64 @@ public final class ZooKeeperService {
             return FIRST_RANGE_START_VALUE;
         }
     }
+
+    /**
+     * Stops the background prefetch thread.
+     */
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Strategy used to lease sequence ranges.
+     */
+    public enum AllocationMode {
+        /**
+         * Versioned write under an {@link InterProcessMutex}.
+         */
+        LOCK,
+        /**
+         * Lock-free optimistic read and versioned write.
+         */
+        CAS
+    }
+
+    /**
+     * A closed range {@code [first, last]} of sequence
+     * values leased by this instance.
+     */
+    private static final class SequenceRange {
+        /**
+         * Placeholder used before the first lease;
+         * it is always exhausted.
+         */
+        private static final SequenceRange EMPTY = new SequenceRange(1, 0);
+        /**
+         * Last value of the range, inclusive.
+         */
+        private final long last;
+        /**
+         * Value whose hand-out triggers the background prefetch.
+         */
+        private final long prefetchAt;
+        /**
+         * Next value to hand out; may run past {@link #last}.
+         */
+        private final AtomicLong cursor;
+
+        /**
+         * Creates a range.
+         *
+         * @param first first value, inclusive
+         * @param lastValue last value, inclusive
+         */
+        private SequenceRange(final long first, final long lastValue) {
+            this.last = lastValue;
+            this.prefetchAt = first
+                    + (lastValue - first + 1)
+                    * PREFETCH_THRESHOLD_PERCENT / PERCENT;
+            this.cursor = new AtomicLong(first);
+        }
+    }
 }
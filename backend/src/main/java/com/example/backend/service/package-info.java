@@ -8,12 +8,59 @@
  *       providing common URL resolution functionality.</li>
  *   <li>{@link com.example.backend.service.UrlShortnerService}: Primary service
  *       for URL shortening operations.</li>
+ *   <li>{@link com.example.backend.service.UrlDeduplicator}:
+ *   Returns the existing
+ *       shortcode of a URL shortened before.</li>
+ *   <li>{@link com.example.backend.service.BulkShortenService}:
+ *   Shortens many URLs
+ *       with batched sequence, database and cache writes.</li>
+ *   <li>{@link com.example.backend.service.DurableShortenService}:
+ *   Shortens single
+ *       URLs through the write-ahead log of
+ *       {@link com.example.backend.service.ShortUrlJournal}, which
+ *       drains them into the database in the background.</li>
  *   <li>{@link com.example.backend.service.RedirectService}:
  *   Specialized service
  *       for handling URL redirections.</li>
  *   <li>{@link com.example.backend.service.RedisService}:
  *   Manages caching operations
  *       using Redis.</li>
+ *   <li>{@link com.example.backend.service.CacheTtlPolicy}:
+ *   Jittered TTLs and
+ *       early refresh of Redis entries.</li>
+ *   <li>{@link com.example.backend.service.LocalUrlCache}:
+ *   In-process near cache
+ *       in front of Redis, with an optional persistent tier in
+ *       memory-mapped files.</li>
+ *   <li>{@link com.example.backend.service.ShortUrlLoader}:
+ *   Loads cache misses
+ *       from the database, guarded by the
+ *       {@link com.example.backend.service.ShortCodeFilter}.</li>
+ *   <li>{@link com.example.backend.service.ResolveMetrics}:
+ *   Timers of shortcode
+ *       resolutions by the tier that answered them.</li>
+ *   <li>{@link com.example.backend.service.AccessCountBuffer}:
+ *   Write-behind buffer
+ *       for access counts.</li>
+ *   <li>{@link com.example.backend.service.ClickEventBuffer}:
+ *   Lock-free buffer
+ *       rolling redirects up into per-minute click analytics,
+ *       read back by {@link com.example.backend.service.ClickStatsService}.</li>
+ *   <li>{@link com.example.backend.service.HotLinkTracker}:
+ *   Constant-memory
+ *       ranking of the most clicked links, warming the near cache.</li>
+ *   <li>{@link com.example.backend.service.UrlCacheLayout}:
+ *   Layout of
+ *       cached URLs in Redis, as string keys or compact bucketed
+ *       hashes filled by
+ *       {@link com.example.backend.service.RedisLayoutMigrator}.</li>
+ *   <li>{@link com.example.backend.service.RedisShards}:
+ *   Redis nodes
+ *       the cache is spread over by consistent hashing, with
+ *       health checks falling back to the database.</li>
+ *   <li>{@link com.example.backend.service.CacheWarmer}:
+ *   Warms the caches
+ *       before the instance registers for traffic.</li>
  *   <li>{@link com.example.backend.service.ZooKeeperService}:
  *   Handles distributed
  *       sequence generation.</li>
@@ -1,15 +1,22 @@
 package com.example.backend.utils;
 
+import java.util.Arrays;
+
 /**
- * Utility class for encoding numeric values into Base62 strings.
+ * Utility class for converting numeric values to and from Base62 strings.
  * <p>
- * This class provides a static method to
- * encode a given long value into a Base62 representation.
+ * This class provides static methods to
+ * encode a given long value into a Base62 representation
+ * and to decode such a representation back into a long.
  * The Base62 encoding uses a character set
  * consisting of lowercase letters, uppercase letters,
- * and digits (0-9).
- *
- * @see java.lang.StringBuilder
+ * and digits (0-9), in that digit order.
+ * <p>
+ * Encoding fills a {@code char[]} from the right using a
+ * precomputed digit table, and decoding maps characters
+ * through a reverse table, so neither needs intermediate
+ * builders. {@link #isValid(CharSequence)} lets callers reject
+ * malformed shortcodes without touching any storage.
  */
 public record Base62Converter() {
     /**
@@ -17,35 +24,171 @@ public record Base62Converter() {
      */
     private static final String BASE62 =
             "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    /**
+     * The Base62 character set, indexed by digit value.
+     */
+    private static final char[] DIGITS = BASE62.toCharArray();
     /**
      * The base value for Base62 encoding.
      */
     private static final int BASE = 62;
     /**
-     * The fallback start value for encoding when the input is zero.
+     * Maximum number of characters needed to encode
+     * any non-negative long ({@code 62^11 > Long.MAX_VALUE}).
+     */
+    public static final int MAX_LENGTH = 11;
+    /**
+     * Reverse lookup table from ASCII character to digit value,
+     * {@code -1} for characters outside the alphabet.
      */
-    private static final Long FIRST_RANGE_START_VALUE = 100000L;
+    private static final byte[] DIGIT_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(DIGIT_VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            DIGIT_VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
 
     /**
      * Encodes a given numeric value into a Base62 string.
      * <p>
      * The encoding process repeatedly divides
      * the value by the Base62 base (62) and maps the remainder
-     * to a character in the Base62 character set.
-     * If the resulting string is empty, a fallback value
-     * is returned.
+     * to a character in the Base62 character set,
+     * filling the buffer from the right.
      *
-     * @param value the numeric value to encode
+     * @param value the non-negative numeric value to encode
      * @return the Base62-encoded string representation of the value
+     * @throws IllegalArgumentException if the value is negative
      */
     public static String encode(long value) {
-        StringBuilder sb = new StringBuilder();
-        while (value > 0) {
-            sb.insert(0, BASE62.charAt((int) value % BASE));
+        char[] buffer = new char[MAX_LENGTH];
+        int start = encode(value, buffer);
+        return new String(buffer, start, MAX_LENGTH - start);
+    }
+
+    /**
+     * Encodes a value into the right end of the given buffer.
+     * <p>
+     * This variant performs no allocation, which suits
+     * callers that reuse a buffer across many values.
+     *
+     * @param value the non-negative numeric value to encode
+     * @param buffer the buffer to fill; at least
+     *               {@link #MAX_LENGTH} characters long
+     * @return the index of the first character written;
+     * the code spans from it to the end of the buffer
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public static int encode(long value, char[] buffer) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int position = buffer.length;
+        do {
+            buffer[--position] = DIGITS[(int) (value % BASE)];
             value /= BASE;
+        } while (value > 0);
+        return position;
+    }
+
+    /**
+     * Encodes a value into a zero-padded code of exactly {@code width}
+     * characters.
+     * <p>
+     * Codes of the same width compare digit by digit in
+     * the same order as their values. Note that the
+     * alphabet is not in ASCII order, so a plain string
+     * or SQL collation sort does not preserve that order;
+     * compare decoded values instead.
+     *
+     * @param value the non-negative numeric value to encode
+     * @param width the number of characters of the result
+     * @return the padded Base62 code
+     * @throws IllegalArgumentException if the value is negative
+     * or does not fit in {@code width} characters
+     */
+    public static String encodeFixed(long value, int width) {
+        if (width < 1 || width > MAX_LENGTH) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        char[] buffer = new char[MAX_LENGTH];
+        int start = encode(value, buffer);
+        if (MAX_LENGTH - start > width) {
+            throw new IllegalArgumentException("Value " + value
+                    + " does not fit in " + width + " characters");
         }
-        return !sb.isEmpty() ? sb.toString()
-                : FIRST_RANGE_START_VALUE.toString();
+        Arrays.fill(buffer, MAX_LENGTH - width, start, DIGITS[0]);
+        return new String(buffer, MAX_LENGTH - width, width);
     }
 
+    /**
+     * Decodes a Base62 code into its numeric value.
+     *
+     * @param code the code to decode
+     * @return the decoded value
+     * @throws IllegalArgumentException if the code is empty, too long,
+     * contains characters outside the alphabet or overflows a long
+     */
+    public static long decode(CharSequence code) {
+        long value = decodeOrNegative(code);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid Base62 code: " + code);
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether a code could have been produced by this converter.
+     * <p>
+     * This check performs no allocation and throws no exceptions,
+     * so it is cheap enough for the redirect path.
+     *
+     * @param code the code to check, may be {@code null}
+     * @return {@code true} if the code decodes to a valid value
+     */
+    public static boolean isValid(CharSequence code) {
+        return code != null && decodeOrNegative(code) >= 0;
+    }
+
+    /**
+     * Checks whether a code is the one this converter produces
+     * for its value.
+     * <p>
+     * Codes with leading zero digits decode to the same value
+     * as the code without them, so stores keyed by the decoded
+     * value only accept the canonical form.
+     *
+     * @param code the code to check, may be {@code null}
+     * @return {@code true} if the code is valid and has no
+     * leading zero digit
+     */
+    public static boolean isCanonical(CharSequence code) {
+        return isValid(code)
+                && (code.length() == 1 || code.charAt(0) != DIGITS[0]);
+    }
+
+    /**
+     * Decodes a code, signalling any error with a negative result.
+     *
+     * @param code the code to decode
+     * @return the decoded value, or {@code -1} if the code is invalid
+     */
+    private static long decodeOrNegative(CharSequence code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int digit = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
+            if (digit < 0 || value > (Long.MAX_VALUE - digit) / BASE) {
+                return -1;
+            }
+            value = value * BASE + digit;
+        }
+        return value;
+    }
 }
@@ -0,0 +1,129 @@
+package com.example.backend.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Utility class for shrinking URLs with a shared dictionary of
+ * common prefixes.
+ * <p>
+ * Most shortened URLs start with one of a few schemes and
+ * popular domains, which take a large share of their bytes.
+ * A URL starting with a dictionary entry is stored as one
+ * control character, {@code 0x01} for the first entry and so
+ * on, followed by the rest of the URL. The longest matching
+ * entry is used, so {@code https://www.youtube.com/watch?v=}
+ * beats {@code https://www.}.
+ * <p>
+ * Compressed values are decoded with the dictionary of the
+ * reader, so the dictionary is append-only: entries must never
+ * be removed or reordered, and at most
+ * {@link #MAX_ENTRIES} fit. URLs that already start with a
+ * control character are escaped with {@code 0x00}, so
+ * every string round-trips.
+ *
+ * @see com.example.backend.service.UrlCacheLayout
+ */
+public record UrlCompressor() {
+    /**
+     * Shared prefixes, indexed by their code minus one.
+     * Append only.
+     */
+    private static final List<String> DICTIONARY = List.of(
+            "https://www.",
+            "http://www.",
+            "https://",
+            "http://",
+            "https://www.youtube.com/watch?v=",
+            "https://youtu.be/",
+            "https://www.google.com/",
+            "https://docs.google.com/",
+            "https://drive.google.com/",
+            "https://www.amazon.com/",
+            "https://www.facebook.com/",
+            "https://www.instagram.com/",
+            "https://www.linkedin.com/",
+            "https://twitter.com/",
+            "https://x.com/",
+            "https://github.com/",
+            "https://en.wikipedia.org/wiki/",
+            "https://www.reddit.com/",
+            "https://medium.com/",
+            "https://www.tiktok.com/",
+            "https://open.spotify.com/",
+            "https://apps.apple.com/",
+            "https://play.google.com/store/apps/details?id=");
+    /**
+     * Maximum number of dictionary entries, coded
+     * {@code 0x01} to {@code 0x1F}.
+     */
+    public static final int MAX_ENTRIES = 31;
+    /**
+     * Code escaping a URL that starts with a control character.
+     */
+    private static final char ESCAPE = '\u0000';
+    /**
+     * First character that is not a control character.
+     */
+    private static final char FIRST_PLAIN = ' ';
+    /**
+     * Codes of the dictionary entries, longest entry first.
+     */
+    private static final int[] BY_LENGTH;
+
+    static {
+        if (DICTIONARY.size() > MAX_ENTRIES) {
+            throw new ExceptionInInitializerError(
+                    "Too many dictionary entries: " + DICTIONARY.size());
+        }
+        Integer[] order = new Integer[DICTIONARY.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingInt(
+                (Integer i) -> DICTIONARY.get(i).length()).reversed());
+        BY_LENGTH = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compresses a URL.
+     *
+     * @param url the URL
+     * @return the compressed URL, never longer than the URL
+     * plus one character
+     */
+    public static String compress(final String url) {
+        for (int index : BY_LENGTH) {
+            String prefix = DICTIONARY.get(index);
+            if (url.startsWith(prefix)) {
+                return (char) (index + 1) + url.substring(prefix.length());
+            }
+        }
+        if (!url.isEmpty() && url.charAt(0) < FIRST_PLAIN) {
+            return ESCAPE + url;
+        }
+        return url;
+    }
+
+    /**
+     * Restores a URL compressed by {@link #compress(String)}.
+     *
+     * @param compressed the compressed URL
+     * @return the URL
+     * @throws IllegalArgumentException if the value starts with
+     * a code missing from the dictionary
+     */
+    public static String decompress(final String compressed) {
+        if (compressed.isEmpty() || compressed.charAt(0) >= FIRST_PLAIN) {
+            return compressed;
+        }
+        char code = compressed.charAt(0);
+        if (code == ESCAPE) {
+            return compressed.substring(1);
+        }
+        if (code > DICTIONARY.size()) {
+            throw new IllegalArgumentException(
+                    "Unknown dictionary code: " + (int) code);
+        }
+        return DICTIONARY.get(code - 1).concat(compressed.substring(1));
+    }
+}
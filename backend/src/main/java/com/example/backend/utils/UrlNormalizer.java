@@ -0,0 +1,82 @@
+package com.example.backend.utils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * Utility class for normalizing URLs before they are compared.
+ * <p>
+ * Two URLs that differ only in the case of their scheme or
+ * host, in an explicit default port or in an empty path
+ * reach the same resource, so they normalize to the same
+ * string. The path, the query and the fragment are kept as
+ * they are, since servers may treat them case-sensitively
+ * and in order, and single-page applications route on the
+ * fragment.
+ *
+ * @see java.net.URI
+ */
+public record UrlNormalizer() {
+    /**
+     * Default port of {@code http}.
+     */
+    private static final int HTTP_PORT = 80;
+    /**
+     * Default port of {@code https}.
+     */
+    private static final int HTTPS_PORT = 443;
+
+    /**
+     * Normalizes a URL.
+     *
+     * @param url the URL to normalize
+     * @return the normalized URL, or the trimmed URL if it
+     * has no scheme or host
+     */
+    public static String normalize(final String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return trimmed;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(trimmed.length())
+                .append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (uri.getPort() != -1 && uri.getPort() != defaultPort(scheme)) {
+            normalized.append(':').append(uri.getPort());
+        }
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        if (uri.getRawFragment() != null) {
+            normalized.append('#').append(uri.getRawFragment());
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Returns the default port of a scheme.
+     *
+     * @param scheme the lower-case scheme
+     * @return the port, or -1 if the scheme has no known default
+     */
+    private static int defaultPort(final String scheme) {
+        return switch (scheme) {
+            case "http" -> HTTP_PORT;
+            case "https" -> HTTPS_PORT;
+            default -> -1;
+        };
+    }
+}
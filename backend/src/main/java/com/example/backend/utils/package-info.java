@@ -12,7 +12,12 @@
  *   <li>{@link com.example.backend.utils.ValidaterUrl}: Provides methods
  *   for validating URLs.</li>
  *   <li>{@link com.example.backend.utils.Base62Converter}: Provides methods
- *   for encoding numeric values into Base62 strings.</li>
+ *   for encoding numeric values into Base62 strings, decoding them back
+ *   and validating shortcodes.</li>
+ *   <li>{@link com.example.backend.utils.UrlNormalizer}: Normalizes URLs
+ *   so equivalent ones compare equal.</li>
+ *   <li>{@link com.example.backend.utils.UrlCompressor}: Shrinks URLs
+ *   with a shared dictionary of common prefixes.</li>
  * </ul>
  *
  * @see java.net.URI
@@ -1,8 +1,11 @@
 CREATE TABLE short_urls (
-    id UUID DEFAULT RANDOM_UUID() PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     url TEXT NOT NULL,
-    short_code VARCHAR(10) UNIQUE NOT NULL,
+    short_code VARCHAR(11) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    access_count INT DEFAULT 0
-);
\ No newline at end of file
+    access_count INT DEFAULT 0,
+    url_hash BIGINT
+);
+
+CREATE INDEX short_urls_url_hash_idx ON short_urls (url_hash);
@@ -0,0 +1,65 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadExecutorServiceTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void testRunsAtMostMaxConcurrencyTasksAtOnce() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BulkheadExecutorService bulkhead = new BulkheadExecutorService(threads, 3, "write", registry);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            bulkhead.execute(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        while (registry.get("execution.bulkhead.waiting").tag("bulkhead", "write").gauge().value() < 7) {
+            Thread.onSpinWait();
+        }
+        assertEquals(3, bulkhead.activeCount());
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        bulkhead.shutdown();
+        assertTrue(bulkhead.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(3, peak.get());
+        assertEquals(0, bulkhead.activeCount());
+    }
+
+    @Test
+    void testRejectsNonPositiveConcurrency() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BulkheadExecutorService(threads, 0, "read", new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadReplicaConfigTest {
+
+    @Test
+    void testEnablingReplicasWithoutUrlsFailsAtStartup() {
+        ReadReplicaConfig config = new ReadReplicaConfig();
+
+        assertThrows(IllegalStateException.class, () -> config.replicaDataSource(new DataSourceProperties(),
+                null, List.of("", " "), 20, Duration.ofSeconds(1), Duration.ofSeconds(5),
+                new SimpleMeterRegistry()));
+    }
+}
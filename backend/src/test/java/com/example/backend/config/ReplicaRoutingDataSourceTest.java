@@ -0,0 +1,94 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private DataSource primary;
+    private Connection primaryConnection;
+    private ReplicaRoutingDataSource router;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        primaryConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+    }
+
+    @Test
+    void testReadsGoToReplicasWithinTheLagLimit() throws SQLException {
+        Connection caughtUp = mock(Connection.class);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replica(caughtUp, 0.2));
+        replicas.put("replica-1", replica(mock(Connection.class), 30));
+        router = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(1),
+                Duration.ofHours(1), registry);
+
+        router.checkLag();
+
+        assertSame(caughtUp, router.getConnection());
+        assertSame(caughtUp, router.getConnection());
+        assertEquals(30, registry.get("datasource.replica.lag").tag("replica", "replica-1").gauge().value());
+    }
+
+    @Test
+    void testReadsFallBackToThePrimaryWhenEveryReplicaLags() throws SQLException {
+        router = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica(mock(Connection.class), 30)),
+                Duration.ofSeconds(1), Duration.ofHours(1), registry);
+
+        router.checkLag();
+
+        assertSame(primaryConnection, router.getConnection());
+        assertEquals(1, registry.get("datasource.replica.fallbacks").tag("reason", "lagging").counter().count());
+    }
+
+    @Test
+    void testUnreachableReplicaIsSkipped() throws SQLException {
+        DataSource unreachable = mock(DataSource.class);
+        when(unreachable.getConnection()).thenThrow(new SQLException("connection refused"));
+        router = new ReplicaRoutingDataSource(primary, Map.of("replica-0", unreachable),
+                Duration.ofSeconds(1), Duration.ofHours(1), registry);
+
+        router.checkLag();
+
+        assertSame(primaryConnection, router.getConnection());
+        assertEquals(-1, registry.get("datasource.replica.lag").tag("replica", "replica-0").gauge().value());
+    }
+
+    private static DataSource replica(Connection connection, double lagSeconds) throws SQLException {
+        DataSource replica = mock(DataSource.class);
+        Statement statement = mock(Statement.class);
+        ResultSet result = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ReplicaRoutingDataSource.LAG_SQL)).thenReturn(result);
+        when(result.next()).thenReturn(true);
+        when(result.getDouble(1)).thenReturn(lagSeconds);
+        return replica;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.backend.config;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceRegistrationTest {
+
+    private TestingServer server;
+    private CuratorFramework client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TestingServer(true);
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        client.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void testInstanceIsOnlyVisibleOnceRegistered() throws Exception {
+        try (ServiceRegistration registration = new ServiceRegistration(client, "/services/backend",
+                "instance-8080", "http://localhost:8080")) {
+            assertFalse(registration.isRegistered());
+            assertNull(client.checkExists().forPath("/services/backend/instance-8080"));
+
+            registration.register();
+
+            assertTrue(registration.isRegistered());
+            assertTrue(waitForNode("/services/backend/instance-8080"));
+        }
+    }
+
+    @Test
+    void testDepartureOfAnotherInstanceIsReported() throws Exception {
+        try (ServiceRegistration registration = new ServiceRegistration(client, "/services/backend",
+                "instance-8080", "http://localhost:8080");
+             ServiceRegistration peer = new ServiceRegistration(client, "/services/backend",
+                     "instance-8081", "http://localhost:8081")) {
+            CountDownLatch departed = new CountDownLatch(1);
+            registration.onPeerDeparted(departed::countDown);
+            registration.register();
+            peer.register();
+            assertTrue(waitForNode("/services/backend/instance-8081"));
+
+            peer.close();
+
+            assertTrue(departed.await(10, TimeUnit.SECONDS));
+            assertNotNull(client.checkExists().forPath("/services/backend/instance-8080"));
+        }
+    }
+
+    private boolean waitForNode(String path) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (client.checkExists().forPath(path) != null) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+}
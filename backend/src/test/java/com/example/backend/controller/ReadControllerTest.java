@@ -1,7 +1,10 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.ClickBucket;
+import com.example.backend.dto.HotLink;
 import com.example.backend.entity.ShortUrl;
 import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.service.ClickStatsService;
 import com.example.backend.service.RedisService;
 import com.example.backend.service.UrlShortnerService;
 import org.junit.jupiter.api.Test;
@@ -13,7 +16,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -36,6 +44,9 @@ class ReadControllerTest {
     @Autowired
     private ShortUrlRepository urlRepository;
 
+    @Autowired
+    private ClickStatsService clickStatsService;
+
     @Test
     void testGetUrlFromCache() {
         // Arrange
@@ -57,6 +68,23 @@ class ReadControllerTest {
 
     }
 
+    @Test
+    void testGetUrlsInBatch() {
+        List<String> shortcodes = List.of("abc", "abd", "zzz");
+        when(urlShortnerService.getUrlsByShortCodes(shortcodes))
+                .thenReturn(Map.of("abc", "https://a.com", "abd", "https://b.com"));
+
+        webTestClient.post()
+                .uri("/api/v1/read/shorten/batch")
+                .bodyValue(shortcodes)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.abc").isEqualTo("https://a.com")
+                .jsonPath("$.abd").isEqualTo("https://b.com")
+                .jsonPath("$.zzz").doesNotExist();
+    }
+
     private String mockShortUrl(String url) {
         ShortUrl shortUrl = new ShortUrl();
         shortUrl.setUrl(url);
@@ -103,6 +131,39 @@ class ReadControllerTest {
                 .expectBody(ShortUrl.class)
                 .value(shortUrl -> assertEquals(5, shortUrl.getAccessCount()));
     }
+
+    @Test
+    void testGetClicks() {
+        Instant from = Instant.parse("2026-01-01T10:00:00Z");
+        Instant to = Instant.parse("2026-01-01T10:10:00Z");
+        when(clickStatsService.getClicks("shortcode", from, to, 5)).thenReturn(List.of(
+                new ClickBucket(from, 3, Map.of("direct", 3L), Map.of("PE", 3L), Map.of("browser", 3L)),
+                new ClickBucket(from.plusSeconds(300), 0, Map.of(), Map.of(), Map.of())));
+
+        webTestClient.get()
+                .uri("/api/v1/read/shorten/{shortcode}/clicks?from={from}&to={to}&step=5",
+                        "shortcode", from, to)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].clicks").isEqualTo(3)
+                .jsonPath("$[0].countries.PE").isEqualTo(3)
+                .jsonPath("$[1].clicks").isEqualTo(0);
+    }
+
+    @Test
+    void testGetHotLinks() {
+        when(clickStatsService.getHotLinks(2)).thenReturn(List.of(new HotLink("bqcU", 40), new HotLink("bqcV", 12)));
+
+        webTestClient.get()
+                .uri("/api/v1/read/hot?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].shortCode").isEqualTo("bqcU")
+                .jsonPath("$[1].clicks").isEqualTo(12);
+    }
 }
 @TestConfiguration
 class MockBeansConfig {
@@ -117,8 +178,18 @@ class MockBeansConfig {
         return mock(UrlShortnerService.class);
     }
 
+    @Bean
+    public ClickStatsService clickStatsService() {
+        return mock(ClickStatsService.class);
+    }
+
     @Bean
     public ShortUrlRepository shortUrlRepository() {
         return mock(ShortUrlRepository.class);
     }
+
+    @Bean
+    public Scheduler readScheduler() {
+        return Schedulers.immediate();
+    }
 }
\ No newline at end of file
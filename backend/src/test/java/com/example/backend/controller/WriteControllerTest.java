@@ -1,18 +1,23 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.BatchShortenResult;
 import com.example.backend.dto.ShortenRequest;
 import com.example.backend.entity.ShortUrl;
+import com.example.backend.service.BulkShortenService;
+import com.example.backend.service.DurableShortenService;
 import com.example.backend.service.UrlShortnerService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.mockito.Mockito.*;
@@ -21,12 +26,17 @@ import static org.mockito.Mockito.*;
 class WriteControllerTest {
     @Mock
     UrlShortnerService urlShortnerService;
-    @InjectMocks
+    @Mock
+    BulkShortenService bulkShortenService;
+    @Mock
+    DurableShortenService durableShortenService;
     WriteController writeController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        writeController = new WriteController(urlShortnerService, bulkShortenService, durableShortenService,
+                Schedulers.immediate());
     }
 
     @Test
@@ -37,15 +47,31 @@ class WriteControllerTest {
         shortUrl.setUrl(url);
         when(urlShortnerService.generateShortCode(url)).thenReturn(shortUrl);
 
-        ResponseEntity<?> result = writeController.createShortCode(new ShortenRequest(url));
+        ResponseEntity<?> result = writeController.createShortCode(new ShortenRequest(url)).block();
         Assertions.assertEquals(HttpStatus.CREATED, result.getStatusCode());
         Assertions.assertEquals(shortUrl, result.getBody());
 
     }
 
+    @Test
+    void testCreateShortUrlThroughTheJournal() {
+        String url = "https://www.youtube.com/watch?v=TnTfFWwf44U";
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode("abc124");
+        shortUrl.setUrl(url);
+        when(durableShortenService.isEnabled()).thenReturn(true);
+        when(durableShortenService.generateShortCode(url)).thenReturn(shortUrl);
+
+        ResponseEntity<?> result = writeController.createShortCode(new ShortenRequest(url)).block();
+
+        Assertions.assertEquals(HttpStatus.CREATED, result.getStatusCode());
+        Assertions.assertEquals(shortUrl, result.getBody());
+        verify(urlShortnerService, never()).generateShortCode(url);
+    }
+
     @Test
     void testDeleteShorten() {
-        ResponseEntity<?> result = writeController.deleteShorten("shortcode");
+        ResponseEntity<?> result = writeController.deleteShorten("shortcode").block();
 
         verify(urlShortnerService).deleteUrlByShortCode("shortcode");
 
@@ -57,7 +83,7 @@ class WriteControllerTest {
 
     @Test
     void testUpdateShorten() {
-        ResponseEntity<?> result = writeController.updateShorten("shortcode", new ShortenRequest("url"));
+        ResponseEntity<?> result = writeController.updateShorten("shortcode", new ShortenRequest("url")).block();
 
         
         verify(urlShortnerService).updateUrlByShortCode("shortcode", "url");
@@ -68,5 +94,24 @@ class WriteControllerTest {
                 result
         );
     }
-}
 
+    @Test
+    void testCreateShortCodesInChunks() {
+        when(bulkShortenService.getChunkSize()).thenReturn(2);
+        when(bulkShortenService.shortenAll(List.of("https://a.com", "https://b.com"), 0))
+                .thenReturn(List.of(BatchShortenResult.shortened(0, "https://a.com", "abc"),
+                        BatchShortenResult.shortened(1, "https://b.com", "abd")));
+        when(bulkShortenService.shortenAll(List.of(""), 2))
+                .thenReturn(List.of(BatchShortenResult.rejected(2, "", "The URL can't be null or void")));
+
+        List<BatchShortenResult> results = writeController.createShortCodes(Flux.just(
+                new ShortenRequest("https://a.com"),
+                new ShortenRequest("https://b.com"),
+                new ShortenRequest(null))).collectList().block();
+
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertEquals("abd", results.get(1).shortCode());
+        Assertions.assertEquals(2, results.get(2).index());
+        Assertions.assertNull(results.get(2).shortCode());
+    }
+}
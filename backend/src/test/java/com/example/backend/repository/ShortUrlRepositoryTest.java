@@ -1,17 +1,24 @@
 package com.example.backend.repository;
 
 import com.example.backend.entity.ShortUrl;
+import com.example.backend.utils.Base62Converter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(SpringExtension.class)
@@ -19,6 +26,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 public class ShortUrlRepositoryTest {
     @Autowired
     private ShortUrlRepository shortUrlRepository;
+    @Autowired
+    private TestEntityManager entityManager;
     @Test
     void testSaveAndFindUrl() {
         // Arrange
@@ -42,4 +51,110 @@ public class ShortUrlRepositoryTest {
         assertTrue(foundUrl.isPresent());
         assertEquals(url, foundUrl.get().getUrl());
     }
+
+    @Test
+    void testIncrementAccessCounts() {
+        ShortUrl first = new ShortUrl();
+        first.setUrl("https://www.example.com/a");
+        first.setShortCode("first1");
+        first.setCreatedAt(Timestamp.from(Instant.now()));
+        first.setUpdateAt(Timestamp.from(Instant.now()));
+        ShortUrl second = new ShortUrl();
+        second.setUrl("https://www.example.com/b");
+        second.setShortCode("second1");
+        second.setCreatedAt(Timestamp.from(Instant.now()));
+        second.setUpdateAt(Timestamp.from(Instant.now()));
+        shortUrlRepository.saveAndFlush(first);
+        shortUrlRepository.saveAndFlush(second);
+
+        shortUrlRepository.incrementAccessCounts(Map.of("first1", 3L, "second1", 7L));
+        entityManager.clear();
+
+        assertEquals(3, shortUrlRepository.findByShortCode("first1").get().getAccessCount());
+        assertEquals(7, shortUrlRepository.findByShortCode("second1").get().getAccessCount());
+
+        Map<String, String> mostAccessed = new LinkedHashMap<>();
+        shortUrlRepository.forEachMostAccessed(1, mostAccessed::put);
+        assertEquals(Map.of("second1", "https://www.example.com/b"), mostAccessed);
+    }
+
+    @Test
+    void testInsertAll() {
+        Timestamp now = Timestamp.from(Instant.now());
+        ShortUrl first = new ShortUrl();
+        first.setUrl("https://www.example.com/c");
+        first.setShortCode("batch1");
+        first.setCreatedAt(now);
+        first.setUpdateAt(now);
+        first.setUrlHash(41L);
+        ShortUrl second = new ShortUrl();
+        second.setUrl("https://www.example.com/d");
+        second.setShortCode("batch2");
+        second.setCreatedAt(now);
+        second.setUpdateAt(now);
+
+        shortUrlRepository.insertAll(List.of(first, second));
+
+        assertEquals("https://www.example.com/c", shortUrlRepository.findByShortCode("batch1").get().getUrl());
+        assertEquals(0, shortUrlRepository.findByShortCode("batch2").get().getAccessCount());
+        assertEquals(List.of("batch1"), shortUrlRepository.findByUrlHash(41L).stream()
+                .map(ShortUrl::getShortCode).toList());
+        assertEquals(2, shortUrlRepository.findByShortCodeIn(List.of("batch1", "batch2", "missing")).size());
+
+        List<String> shortCodes = new ArrayList<>();
+        shortUrlRepository.forEachShortCode(shortCodes::add);
+        assertTrue(shortCodes.containsAll(List.of("batch1", "batch2")));
+    }
+
+    @Test
+    void testInsertAllIfAbsentSkipsExistingRows() {
+        Timestamp now = Timestamp.from(Instant.now());
+        ShortUrl existing = new ShortUrl();
+        existing.setUrl("https://www.example.com/updated");
+        existing.setShortCode(Base62Converter.encode(654_321L));
+        existing.setCreatedAt(now);
+        existing.setUpdateAt(now);
+        shortUrlRepository.saveAndFlush(existing);
+        ShortUrl replayed = new ShortUrl();
+        replayed.setUrl("https://www.example.com/logged");
+        replayed.setShortCode(Base62Converter.encode(654_321L));
+        replayed.setCreatedAt(now);
+        replayed.setUpdateAt(now);
+        ShortUrl logged = new ShortUrl();
+        logged.setUrl("https://www.example.com/new");
+        logged.setShortCode(Base62Converter.encode(654_322L));
+        logged.setUrlHash(42L);
+        logged.setCreatedAt(now);
+        logged.setUpdateAt(now);
+
+        shortUrlRepository.insertAllIfAbsent(List.of(replayed, logged));
+        shortUrlRepository.insertAllIfAbsent(List.of(logged));
+        entityManager.clear();
+
+        assertEquals("https://www.example.com/updated", shortUrlRepository.findById(654_321L).get().getUrl());
+        assertEquals(42L, shortUrlRepository.findById(654_322L).get().getUrlHash());
+        assertEquals(List.of(shortUrlRepository.findById(654_322L).get().getShortCode()),
+                shortUrlRepository.findByUrlHash(42L).stream().map(ShortUrl::getShortCode).toList());
+    }
+
+    @Test
+    void testShortCodeIsThePrimaryKey() {
+        Timestamp now = Timestamp.from(Instant.now());
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setUrl("https://www.example.com/e");
+        shortUrl.setShortCode(Base62Converter.encode(123_456L));
+        shortUrl.setCreatedAt(now);
+        shortUrl.setUpdateAt(now);
+        shortUrlRepository.saveAndFlush(shortUrl);
+
+        shortUrlRepository.updateUrl("https://www.example.com/f", 43L, Base62Converter.encode(123_456L));
+        entityManager.clear();
+
+        ShortUrl found = shortUrlRepository.findById(123_456L).get();
+        assertEquals("https://www.example.com/f", found.getUrl());
+        assertEquals(43L, found.getUrlHash());
+        assertEquals(Base62Converter.encode(123_456L), found.getShortCode());
+        assertFalse(shortUrlRepository.findByShortCode("a" + Base62Converter.encode(123_456L)).isPresent());
+        assertFalse(shortUrlRepository.findByShortCode("not-base62").isPresent());
+    }
 }
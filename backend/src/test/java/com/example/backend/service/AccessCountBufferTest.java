@@ -0,0 +1,123 @@
+package com.example.backend.service;
+
+import com.example.backend.repository.ShortUrlRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AccessCountBufferTest {
+
+    private ShortUrlRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private AccessCountBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new AccessCountBuffer(repository, meterRegistry, Duration.ofHours(1), 10_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        buffer.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConcurrentClicksAreFlushedAsOneBatch() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    buffer.record("hot");
+                    buffer.record("code" + (i % 10));
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(16_000, meterRegistry.get("shortcode.access.pending").gauge().value());
+
+        buffer.flush();
+
+        ArgumentCaptor<Map<String, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).incrementAccessCounts(captor.capture());
+        assertEquals(8000L, captor.getValue().get("hot"));
+        assertEquals(800L, captor.getValue().get("code3"));
+        assertEquals(0, meterRegistry.get("shortcode.access.pending").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testClicksRacingWithIdleEvictionAreNotLost() throws Exception {
+        LongAdder written = new LongAdder();
+        doAnswer(invocation -> {
+            ((Map<String, Long>) invocation.getArgument(0)).values().forEach(written::add);
+            return null;
+        }).when(repository).incrementAccessCounts(anyMap());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Future<?>[] recorders = new Future<?>[4];
+        for (int t = 0; t < 4; t++) {
+            recorders[t] = pool.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    buffer.record("code" + (i % 50));
+                }
+            });
+        }
+        // Flush continuously so idle counters keep being dropped while clicks land
+        boolean recording = true;
+        while (recording) {
+            buffer.flush();
+            recording = false;
+            for (Future<?> recorder : recorders) {
+                recording |= !recorder.isDone();
+            }
+        }
+        pool.shutdown();
+        buffer.flush();
+
+        assertEquals(80_000, written.sum());
+        assertEquals(0, meterRegistry.get("shortcode.access.pending").gauge().value());
+    }
+
+    @Test
+    void testFailedFlushIsRetried() {
+        buffer.record("abc");
+        doThrow(new IllegalStateException("db down")).when(repository).incrementAccessCounts(anyMap());
+
+        assertThrows(IllegalStateException.class, buffer::flush);
+        assertEquals(1, meterRegistry.get("shortcode.access.pending").gauge().value());
+
+        doNothing().when(repository).incrementAccessCounts(anyMap());
+        buffer.flush();
+        verify(repository, times(2)).incrementAccessCounts(Map.of("abc", 1L));
+    }
+
+    @Test
+    void testNothingIsWrittenWithoutClicks() {
+        buffer.flush();
+        verify(repository, never()).incrementAccessCounts(anyMap());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.BatchShortenResult;
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkShortenServiceTest {
+
+    private static final String URL = "https://example.com/page";
+
+    private final Map<String, ShortUrl> rows = new ConcurrentHashMap<>();
+    private final Map<String, String> claims = new ConcurrentHashMap<>();
+    private ShortUrlRepository repository;
+    private ZooKeeperService zooKeeperService;
+    private UrlDeduplicator deduplicator;
+    private BulkShortenService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        doAnswer(invocation -> {
+            ((List<ShortUrl>) invocation.getArgument(0)).forEach(row -> rows.put(row.getShortCode(), row));
+            return null;
+        }).when(repository).insertAll(anyList());
+        when(repository.findByShortCode(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        when(repository.findByShortCodeOnPrimary(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        when(repository.findByUrlHash(anyLong())).thenAnswer(invocation -> rows.values().stream()
+                .filter(row -> Objects.equals(row.getUrlHash(), invocation.getArgument(0)))
+                .toList());
+        RedisService redisService = mock(RedisService.class);
+        when(redisService.getHashField(eq("url-dedupe"), anyString()))
+                .thenAnswer(invocation -> claims.get(invocation.<String>getArgument(1)));
+        when(redisService.saveHashFieldIfAbsent(eq("url-dedupe"), anyString(), anyString()))
+                .thenAnswer(invocation -> claims.computeIfAbsent(invocation.getArgument(1),
+                        field -> invocation.getArgument(2)));
+        zooKeeperService = mock(ZooKeeperService.class);
+        when(zooKeeperService.nextSequences(anyInt())).thenAnswer(invocation -> {
+            long[] sequences = new long[invocation.<Integer>getArgument(0)];
+            for (int i = 0; i < sequences.length; i++) {
+                sequences[i] = 8_000_000L + rows.size() + i;
+            }
+            return sequences;
+        });
+        when(zooKeeperService.getNextShortCode()).thenReturn(Base62Converter.encode(9_000_000L));
+        deduplicator = new UrlDeduplicator(repository, redisService, new SimpleMeterRegistry(), true, "url-dedupe",
+                Duration.ofMillis(200));
+        service = new BulkShortenService(repository, redisService, zooKeeperService, mock(ShortCodeFilter.class),
+                deduplicator, 500);
+    }
+
+    @Test
+    void testBulkCreatedUrlIsReusedBySingleCreate() {
+        String shortCode = service.shortenAll(List.of(URL), 0).get(0).shortCode();
+        claims.clear();
+
+        UrlShortnerService single = new UrlShortnerService(repository, mock(RedisService.class),
+                mock(AccessCountBuffer.class), mock(ShortUrlLoader.class), mock(ResolveMetrics.class),
+                zooKeeperService, deduplicator);
+
+        assertEquals(shortCode, single.generateShortCode("HTTPS://EXAMPLE.com/page").getShortCode());
+        assertEquals(UrlDeduplicator.hashOf(URL), rows.get(shortCode).getUrlHash());
+        verify(zooKeeperService, never()).getNextShortCode();
+    }
+
+    @Test
+    void testUrlsShortenedBeforeOrRepeatedInTheChunkShareTheirShortCode() {
+        String existing = service.shortenAll(List.of(URL), 0).get(0).shortCode();
+
+        List<BatchShortenResult> results = service.shortenAll(
+                List.of("https://example.com/other", URL, "not a url", "https://EXAMPLE.com/other"), 0);
+
+        assertEquals(existing, results.get(1).shortCode());
+        assertEquals(results.get(0).shortCode(), results.get(3).shortCode());
+        assertNotEquals(existing, results.get(0).shortCode());
+        assertEquals(2, rows.size());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheTtlPolicyTest {
+
+    private static final Duration DAY = Duration.ofDays(1);
+    private static final Duration WEEK = Duration.ofDays(7);
+    private static final Duration MINUTE = Duration.ofMinutes(1);
+
+    @Test
+    void testTtlStaysWithinJitter() {
+        CacheTtlPolicy policy = new CacheTtlPolicy(DAY, WEEK, 0.1, Duration.ofMinutes(5), 1.0, MINUTE);
+        long distinct = IntStream.range(0, 1000)
+                .mapToLong(i -> policy.ttlForNewEntry().toMillis())
+                .peek(ttl -> {
+                    assertTrue(ttl >= DAY.toMillis() * 0.9);
+                    assertTrue(ttl <= DAY.toMillis() * 1.1);
+                })
+                .distinct()
+                .count();
+
+        assertTrue(distinct > 1);
+        assertTrue(policy.ttlForRefreshedEntry().compareTo(DAY.multipliedBy(2)) > 0);
+    }
+
+    @Test
+    void testNoJitterKeepsNominalTtl() {
+        CacheTtlPolicy policy = new CacheTtlPolicy(DAY, WEEK, 0, Duration.ofMinutes(5), 1.0, MINUTE);
+
+        assertEquals(DAY, policy.ttlForNewEntry());
+        assertEquals(WEEK, policy.ttlForRefreshedEntry());
+    }
+
+    @Test
+    void testEarlyRefreshBecomesLikelyNearExpiry() {
+        CacheTtlPolicy policy = new CacheTtlPolicy(DAY, WEEK, 0.1, Duration.ofMinutes(5), 1.0, MINUTE);
+
+        assertFalse(policy.shouldRefreshEarly(-1));
+        assertTrue(policy.shouldRefreshEarly(0));
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(policy.shouldRefreshEarly(DAY.toMillis()));
+        }
+    }
+
+    @Test
+    void testRejectsJitterOfWholeTtl() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CacheTtlPolicy(DAY, WEEK, 1.0, Duration.ofMinutes(5), 1.0, MINUTE));
+    }
+}
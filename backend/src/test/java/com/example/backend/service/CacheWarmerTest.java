@@ -0,0 +1,96 @@
+package com.example.backend.service;
+
+import com.example.backend.config.ServiceRegistration;
+import com.example.backend.repository.ShortUrlRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheWarmerTest {
+
+    private ShortUrlRepository repository;
+    private RedisService redisService;
+    private ServiceRegistration registration;
+    private CacheWarmer warmer;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        redisService = mock(RedisService.class);
+        registration = mock(ServiceRegistration.class);
+        warmer = new CacheWarmer(repository, redisService, mock(HotLinkTracker.class), registration,
+                Schedulers.immediate(), 1200, Duration.ofMinutes(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMostAccessedUrlsAreLoadedInBatches() {
+        doAnswer(invocation -> {
+            BiConsumer<String, String> action = invocation.getArgument(1);
+            for (int i = 0; i < 1200; i++) {
+                action.accept("code" + i, "https://example.com/" + i);
+            }
+            return null;
+        }).when(repository).forEachMostAccessed(eq(1200), any());
+        when(redisService.getAllFromCache(anyCollection()))
+                .thenAnswer(invocation -> Map.of("code0", "https://example.com/0"))
+                .thenReturn(Map.of());
+
+        assertEquals(1200, warmer.warmUp());
+
+        ArgumentCaptor<Map<String, String>> written = ArgumentCaptor.forClass(Map.class);
+        verify(redisService, times(3)).saveAllToCacheIfAbsent(written.capture());
+        Map<String, String> all = new HashMap<>();
+        written.getAllValues().forEach(all::putAll);
+        assertEquals(1199, all.size());
+        assertFalse(all.containsKey("code0"));
+        verify(redisService).saveToLocalCache("code1", "https://example.com/1");
+        verify(redisService, never()).saveToLocalCache(eq("code0"), anyString());
+    }
+
+    @Test
+    void testInstanceRegistersOnlyAfterTheWarmUp() {
+        doAnswer(invocation -> {
+            assertEquals(Status.OUT_OF_SERVICE, warmer.health().getStatus());
+            verify(registration, never()).register();
+            return null;
+        }).when(repository).forEachMostAccessed(eq(1200), any());
+
+        warmer.onApplicationReady();
+
+        verify(registration).register();
+        assertEquals(Status.UP, warmer.health().getStatus());
+    }
+
+    @Test
+    void testFailedWarmUpStillRegisters() {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("database down");
+        }).when(repository).forEachMostAccessed(eq(1200), any());
+
+        warmer.onApplicationReady();
+
+        verify(registration).register();
+        assertEquals(Status.UP, warmer.health().getStatus());
+    }
+}
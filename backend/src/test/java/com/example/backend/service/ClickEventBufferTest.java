@@ -0,0 +1,163 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.HotLink;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ClickEventBufferTest {
+
+    private static final String CHROME = "Mozilla/5.0 (Windows NT 10.0) Chrome/126.0";
+
+    private RedisService redisService;
+    private SimpleMeterRegistry meterRegistry;
+    private HotLinkTracker hotLinks;
+    private ClickEventBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        redisService = mock(RedisService.class);
+        hotLinks = new HotLinkTracker(redisService, 10, 256, 4, Duration.ofHours(1), false);
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new ClickEventBuffer(redisService, meterRegistry, true, 1 << 16,
+                Duration.ofHours(1), Duration.ofDays(7), hotLinks);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        buffer.shutdown();
+        hotLinks.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConcurrentClicksAreRolledUpPerMinute() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            String client = "10.0.0." + t;
+            pool.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    buffer.record("bqcU", client, "https://News.example.com/story?id=" + i, CHROME, "pe");
+                    buffer.record("bqcU", client, null, "Googlebot/2.1", null);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(8000, meterRegistry.get("shortcode.clicks.buffered").gauge().value());
+
+        buffer.flush();
+
+        ArgumentCaptor<Map<String, Map<String, Long>>> buckets = ArgumentCaptor.forClass(Map.class);
+        verify(redisService).incrementHashes(buckets.capture(), eq(Duration.ofDays(7)));
+        long total = 0;
+        long referred = 0;
+        long bots = 0;
+        for (Map.Entry<String, Map<String, Long>> bucket : buckets.getValue().entrySet()) {
+            assertTrue(bucket.getKey().startsWith("clicks:bqcU:"));
+            Map<String, Long> fields = bucket.getValue();
+            total += fields.get("total");
+            referred += fields.getOrDefault("ref:news.example.com", 0L);
+            bots += fields.getOrDefault("ua:bot", 0L);
+            assertEquals(fields.get("total"),
+                    fields.getOrDefault("cc:PE", 0L) + fields.getOrDefault("cc:unknown", 0L));
+        }
+        assertEquals(8000, total);
+        assertEquals(4000, referred);
+        assertEquals(4000, bots);
+
+        ArgumentCaptor<Map<String, Set<String>>> visitors = ArgumentCaptor.forClass(Map.class);
+        verify(redisService).addToHyperLogLogs(visitors.capture(), eq(Duration.ofDays(7)));
+        assertEquals(8, visitors.getValue().values().stream().mapToInt(Set::size).sum());
+        assertEquals(List.of(new HotLink("bqcU", 8000)), hotLinks.top(10));
+        assertEquals(0, meterRegistry.get("shortcode.clicks.buffered").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReferrerHostsAreCappedPerBucketAcrossFlushes() {
+        for (int i = 0; i < 250; i++) {
+            buffer.record("bqcU", "10.0.0.1", "https://site" + i + ".example.com/", CHROME, null);
+            if (i == 124) {
+                buffer.flush();
+            }
+        }
+        buffer.flush();
+
+        ArgumentCaptor<Map<String, Map<String, Long>>> buckets = ArgumentCaptor.forClass(Map.class);
+        verify(redisService, times(2)).incrementHashes(buckets.capture(), eq(Duration.ofDays(7)));
+        Map<String, Set<String>> hostsByBucket = new HashMap<>();
+        long referred = 0;
+        long other = 0;
+        for (Map<String, Map<String, Long>> flushed : buckets.getAllValues()) {
+            for (Map.Entry<String, Map<String, Long>> bucket : flushed.entrySet()) {
+                for (Map.Entry<String, Long> field : bucket.getValue().entrySet()) {
+                    if (field.getKey().equals("ref:other")) {
+                        other += field.getValue();
+                    } else if (field.getKey().startsWith("ref:")) {
+                        referred += field.getValue();
+                        hostsByBucket.computeIfAbsent(bucket.getKey(), k -> new HashSet<>()).add(field.getKey());
+                    }
+                }
+            }
+        }
+        hostsByBucket.values().forEach(hosts -> assertTrue(hosts.size() <= 100));
+        assertTrue(other > 0);
+        assertEquals(250, referred + other);
+    }
+
+    @Test
+    void testClicksAreDroppedWhenTheBufferIsFull() throws InterruptedException {
+        buffer.shutdown();
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new ClickEventBuffer(redisService, meterRegistry, true, 4,
+                Duration.ofHours(1), Duration.ofDays(7), hotLinks);
+
+        for (int i = 0; i < 6; i++) {
+            buffer.record("bqcU", "10.0.0.1", null, CHROME, null);
+        }
+
+        assertEquals(2, meterRegistry.get("shortcode.clicks.dropped").counter().count());
+        assertEquals(4, meterRegistry.get("shortcode.clicks.buffered").gauge().value());
+    }
+
+    @Test
+    void testMalformedShortcodesAreNotRecorded() {
+        buffer.record("no-code!", "10.0.0.1", null, CHROME, null);
+
+        buffer.flush();
+
+        verify(redisService, never()).incrementHashes(any(), any());
+    }
+
+    @Test
+    void testUserAgentsAreClassified() {
+        assertEquals(ClickEventBuffer.Agent.BROWSER, ClickEventBuffer.Agent.of(CHROME));
+        assertEquals(ClickEventBuffer.Agent.MOBILE,
+                ClickEventBuffer.Agent.of("Mozilla/5.0 (iPhone) Mobile/15E148 Safari/604.1"));
+        assertEquals(ClickEventBuffer.Agent.BOT, ClickEventBuffer.Agent.of("Slackbot-LinkExpanding 1.0"));
+        assertEquals(ClickEventBuffer.Agent.OTHER, ClickEventBuffer.Agent.of("curl/8.5.0"));
+        assertEquals(ClickEventBuffer.Agent.OTHER, ClickEventBuffer.Agent.of(null));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+    private static final List<String> NODES = List.of("cache-1:6379", "cache-2:6379", "cache-3:6379", "cache-4:6379");
+
+    @Test
+    void testKeysAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 160);
+        int[] counts = new int[NODES.size()];
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.nodeOf("u:" + i)]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(Math.abs(count - KEYS / NODES.size()) < KEYS / NODES.size() / 5, "keys on a node: " + count);
+        }
+    }
+
+    @Test
+    void testAddingANodeOnlyMovesKeysOntoIt() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, 160);
+        List<String> grown = List.of("cache-1:6379", "cache-2:6379", "cache-5:6379", "cache-3:6379", "cache-4:6379");
+        ConsistentHashRing after = new ConsistentHashRing(grown, 160);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String oldNode = NODES.get(before.nodeOf("u:" + i));
+            String newNode = grown.get(after.nodeOf("u:" + i));
+            if (!oldNode.equals(newNode)) {
+                assertEquals("cache-5:6379", newNode);
+                moved++;
+            }
+        }
+
+        assertTrue(moved > KEYS / 7 && moved < KEYS / 4, "keys moved: " + moved);
+    }
+
+    @Test
+    void testEmptyRingIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 160));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(NODES, 0));
+    }
+}
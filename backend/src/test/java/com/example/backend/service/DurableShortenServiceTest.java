@@ -0,0 +1,101 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DurableShortenServiceTest {
+
+    private static final String CODE = Base62Converter.encode(6_000_000L);
+    private static final String URL = "https://example.com/page";
+
+    private final Map<String, ShortUrl> rows = new ConcurrentHashMap<>();
+    private final Set<String> filtered = ConcurrentHashMap.newKeySet();
+    private ShortUrlRepository repository;
+    private RedisService redisService;
+    private ShortUrlJournal journal;
+    private ShortCodeFilter filter;
+    private DurableShortenService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        doAnswer(invocation -> {
+            ((List<ShortUrl>) invocation.getArgument(0)).forEach(row -> rows.putIfAbsent(row.getShortCode(), row));
+            return null;
+        }).when(repository).insertAllIfAbsent(anyList());
+        when(repository.findByShortCode(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        redisService = mock(RedisService.class);
+        journal = mock(ShortUrlJournal.class);
+        when(journal.append(any())).thenReturn(true);
+        filter = mock(ShortCodeFilter.class);
+        doAnswer(invocation -> filtered.addAll(invocation.<Collection<String>>getArgument(0)))
+                .when(filter).add(anyCollection());
+        when(filter.mightContain(anyString()))
+                .thenAnswer(invocation -> filtered.contains(invocation.<String>getArgument(0)));
+        ZooKeeperService zooKeeperService = mock(ZooKeeperService.class);
+        when(zooKeeperService.getNextShortCode()).thenReturn(CODE);
+        service = new DurableShortenService(repository, redisService, zooKeeperService,
+                mock(UrlDeduplicator.class), journal, filter);
+    }
+
+    @Test
+    void testJournaledCodeResolvesBeforeTheDrainWhenRedisFails() {
+        when(redisService.saveToCache(CODE, URL)).thenReturn(false);
+
+        assertEquals(CODE, service.generateShortCode(URL).getShortCode());
+
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, new SimpleMeterRegistry(),
+                false, Duration.ofSeconds(2));
+        assertEquals(Optional.of(URL), loader.load(CODE));
+        verify(journal).append(any());
+        verify(redisService, never()).saveMissToCache(anyString());
+        loader.shutdown();
+    }
+
+    @Test
+    void testCachedCodeIsLeftToTheDrainer() {
+        when(redisService.saveToCache(CODE, URL)).thenReturn(true);
+
+        service.generateShortCode(URL);
+
+        verify(repository, never()).insertAllIfAbsent(anyList());
+        verify(repository, never()).save(any());
+        verify(filter, never()).add(anyCollection());
+    }
+
+    @Test
+    void testRefusedAppendIsSavedBeforeTheCodeIsAnnounced() {
+        when(journal.append(any())).thenReturn(false);
+        when(redisService.saveToCache(CODE, URL)).thenReturn(true);
+
+        service.generateShortCode(URL);
+
+        verify(repository).save(any());
+        verify(filter).add(List.of(CODE));
+    }
+}
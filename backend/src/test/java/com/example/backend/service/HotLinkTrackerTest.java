@@ -0,0 +1,68 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.HotLink;
+import com.example.backend.utils.Base62Converter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class HotLinkTrackerTest {
+
+    private HotLinkTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new HotLinkTracker(mock(RedisService.class), 3, 1024, 4, Duration.ofHours(1), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+    }
+
+    @Test
+    void testHeavyHittersAreRankedAmongManyLinks() {
+        for (int round = 0; round < 10; round++) {
+            Map<Long, Long> clicks = new HashMap<>();
+            for (long codeId = 1_000; codeId < 6_000; codeId++) {
+                clicks.put(codeId, 1L);
+            }
+            clicks.put(7L, 500L);
+            clicks.put(8L, 300L);
+            clicks.put(9L, 200L);
+            tracker.addAll(clicks);
+        }
+
+        List<HotLink> top = tracker.top(3);
+
+        assertEquals(List.of(code(7), code(8), code(9)), top.stream().map(HotLink::shortCode).toList());
+        assertTrue(top.get(0).clicks() >= 5_000);
+        assertTrue(top.get(0).clicks() < 5_000 + 2 * 60_000 / 1024);
+    }
+
+    @Test
+    void testDecayLetsNewLinksOvertakeOldOnes() {
+        tracker.addAll(Map.of(7L, 1_000L, 8L, 600L, 9L, 400L));
+        tracker.decay();
+        tracker.decay();
+
+        tracker.addAll(Map.of(10L, 300L));
+
+        assertEquals(List.of(code(10), code(7), code(8)),
+                tracker.top(3).stream().map(HotLink::shortCode).toList());
+        assertEquals(250, tracker.top(3).get(1).clicks());
+    }
+
+    private static String code(long codeId) {
+        return Base62Converter.encode(codeId);
+    }
+}
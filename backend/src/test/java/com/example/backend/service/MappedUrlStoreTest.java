@@ -0,0 +1,100 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedUrlStoreTest {
+
+    private static final Duration MAX_AGE = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEntriesSurviveACleanRestart() throws IOException {
+        MappedUrlStore store = new MappedUrlStore(directory, 10_000, MAX_AGE);
+        for (long id = 100_000; id < 105_000; id++) {
+            store.put(code(id), "https://example.com/" + id);
+        }
+        store.put(code(100_001), "https://example.com/updated");
+        store.remove(code(100_002));
+        store.close();
+
+        MappedUrlStore reopened = new MappedUrlStore(directory, 10_000, MAX_AGE);
+
+        assertEquals("https://example.com/100000", reopened.get(code(100_000)));
+        assertEquals("https://example.com/updated", reopened.get(code(100_001)));
+        assertNull(reopened.get(code(100_002)));
+        assertEquals("https://example.com/104999", reopened.get(code(104_999)));
+        assertNull(reopened.get(code(105_000)));
+        reopened.close();
+    }
+
+    @Test
+    void testIndexIsRebuiltFromTheLogAfterACrash() throws IOException {
+        MappedUrlStore crashed = new MappedUrlStore(directory, 10_000, MAX_AGE);
+        crashed.put(code(100_000), "https://example.com/a");
+        crashed.put(code(100_001), "https://example.com/b");
+        crashed.put(code(100_000), "https://example.com/c");
+        crashed.remove(code(100_001));
+
+        MappedUrlStore recovered = new MappedUrlStore(directory, 10_000, MAX_AGE);
+
+        assertEquals("https://example.com/c", recovered.get(code(100_000)));
+        assertNull(recovered.get(code(100_001)));
+        recovered.close();
+    }
+
+    @Test
+    void testCompactionKeepsOnlyLiveEntries() throws IOException {
+        MappedUrlStore store = new MappedUrlStore(directory, 10_000, MAX_AGE);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        store.bindTo(registry);
+        for (int round = 0; round < 3; round++) {
+            for (long id = 100_000; id < 101_000; id++) {
+                store.put(code(id), "https://example.com/" + id + "/" + round);
+            }
+        }
+        for (long id = 100_000; id < 100_500; id++) {
+            store.remove(code(id));
+        }
+        double before = registry.get("cache.mapped.log.size").gauge().value();
+
+        store.compact();
+
+        assertEquals(500, registry.get("cache.mapped.entries").gauge().value());
+        assertTrue(registry.get("cache.mapped.log.size").gauge().value() < before / 2);
+        store.put(code(200_000), "https://example.com/new");
+        store.close();
+        MappedUrlStore reopened = new MappedUrlStore(directory, 10_000, MAX_AGE);
+
+        assertNull(reopened.get(code(100_499)));
+        assertEquals("https://example.com/100500/2", reopened.get(code(100_500)));
+        assertEquals("https://example.com/new", reopened.get(code(200_000)));
+        reopened.close();
+    }
+
+    @Test
+    void testNonCanonicalCodesAreNotStored() throws IOException {
+        MappedUrlStore store = new MappedUrlStore(directory, 10_000, MAX_AGE);
+        store.put("a" + code(100_000), "https://example.com/a");
+
+        assertNull(store.get(code(100_000)));
+        store.close();
+    }
+
+    private static String code(long id) {
+        return Base62Converter.encode(id);
+    }
+}
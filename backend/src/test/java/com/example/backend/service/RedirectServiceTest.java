@@ -0,0 +1,69 @@
+package com.example.backend.service;
+
+import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.repository.ShortUrlRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RedirectServiceTest {
+
+    private RedisService redisService;
+    private ShortUrlLoader loader;
+    private SimpleMeterRegistry meterRegistry;
+    private RedirectService service;
+
+    @BeforeEach
+    void setUp() {
+        redisService = mock(RedisService.class);
+        loader = mock(ShortUrlLoader.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new RedirectService(mock(ShortUrlRepository.class), redisService,
+                mock(AccessCountBuffer.class), loader, new ResolveMetrics(meterRegistry));
+    }
+
+    @Test
+    void testResolutionsAreTimedByOutcome() {
+        when(redisService.getEntryFromCache("aaaa"))
+                .thenReturn(new RedisService.CachedValue("https://a.example.com", -1, true));
+        when(redisService.getEntryFromCache("bbbb"))
+                .thenReturn(new RedisService.CachedValue("https://b.example.com", 60_000, false));
+        when(redisService.getEntryFromCache("cccc"))
+                .thenReturn(new RedisService.CachedValue(null, -1, false));
+        when(loader.load("cccc")).thenReturn(Optional.of("https://c.example.com"));
+        when(redisService.getEntryFromCache("dddd"))
+                .thenReturn(new RedisService.CachedValue(RedisService.MISSING, -1, false));
+
+        assertEquals("https://a.example.com", service.getOriginalUrl("aaaa"));
+        assertEquals("https://b.example.com", service.getOriginalUrl("bbbb"));
+        assertEquals("https://c.example.com", service.getOriginalUrl("cccc"));
+        assertThrows(ResourceNotFoundException.class, () -> service.getOriginalUrl("dddd"));
+        assertThrows(ResourceNotFoundException.class, () -> service.getOriginalUrl("no-code!"));
+
+        assertEquals(1, resolutions("local_hit"));
+        assertEquals(1, resolutions("redis_hit"));
+        assertEquals(1, resolutions("database_hit"));
+        assertEquals(2, resolutions("not_found"));
+        assertEquals(0, resolutions("error"));
+    }
+
+    @Test
+    void testFailuresAreTimedAsErrors() {
+        when(redisService.getEntryFromCache("aaaa")).thenThrow(new IllegalStateException("down"));
+
+        assertThrows(IllegalStateException.class, () -> service.getOriginalUrl("aaaa"));
+
+        assertEquals(1, resolutions("error"));
+    }
+
+    private long resolutions(String outcome) {
+        return meterRegistry.get("shortcode.resolve").tag("outcome", outcome).timer().count();
+    }
+}
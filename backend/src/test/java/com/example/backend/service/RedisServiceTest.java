@@ -0,0 +1,281 @@
+package com.example.backend.service;
+
+import com.example.backend.utils.Base62Converter;
+import com.example.backend.utils.UrlCompressor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisServiceTest {
+
+    private static final String CODE = Base62Converter.encode(12_345);
+    private static final String URL = "https://www.example.com/new";
+
+    private static final UrlCacheLayout LAYOUT = new UrlCacheLayout(UrlCacheLayout.BUCKETS, 100, "u:", true);
+
+    private StringRedisTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        template = mock(StringRedisTemplate.class);
+    }
+
+    @Test
+    void testShortCodesMapToBucketFields() {
+        UrlCacheLayout layout = new UrlCacheLayout(UrlCacheLayout.BUCKETS, 100, "u:", true);
+
+        assertEquals("u:" + Base62Converter.encode(123), layout.bucketKey(CODE));
+        assertEquals("45", layout.field(CODE));
+        assertTrue(layout.isBucketed(CODE));
+        assertFalse(layout.isBucketed("a" + CODE));
+        assertFalse(new UrlCacheLayout(UrlCacheLayout.STRINGS, 100, "u:", true).isBucketed(CODE));
+    }
+
+    @Test
+    void testBucketIsReadWhenTheStringKeyIsAbsent() {
+        stubPipeline(null, UrlCompressor.compress(URL), 3_600_000L);
+
+        RedisService.CachedValue entry = service(true).getEntryFromCache(CODE);
+
+        assertEquals(URL, entry.value());
+        assertEquals(3_600_000L, entry.ttlMillis());
+    }
+
+    @Test
+    void testMissingMarkerTakesPrecedenceOverTheBucket() {
+        stubPipeline(RedisService.MISSING, UrlCompressor.compress(URL), 3_600_000L);
+
+        assertEquals(RedisService.MISSING, service(false).getEntryFromCache(CODE).value());
+    }
+
+    @Test
+    void testStringKeysAreOnlyReadDuringTheDualReadPeriod() {
+        stubPipeline("https://old.example.com", UrlCompressor.compress(URL), 3_600_000L);
+
+        assertEquals("https://old.example.com", service(true).getEntryFromCache(CODE).value());
+        assertEquals(URL, service(false).getEntryFromCache(CODE).value());
+    }
+
+    @Test
+    void testBatchReadsMergeStringKeysAndBuckets() {
+        String other = Base62Converter.encode(12_346);
+        stubPipeline(Arrays.asList(null, RedisService.MISSING),
+                Arrays.asList(UrlCompressor.compress(URL), UrlCompressor.compress("https://x.com/a")));
+
+        assertEquals(Map.of(CODE, URL, other, RedisService.MISSING),
+                service(true).getAllFromCache(List.of(CODE, other)));
+    }
+
+    @Test
+    void testUnreachableShardReadsAsAMissUntilItsHealthCheckPasses() {
+        RedisShards shards = new RedisShards(template, Map.of(), 160, Duration.ZERO, new SimpleMeterRegistry());
+        RedisService service = service(shards, true);
+        when(template.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"))
+                .thenReturn(List.of());
+
+        assertNull(service.getEntryFromCache(CODE).value());
+        assertNull(service.getEntryFromCache(CODE).value());
+        service.saveToCache(CODE, URL);
+
+        verify(template, times(1)).executePipelined(any(RedisCallback.class));
+        assertFalse(shards.all().get(0).isUp());
+
+        when(template.execute(any(RedisCallback.class))).thenReturn("PONG");
+        shards.checkHealth();
+
+        assertTrue(shards.all().get(0).isUp());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEntriesOfWritesDroppedWhileDownAreEvictedBeforeTheShardIsUp() {
+        RedisShards shards = new RedisShards(template, Map.of(), 160, Duration.ZERO, new SimpleMeterRegistry());
+        RedisService service = service(shards, true);
+        String other = Base62Converter.encode(12_346);
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(template.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"))
+                .thenAnswer(invocation -> {
+                    ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+                    return List.of();
+                });
+        when(template.execute(any(RedisCallback.class))).thenReturn("PONG");
+
+        assertNull(service.getEntryFromCache(CODE).value());
+        service.saveToCache(CODE, URL);
+        service.deleteFromCache(other);
+        shards.checkHealth();
+
+        assertFalse(shards.all().get(0).isUp());
+        verify(connection, never()).hDel(anyString(), any(String[].class));
+
+        shards.checkHealth();
+
+        assertTrue(shards.all().get(0).isUp());
+        verify(connection).hDel(LAYOUT.bucketKey(CODE), LAYOUT.field(CODE));
+        verify(connection).hDel(LAYOUT.bucketKey(other), LAYOUT.field(other));
+        verify(template, times(3)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void testShardEvictsEverythingAfterTooManyDroppedWrites() {
+        RedisShards shards = new RedisShards(template, Map.of(), 160, Duration.ZERO, new SimpleMeterRegistry());
+        List<Boolean> evictions = new ArrayList<>();
+        shards.setStaleEntryEvictor((node, shortCodes, everything) -> evictions.add(everything));
+        RedisShards.Shard shard = shards.all().get(0);
+        when(template.execute(any(RedisCallback.class))).thenReturn("PONG");
+
+        shards.reportFailure(shard, new RedisConnectionFailureException("Connection refused"),
+                LongStream.rangeClosed(0, RedisShards.MAX_STALE_KEYS).mapToObj(Base62Converter::encode).toList());
+        shards.checkHealth();
+
+        assertEquals(List.of(true), evictions);
+        assertTrue(shard.isUp());
+    }
+
+    @Test
+    void testCommandErrorsAreThrownWithoutMarkingTheShardDown() {
+        RedisShards shards = new RedisShards(template, Map.of(), 160, Duration.ZERO, new SimpleMeterRegistry());
+        when(template.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new InvalidDataAccessApiUsageException("WRONGTYPE"));
+
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> service(shards, true).getEntryFromCache(CODE));
+        assertTrue(shards.all().get(0).isUp());
+    }
+
+    @Test
+    void testEntriesAreSpreadOverTheNodes() {
+        StringRedisTemplate other = mock(StringRedisTemplate.class);
+        RedisShards shards = new RedisShards(template, Map.of("cache-1:6379", template, "cache-2:6379", other), 160,
+                Duration.ZERO, new SimpleMeterRegistry());
+        UrlCacheLayout layout = new UrlCacheLayout(UrlCacheLayout.BUCKETS, 100, "u:", true);
+
+        long onOther = LongStream.range(0, 1_000)
+                .mapToObj(bucket -> shards.shardOf(layout.bucketKey(Base62Converter.encode(bucket * 100))))
+                .filter(shard -> shard.template() == other)
+                .count();
+
+        assertTrue(onOther > 400 && onOther < 600, "buckets on the second node: " + onOther);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDualReadsFindStringKeysLeftOnTheShardOfTheShortCode() {
+        StringRedisTemplate other = mock(StringRedisTemplate.class);
+        RedisShards shards = new RedisShards(template, Map.of("cache-1:6379", template, "cache-2:6379", other), 160,
+                Duration.ZERO, new SimpleMeterRegistry());
+        String code = codeWithBucketOnAnotherShard(shards);
+        StringRedisTemplate bucketNode = shards.shardOf(LAYOUT.bucketKey(code)).template();
+        StringRedisTemplate legacyNode = shards.shardOf(code).template();
+        when(bucketNode.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(null, null, -2L));
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(legacyNode.opsForValue()).thenReturn(values);
+        when(values.get(code)).thenReturn("https://old.example.com");
+
+        assertEquals("https://old.example.com", service(shards, true).getEntryFromCache(code).value());
+        assertNull(service(shards, false).getEntryFromCache(code).value());
+        verify(values, times(1)).get(code);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStringKeysAreMovedIntoBucketsOnAnotherShard() {
+        StringRedisTemplate other = mock(StringRedisTemplate.class);
+        RedisShards shards = new RedisShards(template, Map.of("cache-1:6379", template, "cache-2:6379", other), 160,
+                Duration.ZERO, new SimpleMeterRegistry());
+        String code = codeWithBucketOnAnotherShard(shards);
+        StringRedisConnection bucketConnection = mock(StringRedisConnection.class);
+        StringRedisConnection legacyConnection = mock(StringRedisConnection.class);
+        when(shards.shardOf(LAYOUT.bucketKey(code)).template().executePipelined(any(RedisCallback.class)))
+                .thenAnswer(invocation -> {
+                    ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(bucketConnection);
+                    return List.of(1L);
+                });
+        when(shards.shardOf(code).template().executePipelined(any(RedisCallback.class)))
+                .thenAnswer(invocation -> {
+                    ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(legacyConnection);
+                    return Arrays.asList(URL, 60_000L);
+                });
+
+        assertEquals(1, service(shards, true).moveToBuckets(List.of(code)));
+
+        verify(bucketConnection).eval(contains("HSETNX"), eq(ReturnType.INTEGER), eq(2), eq(code),
+                eq(LAYOUT.bucketKey(code)), eq(LAYOUT.field(code)), eq(LAYOUT.encode(URL)), eq("60000"));
+        verify(legacyConnection).eval(contains("DEL"), eq(ReturnType.INTEGER), eq(1), eq(code), eq(URL));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLeaseIsOnlyReleasedByItsHolder() {
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(template.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(eq("lease:" + CODE), anyString(), any(Duration.class))).thenReturn(true, false);
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(template.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        RedisService service = service(false);
+
+        String token = service.tryAcquireLease("lease:" + CODE, Duration.ofSeconds(2));
+        assertNull(service.tryAcquireLease("lease:" + CODE, Duration.ofSeconds(2)));
+        service.releaseLease("lease:" + CODE, token);
+
+        verify(values).setIfAbsent("lease:" + CODE, token, Duration.ofSeconds(2));
+        verify(connection).eval(contains("ARGV[1]"), eq(ReturnType.INTEGER), eq(1), eq("lease:" + CODE), eq(token));
+        verify(template, never()).delete(anyString());
+    }
+
+    private static String codeWithBucketOnAnotherShard(RedisShards shards) {
+        return LongStream.iterate(12_345, id -> id + 100)
+                .mapToObj(Base62Converter::encode)
+                .filter(code -> shards.shardOf(code) != shards.shardOf(LAYOUT.bucketKey(code)))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private void stubPipeline(Object... replies) {
+        when(template.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(replies));
+    }
+
+    private RedisService service(boolean dualRead) {
+        return service(new RedisShards(template, Map.of(), 160, Duration.ZERO, new SimpleMeterRegistry()), dualRead);
+    }
+
+    private RedisService service(RedisShards shards, boolean dualRead) {
+        return new RedisService(shards, mock(LocalUrlCache.class), "url-cache-invalidation", "shortcode-issued",
+                new UrlCacheLayout(UrlCacheLayout.BUCKETS, 100, "u:", dualRead),
+                new CacheTtlPolicy(Duration.ofDays(1), Duration.ofDays(7), 0, Duration.ofMinutes(5), 1.0,
+                        Duration.ofMinutes(1)),
+                new SimpleMeterRegistry());
+    }
+}
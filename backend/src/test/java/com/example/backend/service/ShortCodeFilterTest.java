@@ -0,0 +1,106 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShortCodeFilterTest {
+
+    private ShortUrlRepository repository;
+    private RedisService redisService;
+    private SimpleMeterRegistry meterRegistry;
+    private ShortCodeFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        redisService = mock(RedisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            List.of("bqcU", "bqcV").forEach(action);
+            return null;
+        }).when(repository).forEachShortCode(any());
+        filter = new ShortCodeFilter(repository, redisService, meterRegistry, 1000, 0.01, Duration.ofHours(1));
+        // Let the background build touch the mock before the tests stub it
+        verify(repository, timeout(5000)).forEachShortCode(any());
+        filter.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.shutdown();
+    }
+
+    @Test
+    void testUnknownShortCodeSkipsDatabase() {
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry, false, Duration.ofSeconds(2));
+
+        assertTrue(loader.load("zzzzzz").isEmpty());
+
+        verify(repository, never()).findByShortCode("zzzzzz");
+        assertEquals(1.0, meterRegistry.get("shortcode.filter.checks").tag("result", "absent").counter().count());
+    }
+
+    @Test
+    void testKnownShortCodeIsLoaded() {
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setUrl("https://www.example.com");
+        when(repository.findByShortCode("bqcU")).thenReturn(Optional.of(shortUrl));
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry, false, Duration.ofSeconds(2));
+
+        assertEquals(Optional.of("https://www.example.com"), loader.load("bqcU"));
+    }
+
+    @Test
+    void testFalsePositiveIsCachedAsMissing() {
+        when(repository.findByShortCode("bqcV")).thenReturn(Optional.empty());
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry, false, Duration.ofSeconds(2));
+
+        assertTrue(loader.load("bqcV").isEmpty());
+
+        verify(redisService).saveMissToCache("bqcV");
+        assertEquals(1.0, meterRegistry.get("shortcode.filter.false.positives").counter().count());
+    }
+
+    @Test
+    void testAddedShortCodesAreAnnounced() {
+        assertFalse(filter.mightContain("bqcW"));
+
+        filter.add(List.of("bqcW"));
+
+        assertTrue(filter.mightContain("bqcW"));
+        verify(redisService).publishIssuedCodes(List.of("bqcW"));
+    }
+
+    @Test
+    void testUnannouncedShortCodeCommittedAfterBuildIsNotReportedAbsent() {
+        // bqcV is 300003, the highest value found in the range [300001, 400000]
+        when(repository.findMaxId()).thenReturn(300_010L);
+
+        assertTrue(filter.mightContain(Base62Converter.encode(300_010)));
+        assertFalse(filter.mightContain(Base62Converter.encode(300_011)));
+        assertFalse(filter.mightContain("bqcT"));
+        verify(repository).findMaxId();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ShortUrlJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private ShortUrlRepository repository;
+    private RedisService redisService;
+    private ShortCodeFilter filter;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        redisService = mock(RedisService.class);
+        filter = mock(ShortCodeFilter.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testConcurrentCreatesShareSyncsAndAreDrained() throws Exception {
+        ShortUrlJournal journal = journal(true);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> appended = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            long id = 1_000_000L + i;
+            appended.add(clients.submit(() -> journal.append(shortUrl(id))));
+        }
+        for (Future<Boolean> result : appended) {
+            assertTrue(result.get());
+        }
+        clients.shutdown();
+
+        assertEquals(800, meterRegistry.get("shorten.wal.sync.batch").summary().totalAmount());
+        assertEquals(800, meterRegistry.get("shorten.wal.pending").gauge().value());
+
+        journal.drain();
+
+        assertEquals(800, drainedIds().size());
+        assertEquals(0, meterRegistry.get("shorten.wal.pending").gauge().value());
+        assertEquals(800, meterRegistry.get("shorten.wal.drained").counter().count());
+        journal.shutdown();
+    }
+
+    @Test
+    void testUndrainedCreatesAreReplayedAfterACrash() throws Exception {
+        ShortUrlJournal crashed = journal(true);
+        assertTrue(crashed.append(shortUrl(2_000_000L)));
+        assertTrue(crashed.append(shortUrl(2_000_001L)));
+        crashed.drain();
+        assertTrue(crashed.append(shortUrl(2_000_002L)));
+        assertTrue(crashed.append(shortUrl(2_000_003L)));
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(path -> path.toString().endsWith(".wal")).sorted()
+                    .reduce((first, second) -> second).orElseThrow();
+        }
+        Files.write(lastSegment, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ShortUrlJournal restarted = journal(true);
+
+        verify(redisService).saveAllToCache(Map.of(
+                Base62Converter.encode(2_000_002L), "https://example.com/2000002",
+                Base62Converter.encode(2_000_003L), "https://example.com/2000003"));
+        restarted.drain();
+        assertEquals(Set.of(2_000_000L, 2_000_001L, 2_000_002L, 2_000_003L), drainedIds());
+        assertEquals(0, meterRegistry.get("shorten.wal.pending").gauge().value());
+        assertTrue(restarted.append(shortUrl(2_000_004L)));
+        restarted.shutdown();
+    }
+
+    @Test
+    void testDrainedCreatesAreCachedOverMissesAndAnnounced() throws Exception {
+        ShortUrlJournal journal = journal(true);
+        assertTrue(journal.append(shortUrl(5_000_000L)));
+        verify(filter, never()).add(anyCollection());
+
+        journal.drain();
+
+        InOrder order = inOrder(repository, redisService, filter);
+        order.verify(repository).insertAllIfAbsent(anyList());
+        order.verify(redisService).saveAllToCacheOverMisses(
+                Map.of(Base62Converter.encode(5_000_000L), "https://example.com/5000000"));
+        order.verify(filter).add(List.of(Base62Converter.encode(5_000_000L)));
+        journal.shutdown();
+    }
+
+    @Test
+    void testFailedDrainIsRetried() throws Exception {
+        ShortUrlJournal journal = journal(true);
+        assertTrue(journal.append(shortUrl(3_000_000L)));
+        doThrow(new IllegalStateException("Connection refused")).doNothing()
+                .when(repository).insertAllIfAbsent(anyList());
+
+        assertThrows(IllegalStateException.class, journal::drain);
+        assertEquals(1, meterRegistry.get("shorten.wal.pending").gauge().value());
+        journal.drain();
+
+        assertEquals(0, meterRegistry.get("shorten.wal.pending").gauge().value());
+        journal.shutdown();
+    }
+
+    @Test
+    void testDisabledJournalRefusesAppends() throws Exception {
+        ShortUrlJournal journal = journal(false);
+
+        assertFalse(journal.isEnabled());
+        assertFalse(journal.append(shortUrl(4_000_000L)));
+        journal.shutdown();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private ShortUrlJournal journal(boolean enabled) {
+        doNothing().when(repository).insertAllIfAbsent(anyList());
+        return new ShortUrlJournal(repository, redisService, filter, meterRegistry, enabled,
+                directory.toString(), Duration.ofHours(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> drainedIds() {
+        ArgumentCaptor<List<ShortUrl>> batches = ArgumentCaptor.forClass(List.class);
+        verify(repository, atLeastOnce()).insertAllIfAbsent(batches.capture());
+        Set<Long> ids = new HashSet<>();
+        batches.getAllValues().forEach(batch -> batch.forEach(row -> ids.add(row.getId())));
+        return ids;
+    }
+
+    private static ShortUrl shortUrl(long id) {
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode(Base62Converter.encode(id));
+        shortUrl.setUrl("https://example.com/" + id);
+        shortUrl.setCreatedAt(Timestamp.from(Instant.now()));
+        shortUrl.setUpdateAt(Timestamp.from(Instant.now()));
+        return shortUrl;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShortUrlLoaderTest {
+
+    private ShortUrlRepository repository;
+    private RedisService redisService;
+    private ShortCodeFilter filter;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        redisService = mock(RedisService.class);
+        filter = mock(ShortCodeFilter.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(filter.mightContain(any())).thenReturn(true);
+    }
+
+    @Test
+    void testConcurrentMissesShareOneQuery() throws Exception {
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry,
+                false, Duration.ofSeconds(2));
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findByShortCode("bqcU")).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(shortUrl("https://www.example.com"));
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Optional<String>>> results = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> loader.load("bqcU")));
+        }
+        while (meterRegistry.get("shortcode.load.coalesced").tag("scope", "local").counter().count() < 7) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (Future<Optional<String>> result : results) {
+            assertEquals(Optional.of("https://www.example.com"), result.get());
+        }
+        pool.shutdown();
+        verify(repository, times(1)).findByShortCode("bqcU");
+    }
+
+    @Test
+    void testLeaseLoserWaitsForCachedValue() {
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry,
+                true, Duration.ofSeconds(2));
+        when(redisService.tryAcquireLease(eq("lease:bqcU"), any())).thenReturn(null);
+        when(redisService.getFromCache("bqcU")).thenReturn(null, "https://www.example.com");
+
+        assertEquals(Optional.of("https://www.example.com"), loader.load("bqcU"));
+
+        verify(repository, never()).findByShortCode(any());
+        assertEquals(1.0, meterRegistry.get("shortcode.load.coalesced").tag("scope", "remote").counter().count());
+    }
+
+    @Test
+    void testLeaseWinnerCachesAndReleases() {
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry,
+                true, Duration.ofSeconds(2));
+        when(redisService.tryAcquireLease(eq("lease:bqcU"), any())).thenReturn("token");
+        when(repository.findByShortCode("bqcU")).thenReturn(Optional.of(shortUrl("https://www.example.com")));
+
+        assertEquals(Optional.of("https://www.example.com"), loader.load("bqcU"));
+
+        verify(redisService).saveToCache("bqcU", "https://www.example.com");
+        verify(redisService).releaseLease("lease:bqcU", "token");
+    }
+
+    @Test
+    void testRefreshAsyncStoresWithHotTtl() {
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry,
+                false, Duration.ofSeconds(2));
+        when(repository.findByShortCodeOnPrimary("bqcU"))
+                .thenReturn(Optional.of(shortUrl("https://www.example.com")));
+
+        loader.refreshAsync("bqcU");
+
+        verify(redisService, timeout(5000)).refreshInCache("bqcU", "https://www.example.com");
+        verify(repository, never()).findByShortCode(any());
+        loader.shutdown();
+    }
+
+    @Test
+    void testRecentlyChangedCodeIsReadFromThePrimary() {
+        ShortUrlLoader loader = new ShortUrlLoader(repository, redisService, filter, meterRegistry,
+                false, Duration.ofSeconds(2));
+        when(redisService.isRecentlyChanged("bqcU")).thenReturn(true);
+        when(repository.findByShortCode("bqcU")).thenReturn(Optional.of(shortUrl("https://stale.example.com")));
+        when(repository.findByShortCodeOnPrimary("bqcU"))
+                .thenReturn(Optional.of(shortUrl("https://www.example.com")));
+
+        assertEquals(Optional.of("https://www.example.com"), loader.load("bqcU"));
+
+        verify(repository, never()).findByShortCode(any());
+    }
+
+    private static ShortUrl shortUrl(String url) {
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setUrl(url);
+        return shortUrl;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UrlDeduplicatorTest {
+
+    private ShortUrlRepository repository;
+    private RedisService redisService;
+    private UrlDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        redisService = mock(RedisService.class);
+        deduplicator = new UrlDeduplicator(repository, redisService, new SimpleMeterRegistry(), true, "url-dedupe",
+                Duration.ofMillis(200));
+    }
+
+    @Test
+    void testEquivalentUrlsShareAHash() {
+        assertEquals(UrlDeduplicator.hashOf("https://example.com/"),
+                UrlDeduplicator.hashOf(" HTTPS://Example.COM:443"));
+        assertTrue(UrlDeduplicator.hashOf("https://example.com/a")
+                != UrlDeduplicator.hashOf("https://example.com/A"));
+    }
+
+    @Test
+    void testUrlsDifferingInTheirFragmentAreDistinct() {
+        assertNotEquals(UrlDeduplicator.hashOf("https://app/#/a"), UrlDeduplicator.hashOf("https://app/#/b"));
+        assertEquals(UrlDeduplicator.hashOf("https://app/#/a"), UrlDeduplicator.hashOf("HTTPS://APP:443/#/a"));
+    }
+
+    @Test
+    void testClaimedShortCodeIsReturned() {
+        ShortUrl row = row("bqcU", "https://example.com/page");
+        when(redisService.getHashField(eq("url-dedupe"), anyString())).thenReturn("bqcU");
+        when(repository.findByShortCode("bqcU")).thenReturn(Optional.of(row));
+
+        assertEquals(Optional.of(row), deduplicator.findExisting("https://EXAMPLE.com/page"));
+        verify(repository, never()).findByUrlHash(anyLong());
+    }
+
+    @Test
+    void testStaleClaimIsReplacedFromTheDatabase() {
+        ShortUrl updated = row("bqcU", "https://example.com/updated");
+        when(redisService.getHashField(eq("url-dedupe"), anyString())).thenReturn("bqcU");
+        when(repository.findByShortCode("bqcU")).thenReturn(Optional.of(updated));
+        when(repository.findByShortCodeOnPrimary("bqcU")).thenReturn(Optional.of(updated));
+        ShortUrl row = row("bqcV", "https://example.com/page");
+        when(repository.findByUrlHash(UrlDeduplicator.hashOf("https://example.com/page")))
+                .thenReturn(List.of(row("bqcW", "https://example.com/colliding"), row));
+
+        assertEquals(Optional.of(row), deduplicator.findExisting("https://example.com/page"));
+        verify(redisService).deleteHashField(eq("url-dedupe"), anyString(), eq("bqcU"));
+        verify(redisService).saveHashFieldIfAbsent(eq("url-dedupe"), anyString(), eq("bqcV"));
+    }
+
+    @Test
+    void testClaimWhoseRowIsInFlightIsKept() {
+        when(redisService.getHashField(eq("url-dedupe"), anyString())).thenReturn("bqcU");
+
+        assertEquals(Optional.empty(), deduplicator.findExisting("https://example.com/page"));
+        verify(repository).findByShortCodeOnPrimary("bqcU");
+        verify(redisService, never()).deleteHashField(any(), any(), any());
+    }
+
+    @Test
+    void testConcurrentCreationWaitsForTheFirstRow() {
+        ShortUrl row = row("bqcU", "https://example.com/page");
+        when(redisService.saveHashFieldIfAbsent(eq("url-dedupe"), anyString(), eq("bqcV"))).thenReturn("bqcU");
+        when(repository.findByShortCodeOnPrimary("bqcU"))
+                .thenReturn(Optional.empty(), Optional.empty(), Optional.of(row));
+
+        assertEquals(Optional.of(row), deduplicator.claim("https://example.com/page", "bqcV"));
+        verify(redisService, never()).deleteHashField(any(), any(), any());
+    }
+
+    @Test
+    void testAbandonedClaimIsReplaced() {
+        when(redisService.saveHashFieldIfAbsent(eq("url-dedupe"), anyString(), eq("bqcV")))
+                .thenReturn("bqcU", "bqcV");
+
+        assertEquals(Optional.empty(), deduplicator.claim("https://example.com/page", "bqcV"));
+        verify(redisService).deleteHashField(eq("url-dedupe"), anyString(), eq("bqcU"));
+    }
+
+    @Test
+    void testConcurrentCreationsShareTheFirstRow() throws Exception {
+        Map<String, String> claims = new ConcurrentHashMap<>();
+        Map<String, ShortUrl> committed = new ConcurrentHashMap<>();
+        when(redisService.saveHashFieldIfAbsent(eq("url-dedupe"), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String held = claims.putIfAbsent(invocation.getArgument(1), invocation.getArgument(2));
+                    return held == null ? invocation.getArgument(2) : held;
+                });
+        when(repository.findByShortCodeOnPrimary(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(committed.get(invocation.<String>getArgument(0))));
+        String[] shortCodes = {"bqcU", "bqcV", "bqcW", "bqcX"};
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(shortCodes.length);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (String shortCode : shortCodes) {
+            results.add(pool.submit(() -> {
+                start.await();
+                Optional<ShortUrl> concurrent = deduplicator.claim("https://example.com/page", shortCode);
+                if (concurrent.isPresent()) {
+                    return concurrent.get().getShortCode();
+                }
+                Thread.sleep(50);
+                committed.put(shortCode, row(shortCode, "https://example.com/page"));
+                return shortCode;
+            }));
+        }
+        start.countDown();
+
+        Set<String> returned = new HashSet<>();
+        for (Future<String> result : results) {
+            returned.add(result.get());
+        }
+        pool.shutdown();
+        assertEquals(Set.copyOf(claims.values()), returned);
+        assertEquals(returned, committed.keySet());
+        assertEquals(1, returned.size());
+    }
+
+    @Test
+    void testRememberedUrlIsClaimedWithoutWaiting() {
+        when(redisService.saveHashFieldIfAbsent(eq("url-dedupe"), anyString(), eq("bqcV"))).thenReturn("bqcU");
+
+        deduplicator.remember("https://example.com/page", "bqcV");
+
+        verify(repository, never()).findByShortCodeOnPrimary(anyString());
+        verify(redisService, never()).deleteHashField(any(), any(), any());
+    }
+
+    @Test
+    void testDisabledDeduplicationFindsNothing() {
+        UrlDeduplicator disabled = new UrlDeduplicator(repository, redisService, new SimpleMeterRegistry(), false,
+                "url-dedupe", Duration.ofMillis(200));
+
+        assertEquals(Optional.empty(), disabled.findExisting("https://example.com/page"));
+        verifyNoInteractions(repository, redisService);
+    }
+
+    private static ShortUrl row(String shortCode, String url) {
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode(shortCode);
+        shortUrl.setUrl(url);
+        return shortUrl;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.backend.service;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UrlShortnerServiceTest {
+
+    private static final String CODE = Base62Converter.encode(7_000_000L);
+    private static final String URL = "https://example.com/page";
+    private static final String NEW_URL = "https://example.com/moved";
+
+    private ShortUrlRepository repository;
+    private UrlDeduplicator deduplicator;
+    private UrlShortnerService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ShortUrlRepository.class);
+        ShortUrl row = new ShortUrl();
+        row.setShortCode(CODE);
+        row.setUrl(URL);
+        when(repository.findByShortCode(CODE)).thenReturn(Optional.of(row));
+        deduplicator = mock(UrlDeduplicator.class);
+        when(deduplicator.isEnabled()).thenReturn(true);
+        service = new UrlShortnerService(repository, mock(RedisService.class), mock(AccessCountBuffer.class),
+                mock(ShortUrlLoader.class), mock(ResolveMetrics.class), mock(ZooKeeperService.class), deduplicator);
+    }
+
+    @Test
+    void testDeleteReleasesTheClaimOfItsUrl() {
+        service.deleteUrlByShortCode(CODE);
+
+        verify(repository).deleteByShortCode(CODE);
+        verify(deduplicator).release(URL, CODE);
+    }
+
+    @Test
+    void testUpdateMovesTheHashAndClaimToTheNewUrl() {
+        service.updateUrlByShortCode(CODE, NEW_URL);
+
+        verify(repository).updateUrl(NEW_URL, UrlDeduplicator.hashOf(NEW_URL), CODE);
+        verify(deduplicator).release(URL, CODE);
+        verify(deduplicator).remember(NEW_URL, CODE);
+    }
+
+    @Test
+    void testDisabledDeduplicationKeepsClaimsUntouched() {
+        when(deduplicator.isEnabled()).thenReturn(false);
+
+        service.updateUrlByShortCode(CODE, NEW_URL);
+        service.deleteUrlByShortCode(CODE);
+
+        verify(deduplicator, never()).release(anyString(), anyString());
+        verify(deduplicator, never()).remember(anyString(), anyString());
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.backend.service;
+
+import com.example.backend.service.ZooKeeperService.AllocationMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZooKeeperServiceTest {
+
+    private TestingServer server;
+    private CuratorFramework client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TestingServer(true);
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        client.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void testSequencesAreConsecutiveWithinRange() {
+        ZooKeeperService service = newService(AllocationMode.CAS);
+
+        long first = service.nextSequence();
+        long second = service.nextSequence();
+
+        assertEquals(100001L, first);
+        assertEquals(first + 1, second);
+        service.shutdown();
+    }
+
+    @Test
+    void testLeasesOneRangeInsteadOfWritingPerCode() throws Exception {
+        ZooKeeperService service = newService(AllocationMode.CAS);
+
+        for (int i = 0; i < 1000; i++) {
+            service.getNextShortCode();
+        }
+
+        String highWater = new String(client.getData().forPath("/shorten"), StandardCharsets.UTF_8);
+        assertEquals("200000", highWater);
+        service.shutdown();
+    }
+
+    @Test
+    void testNextSequencesReservesAcrossRanges() {
+        ZooKeeperService service = newService(AllocationMode.CAS);
+
+        long first = service.nextSequence();
+        long[] block = service.nextSequences(150_000);
+        long after = service.nextSequence();
+
+        Set<Long> seen = new HashSet<>();
+        seen.add(first);
+        for (long sequence : block) {
+            assertTrue(seen.add(sequence));
+        }
+        assertTrue(seen.add(after));
+        assertEquals(first + 1, block[0]);
+        assertEquals(150_002, seen.size());
+        service.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AllocationMode.class)
+    void testConcurrentNodesNeverShareSequences(AllocationMode mode) throws Exception {
+        ZooKeeperService nodeA = newService(mode);
+        ZooKeeperService nodeB = newService(mode);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        int perThread = 40_000;
+
+        for (int t = 0; t < 8; t++) {
+            ZooKeeperService node = t % 2 == 0 ? nodeA : nodeB;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(seen.add(node.nextSequence()));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(8 * perThread, seen.size());
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void testLockAndCasNodesCanRunSideBySide() {
+        ZooKeeperService lockNode = newService(AllocationMode.LOCK);
+        ZooKeeperService casNode = newService(AllocationMode.CAS);
+
+        long fromLock = lockNode.nextSequence();
+        long fromCas = casNode.nextSequence();
+
+        assertEquals(100001L, fromLock);
+        assertEquals(200001L, fromCas);
+        lockNode.shutdown();
+        casNode.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(AllocationMode.class)
+    void testLeasesAfterUnalignedNodeStartOnRangeBoundaries(AllocationMode mode) throws Exception {
+        client.create().forPath("/shorten", "100538".getBytes(StandardCharsets.UTF_8));
+        ZooKeeperService nodeA = newService(mode);
+        ZooKeeperService nodeB = newService(mode);
+
+        long fromA = nodeA.nextSequence();
+        long fromB = nodeB.nextSequence();
+
+        assertEquals(200001L, fromA);
+        assertEquals(300001L, fromB);
+        assertEquals(ZooKeeperService.rangeOf(fromA), ZooKeeperService.rangeOf(fromA + 99_999));
+        assertNotEquals(ZooKeeperService.rangeOf(fromA), ZooKeeperService.rangeOf(fromB));
+        String highWater = new String(client.getData().forPath("/shorten"), StandardCharsets.UTF_8);
+        assertEquals("400000", highWater);
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void testLockModeTimesEveryZooKeeperRequest() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ZooKeeperService service = new ZooKeeperService(client, meterRegistry, AllocationMode.LOCK);
+
+        service.nextSequence();
+
+        for (String op : List.of("read", "write", "release")) {
+            assertEquals(1, meterRegistry.get("zookeeper.request").tags("op", op, "mode", "lock").timer().count());
+        }
+        assertEquals(1, meterRegistry.get("zookeeper.sequence.lock.wait").tag("lock", "distributed").timer().count());
+        service.shutdown();
+    }
+
+    private ZooKeeperService newService(AllocationMode mode) {
+        return new ZooKeeperService(client, new SimpleMeterRegistry(), mode);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Base62ConverterTest {
+
+    private static final String ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    @Test
+    void testEncodeMatchesPreviouslyIssuedCodes() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long value = 1 + random.nextInt(Integer.MAX_VALUE);
+            assertEquals(legacyEncode(value), Base62Converter.encode(value));
+        }
+    }
+
+    @Test
+    void testRoundTrip() {
+        long[] values = {0L, 1L, 61L, 62L, 100001L, Integer.MAX_VALUE, Long.MAX_VALUE};
+        for (long value : values) {
+            assertEquals(value, Base62Converter.decode(Base62Converter.encode(value)));
+        }
+    }
+
+    @Test
+    void testEncodeFixedPadsWithZeroDigit() {
+        assertEquals("aaaaab", Base62Converter.encodeFixed(1, 6));
+        assertEquals(1L, Base62Converter.decode("aaaaab"));
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.encodeFixed(62, 1));
+    }
+
+    @Test
+    void testDecodeRejectsInvalidCodes() {
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.decode("abc-1"));
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.decode("héllo"));
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.decode("999999999999"));
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.decode("99999999999"));
+    }
+
+    @Test
+    void testIsValid() {
+        assertTrue(Base62Converter.isValid("abc123"));
+        assertTrue(Base62Converter.isValid(Base62Converter.encode(Long.MAX_VALUE)));
+        assertFalse(Base62Converter.isValid(null));
+        assertFalse(Base62Converter.isValid("favicon.ico"));
+        assertFalse(Base62Converter.isValid("aaaaaaaaaaaa"));
+    }
+
+    @Test
+    void testNegativeValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Base62Converter.encode(-1));
+    }
+
+    private static String legacyEncode(long value) {
+        StringBuilder sb = new StringBuilder();
+        while (value > 0) {
+            sb.insert(0, ALPHABET.charAt((int) value % 62));
+            value /= 62;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlCompressorTest {
+
+    @Test
+    void testUrlsRoundTrip() {
+        for (String url : List.of("https://www.youtube.com/watch?v=dQw4w9WgXcQ", "https://www.example.com/a",
+                "http://example.com", "https://github.com/", "ftp://example.com/file", "", "\u0003raw",
+                "\u0000escaped")) {
+            assertEquals(url, UrlCompressor.decompress(UrlCompressor.compress(url)));
+        }
+    }
+
+    @Test
+    void testLongestPrefixIsReplaced() {
+        assertEquals("\u0005dQw4w9WgXcQ", UrlCompressor.compress("https://www.youtube.com/watch?v=dQw4w9WgXcQ"));
+        assertEquals("\u0001example.com/a", UrlCompressor.compress("https://www.example.com/a"));
+        assertEquals("example.com", UrlCompressor.compress("example.com"));
+        assertTrue(UrlCompressor.compress("https://en.wikipedia.org/wiki/Redis").length() < 10);
+    }
+
+    @Test
+    void testUnknownCodeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> UrlCompressor.decompress("\u001fexample.com"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.benchmarks;
+
+import com.example.backend.utils.Base62Converter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Base62 encoding and decoding of shortcodes.
+ * <p>
+ * {@code sequence} covers a freshly started counter, the
+ * current range of production codes and the longest code
+ * a {@code long} can produce.
+ *
+ * @see Base62Converter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base62ConverterBenchmark {
+    /**
+     * Sequence value to encode.
+     */
+    @Param({"100001", "56800235584", "9223372036854775807"})
+    public long sequence;
+    /**
+     * Encoded form of {@link #sequence}.
+     */
+    private String code;
+    /**
+     * Reused buffer for the allocation-free encoder.
+     */
+    private final char[] buffer = new char[Base62Converter.MAX_LENGTH];
+
+    /**
+     * Encodes the sequence once for the decode benchmarks.
+     */
+    @Setup
+    public void setUp() {
+        code = Base62Converter.encode(sequence);
+    }
+
+    /**
+     * Encodes a sequence value into a new string.
+     *
+     * @return the shortcode
+     */
+    @Benchmark
+    public String encode() {
+        return Base62Converter.encode(sequence);
+    }
+
+    /**
+     * Encodes a sequence value into a reused buffer.
+     *
+     * @return the index of the first character written
+     */
+    @Benchmark
+    public int encodeIntoBuffer() {
+        return Base62Converter.encode(sequence, buffer);
+    }
+
+    /**
+     * Decodes a shortcode back into its sequence value.
+     *
+     * @return the sequence value
+     */
+    @Benchmark
+    public long decode() {
+        return Base62Converter.decode(code);
+    }
+
+    /**
+     * Checks that a shortcode could have been generated.
+     *
+     * @return whether the shortcode is valid
+     */
+    @Benchmark
+    public boolean isValid() {
+        return Base62Converter.isValid(code);
+    }
+}
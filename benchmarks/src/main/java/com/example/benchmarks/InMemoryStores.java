@@ -0,0 +1,124 @@
+package com.example.benchmarks;
+
+import com.example.backend.entity.ShortUrl;
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.utils.Base62Converter;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * In-memory stand-ins for Postgres and Redis, so benchmarks
+ * measure the service code rather than the network.
+ * <p>
+ * They implement only the calls the resolve path makes and
+ * cost a map lookup each, which keeps the measured time
+ * close to the overhead the service adds on top of its
+ * stores. Any other call throws an
+ * {@link IllegalStateException}; benchmarks resolve once in
+ * their setup, so a service change that needs another call
+ * fails the trial before anything is measured.
+ */
+final class InMemoryStores {
+    /**
+     * {@code PTTL} reply for a key that does not exist.
+     */
+    private static final long NO_SUCH_KEY = -2;
+
+    private InMemoryStores() {
+    }
+
+    /**
+     * Creates a repository that serves the given mappings.
+     * <p>
+     * Supports the lookups by shortcode, {@code forEachShortCode}
+     * and {@code findMaxId}; {@code incrementAccessCounts} does
+     * nothing.
+     *
+     * @param urls the URLs keyed by shortcode
+     * @return the repository
+     */
+    static ShortUrlRepository repository(final Map<String, String> urls) {
+        return (ShortUrlRepository) Proxy.newProxyInstance(
+                ShortUrlRepository.class.getClassLoader(),
+                new Class<?>[] {ShortUrlRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByShortCode" -> Optional.ofNullable(urls.get((String) args[0]))
+                            .map(url -> shortUrl((String) args[0], url));
+                    case "findByShortCodeIn" -> ((Collection<?>) args[0]).stream()
+                            .filter(urls::containsKey)
+                            .map(code -> shortUrl((String) code, urls.get(code)))
+                            .toList();
+                    case "forEachShortCode" -> {
+                        @SuppressWarnings("unchecked")
+                        Consumer<String> action = (Consumer<String>) args[0];
+                        urls.keySet().forEach(action);
+                        yield null;
+                    }
+                    case "findMaxId" -> urls.keySet().stream()
+                            .mapToLong(Base62Converter::decode).max().orElse(0);
+                    case "incrementAccessCounts" -> null;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryShortUrlRepository";
+                    default -> throw new IllegalStateException(
+                            "The in-memory repository does not support " + method.getName());
+                });
+    }
+
+    /**
+     * Creates a Redis template whose pipelined {@code GET} and
+     * {@code PTTL} are answered from the given mappings.
+     * <p>
+     * The pipeline callback is run against a connection that
+     * only records the key read, and the reply is built from
+     * the map.
+     *
+     * @param urls the cached URLs keyed by shortcode
+     * @param ttlMillis the remaining TTL reported for cached URLs
+     * @return the template
+     */
+    static StringRedisTemplate redis(final Map<String, String> urls,
+                                     final long ttlMillis) {
+        return new StringRedisTemplate() {
+            @Override
+            public List<Object> executePipelined(final RedisCallback<?> action) {
+                String[] key = new String[1];
+                StringRedisConnection connection = (StringRedisConnection) Proxy.newProxyInstance(
+                        StringRedisConnection.class.getClassLoader(),
+                        new Class<?>[] {StringRedisConnection.class},
+                        (proxy, method, args) -> {
+                            if ("get".equals(method.getName()) && args[0] instanceof String code) {
+                                key[0] = code;
+                            }
+                            return null;
+                        });
+                action.doInRedis(connection);
+                String url = urls.get(key[0]);
+                return Arrays.asList(url, url == null ? NO_SUCH_KEY : ttlMillis);
+            }
+        };
+    }
+
+    /**
+     * Creates an entity for a mapping.
+     *
+     * @param shortCode the shortcode
+     * @param url the URL
+     * @return the entity
+     */
+    private static ShortUrl shortUrl(final String shortCode, final String url) {
+        ShortUrl shortUrl = new ShortUrl();
+        shortUrl.setShortCode(shortCode);
+        shortUrl.setUrl(url);
+        return shortUrl;
+    }
+}
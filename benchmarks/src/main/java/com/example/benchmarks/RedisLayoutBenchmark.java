@@ -0,0 +1,281 @@
+package com.example.benchmarks;
+
+import com.example.backend.service.CacheTtlPolicy;
+import com.example.backend.service.LocalUrlCache;
+import com.example.backend.service.RedisService;
+import com.example.backend.service.RedisShards;
+import com.example.backend.service.UrlCacheLayout;
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Redis memory used per cached mapping, and the
+ * latency of reading one, for each {@link UrlCacheLayout}.
+ * <p>
+ * A Redis 6.2 server bundled with embedded-redis is started
+ * with {@code hash-max-ziplist-value 256}, the setting the
+ * buckets layout relies on. {@code writeMappings} writes
+ * {@value #MAPPINGS} mappings with URLs shaped like real ones
+ * through {@link RedisService#saveAllToCache(Map)} once, and
+ * reports the growth of {@code used_memory} divided by the
+ * number of mappings as its {@code bytesPerMapping} secondary
+ * result; {@code readEntry} measures the read latency:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar RedisLayout
+ * </pre>
+ * Connections are pooled, so every pipelined read reuses one
+ * instead of opening it. Reads go over loopback, so their
+ * latency is mostly the round trip; what differs between
+ * layouts is the memory.
+ *
+ * @see RedisService#getEntryFromCache(String)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class RedisLayoutBenchmark {
+    /**
+     * Number of mappings written.
+     */
+    private static final int MAPPINGS = 200_000;
+    /**
+     * Number of mappings written per pipelined round trip.
+     */
+    private static final int BATCH_SIZE = 1_000;
+    /**
+     * First sequence value, giving six-character shortcodes.
+     */
+    private static final long FIRST_SEQUENCE = 916_132_832L;
+
+    /**
+     * Layout of the mappings.
+     */
+    @Param({UrlCacheLayout.STRINGS, UrlCacheLayout.BUCKETS})
+    public String layout;
+    /**
+     * Shortcodes written.
+     */
+    private String[] shortCodes;
+    /**
+     * Local Redis process.
+     */
+    private RedisServer redisServer;
+    /**
+     * Connections to the Redis process.
+     */
+    private LettuceConnectionFactory connectionFactory;
+    /**
+     * Service under test, without a near cache.
+     */
+    private RedisService redisService;
+    /**
+     * Template of the Redis process.
+     */
+    private StringRedisTemplate template;
+
+    /**
+     * Memory used per mapping, reported by {@code writeMappings}.
+     * <p>
+     * JMH sums event counters over iterations, so the
+     * benchmark runs a single iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+        /**
+         * Growth of {@code used_memory} per mapping, in bytes.
+         */
+        public double bytesPerMapping;
+    }
+
+    /**
+     * Next shortcode to read, per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        /**
+         * Index of the next shortcode.
+         */
+        private int next;
+
+        /**
+         * Returns the next shortcode, wrapping around.
+         *
+         * @param codes the shortcodes
+         * @return the shortcode
+         */
+        String nextOf(final String[] codes) {
+            String shortCode = codes[next];
+            next = next + 1 == codes.length ? 0 : next + 1;
+            return shortCode;
+        }
+    }
+
+    /**
+     * Starts Redis and writes the mappings read by
+     * {@code readEntry} in {@link #layout}.
+     *
+     * @throws IOException if Redis cannot start
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int port = freePort();
+        redisServer = RedisServer.newRedisServer().port(port)
+                .setting("hash-max-ziplist-value 256").build();
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("127.0.0.1", port),
+                LettucePoolingClientConfiguration.defaultConfiguration());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        template = new StringRedisTemplate(connectionFactory);
+        LocalUrlCache localUrlCache = new LocalUrlCache(false, 1,
+                Duration.ofMinutes(5), false, "unused", 1,
+                Duration.ofHours(1));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        redisService = new RedisService(new RedisShards(template, Map.of(), 1,
+                Duration.ZERO, meterRegistry), localUrlCache,
+                "url-cache-invalidation", "shortcode-issued",
+                new UrlCacheLayout(layout, 100, "u:", false),
+                new CacheTtlPolicy(Duration.ofDays(1), Duration.ofDays(7), 0.1,
+                        Duration.ofMinutes(5), 1.0, Duration.ofSeconds(60)),
+                meterRegistry);
+        shortCodes = writeAll(FIRST_SEQUENCE);
+    }
+
+    /**
+     * Writes {@value #MAPPINGS} mappings in pipelined batches.
+     *
+     * @param firstSequence the sequence value of the first shortcode
+     * @return the shortcodes written
+     */
+    private String[] writeAll(final long firstSequence) {
+        String[] codes = new String[MAPPINGS];
+        Map<String, String> batch = new HashMap<>();
+        for (int i = 0; i < MAPPINGS; i++) {
+            codes[i] = Base62Converter.encode(firstSequence + i);
+            batch.put(codes[i], urlOf(i));
+            if (batch.size() == BATCH_SIZE) {
+                redisService.saveAllToCache(batch);
+                batch.clear();
+            }
+        }
+        redisService.saveAllToCache(batch);
+        return codes;
+    }
+
+    /**
+     * Builds a URL shaped like the ones users shorten: popular
+     * domains with ids, and long article and document paths.
+     *
+     * @param i the index of the mapping
+     * @return the URL
+     */
+    private static String urlOf(final int i) {
+        String id = Base62Converter.encodeFixed(i * 2_654_435_761L
+                & Long.MAX_VALUE, Base62Converter.MAX_LENGTH);
+        return switch (i % 4) {
+            case 0 -> "https://www.youtube.com/watch?v=" + id;
+            case 1 -> "https://github.com/user" + i + "/project-" + id;
+            case 2 -> "https://www.example.com/articles/2024/06/" + i
+                    + "-how-we-cut-our-cache-memory-in-half";
+            default -> "https://docs.google.com/document/d/" + id + id + id
+                    + "/edit";
+        };
+    }
+
+    /**
+     * Reads {@code used_memory} from {@code INFO memory}.
+     *
+     * @param template the template
+     * @return the bytes allocated by Redis
+     */
+    private static long usedMemory(final StringRedisTemplate template) {
+        Properties info = template.execute((RedisCallback<Properties>)
+                connection -> connection.serverCommands().info("memory"));
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+
+    /**
+     * Finds a port no other process is listening on.
+     *
+     * @return the port
+     * @throws IOException if no port can be bound
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Closes the connections and stops Redis.
+     *
+     * @throws IOException if Redis cannot be stopped
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    /**
+     * Writes {@value #MAPPINGS} new mappings and measures the
+     * memory they take.
+     *
+     * @param memory receives the memory used per mapping
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void writeMappings(final Memory memory) {
+        long before = usedMemory(template);
+        writeAll(FIRST_SEQUENCE + MAPPINGS);
+        memory.bytesPerMapping =
+                (double) (usedMemory(template) - before) / MAPPINGS;
+    }
+
+    /**
+     * Reads the next mapping, as a near cache miss does.
+     *
+     * @param cursor the next shortcode of this thread
+     * @return the entry
+     */
+    @Benchmark
+    public RedisService.CachedValue readEntry(final Cursor cursor) {
+        return redisService.getEntryFromCache(cursor.nextOf(shortCodes));
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.benchmarks;
+
+import com.example.backend.repository.ShortUrlRepository;
+import com.example.backend.service.AccessCountBuffer;
+import com.example.backend.service.CacheTtlPolicy;
+import com.example.backend.service.LocalUrlCache;
+import com.example.backend.service.RedirectService;
+import com.example.backend.service.RedisService;
+import com.example.backend.service.RedisShards;
+import com.example.backend.service.ResolveMetrics;
+import com.example.backend.service.ShortCodeFilter;
+import com.example.backend.service.ShortUrlLoader;
+import com.example.backend.service.UrlCacheLayout;
+import com.example.backend.utils.Base62Converter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks resolving a shortcode through the full service
+ * stack used by redirects, with in-memory stores.
+ * <p>
+ * {@code source} selects where the URL is found:
+ * <ul>
+ *     <li>{@code near-cache}: the in-process cache, the path
+ *     taken by most redirects;</li>
+ *     <li>{@code mapped}: the persistent memory-mapped tier,
+ *     with the heap cache disabled;</li>
+ *     <li>{@code redis}: a Redis hit, with the near cache
+ *     disabled;</li>
+ *     <li>{@code database}: a miss in both caches, loaded
+ *     through the shortcode filter and the single-flight
+ *     loader.</li>
+ * </ul>
+ * Stores are replaced by {@link InMemoryStores}, so the
+ * results show the cost of the service code per lookup
+ * rather than network latency.
+ *
+ * @see RedirectService#getOriginalUrl(String)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveUrlBenchmark {
+    /**
+     * Number of distinct shortcodes looked up in turn.
+     */
+    private static final int KEYS = 10_000;
+    /**
+     * First sequence value, as issued by ZooKeeper.
+     */
+    private static final long FIRST_SEQUENCE = 100_001;
+    /**
+     * Remaining TTL reported for Redis hits; far from expiry,
+     * so no early refresh is triggered.
+     */
+    private static final long REDIS_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Where the URL is found.
+     */
+    @Param({"near-cache", "mapped", "redis", "database"})
+    public String source;
+    /**
+     * Shortcodes looked up in turn.
+     */
+    private String[] shortCodes;
+    /**
+     * Service under test.
+     */
+    private RedirectService redirectService;
+    /**
+     * Buffer of access counts, stopped after the trial.
+     */
+    private AccessCountBuffer accessCountBuffer;
+    /**
+     * Shortcode filter, stopped after the trial.
+     */
+    private ShortCodeFilter shortCodeFilter;
+    /**
+     * Loader of cache misses, stopped after the trial.
+     */
+    private ShortUrlLoader shortUrlLoader;
+    /**
+     * Local caches, closed after the trial.
+     */
+    private LocalUrlCache localUrlCache;
+    /**
+     * Directory of the persistent tier, deleted after the trial.
+     */
+    private Path mappedDirectory;
+
+    /**
+     * Next shortcode to look up, per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        /**
+         * Index of the next shortcode.
+         */
+        private int next;
+
+        /**
+         * Returns the next shortcode, wrapping around.
+         *
+         * @param codes the shortcodes
+         * @return the shortcode
+         */
+        String nextOf(final String[] codes) {
+            String shortCode = codes[next];
+            next = next + 1 == codes.length ? 0 : next + 1;
+            return shortCode;
+        }
+    }
+
+    /**
+     * Builds the service stack with the stores for {@link #source},
+     * then resolves one shortcode and flushes its access count, so
+     * a call the in-memory stores do not support fails the trial
+     * here rather than while measuring.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Map<String, String> urls = new HashMap<>();
+        shortCodes = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            shortCodes[i] = Base62Converter.encode(FIRST_SEQUENCE + i);
+            urls.put(shortCodes[i], "https://www.example.com/articles/" + i);
+        }
+        boolean nearCache = "near-cache".equals(source);
+        boolean mapped = "mapped".equals(source);
+        Map<String, String> cached = "database".equals(source) ? Map.of() : urls;
+        mappedDirectory = Files.createTempDirectory("url-cache");
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ShortUrlRepository repository = InMemoryStores.repository(urls);
+        localUrlCache = new LocalUrlCache(nearCache, KEYS,
+                Duration.ofMinutes(5), mapped, mappedDirectory.toString(), KEYS,
+                Duration.ofHours(1));
+        CacheTtlPolicy ttlPolicy = new CacheTtlPolicy(Duration.ofDays(1),
+                Duration.ofDays(7), 0.1, Duration.ofMinutes(5), 1.0,
+                Duration.ofSeconds(60));
+        RedisService redisService = new RedisService(new RedisShards(
+                InMemoryStores.redis(cached, REDIS_TTL_MILLIS), Map.of(), 1,
+                Duration.ZERO, meterRegistry), localUrlCache,
+                "url-cache-invalidation", "shortcode-issued",
+                new UrlCacheLayout(UrlCacheLayout.STRINGS, 100, "u:", true),
+                ttlPolicy, meterRegistry);
+        shortCodeFilter = new ShortCodeFilter(repository, redisService,
+                meterRegistry, KEYS, 0.01, Duration.ofHours(1));
+        shortCodeFilter.rebuild();
+        shortUrlLoader = new ShortUrlLoader(repository, redisService,
+                shortCodeFilter, meterRegistry, false, Duration.ofSeconds(2));
+        accessCountBuffer = new AccessCountBuffer(repository, meterRegistry,
+                Duration.ofSeconds(1), KEYS);
+        redirectService = new RedirectService(repository, redisService,
+                accessCountBuffer, shortUrlLoader,
+                new ResolveMetrics(meterRegistry));
+        if (nearCache || mapped) {
+            urls.forEach(localUrlCache::put);
+        }
+        redirectService.getOriginalUrl(shortCodes[0]);
+        accessCountBuffer.flush();
+    }
+
+    /**
+     * Stops the background threads of the service stack and
+     * deletes the files of the persistent tier.
+     *
+     * @throws InterruptedException if interrupted while flushing
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException, IOException {
+        accessCountBuffer.shutdown();
+        shortCodeFilter.shutdown();
+        shortUrlLoader.shutdown();
+        localUrlCache.shutdown();
+        try (Stream<Path> files = Files.list(mappedDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(mappedDirectory);
+    }
+
+    /**
+     * Resolves the next shortcode, as a redirect does.
+     *
+     * @param cursor the next shortcode of this thread
+     * @return the URL
+     */
+    @Benchmark
+    public String resolveUrl(final Cursor cursor) {
+        return redirectService.getOriginalUrl(cursor.nextOf(shortCodes));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.benchmarks;
+
+import com.example.backend.utils.ValidatorUrl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the URL check done before every shortening.
+ * <p>
+ * The inputs are a typical URL, a long URL with a query
+ * string, and two rejected inputs, since rejections can
+ * take a different path through the validator.
+ *
+ * @see ValidatorUrl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorUrlBenchmark {
+    /**
+     * URL to validate.
+     */
+    @Param({
+            "https://www.example.com",
+            "https://www.youtube.com/watch?v=TnTfFWwf44U&list=PL0vfts4VzfNjQOM9VClyL5R0LeuTxlAR3&index=7&t=42s",
+            "ftp//missing-colon.example.com",
+            "not a url at all"
+    })
+    public String url;
+
+    /**
+     * Validates the URL.
+     *
+     * @return whether the URL is accepted
+     */
+    @Benchmark
+    public boolean isValidUrl() {
+        return ValidatorUrl.isValidURL(url);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.benchmarks;
+
+import com.example.backend.service.ZooKeeperService;
+import com.example.backend.service.ZooKeeperService.AllocationMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks shortcode generation against an in-process
+ * ZooKeeper started with Curator's {@link TestingServer}.
+ * <p>
+ * Most calls are served from the leased range in memory;
+ * the measured average includes the share of calls that
+ * lease the next range, for both allocation modes. The
+ * contended variant runs several threads on one service,
+ * as concurrent shorten requests do.
+ *
+ * @see ZooKeeperService#getNextShortCode()
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZooKeeperServiceBenchmark {
+    /**
+     * How sequence ranges are leased.
+     */
+    @Param({"CAS", "LOCK"})
+    public AllocationMode mode;
+    /**
+     * In-process ZooKeeper server.
+     */
+    private TestingServer server;
+    /**
+     * Client connected to {@link #server}.
+     */
+    private CuratorFramework client;
+    /**
+     * Service under test.
+     */
+    private ZooKeeperService service;
+
+    /**
+     * Starts ZooKeeper and the service.
+     *
+     * @throws Exception if the server cannot start
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new TestingServer(true);
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(),
+                new RetryOneTime(100));
+        client.start();
+        service = new ZooKeeperService(client, new SimpleMeterRegistry(), mode);
+    }
+
+    /**
+     * Stops the service and ZooKeeper.
+     *
+     * @throws Exception if the server cannot stop
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        service.shutdown();
+        client.close();
+        server.close();
+    }
+
+    /**
+     * Generates one shortcode.
+     *
+     * @return the shortcode
+     */
+    @Benchmark
+    public String nextShortCode() {
+        return service.getNextShortCode();
+    }
+
+    /**
+     * Generates one shortcode while other threads do the same.
+     *
+     * @return the shortcode
+     */
+    @Benchmark
+    @Threads(4)
+    public String nextShortCodeContended() {
+        return service.getNextShortCode();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.loadtest;
+
+/**
+ * Backend endpoints driven by the load test.
+ */
+public enum Endpoint {
+    /**
+     * {@code POST /api/v1/write/shorten}, expecting 201.
+     */
+    CREATE(201),
+    /**
+     * {@code GET /{shortCode}}, expecting 302.
+     */
+    REDIRECT(302),
+    /**
+     * {@code GET /api/v1/read/shorten/{shortCode}/stats}, expecting 200.
+     */
+    STATS(200);
+
+    /**
+     * Status of a successful response.
+     */
+    private final int expectedStatus;
+
+    Endpoint(final int status) {
+        this.expectedStatus = status;
+    }
+
+    /**
+     * Returns the status of a successful response.
+     *
+     * @return the HTTP status
+     */
+    public int expectedStatus() {
+        return expectedStatus;
+    }
+}
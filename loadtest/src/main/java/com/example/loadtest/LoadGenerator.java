@@ -0,0 +1,286 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Drives a mix of create, redirect and stats requests against
+ * a running backend and records their latencies.
+ * <p>
+ * Redirect and stats requests pick shortcodes created by
+ * {@link #preload()} with Zipfian popularity, so a few codes
+ * are hot and most are cold, as with real links. Each
+ * endpoint gets its own HdrHistogram {@link Recorder}; the
+ * warm-up is recorded and then discarded. Failed requests are
+ * recorded too, and also counted as errors, so timeouts and
+ * error responses show up in the latency percentiles instead
+ * of making them look better.
+ * <p>
+ * Without a target rate every client thread sends its next
+ * request as soon as the previous one completes. With
+ * {@code --rate} requests are scheduled at fixed intervals
+ * and latency is measured from the scheduled time, so a
+ * stalled server is not hidden by clients that stop sending
+ * (coordinated omission).
+ */
+public final class LoadGenerator {
+    /**
+     * URLs created per batch request while preloading.
+     */
+    private static final int PRELOAD_CHUNK = 5000;
+    /**
+     * Seed of the shuffle that assigns popularity to shortcodes.
+     */
+    private static final long SHUFFLE_SEED = 42;
+
+    /**
+     * Base URI of the backend.
+     */
+    private final URI baseUri;
+    /**
+     * Options of the run.
+     */
+    private final LoadTestOptions options;
+    /**
+     * Client shared by all threads.
+     */
+    private final HttpClient client;
+    /**
+     * Parser for responses of the batch endpoint.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Shortcodes to read, most popular first.
+     */
+    private final List<String> shortCodes = new ArrayList<>();
+    /**
+     * Latency recorders, in microseconds, by endpoint.
+     */
+    private final Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+    /**
+     * Failed requests, by endpoint.
+     */
+    private final Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+    /**
+     * Number used to make created URLs unique.
+     */
+    private final AtomicLong createdUrls = new AtomicLong();
+    /**
+     * Endpoints in mix order.
+     */
+    private final Endpoint[] endpoints;
+    /**
+     * Sum of the weights of the endpoints up to each index.
+     */
+    private final int[] cumulativeWeights;
+    /**
+     * Whether client threads should stop.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a new {@code LoadGenerator}.
+     *
+     * @param backendUri base URI of the backend
+     * @param runOptions options of the run
+     */
+    public LoadGenerator(final URI backendUri, final LoadTestOptions runOptions) {
+        this.baseUri = backendUri;
+        this.options = runOptions;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new Recorder(3));
+            errors.put(endpoint, new LongAdder());
+        }
+        endpoints = runOptions.mix().keySet().toArray(new Endpoint[0]);
+        cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += runOptions.mix().get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("--mix needs a positive weight");
+        }
+    }
+
+    /**
+     * Creates the shortcodes read during the run through the
+     * batch endpoint.
+     *
+     * @throws IOException if a batch request fails
+     * @throws InterruptedException if interrupted
+     */
+    public void preload() throws IOException, InterruptedException {
+        for (int first = 0; first < options.keys(); first += PRELOAD_CHUNK) {
+            int count = Math.min(PRELOAD_CHUNK, options.keys() - first);
+            List<Map<String, String>> body = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                body.add(Map.of("url", "https://www.example.com/preloaded/" + (first + i)));
+            }
+            HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/v1/write/shorten/batch"))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            HttpResponse<Stream<String>> response =
+                    client.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                throw new IOException("Preloading failed with status " + response.statusCode());
+            }
+            for (String line : (Iterable<String>) response.body()::iterator) {
+                JsonNode result = objectMapper.readTree(line);
+                if (result.hasNonNull("shortCode")) {
+                    shortCodes.add(result.get("shortCode").asText());
+                }
+            }
+        }
+        if (shortCodes.isEmpty()) {
+            throw new IOException("Preloading created no shortcodes");
+        }
+        Collections.shuffle(shortCodes, new Random(SHUFFLE_SEED));
+    }
+
+    /**
+     * Runs the warm-up and the measured phase.
+     *
+     * @return the measured results
+     * @throws InterruptedException if interrupted
+     */
+    public LoadReport run() throws InterruptedException {
+        ZipfianGenerator popularity = new ZipfianGenerator(shortCodes.size(),
+                options.zipfExponent());
+        ExecutorService clients = Executors.newFixedThreadPool(options.concurrency());
+        for (int i = 0; i < options.concurrency(); i++) {
+            clients.execute(() -> drive(popularity));
+        }
+        TimeUnit.NANOSECONDS.sleep(options.warmup().toNanos());
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.get(endpoint).reset();
+            errors.get(endpoint).reset();
+        }
+        long measuredStart = System.nanoTime();
+        TimeUnit.NANOSECONDS.sleep(options.duration().toNanos());
+        Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, Long> failures = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            histograms.put(endpoint, recorders.get(endpoint).getIntervalHistogram());
+            failures.put(endpoint, errors.get(endpoint).sum());
+        }
+        Duration measured = Duration.ofNanos(System.nanoTime() - measuredStart);
+        stopped = true;
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.MINUTES);
+        return new LoadReport(measured, histograms, failures);
+    }
+
+    /**
+     * Sends requests from one client thread until stopped.
+     *
+     * @param popularity the shortcode popularity
+     */
+    private void drive(final ZipfianGenerator popularity) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long interval = options.rate() > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(options.concurrency()) / options.rate())
+                : 0;
+        // Spread the first request of each thread over one interval
+        long scheduled = System.nanoTime() + (interval > 0 ? random.nextLong(interval) : 0);
+        while (!stopped) {
+            long start;
+            if (interval > 0) {
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0 && !stopped) {
+                    LockSupport.parkNanos(wait);
+                }
+                start = scheduled;
+                scheduled += interval;
+            } else {
+                start = System.nanoTime();
+            }
+            Endpoint endpoint = pickEndpoint(random);
+            String shortCode = shortCodes.get(popularity.next(random));
+            boolean ok;
+            try {
+                ok = send(endpoint, shortCode) == endpoint.expectedStatus();
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            recorders.get(endpoint).recordValue(
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            if (!ok) {
+                errors.get(endpoint).increment();
+            }
+        }
+    }
+
+    /**
+     * Picks an endpoint according to the mix.
+     *
+     * @param random the source of randomness of the calling thread
+     * @return the endpoint
+     */
+    private Endpoint pickEndpoint(final ThreadLocalRandom random) {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < endpoints.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        return endpoints[endpoints.length - 1];
+    }
+
+    /**
+     * Sends one request and discards the response body.
+     *
+     * @param endpoint the endpoint to call
+     * @param shortCode the shortcode to read, for reads
+     * @return the response status
+     * @throws IOException if the request fails
+     * @throws InterruptedException if interrupted
+     */
+    private int send(final Endpoint endpoint, final String shortCode)
+            throws IOException, InterruptedException {
+        HttpRequest request = switch (endpoint) {
+            case CREATE -> HttpRequest.newBuilder(baseUri.resolve("/api/v1/write/shorten"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"url\":\"https://www.example.com/created/"
+                            + createdUrls.incrementAndGet() + "\"}"))
+                    .build();
+            case REDIRECT -> HttpRequest.newBuilder(baseUri.resolve("/" + shortCode)).GET().build();
+            case STATS -> HttpRequest.newBuilder(
+                    baseUri.resolve("/api/v1/read/shorten/" + shortCode + "/stats")).GET().build();
+        };
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
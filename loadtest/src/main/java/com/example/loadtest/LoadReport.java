@@ -0,0 +1,96 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Throughput and latency percentiles of a load test run,
+ * per endpoint.
+ *
+ * @param measured length of the measured phase
+ * @param histograms request latencies in microseconds,
+ *                   failed requests included, by endpoint
+ * @param errors failed requests, by endpoint
+ */
+public record LoadReport(Duration measured,
+                         Map<Endpoint, Histogram> histograms,
+                         Map<Endpoint, Long> errors) {
+    /**
+     * Percentiles reported for every endpoint.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    /**
+     * Microseconds per millisecond.
+     */
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    /**
+     * Prints the report as a table, latencies in milliseconds.
+     *
+     * @param out the stream to print to
+     */
+    public void print(final PrintStream out) {
+        out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s%n", "endpoint", "requests",
+                "errors", "req/s", "p50", "p90", "p99", "p99.9", "max");
+        for (Map.Entry<Endpoint, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            out.printf("%-10s %10d %8d %10.1f", entry.getKey().name().toLowerCase(),
+                    histogram.getTotalCount(), errors.get(entry.getKey()),
+                    throughput(entry.getKey(), histogram));
+            for (double percentile : PERCENTILES) {
+                out.printf(" %9.2f", histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI);
+            }
+            out.printf(" %9.2f%n", histogram.getMaxValue() / MICROS_PER_MILLI);
+        }
+    }
+
+    /**
+     * Writes the report as JSON, latencies in milliseconds.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(final Path file) throws IOException {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        histograms.forEach((endpoint, histogram) -> {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", histogram.getTotalCount());
+            result.put("errors", errors.get(endpoint));
+            result.put("throughput", throughput(endpoint, histogram));
+            Map<String, Double> latency = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                latency.put("p" + (percentile == Math.rint(percentile)
+                                ? String.valueOf((long) percentile) : String.valueOf(percentile)),
+                        histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI);
+            }
+            latency.put("max", histogram.getMaxValue() / MICROS_PER_MILLI);
+            result.put("latencyMillis", latency);
+            endpoints.put(endpoint.name().toLowerCase(), result);
+        });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("measuredSeconds", measured.toMillis() / MICROS_PER_MILLI);
+        report.put("endpoints", endpoints);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file.toFile(), report);
+    }
+
+    /**
+     * Returns the successful requests per second of an endpoint.
+     *
+     * @param endpoint the endpoint
+     * @param histogram the latencies of the endpoint
+     * @return the throughput
+     */
+    private double throughput(final Endpoint endpoint, final Histogram histogram) {
+        return (histogram.getTotalCount() - errors.get(endpoint)) * MICROS_PER_MILLI
+                / measured.toMillis();
+    }
+}
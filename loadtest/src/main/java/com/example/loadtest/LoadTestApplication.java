@@ -0,0 +1,95 @@
+package com.example.loadtest;
+
+import com.example.backend.BackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots {@link BackendApplication} against in-process stand-ins
+ * and drives a mixed workload against it.
+ * <p>
+ * The backend runs with its {@code test} profile, so it uses
+ * H2 initialised from {@code schema-h2.sql}, with ZooKeeper and
+ * Redis provided by {@link StandIns}. Example:
+ * <pre>
+ * java -jar loadtest/target/loadtest.jar --duration=60s --concurrency=64 \
+ *     --mix=redirect:90,stats:5,create:5 --json=loadtest-result.json
+ * </pre>
+ *
+ * @see LoadTestOptions
+ * @see LoadGenerator
+ */
+public final class LoadTestApplication {
+
+    private LoadTestApplication() {
+    }
+
+    /**
+     * Runs the load test and prints the report.
+     *
+     * @param args the options, see {@link LoadTestOptions}
+     * @throws Exception if the stand-ins, the backend or the run fail
+     */
+    public static void main(final String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (StandIns standIns = StandIns.start(options.redisNodes());
+             ConfigurableApplicationContext backend = startBackend(standIns, options)) {
+            int port = ((WebServerApplicationContext) backend).getWebServer().getPort();
+            LoadGenerator generator = new LoadGenerator(URI.create("http://127.0.0.1:" + port), options);
+            System.out.printf("Creating %d shortcodes%n", options.keys());
+            generator.preload();
+            System.out.printf("Warming up for %s, measuring for %s with %d clients%n",
+                    options.warmup(), options.duration(), options.concurrency());
+            LoadReport report = generator.run();
+            report.print(System.out);
+            if (options.jsonReport() != null) {
+                report.writeJson(Path.of(options.jsonReport()));
+            }
+        }
+        // Curator and its ZooKeeper test server leave non-daemon threads behind
+        System.exit(0);
+    }
+
+    /**
+     * Starts the backend with the {@code test} profile, pointed
+     * at the stand-ins.
+     * <p>
+     * SQL and request logging are turned down so they do not
+     * dominate the measurement; arguments given on the command
+     * line override these defaults.
+     *
+     * @param standIns the running stand-ins
+     * @param options the options of the run
+     * @return the running backend
+     */
+    private static ConfigurableApplicationContext startBackend(final StandIns standIns,
+                                                               final LoadTestOptions options) {
+        Map<String, String> args = new LinkedHashMap<>();
+        for (String arg : List.of("--spring.jpa.show-sql=false", "--logging.level.root=WARN")) {
+            put(args, arg);
+        }
+        standIns.backendArgs().forEach(arg -> put(args, arg));
+        options.backendArgs().forEach(arg -> put(args, arg));
+        return new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("test")
+                .run(args.values().toArray(new String[0]));
+    }
+
+    /**
+     * Adds an argument, replacing an earlier one with the same name.
+     *
+     * @param args the arguments by name
+     * @param arg the argument to add
+     */
+    private static void put(final Map<String, String> args, final String arg) {
+        int equals = arg.indexOf('=');
+        args.put(equals > 0 ? arg.substring(0, equals) : arg, arg);
+    }
+}
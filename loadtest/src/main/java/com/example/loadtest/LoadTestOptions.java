@@ -0,0 +1,97 @@
+package com.example.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of a load test run, parsed from {@code --name=value}
+ * arguments.
+ * <p>
+ * Arguments the harness does not know are kept in
+ * {@link #backendArgs()} and passed to the backend, so a run
+ * can change its configuration, e.g.
+ * {@code --execution.mode=virtual-threads}.
+ *
+ * @param duration measured run time
+ * @param warmup run time before measuring starts
+ * @param concurrency number of client threads
+ * @param rate target requests per second over all threads,
+ *             or {@code 0} to send as fast as responses arrive
+ * @param keys number of shortcodes created before the run
+ * @param zipfExponent skew of shortcode popularity
+ * @param mix relative weight of each endpoint
+ * @param jsonReport file the JSON report is written to, or {@code null}
+ * @param redisNodes number of extra Redis servers the cache is
+ *                   sharded over, or {@code 0} to cache on the
+ *                   primary one
+ * @param backendArgs arguments passed to the backend
+ */
+public record LoadTestOptions(Duration duration,
+                              Duration warmup,
+                              int concurrency,
+                              double rate,
+                              int keys,
+                              double zipfExponent,
+                              Map<Endpoint, Integer> mix,
+                              String jsonReport,
+                              int redisNodes,
+                              List<String> backendArgs) {
+
+    /**
+     * Parses the command line.
+     *
+     * @param args the arguments, each {@code --name=value}
+     * @return the options, with defaults for missing ones
+     */
+    public static LoadTestOptions parse(final String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> backendArgs = new ArrayList<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2
+                    ? arg.substring(2, equals) : "";
+            switch (name) {
+                case "duration", "warmup", "concurrency", "rate", "keys",
+                        "zipf-exponent", "mix", "json", "redis-nodes" ->
+                        values.put(name, arg.substring(equals + 1));
+                default -> backendArgs.add(arg);
+            }
+        }
+        return new LoadTestOptions(
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "60s")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                Integer.parseInt(values.getOrDefault("concurrency", "64")),
+                Double.parseDouble(values.getOrDefault("rate", "0")),
+                Integer.parseInt(values.getOrDefault("keys", "10000")),
+                Double.parseDouble(values.getOrDefault("zipf-exponent", "0.99")),
+                parseMix(values.getOrDefault("mix", "redirect:90,stats:5,create:5")),
+                values.get("json"),
+                Integer.parseInt(values.getOrDefault("redis-nodes", "0")),
+                List.copyOf(backendArgs));
+    }
+
+    /**
+     * Parses a mix such as {@code redirect:90,stats:5,create:5}.
+     *
+     * @param mix the endpoint weights
+     * @return the weight of each endpoint
+     */
+    private static Map<Endpoint, Integer> parseMix(final String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected endpoint:weight in --mix, got " + part);
+            }
+            weights.put(Endpoint.valueOf(pair[0].trim().toUpperCase()),
+                    Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.loadtest;
+
+import org.apache.curator.test.TestingServer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local stand-ins for the services the backend depends on:
+ * ZooKeeper through Curator's {@link TestingServer} and a
+ * Redis server started from the binary bundled with
+ * embedded-redis. The database is H2 from the backend's
+ * {@code test} profile.
+ * <p>
+ * Further Redis servers can be started as the nodes the
+ * backend shards its shortcode cache over, set through
+ * {@code cache.redis.nodes}.
+ * <p>
+ * The stand-ins run on the same machine as the load
+ * generator, so results show the cost of the backend itself;
+ * they are not a substitute for measuring against a Redis
+ * and Postgres deployment over the network.
+ */
+public final class StandIns implements AutoCloseable {
+    /**
+     * In-process ZooKeeper.
+     */
+    private final TestingServer zooKeeper;
+    /**
+     * Local Redis process.
+     */
+    private final RedisServer redis;
+    /**
+     * Port Redis listens on.
+     */
+    private final int redisPort;
+    /**
+     * Local Redis processes the cache is sharded over.
+     */
+    private final List<RedisServer> cacheNodes;
+    /**
+     * Ports the cache nodes listen on.
+     */
+    private final List<Integer> cacheNodePorts;
+
+    private StandIns(final TestingServer zooKeeperServer,
+                     final RedisServer redisServer,
+                     final int port,
+                     final List<RedisServer> nodes,
+                     final List<Integer> nodePorts) {
+        this.zooKeeper = zooKeeperServer;
+        this.redis = redisServer;
+        this.redisPort = port;
+        this.cacheNodes = nodes;
+        this.cacheNodePorts = nodePorts;
+    }
+
+    /**
+     * Starts ZooKeeper and Redis on free ports.
+     *
+     * @param redisNodes number of extra Redis servers to shard
+     *                   the cache over, or {@code 0}
+     * @return the running stand-ins
+     * @throws Exception if a server cannot start
+     */
+    public static StandIns start(final int redisNodes) throws Exception {
+        TestingServer zooKeeper = new TestingServer(true);
+        List<RedisServer> started = new ArrayList<>();
+        List<Integer> ports = new ArrayList<>();
+        try {
+            for (int i = 0; i <= redisNodes; i++) {
+                int port = freePort();
+                RedisServer redis = new RedisServer(port);
+                redis.start();
+                started.add(redis);
+                ports.add(port);
+            }
+        } catch (IOException e) {
+            for (RedisServer redis : started) {
+                redis.stop();
+            }
+            zooKeeper.close();
+            throw e;
+        }
+        return new StandIns(zooKeeper, started.get(0), ports.get(0),
+                List.copyOf(started.subList(1, started.size())),
+                List.copyOf(ports.subList(1, ports.size())));
+    }
+
+    /**
+     * Finds a port no other process is listening on.
+     *
+     * @return the port
+     * @throws IOException if no port can be bound
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Returns the backend properties pointing at the stand-ins.
+     *
+     * @return the properties as {@code --name=value} arguments
+     */
+    public List<String> backendArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("--zookeeper.host=127.0.0.1");
+        args.add("--zookeeper.port=" + zooKeeper.getPort());
+        args.add("--spring.data.redis.host=127.0.0.1");
+        args.add("--spring.data.redis.port=" + redisPort);
+        if (!cacheNodePorts.isEmpty()) {
+            args.add("--cache.redis.nodes=" + String.join(",",
+                    cacheNodePorts.stream()
+                            .map(port -> "redis://127.0.0.1:" + port)
+                            .toList()));
+        }
+        return args;
+    }
+
+    /**
+     * Stops every server.
+     *
+     * @throws IOException if a server cannot stop
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (RedisServer node : cacheNodes) {
+                node.stop();
+            }
+            redis.stop();
+        } finally {
+            zooKeeper.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.loadtest;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws ranks in {@code [0, n)} with Zipfian popularity:
+ * rank {@code k} is drawn with probability proportional
+ * to {@code 1 / (k + 1)^exponent}.
+ * <p>
+ * An exponent near 1 matches the skew of real link traffic,
+ * where a few shortcodes take most redirects; 0 gives a
+ * uniform distribution. The cumulative distribution is
+ * precomputed once, so each draw is a binary search and
+ * the generator is safe to share between threads.
+ */
+public final class ZipfianGenerator {
+    /**
+     * Cumulative probability of ranks {@code 0..k}, by {@code k}.
+     */
+    private final double[] cumulative;
+
+    /**
+     * Constructs a new {@code ZipfianGenerator}.
+     *
+     * @param items number of ranks
+     * @param exponent skew of the distribution, {@code 0} or more
+     */
+    public ZipfianGenerator(final int items, final double exponent) {
+        if (items < 1) {
+            throw new IllegalArgumentException("items must be positive: " + items);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("exponent must not be negative: " + exponent);
+        }
+        cumulative = new double[items];
+        double sum = 0;
+        for (int k = 0; k < items; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < items; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    /**
+     * Draws the next rank.
+     *
+     * @param random the source of randomness of the calling thread
+     * @return a rank, {@code 0} being the most popular
+     */
+    public int next(final RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
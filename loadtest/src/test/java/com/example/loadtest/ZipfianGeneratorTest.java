@@ -0,0 +1,50 @@
+package com.example.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipfianGeneratorTest {
+
+    private static final int DRAWS = 200_000;
+
+    @Test
+    void testMostPopularRanksDominate() {
+        ZipfianGenerator generator = new ZipfianGenerator(1000, 0.99);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[1000];
+
+        for (int i = 0; i < DRAWS; i++) {
+            counts[generator.next(random)]++;
+        }
+
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[10]);
+        // Rank 0 of 1000 with exponent 0.99 takes about 13% of draws
+        assertEquals(0.13, counts[0] / (double) DRAWS, 0.02);
+    }
+
+    @Test
+    void testExponentZeroIsUniform() {
+        ZipfianGenerator generator = new ZipfianGenerator(10, 0);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[10];
+
+        for (int i = 0; i < DRAWS; i++) {
+            counts[generator.next(random)]++;
+        }
+
+        for (int count : counts) {
+            assertEquals(0.1, count / (double) DRAWS, 0.01);
+        }
+    }
+
+    @Test
+    void testRejectsEmptyKeySpace() {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(0, 1));
+    }
+}